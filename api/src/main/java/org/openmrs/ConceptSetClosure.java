@@ -0,0 +1,92 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs;
+
+/**
+ * A row of the transitive closure of concept set membership: the descendant concept is a member of
+ * the ancestor concept set, either directly or through nested sets. The closure is kept up to date
+ * when concepts are saved, so that the members of a set can be read or joined in one query instead
+ * of exploding the nested sets one level at a time.
+ * 
+ * @see org.openmrs.api.ConceptService#getConceptIdsByConceptSet(Concept)
+ * @since 1.10
+ */
+public class ConceptSetClosure implements java.io.Serializable {
+	
+	public static final long serialVersionUID = 3820174562L;
+	
+	private Integer conceptSetClosureId;
+	
+	private Integer ancestorConceptId;
+	
+	private Integer descendantConceptId;
+	
+	/** default constructor */
+	public ConceptSetClosure() {
+	}
+	
+	/**
+	 * Convenience constructor
+	 * 
+	 * @param ancestorConceptId the id of the concept set
+	 * @param descendantConceptId the id of the concept in the set or in one of its nested sets
+	 */
+	public ConceptSetClosure(Integer ancestorConceptId, Integer descendantConceptId) {
+		this.ancestorConceptId = ancestorConceptId;
+		this.descendantConceptId = descendantConceptId;
+	}
+	
+	/**
+	 * @return the unique internal database identifier of the row
+	 */
+	public Integer getConceptSetClosureId() {
+		return conceptSetClosureId;
+	}
+	
+	/**
+	 * @param conceptSetClosureId the unique internal database identifier of the row
+	 */
+	public void setConceptSetClosureId(Integer conceptSetClosureId) {
+		this.conceptSetClosureId = conceptSetClosureId;
+	}
+	
+	/**
+	 * @return the id of the concept set
+	 */
+	public Integer getAncestorConceptId() {
+		return ancestorConceptId;
+	}
+	
+	/**
+	 * @param ancestorConceptId the id of the concept set
+	 */
+	public void setAncestorConceptId(Integer ancestorConceptId) {
+		this.ancestorConceptId = ancestorConceptId;
+	}
+	
+	/**
+	 * @return the id of the concept in the set or in one of its nested sets
+	 */
+	public Integer getDescendantConceptId() {
+		return descendantConceptId;
+	}
+	
+	/**
+	 * @param descendantConceptId the id of the concept in the set or in one of its nested sets
+	 */
+	public void setDescendantConceptId(Integer descendantConceptId) {
+		this.descendantConceptId = descendantConceptId;
+	}
+	
+}
@@ -0,0 +1,110 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs;
+
+/**
+ * A row of the transitive closure of the location hierarchy: the descendant location is a child of
+ * the ancestor location, either directly (at depth 1) or through the locations in between. The
+ * closure is kept up to date when locations are saved, so that "a location and all of its
+ * sub-locations" can be read or joined in one query instead of walking the child locations.
+ * 
+ * @see org.openmrs.api.LocationService#getDescendantLocations(Location, boolean)
+ * @since 1.10
+ */
+public class LocationClosure implements java.io.Serializable {
+	
+	public static final long serialVersionUID = 5190273846L;
+	
+	private Integer locationClosureId;
+	
+	private Integer ancestorLocationId;
+	
+	private Integer descendantLocationId;
+	
+	private Integer depth;
+	
+	/** default constructor */
+	public LocationClosure() {
+	}
+	
+	/**
+	 * Convenience constructor
+	 * 
+	 * @param ancestorLocationId the id of the ancestor location
+	 * @param descendantLocationId the id of the descendant location
+	 * @param depth the number of levels between the two locations, 1 for a child location
+	 */
+	public LocationClosure(Integer ancestorLocationId, Integer descendantLocationId, Integer depth) {
+		this.ancestorLocationId = ancestorLocationId;
+		this.descendantLocationId = descendantLocationId;
+		this.depth = depth;
+	}
+	
+	/**
+	 * @return the unique internal database identifier of the row
+	 */
+	public Integer getLocationClosureId() {
+		return locationClosureId;
+	}
+	
+	/**
+	 * @param locationClosureId the unique internal database identifier of the row
+	 */
+	public void setLocationClosureId(Integer locationClosureId) {
+		this.locationClosureId = locationClosureId;
+	}
+	
+	/**
+	 * @return the id of the ancestor location
+	 */
+	public Integer getAncestorLocationId() {
+		return ancestorLocationId;
+	}
+	
+	/**
+	 * @param ancestorLocationId the id of the ancestor location
+	 */
+	public void setAncestorLocationId(Integer ancestorLocationId) {
+		this.ancestorLocationId = ancestorLocationId;
+	}
+	
+	/**
+	 * @return the id of the descendant location
+	 */
+	public Integer getDescendantLocationId() {
+		return descendantLocationId;
+	}
+	
+	/**
+	 * @param descendantLocationId the id of the descendant location
+	 */
+	public void setDescendantLocationId(Integer descendantLocationId) {
+		this.descendantLocationId = descendantLocationId;
+	}
+	
+	/**
+	 * @return the number of levels between the two locations, 1 for a child location
+	 */
+	public Integer getDepth() {
+		return depth;
+	}
+	
+	/**
+	 * @param depth the number of levels between the two locations, 1 for a child location
+	 */
+	public void setDepth(Integer depth) {
+		this.depth = depth;
+	}
+	
+}
@@ -0,0 +1,168 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs;
+
+import java.util.Date;
+
+/**
+ * The number of non voided observations of a concept for a person, together with the latest of
+ * them. Summaries are either computed when they are asked for, or read from the obs_summary table
+ * for the concepts listed in the
+ * {@link org.openmrs.util.OpenmrsConstants#GLOBAL_PROPERTY_OBS_SUMMARY_CONCEPTS} global property,
+ * which is kept up to date whenever obs of those concepts are saved.
+ * 
+ * @see org.openmrs.api.ObsService#getObsSummaries(java.util.List, java.util.List)
+ * @since 1.10
+ */
+public class ObsSummary implements java.io.Serializable {
+	
+	public static final long serialVersionUID = 4817320498L;
+	
+	private Integer obsSummaryId;
+	
+	private Person person;
+	
+	private Concept concept;
+	
+	private Integer obsCount;
+	
+	private Date latestObsDatetime;
+	
+	private Integer latestObsId;
+	
+	private transient Obs latestObs;
+	
+	/** default constructor */
+	public ObsSummary() {
+	}
+	
+	/**
+	 * Convenience constructor
+	 * 
+	 * @param person the person the obs are about
+	 * @param concept the question concept of the obs
+	 */
+	public ObsSummary(Person person, Concept concept) {
+		this.person = person;
+		this.concept = concept;
+	}
+	
+	/**
+	 * @return the unique internal database identifier of a stored summary
+	 */
+	public Integer getObsSummaryId() {
+		return obsSummaryId;
+	}
+	
+	/**
+	 * @param obsSummaryId the unique internal database identifier of a stored summary
+	 */
+	public void setObsSummaryId(Integer obsSummaryId) {
+		this.obsSummaryId = obsSummaryId;
+	}
+	
+	/**
+	 * @return the person the obs are about
+	 */
+	public Person getPerson() {
+		return person;
+	}
+	
+	/**
+	 * @param person the person the obs are about
+	 */
+	public void setPerson(Person person) {
+		this.person = person;
+	}
+	
+	/**
+	 * @return the question concept of the obs
+	 */
+	public Concept getConcept() {
+		return concept;
+	}
+	
+	/**
+	 * @param concept the question concept of the obs
+	 */
+	public void setConcept(Concept concept) {
+		this.concept = concept;
+	}
+	
+	/**
+	 * @return the number of non voided obs
+	 */
+	public Integer getObsCount() {
+		return obsCount;
+	}
+	
+	/**
+	 * @param obsCount the number of non voided obs
+	 */
+	public void setObsCount(Integer obsCount) {
+		this.obsCount = obsCount;
+	}
+	
+	/**
+	 * @return the obsDatetime of the latest obs
+	 */
+	public Date getLatestObsDatetime() {
+		return latestObsDatetime;
+	}
+	
+	/**
+	 * @param latestObsDatetime the obsDatetime of the latest obs
+	 */
+	public void setLatestObsDatetime(Date latestObsDatetime) {
+		this.latestObsDatetime = latestObsDatetime;
+	}
+	
+	/**
+	 * @return the obsId of the latest obs
+	 */
+	public Integer getLatestObsId() {
+		return latestObsId;
+	}
+	
+	/**
+	 * @param latestObsId the obsId of the latest obs
+	 */
+	public void setLatestObsId(Integer latestObsId) {
+		this.latestObsId = latestObsId;
+	}
+	
+	/**
+	 * @return the latest obs, the one with the highest obsId if several share the latest obsDatetime
+	 */
+	public Obs getLatestObs() {
+		return latestObs;
+	}
+	
+	/**
+	 * @param latestObs the latest obs
+	 */
+	public void setLatestObs(Obs latestObs) {
+		this.latestObs = latestObs;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ObsSummary: person " + (person == null ? null : person.getPersonId()) + ", concept "
+		        + (concept == null ? null : concept.getConceptId()) + ", count " + obsCount;
+	}
+	
+}
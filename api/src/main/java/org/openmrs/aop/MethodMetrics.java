@@ -0,0 +1,211 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ * 
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ * 
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.aop;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The call counts and timings of one service method. All the counters are atomic, so any number of
+ * threads can record calls at the same time without locking. The readings are not taken as one
+ * snapshot, so a call that is being recorded may show up in some of them only.
+ * 
+ * @since 1.10
+ */
+public class MethodMetrics {
+	
+	/**
+	 * the upper bounds of the latency histogram buckets in milliseconds, the last bucket holds all
+	 * the slower calls
+	 */
+	public static final long[] BUCKET_BOUNDS_MILLIS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+	
+	private static final long[] BUCKET_BOUNDS_NANOS = new long[BUCKET_BOUNDS_MILLIS.length];
+	
+	static {
+		for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++)
+			BUCKET_BOUNDS_NANOS[i] = BUCKET_BOUNDS_MILLIS[i] * 1000000L;
+	}
+	
+	private final String name;
+	
+	private final AtomicLong calls = new AtomicLong();
+	
+	private final AtomicLong errors = new AtomicLong();
+	
+	private final AtomicLong totalNanos = new AtomicLong();
+	
+	private final AtomicLong maxNanos = new AtomicLong();
+	
+	private final AtomicLong statements = new AtomicLong();
+	
+	private final AtomicLong entityLoads = new AtomicLong();
+	
+	private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+	
+	/**
+	 * @param name the service and method signature, e.g. "PatientService.getPatient(Integer)"
+	 */
+	public MethodMetrics(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Adds one call
+	 * 
+	 * @param nanos how long the call took
+	 * @param failed whether the call threw an exception
+	 * @param statementCount the number of sql statements the call prepared
+	 * @param entityLoadCount the number of entities the call loaded
+	 * @should count the call in the histogram bucket of its duration
+	 * @should keep the longest duration
+	 */
+	public void record(long nanos, boolean failed, long statementCount, long entityLoadCount) {
+		calls.incrementAndGet();
+		if (failed)
+			errors.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		statements.addAndGet(statementCount);
+		entityLoads.addAndGet(entityLoadCount);
+		
+		long max = maxNanos.get();
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos))
+			max = maxNanos.get();
+		
+		int bucket = 0;
+		while (bucket < BUCKET_BOUNDS_NANOS.length && nanos > BUCKET_BOUNDS_NANOS[bucket])
+			bucket++;
+		histogram.incrementAndGet(bucket);
+	}
+	
+	/**
+	 * Sets all the counters back to zero
+	 */
+	public void reset() {
+		calls.set(0);
+		errors.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+		statements.set(0);
+		entityLoads.set(0);
+		for (int i = 0; i < histogram.length(); i++)
+			histogram.set(i, 0);
+	}
+	
+	/**
+	 * Estimates a percentile of the call durations from the histogram
+	 * 
+	 * @param percentile between 0 and 100, e.g. 95
+	 * @return the upper bound of the bucket that holds the percentile, or the longest duration if
+	 *         that is in the last bucket or lower than the bound
+	 * @should return the upper bound of the bucket that holds the percentile
+	 * @should return zero when there are no calls
+	 */
+	public double getPercentileMillis(double percentile) {
+		long[] counts = getHistogram();
+		long total = 0;
+		for (long count : counts)
+			total += count;
+		if (total == 0)
+			return 0;
+		
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+			seen += counts[i];
+			if (seen >= rank && seen > 0)
+				return Math.min(BUCKET_BOUNDS_MILLIS[i], getMaxMillis());
+		}
+		return getMaxMillis();
+	}
+	
+	/**
+	 * @return the service and method signature
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	public long getCalls() {
+		return calls.get();
+	}
+	
+	public long getErrors() {
+		return errors.get();
+	}
+	
+	/**
+	 * @return the time spent in all the calls, in milliseconds rounded to hundredths like the other
+	 *         durations
+	 */
+	public double getTotalMillis() {
+		return toMillis(totalNanos.get());
+	}
+	
+	public double getMeanMillis() {
+		long count = calls.get();
+		return count == 0 ? 0 : toMillis(totalNanos.get() / count);
+	}
+	
+	public double getMaxMillis() {
+		return toMillis(maxNanos.get());
+	}
+	
+	/**
+	 * @return the 95th percentile of the call durations
+	 * @see #getPercentileMillis(double)
+	 */
+	public double getP95Millis() {
+		return getPercentileMillis(95);
+	}
+	
+	/**
+	 * @return the number of sql statements prepared by all the calls
+	 */
+	public long getStatements() {
+		return statements.get();
+	}
+	
+	/**
+	 * @return the number of entities loaded by all the calls
+	 */
+	public long getEntityLoads() {
+		return entityLoads.get();
+	}
+	
+	/**
+	 * @return the number of calls per bucket of {@link #BUCKET_BOUNDS_MILLIS}, plus the calls that
+	 *         took longer than the last bound
+	 */
+	public long[] getHistogram() {
+		long[] counts = new long[histogram.length()];
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = histogram.get(i);
+		return counts;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return name + " calls=" + getCalls() + " errors=" + getErrors() + " mean=" + getMeanMillis() + "ms p95="
+		        + getP95Millis() + "ms max=" + getMaxMillis() + "ms statements=" + getStatements() + " entityLoads="
+		        + getEntityLoads();
+	}
+	
+	private static double toMillis(long nanos) {
+		return Math.round(nanos / 10000d) / 100d;
+	}
+}
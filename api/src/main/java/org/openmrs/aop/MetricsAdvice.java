@@ -0,0 +1,94 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ * 
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ * 
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.aop;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.openmrs.api.db.hibernate.QueryCountingInterceptor;
+
+/**
+ * This around advice records the duration, outcome and the hibernate statements and entity loads of
+ * every call to one service in the {@link ServiceMetrics}. The ServiceContext puts one in front of
+ * the other advice of each OpenmrsService it is given, so the time spent in authorization and in
+ * the transaction (including the commit) is part of the measured duration. Calls that a service
+ * makes to another service are counted for both.
+ * 
+ * @since 1.10
+ */
+public class MetricsAdvice implements MethodInterceptor {
+	
+	private final String serviceName;
+	
+	private final ConcurrentMap<Method, MethodMetrics> methodMetrics = new ConcurrentHashMap<Method, MethodMetrics>();
+	
+	/**
+	 * @param serviceInterface the interface that the advised service is registered under
+	 */
+	public MetricsAdvice(Class<?> serviceInterface) {
+		this.serviceName = serviceInterface.getSimpleName();
+	}
+	
+	/**
+	 * @see org.aopalliance.intercept.MethodInterceptor#invoke(org.aopalliance.intercept.MethodInvocation)
+	 * @should record the call when the service is measured
+	 * @should not record the call when metrics are disabled
+	 */
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		if (!ServiceMetrics.isMeasured(serviceName))
+			return invocation.proceed();
+		
+		long statements = QueryCountingInterceptor.getStatementCount();
+		long entityLoads = QueryCountingInterceptor.getEntityLoadCount();
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			Object result = invocation.proceed();
+			failed = false;
+			return result;
+		}
+		finally {
+			long nanos = System.nanoTime() - start;
+			getMethodMetrics(invocation.getMethod()).record(nanos, failed,
+			    QueryCountingInterceptor.getStatementCount() - statements,
+			    QueryCountingInterceptor.getEntityLoadCount() - entityLoads);
+		}
+	}
+	
+	/**
+	 * @return the name of the service this advice measures
+	 */
+	public String getServiceName() {
+		return serviceName;
+	}
+	
+	private MethodMetrics getMethodMetrics(Method method) {
+		MethodMetrics metrics = methodMetrics.get(method);
+		if (metrics == null) {
+			StringBuilder name = new StringBuilder(serviceName).append('.').append(method.getName()).append('(');
+			Class<?>[] parameterTypes = method.getParameterTypes();
+			for (int i = 0; i < parameterTypes.length; i++) {
+				if (i > 0)
+					name.append(", ");
+				name.append(parameterTypes[i].getSimpleName());
+			}
+			metrics = ServiceMetrics.getMethodMetrics(name.append(')').toString());
+			methodMetrics.put(method, metrics);
+		}
+		return metrics;
+	}
+}
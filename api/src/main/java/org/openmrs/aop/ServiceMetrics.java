@@ -0,0 +1,279 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ * 
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ * 
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.aop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.util.GlobalPropertySettings;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * Holds the {@link MethodMetrics} recorded by the {@link MetricsAdvice} of every service, and
+ * decides which services are measured. Measuring is switched on with the
+ * {@link OpenmrsConstants#GP_METRICS_ENABLED} global property and can be limited to some services
+ * by listing their interface names (e.g. "PatientService,ObsService") in
+ * {@link OpenmrsConstants#GP_METRICS_SERVICES}. <br/>
+ * <br/>
+ * The global properties are read once and then kept up to date as a global property listener, and
+ * the bean is exported to JMX as "org.openmrs:type=ServiceMetrics".
+ * 
+ * @since 1.10
+ */
+public class ServiceMetrics implements ServiceMetricsMBean, GlobalPropertyListener {
+	
+	private static final ConcurrentMap<String, MethodMetrics> metrics = new ConcurrentHashMap<String, MethodMetrics>();
+	
+	/**
+	 * the service calls that reading the global properties takes are not measured
+	 */
+	private static final GlobalPropertySettings<Settings> settings = new GlobalPropertySettings<Settings>(
+	        OpenmrsConstants.GP_METRICS_ENABLED, OpenmrsConstants.GP_METRICS_SERVICES) {
+		
+		@Override
+		protected Settings parse(Map<String, String> values) {
+			return new Settings(values.get(OpenmrsConstants.GP_METRICS_ENABLED), values
+			        .get(OpenmrsConstants.GP_METRICS_SERVICES));
+		}
+	};
+	
+	/**
+	 * Gets the metrics of a method, adding them the first time the method is called
+	 * 
+	 * @param name the service and method signature
+	 * @return the metrics that calls of the method are recorded in
+	 */
+	public static MethodMetrics getMethodMetrics(String name) {
+		MethodMetrics methodMetrics = metrics.get(name);
+		if (methodMetrics == null) {
+			MethodMetrics added = new MethodMetrics(name);
+			methodMetrics = metrics.putIfAbsent(name, added);
+			if (methodMetrics == null)
+				methodMetrics = added;
+		}
+		return methodMetrics;
+	}
+	
+	/**
+	 * @return the metrics of all the methods that have been called since the last reset, with the
+	 *         largest total time first
+	 */
+	public static List<MethodMetrics> getAllMethodMetrics() {
+		List<MethodMetrics> called = new ArrayList<MethodMetrics>();
+		for (MethodMetrics methodMetrics : metrics.values()) {
+			if (methodMetrics.getCalls() > 0)
+				called.add(methodMetrics);
+		}
+		Collections.sort(called, new Comparator<MethodMetrics>() {
+			
+			@Override
+			public int compare(MethodMetrics m1, MethodMetrics m2) {
+				return Double.compare(m2.getTotalMillis(), m1.getTotalMillis());
+			}
+		});
+		return called;
+	}
+	
+	/**
+	 * Sets the counts and timings of all methods back to zero
+	 */
+	public static void resetAll() {
+		for (MethodMetrics methodMetrics : metrics.values())
+			methodMetrics.reset();
+	}
+	
+	/**
+	 * @param serviceName the simple name of a service interface, e.g. "PatientService"
+	 * @return whether calls to the service should be measured
+	 */
+	public static boolean isMeasured(String serviceName) {
+		Settings current = settings.get();
+		return current != null && current.isMeasured(serviceName);
+	}
+	
+	/**
+	 * @return whether service calls are being measured at all
+	 */
+	public static boolean isMetricsEnabled() {
+		Settings current = settings.get();
+		return current != null && current.enabled;
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyChanged(org.openmrs.GlobalProperty)
+	 */
+	@Override
+	public void globalPropertyChanged(GlobalProperty newValue) {
+		settings.globalPropertyChanged(newValue);
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyDeleted(java.lang.String)
+	 */
+	@Override
+	public void globalPropertyDeleted(String propertyName) {
+		settings.globalPropertyDeleted(propertyName);
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#supportsPropertyName(java.lang.String)
+	 */
+	@Override
+	public boolean supportsPropertyName(String propertyName) {
+		return settings.supportsPropertyName(propertyName);
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMBean#isEnabled()
+	 */
+	@Override
+	public boolean isEnabled() {
+		return isMetricsEnabled();
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMBean#getServices()
+	 */
+	@Override
+	public String getServices() {
+		String services = settings.getValues().get(OpenmrsConstants.GP_METRICS_SERVICES);
+		return services == null ? "" : services;
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMBean#getMethodNames()
+	 */
+	@Override
+	public String[] getMethodNames() {
+		List<String> names = new ArrayList<String>();
+		for (MethodMetrics methodMetrics : getAllMethodMetrics())
+			names.add(methodMetrics.getName());
+		return names.toArray(new String[names.size()]);
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMBean#getSummary()
+	 */
+	@Override
+	public String[] getSummary() {
+		List<String> lines = new ArrayList<String>();
+		for (MethodMetrics methodMetrics : getAllMethodMetrics())
+			lines.add(methodMetrics.toString());
+		return lines.toArray(new String[lines.size()]);
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMBean#getCalls(java.lang.String)
+	 */
+	@Override
+	public long getCalls(String methodName) {
+		MethodMetrics methodMetrics = metrics.get(methodName);
+		return methodMetrics == null ? 0 : methodMetrics.getCalls();
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMBean#getErrors(java.lang.String)
+	 */
+	@Override
+	public long getErrors(String methodName) {
+		MethodMetrics methodMetrics = metrics.get(methodName);
+		return methodMetrics == null ? 0 : methodMetrics.getErrors();
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMBean#getMeanMillis(java.lang.String)
+	 */
+	@Override
+	public double getMeanMillis(String methodName) {
+		MethodMetrics methodMetrics = metrics.get(methodName);
+		return methodMetrics == null ? 0 : methodMetrics.getMeanMillis();
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMBean#getMaxMillis(java.lang.String)
+	 */
+	@Override
+	public double getMaxMillis(String methodName) {
+		MethodMetrics methodMetrics = metrics.get(methodName);
+		return methodMetrics == null ? 0 : methodMetrics.getMaxMillis();
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMBean#getPercentileMillis(java.lang.String, double)
+	 */
+	@Override
+	public double getPercentileMillis(String methodName, double percentile) {
+		MethodMetrics methodMetrics = metrics.get(methodName);
+		return methodMetrics == null ? 0 : methodMetrics.getPercentileMillis(percentile);
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMBean#getStatements(java.lang.String)
+	 */
+	@Override
+	public long getStatements(String methodName) {
+		MethodMetrics methodMetrics = metrics.get(methodName);
+		return methodMetrics == null ? 0 : methodMetrics.getStatements();
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMBean#getEntityLoads(java.lang.String)
+	 */
+	@Override
+	public long getEntityLoads(String methodName) {
+		MethodMetrics methodMetrics = metrics.get(methodName);
+		return methodMetrics == null ? 0 : methodMetrics.getEntityLoads();
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMBean#reset()
+	 */
+	@Override
+	public void reset() {
+		resetAll();
+	}
+	
+	/**
+	 * The values of the two global properties
+	 */
+	private static class Settings {
+		
+		private final boolean enabled;
+		
+		private final Set<String> services = new HashSet<String>();
+		
+		public Settings(String enabledValue, String servicesValue) {
+			enabled = "true".equalsIgnoreCase(enabledValue != null ? enabledValue.trim() : null);
+			if (servicesValue != null) {
+				for (String service : servicesValue.split(",")) {
+					if (service.trim().length() > 0)
+						services.add(service.trim());
+				}
+			}
+		}
+		
+		public boolean isMeasured(String serviceName) {
+			return enabled && (services.isEmpty() || services.contains(serviceName));
+		}
+	}
+}
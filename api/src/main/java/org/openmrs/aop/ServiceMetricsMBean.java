@@ -0,0 +1,62 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ * 
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ * 
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.aop;
+
+/**
+ * The JMX view of the {@link ServiceMetrics}. Methods are identified by the names returned from
+ * {@link #getMethodNames()}, unknown names read as zero.
+ * 
+ * @since 1.10
+ */
+public interface ServiceMetricsMBean {
+	
+	/**
+	 * @return whether service calls are being measured
+	 */
+	public boolean isEnabled();
+	
+	/**
+	 * @return the comma separated names of the measured services, empty when all are measured
+	 */
+	public String getServices();
+	
+	/**
+	 * @return the names of the methods that have been called since the last reset
+	 */
+	public String[] getMethodNames();
+	
+	/**
+	 * @return one line of counts and timings per method that has been called, slowest total first
+	 */
+	public String[] getSummary();
+	
+	public long getCalls(String methodName);
+	
+	public long getErrors(String methodName);
+	
+	public double getMeanMillis(String methodName);
+	
+	public double getMaxMillis(String methodName);
+	
+	public double getPercentileMillis(String methodName, double percentile);
+	
+	public long getStatements(String methodName);
+	
+	public long getEntityLoads(String methodName);
+	
+	/**
+	 * Sets the counts and timings of all methods back to zero
+	 */
+	public void reset();
+}
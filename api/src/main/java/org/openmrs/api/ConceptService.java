@@ -811,6 +811,34 @@ public interface ConceptService extends OpenmrsService {
 	@Authorized(PrivilegeConstants.VIEW_CONCEPTS)
 	public List<ConceptSet> getSetsContainingConcept(Concept concept) throws APIException;
 	
+	/**
+	 * Gets the ids of the concepts in a set and in its nested sets, like
+	 * {@link #getConceptsByConceptSet(Concept)} but from the materialized concept set closure, with
+	 * one query and without loading the concepts
+	 * 
+	 * @param concept the concept set
+	 * @return the ids of the members in ascending order, empty if the concept is not a set
+	 * @throws APIException
+	 * @since 1.10
+	 * @should return the ids of the concepts in the set and its nested sets
+	 * @should return the new members of a saved set and of the sets that contain it
+	 * @should return an empty array for a concept that is not a set
+	 */
+	@Authorized(PrivilegeConstants.VIEW_CONCEPTS)
+	public int[] getConceptIdsByConceptSet(Concept concept) throws APIException;
+	
+	/**
+	 * Computes the whole concept set closure again from the concept set members, which is only
+	 * needed when concept sets were changed directly in the database, e.g. by importing a concept
+	 * dictionary. The {@link org.openmrs.scheduler.tasks.RebuildClosureTablesTask} calls it on
+	 * every startup.
+	 * 
+	 * @throws APIException
+	 * @since 1.10
+	 */
+	@Authorized(PrivilegeConstants.MANAGE_CONCEPTS)
+	public void rebuildConceptSetClosure() throws APIException;
+	
 	/**
 	 * @deprecated use {@link #getAllConceptProposals(boolean)}
 	 */
@@ -1197,6 +1225,49 @@ public interface ConceptService extends OpenmrsService {
 	@Authorized(PrivilegeConstants.VIEW_CONCEPTS)
 	public Iterator<Concept> conceptIterator();
 	
+	/**
+	 * Gets the next batch of concepts in ascending concept id order, starting after the given
+	 * concept id. This allows walking over the whole dictionary in constant sized chunks without
+	 * offset paging. The names, descriptions, answers, set members and mappings of the returned
+	 * concepts (and the names of their answer and set member concepts) are fetched with a few
+	 * batched queries instead of being lazily loaded one concept at a time. <br/>
+	 * <br/>
+	 * Callers that walk the whole dictionary should clear the session between batches.
+	 * 
+	 * @param afterConceptId only concepts with a larger concept id are returned, null to start with
+	 *            the smallest concept id
+	 * @param maxResults the maximum number of concepts to return
+	 * @param includeRetired whether retired concepts should be included
+	 * @return the concepts in ascending concept id order, an empty list after the last batch
+	 * @throws APIException
+	 * @since 1.10
+	 * @should return concepts in ascending concept id order starting after the given concept id
+	 * @should not return more than maxResults concepts
+	 * @should exclude retired concepts if includeRetired is false
+	 * @should fetch the names answers and set members of the returned concepts
+	 */
+	@Authorized(PrivilegeConstants.VIEW_CONCEPTS)
+	public List<Concept> getConceptBatch(Integer afterConceptId, Integer maxResults, boolean includeRetired)
+	        throws APIException;
+	
+	/**
+	 * Gets the concepts with the given ids for showing them in a list, like a page of search
+	 * results. The names, descriptions, class and datatype of all of the concepts are fetched with a
+	 * few queries instead of being lazily loaded one concept at a time, which also initializes them
+	 * on the same concepts returned earlier in the session, e.g. by a search.
+	 * 
+	 * @param conceptIds the ids of the concepts to get
+	 * @return the concepts in the order of the given ids, without the ids of concepts that don't
+	 *         exist
+	 * @throws APIException
+	 * @since 1.10
+	 * @should return the concepts in the order of the given ids
+	 * @should fetch the names and descriptions of the concepts
+	 * @should leave out the ids of concepts that do not exist
+	 */
+	@Authorized(PrivilegeConstants.VIEW_CONCEPTS)
+	public List<Concept> getConceptsForListing(List<Integer> conceptIds) throws APIException;
+	
 	/**
 	 * Looks up a concept via {@link ConceptMap} This will return the {@link Concept} which contains
 	 * a {@link ConceptMap} entry whose <code>sourceCode</code> is equal to the passed
@@ -1465,6 +1536,30 @@ public interface ConceptService extends OpenmrsService {
 	@Authorized( { PrivilegeConstants.MANAGE_CONCEPTS })
 	public void updateConceptIndexes(Integer conceptIdStart, Integer conceptIdEnd) throws APIException;
 	
+	/**
+	 * Updates the index of a batch of concepts, e.g. one returned by
+	 * {@link #getConceptBatch(Integer, Integer, boolean)}. The old words of all concepts are deleted
+	 * with one statement and the new ones are inserted in jdbc batches. <br/>
+	 * <br/>
+	 * The index of a concept only needs to change when its names do, so after a dictionary upgrade
+	 * most of the work can be saved by comparing the words in the index with the ones the names
+	 * produce and only rewriting the concepts that differ.
+	 * 
+	 * @param concepts the concepts whose index to update
+	 * @param onlyChanged whether to only rewrite the index of concepts whose words differ from the
+	 *            ones in the index
+	 * @param dryRun whether to only find the concepts whose words differ without changing the index
+	 * @return the concepts whose index was rewritten, or that differ if this is a dry run
+	 * @throws APIException
+	 * @since 1.10
+	 * @should update the index of all the given concepts
+	 * @should only update the index of changed concepts if onlyChanged is true
+	 * @should not change the index if dryRun is true
+	 */
+	@Authorized( { PrivilegeConstants.MANAGE_CONCEPTS })
+	public List<Concept> updateConceptIndexes(List<Concept> concepts, boolean onlyChanged, boolean dryRun)
+	        throws APIException;
+	
 	/**
 	 * Searches for concepts with the given parameters
 	 * 
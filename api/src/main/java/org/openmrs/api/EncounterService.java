@@ -32,6 +32,7 @@ import org.openmrs.VisitType;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.db.EncounterDAO;
 import org.openmrs.api.handler.EncounterVisitHandler;
+import org.openmrs.util.KeysetPage;
 import org.openmrs.util.PrivilegeConstants;
 
 /**
@@ -73,6 +74,7 @@ public interface EncounterService extends OpenmrsService {
 	 * @should cascade delete encounter providers
 	 * @should void and create new obs when saving encounter
 	 * @should fail if user is not supposed to edit encounters of type of given encounter
+	 * @should update the stored obs summaries of the previous patient when the patient is changed
 	 */
 	@Authorized( { PrivilegeConstants.ADD_ENCOUNTERS, PrivilegeConstants.EDIT_ENCOUNTERS })
 	public Encounter saveEncounter(Encounter encounter) throws APIException;
@@ -112,6 +114,29 @@ public interface EncounterService extends OpenmrsService {
 	@Authorized( { PrivilegeConstants.GET_ENCOUNTERS })
 	public List<Encounter> getEncountersByPatient(Patient patient);
 	
+	/**
+	 * Gets a page of the encounters of a patient, newest first. The encounters are sorted on
+	 * encounterDatetime and then encounterId descending, and each page is fetched by seeking past
+	 * the last encounter of the previous page, so deep pages are as fast as the first one.
+	 * 
+	 * @param patient the patient to get the encounters of
+	 * @param includeVoided Specifies whether voided encounters should be included
+	 * @param continuationToken the continuation token of the previous page, or null for the first
+	 *            page
+	 * @param length the maximum number of encounters in the page
+	 * @return the page of encounters
+	 * @throws APIException if the continuation token is not valid
+	 * @since 1.10
+	 * @should return the encounters of the patient newest first
+	 * @should return the next page for the continuation token
+	 * @should not return a continuation token on the last page
+	 * @should fail for an invalid continuation token
+	 * @should fail for a continuation token of another listing
+	 */
+	@Authorized( { PrivilegeConstants.GET_ENCOUNTERS })
+	public KeysetPage<Encounter> getEncountersByPatient(Patient patient, boolean includeVoided, String continuationToken,
+	        int length) throws APIException;
+	
 	/**
 	 * Get encounters for a patientId
 	 * 
@@ -208,6 +233,34 @@ public interface EncounterService extends OpenmrsService {
 	        Collection<Form> enteredViaForms, Collection<EncounterType> encounterTypes, Collection<Provider> providers,
 	        Collection<VisitType> visitTypes, Collection<Visit> visits, boolean includeVoided);
 	
+	/**
+	 * Same as
+	 * {@link #getEncounters(Patient, Location, Date, Date, Collection, Collection, Collection, Collection, Collection, boolean)}
+	 * but can also match the encounters that took place at the descendants of the location
+	 * 
+	 * @param who the patient the encounter is for
+	 * @param loc the location this encounter took place
+	 * @param includeChildLocations whether the encounters at the descendants of the location match
+	 *            too
+	 * @param fromDate the minimum date (inclusive) this encounter took place
+	 * @param toDate the maximum date (exclusive) this encounter took place
+	 * @param enteredViaForms the form that entered this encounter must be in this list
+	 * @param encounterTypes the type of encounter must be in this list
+	 * @param providers the provider of this encounter must be in this list
+	 * @param visitTypes the visit types of this encounter must be in this list
+	 * @param visits the visits of this encounter must be in this list
+	 * @param includeVoided true/false to include the voided encounters or not
+	 * @return a list of encounters ordered by increasing encounterDatetime
+	 * @since 1.10
+	 * @should get encounters at child locations if includeChildLocations is true
+	 * @should only get encounters at the location if includeChildLocations is false
+	 */
+	@Authorized( { PrivilegeConstants.GET_ENCOUNTERS })
+	public List<Encounter> getEncounters(Patient who, Location loc, boolean includeChildLocations, Date fromDate,
+	        Date toDate, Collection<Form> enteredViaForms, Collection<EncounterType> encounterTypes,
+	        Collection<Provider> providers, Collection<VisitType> visitTypes, Collection<Visit> visits,
+	        boolean includeVoided);
+	
 	/**
 	 * Voiding a encounter essentially removes it from circulation
 	 * 
@@ -628,6 +681,27 @@ public interface EncounterService extends OpenmrsService {
 	public List<Encounter> getEncounters(String query, Integer start, Integer length, boolean includeVoided)
 	        throws APIException;
 	
+	/**
+	 * Search for encounters by patient name or patient identifier and returns a page of them,
+	 * newest first. Unlike {@link #getEncounters(String, Integer, Integer, boolean)} the pages are
+	 * fetched by seeking past the last encounter of the previous page instead of skipping over all
+	 * of the previous pages.
+	 * 
+	 * @param query patient name or identifier
+	 * @param includeVoided Specifies whether voided encounters should be included
+	 * @param continuationToken the continuation token of the previous page, or null for the first
+	 *            page
+	 * @param length the maximum number of encounters in the page
+	 * @return the page of encounters sorted on encounterDatetime and encounterId descending
+	 * @throws APIException if the continuation token is not valid
+	 * @since 1.10
+	 * @should page through all the unique encounters that match the query
+	 * @should return an empty page for empty query
+	 */
+	@Authorized( { PrivilegeConstants.GET_ENCOUNTERS })
+	public KeysetPage<Encounter> getEncounters(String query, boolean includeVoided, String continuationToken, int length)
+	        throws APIException;
+	
 	/**
 	 * Get all encounters for a cohort of patients
 	 * 
@@ -488,4 +488,41 @@ public interface LocationService extends OpenmrsService {
 	@Authorized(PrivilegeConstants.GET_LOCATIONS)
 	LocationAttribute getLocationAttributeByUuid(String uuid);
 	
+	/**
+	 * Gets the child locations of a location, their child locations and so on, with one query on
+	 * the location closure instead of walking the child locations
+	 * 
+	 * @param location the location
+	 * @param includeRetired whether to include retired locations
+	 * @return the descendants, the closest first
+	 * @since 1.10
+	 * @should return the child locations at every level
+	 * @should not return retired locations if includeRetired is false
+	 * @should return the locations that were moved under the location
+	 */
+	@Authorized(PrivilegeConstants.GET_LOCATIONS)
+	public List<Location> getDescendantLocations(Location location, boolean includeRetired);
+	
+	/**
+	 * Gets the parent location of a location, its parent location and so on, with one query on the
+	 * location closure
+	 * 
+	 * @param location the location
+	 * @return the ancestors, the parent location first
+	 * @since 1.10
+	 * @should return the parent locations up to the root
+	 */
+	@Authorized(PrivilegeConstants.GET_LOCATIONS)
+	public List<Location> getAncestorLocations(Location location);
+	
+	/**
+	 * Computes the whole location closure again from the parent locations, which is only needed
+	 * when locations were changed directly in the database. The
+	 * {@link org.openmrs.scheduler.tasks.RebuildClosureTablesTask} calls it on every startup.
+	 * 
+	 * @since 1.10
+	 */
+	@Authorized(PrivilegeConstants.MANAGE_LOCATIONS)
+	public void rebuildLocationClosure();
+	
 }
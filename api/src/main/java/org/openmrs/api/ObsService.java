@@ -13,6 +13,7 @@
  */
 package org.openmrs.api;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -25,10 +26,13 @@ import org.openmrs.Encounter;
 import org.openmrs.Location;
 import org.openmrs.MimeType;
 import org.openmrs.Obs;
+import org.openmrs.ObsSummary;
 import org.openmrs.Person;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.db.ObsDAO;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.FileComplexObsHandler;
+import org.openmrs.util.KeysetPage;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
 import org.openmrs.util.PrivilegeConstants;
@@ -174,6 +178,7 @@ public interface ObsService extends OpenmrsService {
 	 * @should cascade update to new child obs groups
 	 * @should link original and updated obs
 	 * @should set void reason message to changeMessage
+	 * @should update the stored summaries of the previous person when the person is changed
 	 */
 	@Authorized( { PrivilegeConstants.ADD_OBS, PrivilegeConstants.EDIT_OBS })
 	public Obs saveObs(Obs obs, String changeMessage) throws APIException;
@@ -398,6 +403,73 @@ public interface ObsService extends OpenmrsService {
 	        Integer mostRecentN, Integer obsGroupId, Date fromDate, Date toDate, boolean includeVoidedObs)
 	        throws APIException;
 	
+	/**
+	 * Same as
+	 * {@link #getObservations(List, List, List, List, List, List, List, Integer, Integer, Date, Date, boolean)}
+	 * but can also match the obs that were taken at the descendants of the given locations
+	 * 
+	 * @param whom List<Person> to restrict obs to (optional)
+	 * @param encounters List<Encounter> to restrict obs to (optional)
+	 * @param questions List<Concept> to restrict the obs to (optional)
+	 * @param answers List<Concept> to restrict the valueCoded to (optional)
+	 * @param personTypes List<PERSON_TYPE> objects to restrict this to. Only used if
+	 *            <code>whom</code> is an empty list (optional)
+	 * @param locations The org.openmrs.Location objects to restrict to (optional)
+	 * @param includeChildLocations whether the obs at the descendants of the locations match too
+	 * @param sort list of column names to sort on (obsId, obsDatetime, etc) if null, defaults to
+	 *            obsDatetime (optional)
+	 * @param mostRecentN restrict the number of obs returned to this size (optional)
+	 * @param obsGroupId the Obs.getObsGroupId() to this integer (optional)
+	 * @param fromDate the earliest Obs date to get (optional)
+	 * @param toDate the latest Obs date to get (optional)
+	 * @param includeVoidedObs true/false whether to also include the voided obs (required)
+	 * @return list of Observations that match all of the criteria given in the arguments
+	 * @throws APIException
+	 * @since 1.10
+	 * @should return obs at child locations of given locations if includeChildLocations is true
+	 * @should only return obs at given locations if includeChildLocations is false
+	 */
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public List<Obs> getObservations(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Concept> answers, List<PERSON_TYPE> personTypes, List<Location> locations, boolean includeChildLocations,
+	        List<String> sort, Integer mostRecentN, Integer obsGroupId, Date fromDate, Date toDate,
+	        boolean includeVoidedObs) throws APIException;
+	
+	/**
+	 * Gets a page of the observations matching the criteria given in the arguments, newest first.
+	 * The arguments are the same as those of
+	 * {@link #getObservations(List, List, List, List, List, List, List, Integer, Integer, Date, Date, boolean)}
+	 * , but the obs are always sorted on obsDatetime and then obsId descending so that each page can
+	 * be fetched by seeking past the last obs of the previous page, which is as fast for deep pages
+	 * as it is for the first one.
+	 * 
+	 * @param whom List<Person> to restrict obs to (optional)
+	 * @param encounters List<Encounter> to restrict obs to (optional)
+	 * @param questions List<Concept> to restrict the obs to (optional)
+	 * @param answers List<Concept> to restrict the valueCoded to (optional)
+	 * @param personTypes List<PERSON_TYPE> objects to restrict this to. Only used if
+	 *            <code>whom</code> is an empty list (optional)
+	 * @param locations The org.openmrs.Location objects to restrict to (optional)
+	 * @param obsGroupId the Obs.getObsGroupId() to this integer (optional)
+	 * @param fromDate the earliest Obs date to get (optional)
+	 * @param toDate the latest Obs date to get (optional)
+	 * @param includeVoidedObs true/false whether to also include the voided obs (required)
+	 * @param continuationToken the continuation token of the previous page, or null for the first
+	 *            page
+	 * @param length the maximum number of obs in the page
+	 * @return the page of observations
+	 * @throws APIException if the continuation token is not valid
+	 * @since 1.10
+	 * @should return the obs newest first
+	 * @should page through all the matching obs without repeating any
+	 * @should fail for an invalid continuation token
+	 */
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public KeysetPage<Obs> getObservations(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Concept> answers, List<PERSON_TYPE> personTypes, List<Location> locations, Integer obsGroupId,
+	        Date fromDate, Date toDate, boolean includeVoidedObs, String continuationToken, int length)
+	        throws APIException;
+	
 	/**
 	 * This method fetches the count of observations according to the criteria in the given
 	 * arguments. All arguments are optional and nullable. If more than one argument is non-null,
@@ -487,6 +559,115 @@ public interface ObsService extends OpenmrsService {
 	@Authorized(PrivilegeConstants.VIEW_OBS)
 	public List<Obs> getObservationsByPersonAndConcept(Person who, Concept question) throws APIException;
 	
+	/**
+	 * Gets only the obsDatetime and valueNumeric of the non voided numeric observations of the
+	 * given person for the given question, without loading the {@link Obs} objects. This is meant
+	 * for graphing long series of values.
+	 * 
+	 * @param who person to match on
+	 * @param question the question concept to match on
+	 * @param fromDate if not null, only observations on or after this date are returned
+	 * @param toDate if not null, only observations before this date are returned
+	 * @return list of {obsDatetime, valueNumeric} pairs ordered by obsDatetime
+	 * @throws APIException
+	 * @since 1.10
+	 * @should return the datetimes and numeric values ordered by obsDatetime
+	 * @should only return values within the given date range
+	 */
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public List<Object[]> getNumericObsValues(Person who, Concept question, Date fromDate, Date toDate)
+	        throws APIException;
+	
+	/**
+	 * Gets a version of the observations (voided or not) of the given person for the given
+	 * questions. It changes whenever one of them is created, voided, unvoided or purged, or is
+	 * moved to or from the person, e.g. by a patient merge. Saving a changed observation creates a
+	 * new one and voids the old one, so the version can be used to tell whether anything derived
+	 * from the observations is still up to date. Changes made to the obs table with sql that keep
+	 * the ids, dates and voided flags of the rows are not noticed.
+	 * 
+	 * @param who person to match on
+	 * @param questions the question concepts to match on
+	 * @return the version of the matching observations, null if there are none
+	 * @throws APIException
+	 * @since 1.10
+	 * @should change when an observation is created or voided
+	 * @should change when an observation is unvoided or purged
+	 * @should return null if there are no matching observations
+	 */
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public String getObsVersion(Person who, List<Concept> questions) throws APIException;
+	
+	/**
+	 * Gets the number of non voided observations and the latest of them for each of the given
+	 * persons and questions, in as few queries as possible no matter how many persons and questions
+	 * there are. This is meant for dashboards and badges that would otherwise call
+	 * {@link #getObservationCount(List, List, List, List, List, List, Integer, Date, Date, boolean)}
+	 * once per counter. <br/>
+	 * <br/>
+	 * The summaries of the questions listed in the
+	 * {@link OpenmrsConstants#GLOBAL_PROPERTY_OBS_SUMMARY_CONCEPTS} global property are read from
+	 * the obs_summary table once it has been rebuilt for them, see {@link #updateObsSummaries()},
+	 * and are kept up to date when their obs are saved. The others are computed from the obs table.
+	 * 
+	 * @param whom the persons to summarize the obs of, all persons if null or empty
+	 * @param questions the question concepts to summarize the obs of
+	 * @return one summary for each (person, concept) pair with obs, in no particular order
+	 * @throws APIException
+	 * @since 1.10
+	 * @should return the count and latest obs of each person and question
+	 * @should not count voided obs
+	 * @should not return summaries for questions without obs
+	 * @should return an empty list if there are no questions
+	 * @should return the same summaries from the summary table as from the obs table
+	 * @should compute the summaries of listed concepts until the summary table is rebuilt
+	 */
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public List<ObsSummary> getObsSummaries(List<Person> whom, List<Concept> questions) throws APIException;
+	
+	/**
+	 * Brings the stored obs summaries of the given person up to date. This is called whenever obs
+	 * of the person are changed outside of this service, e.g. when encounters are saved or patients
+	 * are merged, and does nothing if no summaries are stored.
+	 * 
+	 * @param person the person whose obs changed
+	 * @throws APIException
+	 * @since 1.10
+	 * @should update the stored summaries of the person
+	 */
+	@Authorized(PrivilegeConstants.EDIT_OBS)
+	public void updateObsSummaries(Person person) throws APIException;
+	
+	/**
+	 * Brings the stored obs summaries of the given person up to date for the concepts of the given
+	 * obs and their group members only. This is called when the obs of an encounter are saved
+	 * through the encounter, and does nothing if none of the concepts have stored summaries.
+	 * 
+	 * @param person the person whose obs changed
+	 * @param obs the obs that changed
+	 * @throws APIException
+	 * @since 1.10
+	 * @should update the stored summaries of the concepts of the obs
+	 * @should not update the stored summaries of other concepts
+	 */
+	@Authorized(PrivilegeConstants.EDIT_OBS)
+	public void updateObsSummaries(Person person, Collection<Obs> obs) throws APIException;
+	
+	/**
+	 * Brings the obs_summary table in line with the concepts listed in the
+	 * {@link OpenmrsConstants#GLOBAL_PROPERTY_OBS_SUMMARY_CONCEPTS} global property, storing the
+	 * summaries of the newly listed concepts and deleting the ones of the concepts that are no
+	 * longer listed. This can take long on a large obs table, so it is not done when the global
+	 * property changes but by the {@link org.openmrs.scheduler.tasks.RebuildObsSummariesTask}.
+	 * 
+	 * @throws APIException
+	 * @since 1.10
+	 * @should store the summaries of the listed concepts
+	 * @should delete the summaries of the concepts that are no longer listed
+	 */
+	@Authorized(value = { PrivilegeConstants.EDIT_OBS, PrivilegeConstants.MANAGE_GLOBAL_PROPERTIES }, requireAll = true)
+	public void updateObsSummaries() throws APIException;
+	
 	/**
 	 * @deprecated use
 	 *             {@link #getObservations(List, List, List, List, List, List, List, Integer, Integer, Date, Date, boolean)}
@@ -599,6 +780,22 @@ public interface ObsService extends OpenmrsService {
 	@Authorized( { PrivilegeConstants.VIEW_OBS })
 	public Obs getComplexObs(Integer obsId, String view) throws APIException;
 	
+	/**
+	 * Get a complex observation without loading its complex data. If the handler of the obs is a
+	 * {@link FileComplexObsHandler} that stores the given view in a file, the data of the attached
+	 * ComplexData is that {@link java.io.File}, so it can be streamed in constant memory. Otherwise
+	 * this behaves just like {@link #getComplexObs(Integer, String)}.
+	 * 
+	 * @param obsId
+	 * @param view
+	 * @return Obs with a ComplexData
+	 * @since 1.10
+	 * @should fill in the file of the complex data for a file based handler
+	 * @should return normal obs for non complex obs
+	 */
+	@Authorized( { PrivilegeConstants.VIEW_OBS })
+	public Obs getComplexObsFile(Integer obsId, String view) throws APIException;
+	
 	/**
 	 * Get the ComplexObsHandler that has been registered with the given key
 	 * 
@@ -81,6 +81,25 @@ public interface PatientService extends OpenmrsService {
 	@Authorized( { PrivilegeConstants.ADD_PATIENTS, PrivilegeConstants.EDIT_PATIENTS })
 	public Patient savePatient(Patient patient) throws APIException;
 	
+	/**
+	 * Saves the given patients, e.g. when importing them from another system. All patients are
+	 * validated before any of them is saved, and the identifiers of all patients are checked for
+	 * uniqueness against the database and against each other with batched queries instead of one
+	 * query per identifier.
+	 * 
+	 * @param patients the patients to be created or updated
+	 * @return the saved patients
+	 * @throws APIException if any of the patients is invalid, in which case none of them is saved
+	 * @since 1.10
+	 * @should save all the given patients
+	 * @should fail when two of the patients have the same unique identifier
+	 * @should fail when an identifier is in use by another patient
+	 * @should fail when a patient does not have required patient identifiers
+	 * @should save none of the patients when one of them is invalid
+	 */
+	@Authorized( { PrivilegeConstants.ADD_PATIENTS, PrivilegeConstants.EDIT_PATIENTS })
+	public List<Patient> savePatients(List<Patient> patients) throws APIException;
+	
 	/**
 	 * Get patient by internal identifier
 	 * 
@@ -646,6 +665,7 @@ public interface PatientService extends OpenmrsService {
 	 * @should merge observations associated with encounters from non preferred to preferred patient
 	 * @should merge non voided person attributes from non preferred to preferred patient
 	 * @should merge other non voided observations from non preferred to preferred patient
+	 * @should move other non voided observations without creating new versions of them
 	 * @should merge other non voided orders from non preferred to preferred patient
 	 * @should merge non preferred death date when preferred death date is not null or empty
 	 * @should merge non preferred death cause when preferred death cause is not null or empty
@@ -800,6 +820,24 @@ public interface PatientService extends OpenmrsService {
 	@Authorized(PrivilegeConstants.VIEW_PATIENTS)
 	public boolean isIdentifierInUseByAnotherPatient(PatientIdentifier patientIdentifier);
 	
+	/**
+	 * Checks a number of patient identifiers at once, with the same rules as
+	 * {@link #isIdentifierInUseByAnotherPatient(PatientIdentifier)} but a single query for all of
+	 * them
+	 * 
+	 * @param patientIdentifiers the patient identifiers to check
+	 * @return the given identifiers that are in use by a patient other than their own patient, in
+	 *         the order they were given
+	 * @since 1.10
+	 * @should return the identifiers another patient has
+	 * @should not return identifiers only their own patient has
+	 * @should ignore voided patientIdentifiers
+	 * @should respect the location if id type uniqueness is set to location
+	 * @should return an empty list if no identifiers are given
+	 */
+	@Authorized(PrivilegeConstants.VIEW_PATIENTS)
+	public List<PatientIdentifier> getPatientIdentifiersInUseByAnotherPatient(List<PatientIdentifier> patientIdentifiers);
+	
 	/**
 	 * Returns a patient identifier that matches the given patientIndentifier id
 	 * 
@@ -209,6 +209,21 @@ public interface PatientSetService extends OpenmrsService {
 	
 	public Cohort getPatientsHavingLocation(Integer locationId, PatientLocationMethod method);
 	
+	/**
+	 * Gets the patients at a location, or at any of its child locations down the hierarchy, which
+	 * are matched with one join on the location closure
+	 * 
+	 * @param loc the location
+	 * @param method how the location of a patient is determined
+	 * @param includeChildLocations whether patients at the descendants of the location match too
+	 * @return the patients at the location
+	 * @since 1.10
+	 * @should get patients with encounters at child locations if includeChildLocations is true
+	 * @should only get patients with encounters at the location if includeChildLocations is false
+	 * @should get patients whose health center is a child location if includeChildLocations is true
+	 */
+	public Cohort getPatientsHavingLocation(Location loc, PatientLocationMethod method, boolean includeChildLocations);
+	
 	/**
 	 * Returns a Cohort of patient who had drug orders for a set of drugs active on a certain date.
 	 * Can also be used to find patient with no drug orders on that date.
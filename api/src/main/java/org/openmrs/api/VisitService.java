@@ -26,6 +26,7 @@ import org.openmrs.VisitAttribute;
 import org.openmrs.VisitAttributeType;
 import org.openmrs.VisitType;
 import org.openmrs.annotation.Authorized;
+import org.openmrs.util.KeysetPage;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.PrivilegeConstants;
 
@@ -299,6 +300,27 @@ public interface VisitService extends OpenmrsService {
 	public List<Visit> getVisitsByPatient(Patient patient, boolean includeInactive, boolean includeVoided)
 	        throws APIException;
 	
+	/**
+	 * Gets a page of the visits of the specified patient, newest first. The visits are sorted on
+	 * startDatetime and then visitId descending, and each page is fetched by seeking past the last
+	 * visit of the previous page, so deep pages are as fast as the first one.
+	 * 
+	 * @param patient the patient whose visits to get
+	 * @param includeInactive specifies if inactive visits should be returned or not
+	 * @param includeVoided specifies if voided visits should also be returned
+	 * @param continuationToken the continuation token of the previous page, or null for the first
+	 *            page
+	 * @param length the maximum number of visits in the page
+	 * @return the page of visits
+	 * @throws APIException if the continuation token is not valid
+	 * @since 1.10
+	 * @should page through all the visits of the patient newest first
+	 * @should return an empty page for a patient that is not saved
+	 */
+	@Authorized(PrivilegeConstants.VIEW_VISITS)
+	public KeysetPage<Visit> getVisitsByPatient(Patient patient, boolean includeInactive, boolean includeVoided,
+	        String continuationToken, int length) throws APIException;
+	
 	/**
 	 * @return all {@link VisitAttributeType}s
 	 * @should return all visit attribute types including retired ones
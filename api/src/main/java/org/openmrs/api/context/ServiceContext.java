@@ -25,6 +25,7 @@ import java.util.Set;
 import org.aopalliance.aop.Advice;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.openmrs.aop.MetricsAdvice;
 import org.openmrs.api.APIException;
 import org.openmrs.api.ActiveListService;
 import org.openmrs.api.AdministrationService;
@@ -764,6 +765,9 @@ public class ServiceContext implements ApplicationContextAware {
 					if (replacingService)
 						moveAddedAOP(cachedService, advisedService);
 					
+					if (OpenmrsService.class.isAssignableFrom(cls))
+						addMetricsAdvice(cls, advisedService);
+					
 					services.put(cls, advisedService);
 				}
 				log.debug("Service: " + cls + " set successfully");
@@ -775,6 +779,25 @@ public class ServiceContext implements ApplicationContextAware {
 		}
 	}
 	
+	/**
+	 * Puts a {@link MetricsAdvice} in front of the other advice of the given service, unless it
+	 * already has one
+	 * 
+	 * @param cls the interface the service is registered under
+	 * @param advisedService the proxy of the service
+	 */
+	private void addMetricsAdvice(Class<?> cls, Advised advisedService) {
+		for (Advisor advisor : advisedService.getAdvisors()) {
+			if (advisor.getAdvice() instanceof MetricsAdvice)
+				return;
+		}
+		
+		if (advisedService.isFrozen())
+			log.debug("Not measuring the calls to " + cls + " because its proxy is frozen");
+		else
+			advisedService.addAdvice(0, new MetricsAdvice(cls));
+	}
+	
 	/**
 	 * Allow other services to be added to our service layer <br/>
 	 * <br/>
@@ -227,6 +227,26 @@ public interface ConceptDAO {
 	 */
 	public List<ConceptSet> getSetsContainingConcept(Concept concept) throws DAOException;
 	
+	/**
+	 * @see org.openmrs.api.ConceptService#getConceptIdsByConceptSet(org.openmrs.Concept)
+	 */
+	public List<Integer> getConceptIdsByConceptSet(Concept concept) throws DAOException;
+	
+	/**
+	 * Brings the concept set closure up to date after the members of a concept were saved. The
+	 * closure of the sets that contain the concept is only computed again if the members of the
+	 * concept actually changed.
+	 * 
+	 * @param concept the saved concept
+	 * @since 1.10
+	 */
+	public void updateConceptSetClosure(Concept concept) throws DAOException;
+	
+	/**
+	 * @see org.openmrs.api.ConceptService#rebuildConceptSetClosure()
+	 */
+	public void rebuildConceptSetClosure() throws DAOException;
+	
 	/**
 	 * @see org.openmrs.api.ConceptService#getConceptNumeric(java.lang.Integer)
 	 */
@@ -248,6 +268,17 @@ public interface ConceptDAO {
 	 */
 	public Concept getNextConcept(Concept c) throws DAOException;
 	
+	/**
+	 * @see org.openmrs.api.ConceptService#getConceptBatch(Integer, Integer, boolean)
+	 */
+	public List<Concept> getConceptBatch(Integer afterConceptId, Integer maxResults, boolean includeRetired)
+	        throws DAOException;
+	
+	/**
+	 * @see org.openmrs.api.ConceptService#getConceptsForListing(List)
+	 */
+	public List<Concept> getConceptsForListing(List<Integer> conceptIds) throws DAOException;
+	
 	/**
 	 * @see org.openmrs.api.ConceptService#getAllConceptProposals(boolean)
 	 */
@@ -289,6 +320,12 @@ public interface ConceptDAO {
 	 */
 	public void updateConceptWord(Concept concept) throws DAOException;
 	
+	/**
+	 * @see org.openmrs.api.ConceptService#updateConceptIndexes(List, boolean, boolean)
+	 */
+	public List<Concept> updateConceptWords(List<Concept> concepts, boolean onlyChanged, boolean dryRun)
+	        throws DAOException;
+	
 	public ConceptNameTag saveConceptNameTag(ConceptNameTag nameTag);
 	
 	public ConceptNameTag getConceptNameTag(Integer i);
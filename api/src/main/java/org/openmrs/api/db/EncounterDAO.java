@@ -29,6 +29,7 @@ import org.openmrs.Provider;
 import org.openmrs.Visit;
 import org.openmrs.VisitType;
 import org.openmrs.api.EncounterService;
+import org.openmrs.util.KeysetToken;
 
 /**
  * Encounter-related database functions
@@ -68,12 +69,12 @@ public interface EncounterDAO {
 	
 	/**
 	 * @see org.openmrs.api.EncounterService#getEncounters(org.openmrs.Patient,
-	 *      org.openmrs.Location, java.util.Date, java.util.Date, java.util.Collection,
+	 *      org.openmrs.Location, boolean, java.util.Date, java.util.Date, java.util.Collection,
 	 *      java.util.Collection, java.util.Collection, java.util.Collection, java.util.Collection,
 	 *      boolean)
 	 */
-	public List<Encounter> getEncounters(Patient patient, Location location, Date fromDate, Date toDate,
-	        Collection<Form> enteredViaForms, Collection<EncounterType> encounterTypes, Collection<Provider> providers,
+	public List<Encounter> getEncounters(Patient patient, Location location, boolean includeChildLocations,
+	        Date fromDate, Date toDate, Collection<Form> enteredViaForms, Collection<EncounterType> encounterTypes, Collection<Provider> providers,
 	        Collection<VisitType> visitTypes, Collection<Visit> visits, boolean includeVoided);
 	
 	/**
@@ -166,6 +167,25 @@ public interface EncounterDAO {
 	 */
 	List<Encounter> getEncounters(String query, Integer start, Integer length, boolean includeVoided);
 	
+	/**
+	 * Get the {@link Encounter}s of the patients matching the given name or identifier, newest
+	 * first, that come after the given sort key
+	 * 
+	 * @param query patient name or identifier
+	 * @param includeVoided Specifies whether voided encounters should be included
+	 * @param after the sort key of the last encounter of the previous page, or null for the first
+	 *            page
+	 * @param maxResults the maximum number of encounters to return
+	 * @return the encounters sorted on encounterDatetime and encounterId descending
+	 * @see EncounterService#getEncounters(String, boolean, String, int)
+	 */
+	List<Encounter> getEncounters(String query, boolean includeVoided, KeysetToken after, int maxResults);
+	
+	/**
+	 * @see EncounterService#getEncountersByPatient(Patient, boolean, String, int)
+	 */
+	List<Encounter> getEncountersByPatient(Patient patient, boolean includeVoided, KeysetToken after, int maxResults);
+	
 	/**
 	 * Gets the location of the encounter
 	 * 
@@ -182,4 +182,28 @@ public interface LocationDAO {
 	 */
 	public LocationAttribute getLocationAttributeByUuid(String uuid);
 	
+	/**
+	 * @see LocationService#getDescendantLocations(Location, boolean)
+	 */
+	public List<Location> getDescendantLocations(Location location, boolean includeRetired);
+	
+	/**
+	 * @see LocationService#getAncestorLocations(Location)
+	 */
+	public List<Location> getAncestorLocations(Location location);
+	
+	/**
+	 * Brings the location closure up to date after a location was saved. The closure of the location
+	 * and of its descendants is only computed again if its ancestors or descendants changed.
+	 * 
+	 * @param location the saved location
+	 * @since 1.10
+	 */
+	public void updateLocationClosure(Location location);
+	
+	/**
+	 * @see LocationService#rebuildLocationClosure()
+	 */
+	public void rebuildLocationClosure();
+	
 }
@@ -13,6 +13,7 @@
  */
 package org.openmrs.api.db;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -22,8 +23,10 @@ import org.openmrs.Encounter;
 import org.openmrs.Location;
 import org.openmrs.MimeType;
 import org.openmrs.Obs;
+import org.openmrs.ObsSummary;
 import org.openmrs.Person;
 import org.openmrs.api.ObsService;
+import org.openmrs.util.KeysetToken;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
 
 /**
@@ -78,12 +81,27 @@ public interface ObsDAO {
 	
 	/**
 	 * @see org.openmrs.api.ObsService#getObservations(java.util.List, java.util.List,
-	 *      java.util.List, java.util.List, java.util.List, java.util.List, java.util.List,
+	 *      java.util.List, java.util.List, java.util.List, java.util.List, boolean, java.util.List,
 	 *      java.lang.Integer, java.lang.Integer, java.util.Date, java.util.Date, boolean)
 	 */
 	public List<Obs> getObservations(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
-	        List<Concept> answers, List<PERSON_TYPE> personTypes, List<Location> locations, List<String> sort,
-	        Integer mostRecentN, Integer obsGroupId, Date fromDate, Date toDate, boolean includeVoidedObs)
+	        List<Concept> answers, List<PERSON_TYPE> personTypes, List<Location> locations, boolean includeChildLocations,
+	        List<String> sort, Integer mostRecentN, Integer obsGroupId, Date fromDate, Date toDate,
+	        boolean includeVoidedObs) throws DAOException;
+	
+	/**
+	 * Gets the obs matching the given criteria that come after the given sort key, sorted on
+	 * obsDatetime and obsId descending
+	 * 
+	 * @param after the sort key of the last obs of the previous page, or null for the first page
+	 * @param maxResults the maximum number of obs to return
+	 * @see org.openmrs.api.ObsService#getObservations(java.util.List, java.util.List,
+	 *      java.util.List, java.util.List, java.util.List, java.util.List, java.lang.Integer,
+	 *      java.util.Date, java.util.Date, boolean, java.lang.String, int)
+	 */
+	public List<Obs> getObservations(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Concept> answers, List<PERSON_TYPE> personTypes, List<Location> locations, Integer obsGroupId,
+	        Date fromDate, Date toDate, boolean includeVoidedObs, KeysetToken after, int maxResults)
 	        throws DAOException;
 	
 	/**
@@ -97,6 +115,77 @@ public interface ObsDAO {
 	        Date fromDate, Date toDate, List<ConceptName> valueCodedNameAnswers, boolean includeVoidedObs)
 	        throws DAOException;
 	
+	/**
+	 * @see org.openmrs.api.ObsService#getNumericObsValues(Person, Concept, Date, Date)
+	 */
+	public List<Object[]> getNumericObsValues(Person who, Concept question, Date fromDate, Date toDate)
+	        throws DAOException;
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getObsVersion(Person, List)
+	 */
+	public String getObsVersion(Person who, List<Concept> questions) throws DAOException;
+	
+	/**
+	 * Gets the id of the person the given obs is currently saved under in the database, bypassing
+	 * any caches. This is used prior to saving an obs so that the summaries of the person it is
+	 * moved away from can be updated too
+	 * 
+	 * @param obs the obs to get the saved person id of
+	 * @return the person id currently in the database for this obs
+	 */
+	public Integer getSavedPersonId(Obs obs) throws DAOException;
+	
+	/**
+	 * Computes the summaries of the non voided obs of the given persons and questions from the obs
+	 * table, with one grouped query for the counts and one for the latest obs
+	 * 
+	 * @param whom the persons to summarize the obs of, all persons if null or empty
+	 * @param questions the question concepts to summarize the obs of
+	 * @return the summaries of the (person, concept) pairs that have obs
+	 * @see org.openmrs.api.ObsService#getObsSummaries(List, List)
+	 */
+	public List<ObsSummary> getObsSummaries(List<Person> whom, List<Concept> questions) throws DAOException;
+	
+	/**
+	 * Gets the summaries stored in the obs_summary table for the given persons and questions
+	 * 
+	 * @param whom the persons to get the summaries of, all persons if null or empty
+	 * @param questions the question concepts to get the summaries of
+	 * @return the stored summaries
+	 * @see org.openmrs.api.ObsService#getObsSummaries(List, List)
+	 */
+	public List<ObsSummary> getStoredObsSummaries(List<Person> whom, List<Concept> questions) throws DAOException;
+	
+	/**
+	 * Replaces the stored summaries of the given person and concepts by summaries computed from the
+	 * obs table, deleting the summaries of the concepts the person no longer has obs of. The row of
+	 * the person is locked first, so that concurrent updates of the same person wait for each other
+	 * rather than inserting the same summary twice.
+	 * 
+	 * @param person the person whose obs changed
+	 * @param conceptIds the ids of the stored concepts to update the summaries of
+	 * @see org.openmrs.api.ObsService#updateObsSummaries(Person)
+	 */
+	public void updateObsSummaries(Person person, Collection<Integer> conceptIds) throws DAOException;
+	
+	/**
+	 * Deletes the stored summaries of all concepts but the given ones
+	 * 
+	 * @param keptConceptIds the ids of the concepts whose summaries are kept
+	 * @see org.openmrs.api.ObsService#updateObsSummaries()
+	 */
+	public void deleteObsSummaries(Collection<Integer> keptConceptIds) throws DAOException;
+	
+	/**
+	 * Replaces the stored summaries of all persons for the given concept by summaries computed from
+	 * the obs table, with set based statements rather than one insert per summary
+	 * 
+	 * @param conceptId the id of the concept to store the summaries of
+	 * @see org.openmrs.api.ObsService#updateObsSummaries()
+	 */
+	public void storeObsSummaries(Integer conceptId) throws DAOException;
+	
 	/**
 	 * Auto generated method comment
 	 * 
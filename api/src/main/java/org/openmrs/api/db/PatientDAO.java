@@ -112,6 +112,11 @@ public interface PatientDAO {
 	 */
 	public boolean isIdentifierInUseByAnotherPatient(PatientIdentifier patientIdentifier);
 	
+	/**
+	 * @see org.openmrs.api.PatientService#getPatientIdentifiersInUseByAnotherPatient(List)
+	 */
+	public List<PatientIdentifier> getPatientIdentifiersInUseByAnotherPatient(List<PatientIdentifier> patientIdentifiers);
+	
 	/**
 	 * Auto generated method comment
 	 * 
@@ -150,4 +155,40 @@ public interface PatientDAO {
 	 */
 	public Long getCountOfPatients(String name, String identifier, List<PatientIdentifierType> identifierTypes,
 	        boolean matchIdentifierExactly);
+	
+	/**
+	 * Moves all visits of the notPreferred patient, including voided ones, to the preferred patient
+	 * with a single update statement
+	 * 
+	 * @param preferred the patient to move the visits to
+	 * @param notPreferred the patient to move the visits from
+	 * @return the uuids of the moved visits
+	 * @since 1.10
+	 * @see org.openmrs.api.PatientService#mergePatients(Patient, Patient)
+	 */
+	public List<String> mergeVisits(Patient preferred, Patient notPreferred) throws DAOException;
+	
+	/**
+	 * Moves all encounters of the notPreferred patient, including voided ones, to the preferred
+	 * patient together with the obs and orders they contain, using one update statement per table
+	 * 
+	 * @param preferred the patient to move the encounters to
+	 * @param notPreferred the patient to move the encounters from
+	 * @return the uuids of the moved encounters
+	 * @since 1.10
+	 * @see org.openmrs.api.PatientService#mergePatients(Patient, Patient)
+	 */
+	public List<String> mergeEncounters(Patient preferred, Patient notPreferred) throws DAOException;
+	
+	/**
+	 * Moves all non voided obs of the notPreferred patient that are not contained in an encounter to
+	 * the preferred patient with a single update statement
+	 * 
+	 * @param preferred the patient to move the obs to
+	 * @param notPreferred the patient to move the obs from
+	 * @return the uuids of the moved obs
+	 * @since 1.10
+	 * @see org.openmrs.api.PatientService#mergePatients(Patient, Patient)
+	 */
+	public List<String> mergeIndependentObs(Patient preferred, Patient notPreferred) throws DAOException;
 }
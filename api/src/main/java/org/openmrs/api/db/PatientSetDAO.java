@@ -83,6 +83,13 @@ public interface PatientSetDAO {
 	
 	public Cohort getPatientsHavingLocation(Integer locationId, PatientLocationMethod method) throws DAOException;
 	
+	/**
+	 * @see org.openmrs.api.PatientSetService#getPatientsHavingLocation(org.openmrs.Location,
+	 *      PatientLocationMethod, boolean)
+	 */
+	public Cohort getPatientsHavingLocation(Integer locationId, PatientLocationMethod method, boolean includeChildLocations)
+	        throws DAOException;
+	
 	public Map<Integer, String> getShortPatientDescriptions(Collection<Integer> patientIds) throws DAOException;
 	
 	public Map<Integer, List<Obs>> getObservations(Cohort patients, Concept concept, Date fromDate, Date toDate)
@@ -122,6 +129,22 @@ public interface PatientSetDAO {
 	
 	public Map<Integer, List<DrugOrder>> getDrugOrders(Cohort ps, List<Concept> drugConcepts) throws DAOException;
 	
+	/**
+	 * Gets the active drug orders whose concept is in a set or in one of its nested sets, by joining
+	 * the concept set closure
+	 * 
+	 * @since 1.10
+	 */
+	public Map<Integer, List<DrugOrder>> getCurrentDrugOrdersInConceptSet(Cohort ps, Concept drugSet) throws DAOException;
+	
+	/**
+	 * Gets the drug orders whose concept is in a set or in one of its nested sets, by joining the
+	 * concept set closure
+	 * 
+	 * @since 1.10
+	 */
+	public Map<Integer, List<DrugOrder>> getDrugOrdersInConceptSet(Cohort ps, Concept drugSet) throws DAOException;
+	
 	public Map<Integer, List<Relationship>> getRelationships(Cohort ps, RelationshipType relType) throws DAOException;
 	
 	public Map<Integer, List<Person>> getRelatives(Cohort ps, RelationshipType relType, boolean forwards)
@@ -27,6 +27,7 @@ import org.openmrs.VisitAttributeType;
 import org.openmrs.VisitType;
 import org.openmrs.api.APIException;
 import org.openmrs.api.VisitService;
+import org.openmrs.util.KeysetToken;
 
 /**
  * Database access functions for visits.
@@ -117,6 +118,22 @@ public interface VisitDAO {
 	        Date minEndDatetime, Date maxEndDatetime, Map<VisitAttributeType, String> serializedAttributeValues,
 	        boolean includeInactive, boolean includeVoided) throws DAOException;
 	
+	/**
+	 * Gets the visits of the given patients that come after the given sort key, sorted on
+	 * startDatetime and visitId descending
+	 * 
+	 * @param patients the patients to match against
+	 * @param includeInactive specifies if inactive visits should be returned or not
+	 * @param includeVoided specifies if voided visits should also be returned
+	 * @param after the sort key of the last visit of the previous page, or null for the first page
+	 * @param maxResults the maximum number of visits to return
+	 * @return a list of visits
+	 * @throws DAOException
+	 * @see VisitService#getVisitsByPatient(Patient, boolean, boolean, String, int)
+	 */
+	public List<Visit> getVisits(Collection<Patient> patients, boolean includeInactive, boolean includeVoided,
+	        KeysetToken after, int maxResults) throws DAOException;
+	
 	/**
 	 * @see VisitService#getAllVisitAttributeTypes()
 	 */
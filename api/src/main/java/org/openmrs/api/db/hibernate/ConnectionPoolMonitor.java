@@ -0,0 +1,151 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exposes the pools of the {@link MonitoredConnectionProvider} over JMX. It has no state of its own,
+ * so it reads as having no pools when hibernate uses another connection provider.
+ * 
+ * @since 1.10
+ */
+public class ConnectionPoolMonitor implements ConnectionPoolMonitorMBean {
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.ConnectionPoolMonitorMBean#getPoolNames()
+	 */
+	@Override
+	public String[] getPoolNames() {
+		List<String> names = new ArrayList<String>();
+		for (MonitoredConnectionPool pool : MonitoredConnectionProvider.getPools())
+			names.add(pool.getName());
+		return names.toArray(new String[names.size()]);
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.ConnectionPoolMonitorMBean#getSummary()
+	 */
+	@Override
+	public String[] getSummary() {
+		List<String> lines = new ArrayList<String>();
+		for (MonitoredConnectionPool pool : MonitoredConnectionProvider.getPools())
+			lines.add(pool.toString());
+		return lines.toArray(new String[lines.size()]);
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.ConnectionPoolMonitorMBean#getLongHolders()
+	 */
+	@Override
+	public String[] getLongHolders() {
+		List<String> holders = new ArrayList<String>();
+		for (MonitoredConnectionPool pool : MonitoredConnectionProvider.getPools()) {
+			for (MonitoredConnectionPool.Checkout checkout : pool.getLongCheckouts())
+				holders.add(pool.getName() + " connection held for " + checkout.getHeldMillis() + "ms by thread "
+				        + checkout.getThreadName() + checkout.getStackTrace());
+		}
+		return holders.toArray(new String[holders.size()]);
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.ConnectionPoolMonitorMBean#getBusy(java.lang.String)
+	 */
+	@Override
+	public int getBusy(String poolName) {
+		MonitoredConnectionPool pool = getPool(poolName);
+		return pool == null ? 0 : pool.getBusy();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.ConnectionPoolMonitorMBean#getIdle(java.lang.String)
+	 */
+	@Override
+	public int getIdle(String poolName) {
+		MonitoredConnectionPool pool = getPool(poolName);
+		return pool == null ? 0 : pool.getIdle();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.ConnectionPoolMonitorMBean#getWaiting(java.lang.String)
+	 */
+	@Override
+	public int getWaiting(String poolName) {
+		MonitoredConnectionPool pool = getPool(poolName);
+		return pool == null ? 0 : pool.getWaiting();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.ConnectionPoolMonitorMBean#getCheckouts(java.lang.String)
+	 */
+	@Override
+	public long getCheckouts(String poolName) {
+		MonitoredConnectionPool pool = getPool(poolName);
+		return pool == null ? 0 : pool.getCheckouts();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.ConnectionPoolMonitorMBean#getFailures(java.lang.String)
+	 */
+	@Override
+	public long getFailures(String poolName) {
+		MonitoredConnectionPool pool = getPool(poolName);
+		return pool == null ? 0 : pool.getFailures();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.ConnectionPoolMonitorMBean#getMaxWaitMillis(java.lang.String)
+	 */
+	@Override
+	public long getMaxWaitMillis(String poolName) {
+		MonitoredConnectionPool pool = getPool(poolName);
+		return pool == null ? 0 : pool.getMaxWaitMillis();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.ConnectionPoolMonitorMBean#getMeanHoldMillis(java.lang.String)
+	 */
+	@Override
+	public long getMeanHoldMillis(String poolName) {
+		MonitoredConnectionPool pool = getPool(poolName);
+		return pool == null ? 0 : pool.getMeanHoldMillis();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.ConnectionPoolMonitorMBean#getMaxHoldMillis(java.lang.String)
+	 */
+	@Override
+	public long getMaxHoldMillis(String poolName) {
+		MonitoredConnectionPool pool = getPool(poolName);
+		return pool == null ? 0 : pool.getMaxHoldMillis();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.ConnectionPoolMonitorMBean#reset()
+	 */
+	@Override
+	public void reset() {
+		for (MonitoredConnectionPool pool : MonitoredConnectionProvider.getPools())
+			pool.reset();
+	}
+	
+	private MonitoredConnectionPool getPool(String poolName) {
+		for (MonitoredConnectionPool pool : MonitoredConnectionProvider.getPools()) {
+			if (pool.getName().equals(poolName))
+				return pool;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+/**
+ * The JMX view of the {@link MonitoredConnectionPool}s. Pools are identified by their names,
+ * unknown names read as zero.
+ * 
+ * @since 1.10
+ */
+public interface ConnectionPoolMonitorMBean {
+	
+	/**
+	 * @return the names of the pools, e.g. web and background
+	 */
+	public String[] getPoolNames();
+	
+	/**
+	 * @return one line of counts and timings per pool
+	 */
+	public String[] getSummary();
+	
+	/**
+	 * @return one entry per connection held for longer than the long checkout time, with its thread
+	 *         and stack trace
+	 */
+	public String[] getLongHolders();
+	
+	public int getBusy(String poolName);
+	
+	public int getIdle(String poolName);
+	
+	public int getWaiting(String poolName);
+	
+	public long getCheckouts(String poolName);
+	
+	public long getFailures(String poolName);
+	
+	public long getMaxWaitMillis(String poolName);
+	
+	public long getMeanHoldMillis(String poolName);
+	
+	public long getMaxHoldMillis(String poolName);
+	
+	/**
+	 * Sets the counts and timings of all pools back to zero
+	 */
+	public void reset();
+}
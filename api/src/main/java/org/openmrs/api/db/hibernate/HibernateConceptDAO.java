@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -36,6 +37,7 @@ import org.hibernate.FlushMode;
 import org.hibernate.NonUniqueObjectException;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Conjunction;
 import org.hibernate.criterion.Criterion;
@@ -65,6 +67,7 @@ import org.openmrs.ConceptReferenceTerm;
 import org.openmrs.ConceptReferenceTermMap;
 import org.openmrs.ConceptSearchResult;
 import org.openmrs.ConceptSet;
+import org.openmrs.ConceptSetClosure;
 import org.openmrs.ConceptSource;
 import org.openmrs.ConceptStopWord;
 import org.openmrs.ConceptWord;
@@ -89,6 +92,17 @@ public class HibernateConceptDAO implements ConceptDAO {
 	
 	protected final Log log = LogFactory.getLog(getClass());
 	
+	/**
+	 * The number of concept word inserts sent to the database at once by
+	 * {@link #updateConceptWords(List, boolean, boolean)}
+	 */
+	private static final int CONCEPT_WORD_BATCH_SIZE = 500;
+	
+	/**
+	 * The number of concept ids put in one query by {@link #getConceptsForListing(List)}
+	 */
+	private static final int CONCEPT_LISTING_BATCH_SIZE = 1000;
+	
 	private SessionFactory sessionFactory;
 	
 	/**
@@ -272,13 +286,26 @@ public class HibernateConceptDAO implements ConceptDAO {
 	/**
 	 * @see org.openmrs.api.db.ConceptDAO#purgeConcept(org.openmrs.Concept)
 	 */
+	@SuppressWarnings("unchecked")
 	public void purgeConcept(Concept concept) throws DAOException {
 		// must delete all the stored concept words first
 		sessionFactory.getCurrentSession().createQuery("delete ConceptWord where concept = :c").setInteger("c",
 		    concept.getConceptId()).executeUpdate();
 		
+		// and the concept set closure rows of the concept
+		List<Integer> setIds = sessionFactory.getCurrentSession().createQuery(
+		    "select c.ancestorConceptId from ConceptSetClosure c where c.descendantConceptId = :c").setInteger("c",
+		    concept.getConceptId()).list();
+		sessionFactory.getCurrentSession().createQuery(
+		    "delete ConceptSetClosure where ancestorConceptId = :c or descendantConceptId = :c").setInteger("c",
+		    concept.getConceptId()).executeUpdate();
+		
 		// now we can safely delete the concept
 		sessionFactory.getCurrentSession().delete(concept);
+		
+		// the sets that contained the concept lose its members too
+		setIds.remove(concept.getConceptId());
+		updateConceptSetClosure(setIds, new HashMap<Integer, List<Integer>>());
 	}
 	
 	/**
@@ -686,6 +713,96 @@ public class HibernateConceptDAO implements ConceptDAO {
 		return concepts.get(0);
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#getConceptBatch(java.lang.Integer, java.lang.Integer,
+	 *      boolean)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Concept> getConceptBatch(Integer afterConceptId, Integer maxResults, boolean includeRetired)
+	        throws DAOException {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Concept.class);
+		if (afterConceptId != null)
+			criteria.add(Restrictions.gt("conceptId", afterConceptId));
+		if (!includeRetired)
+			criteria.add(Restrictions.eq("retired", false));
+		criteria.addOrder(Order.asc("conceptId"));
+		if (maxResults != null)
+			criteria.setMaxResults(maxResults);
+		
+		List<Concept> concepts = criteria.list();
+		if (concepts.isEmpty())
+			return concepts;
+		
+		// initialize each collection of the whole batch with one query, fetching all of them in a
+		// single query would multiply the rows returned
+		List<Integer> conceptIds = new ArrayList<Integer>(concepts.size());
+		for (Concept concept : concepts)
+			conceptIds.add(concept.getConceptId());
+		fetchConceptBatch(conceptIds, "left join fetch c.names");
+		fetchConceptBatch(conceptIds, "left join fetch c.descriptions");
+		fetchConceptBatch(conceptIds, "left join fetch c.conceptMappings m left join fetch m.conceptReferenceTerm t "
+		        + "left join fetch t.conceptSource");
+		fetchConceptBatch(conceptIds, "left join fetch c.answers a left join fetch a.answerConcept "
+		        + "left join fetch a.answerDrug");
+		fetchConceptBatch(conceptIds, "left join fetch c.conceptSets s left join fetch s.concept");
+		
+		// the answer and set member concepts are usually displayed by name as well
+		Set<Integer> relatedConceptIds = new HashSet<Integer>();
+		for (Concept concept : concepts) {
+			for (ConceptAnswer answer : concept.getAnswers(true)) {
+				if (answer.getAnswerConcept() != null)
+					relatedConceptIds.add(answer.getAnswerConcept().getConceptId());
+			}
+			for (ConceptSet conceptSet : concept.getConceptSets()) {
+				if (conceptSet.getConcept() != null)
+					relatedConceptIds.add(conceptSet.getConcept().getConceptId());
+			}
+		}
+		relatedConceptIds.removeAll(conceptIds);
+		if (!relatedConceptIds.isEmpty())
+			fetchConceptBatch(new ArrayList<Integer>(relatedConceptIds), "left join fetch c.names");
+		
+		return concepts;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#getConceptsForListing(java.util.List)
+	 */
+	public List<Concept> getConceptsForListing(List<Integer> conceptIds) throws DAOException {
+		Map<Integer, Concept> conceptsById = new HashMap<Integer, Concept>();
+		for (int i = 0; i < conceptIds.size(); i += CONCEPT_LISTING_BATCH_SIZE) {
+			List<Integer> batch = conceptIds.subList(i, Math.min(i + CONCEPT_LISTING_BATCH_SIZE, conceptIds.size()));
+			for (Concept concept : fetchConceptBatch(batch,
+			    "left join fetch c.names left join fetch c.conceptClass left join fetch c.datatype")) {
+				conceptsById.put(concept.getConceptId(), concept);
+			}
+			fetchConceptBatch(batch, "left join fetch c.descriptions");
+		}
+		
+		List<Concept> concepts = new ArrayList<Concept>(conceptIds.size());
+		for (Integer conceptId : conceptIds) {
+			Concept concept = conceptsById.get(conceptId);
+			if (concept != null)
+				concepts.add(concept);
+		}
+		return concepts;
+	}
+	
+	/**
+	 * Loads the given concepts with the given fetch joins so that the joined collections are
+	 * initialized on the concepts that are already in the session
+	 * 
+	 * @param conceptIds the ids of the concepts to fetch
+	 * @param fetchJoins the hql join fetch clauses to apply
+	 * @return the fetched concepts
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Concept> fetchConceptBatch(List<Integer> conceptIds, String fetchJoins) {
+		return sessionFactory.getCurrentSession().createQuery(
+		    "select distinct c from Concept c " + fetchJoins + " where c.conceptId in (:conceptIds)").setParameterList(
+		    "conceptIds", conceptIds).list();
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.ConceptDAO#getConceptsWithDrugsInFormulary()
 	 */
@@ -761,6 +878,129 @@ public class HibernateConceptDAO implements ConceptDAO {
 		}
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#updateConceptWords(java.util.List, boolean, boolean)
+	 */
+	public List<Concept> updateConceptWords(List<Concept> concepts, boolean onlyChanged, boolean dryRun)
+	        throws DAOException {
+		if (concepts.isEmpty())
+			return new ArrayList<Concept>();
+		
+		// new concept names need their ids before their words can be compared or inserted
+		if (!dryRun)
+			sessionFactory.getCurrentSession().flush();
+		
+		Map<Concept, Collection<ConceptWord>> wordsByConcept = new LinkedHashMap<Concept, Collection<ConceptWord>>();
+		for (Concept concept : concepts) {
+			Collection<ConceptWord> words = ConceptWord.makeConceptWords(concept);
+			for (ConceptWord word : words)
+				word.setWeight(weighConceptWord(word));
+			wordsByConcept.put(concept, words);
+		}
+		
+		List<Concept> conceptsToUpdate = new ArrayList<Concept>(concepts);
+		if (onlyChanged || dryRun) {
+			Map<Integer, Set<String>> existingWords = getConceptWordKeys(concepts);
+			for (Iterator<Concept> i = conceptsToUpdate.iterator(); i.hasNext();) {
+				Concept concept = i.next();
+				Set<String> newWords = new HashSet<String>();
+				for (ConceptWord word : wordsByConcept.get(concept))
+					newWords.add(getConceptWordKey(word.getConceptName().getConceptNameId(), word.getWord(), word
+					        .getLocale().toString(), word.getWeight()));
+				Set<String> oldWords = existingWords.get(concept.getConceptId());
+				if (oldWords == null)
+					oldWords = Collections.emptySet();
+				if (newWords.equals(oldWords))
+					i.remove();
+			}
+		}
+		if (dryRun || conceptsToUpdate.isEmpty())
+			return conceptsToUpdate;
+		
+		List<Integer> conceptIds = new ArrayList<Integer>(conceptsToUpdate.size());
+		for (Concept concept : conceptsToUpdate)
+			conceptIds.add(concept.getConceptId());
+		sessionFactory.getCurrentSession().createSQLQuery("delete from concept_word where concept_id in (:conceptIds)")
+		        .addSynchronizedEntityClass(ConceptWord.class).setParameterList("conceptIds", conceptIds).executeUpdate();
+		
+		// the words are inserted with plain jdbc batches, inserting them through the session would
+		// send one insert per word because the ids are generated by the database
+		PreparedStatement ps = null;
+		try {
+			ps = sessionFactory.getCurrentSession().connection().prepareStatement(
+			    "insert into concept_word (concept_id, word, locale, concept_name_id, weight) values (?, ?, ?, ?, ?)");
+			int batchCount = 0;
+			for (Concept concept : conceptsToUpdate) {
+				for (ConceptWord word : wordsByConcept.get(concept)) {
+					ps.setInt(1, concept.getConceptId());
+					ps.setString(2, word.getWord());
+					ps.setString(3, word.getLocale().toString());
+					ps.setInt(4, word.getConceptName().getConceptNameId());
+					ps.setDouble(5, word.getWeight());
+					ps.addBatch();
+					if (++batchCount % CONCEPT_WORD_BATCH_SIZE == 0)
+						ps.executeBatch();
+				}
+			}
+			if (batchCount % CONCEPT_WORD_BATCH_SIZE != 0)
+				ps.executeBatch();
+		}
+		catch (SQLException e) {
+			throw new DAOException("Unable to insert the concept words of " + conceptsToUpdate.size() + " concepts", e);
+		}
+		finally {
+			if (ps != null) {
+				try {
+					ps.close();
+				}
+				catch (SQLException e) {
+					log.error("Error generated while closing statement", e);
+				}
+			}
+		}
+		
+		return conceptsToUpdate;
+	}
+	
+	/**
+	 * Gets the keys of the concept words currently in the index for the given concepts, see
+	 * {@link #getConceptWordKey(Integer, String, String, Double)}
+	 * 
+	 * @param concepts the concepts whose words to get
+	 * @return the keys of the words keyed by concept id
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<Integer, Set<String>> getConceptWordKeys(List<Concept> concepts) {
+		List<Integer> conceptIds = new ArrayList<Integer>(concepts.size());
+		for (Concept concept : concepts)
+			conceptIds.add(concept.getConceptId());
+		
+		List<Object[]> rows = sessionFactory.getCurrentSession().createSQLQuery(
+		    "select concept_id, concept_name_id, word, locale, weight from concept_word where concept_id in (:conceptIds)")
+		        .setParameterList("conceptIds", conceptIds).list();
+		
+		Map<Integer, Set<String>> keys = new HashMap<Integer, Set<String>>();
+		for (Object[] row : rows) {
+			Integer conceptId = ((Number) row[0]).intValue();
+			Set<String> conceptKeys = keys.get(conceptId);
+			if (conceptKeys == null) {
+				conceptKeys = new HashSet<String>();
+				keys.put(conceptId, conceptKeys);
+			}
+			conceptKeys.add(getConceptWordKey(row[1] == null ? null : ((Number) row[1]).intValue(), (String) row[2],
+			    (String) row[3], row[4] == null ? null : ((Number) row[4]).doubleValue()));
+		}
+		return keys;
+	}
+	
+	/**
+	 * @return a key that is equal for two concept words if they index the same word of the same
+	 *         name with the same weight
+	 */
+	private String getConceptWordKey(Integer conceptNameId, String word, String locale, Double weight) {
+		return conceptNameId + "|" + word + "|" + locale + "|" + weight;
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.ConceptDAO#saveConceptProposal(org.openmrs.ConceptProposal)
 	 */
@@ -841,6 +1081,105 @@ public class HibernateConceptDAO implements ConceptDAO {
 		        .list();
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#getConceptIdsByConceptSet(org.openmrs.Concept)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Integer> getConceptIdsByConceptSet(Concept concept) throws DAOException {
+		return sessionFactory.getCurrentSession().createQuery(
+		    "select c.descendantConceptId from ConceptSetClosure c where c.ancestorConceptId = :conceptId "
+		            + "order by c.descendantConceptId").setInteger("conceptId", concept.getConceptId()).list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#updateConceptSetClosure(org.openmrs.Concept)
+	 */
+	@SuppressWarnings("unchecked")
+	public void updateConceptSetClosure(Concept concept) throws DAOException {
+		Map<Integer, List<Integer>> members = new HashMap<Integer, List<Integer>>();
+		Set<Integer> stored = new HashSet<Integer>(getConceptIdsByConceptSet(concept));
+		if (stored.equals(explodeConceptSet(concept.getConceptId(), members)))
+			return;
+		
+		// the closure of every set that contains the concept changes with it
+		List<Integer> conceptIds = sessionFactory.getCurrentSession().createQuery(
+		    "select c.ancestorConceptId from ConceptSetClosure c where c.descendantConceptId = :conceptId").setInteger(
+		    "conceptId", concept.getConceptId()).list();
+		conceptIds.add(concept.getConceptId());
+		updateConceptSetClosure(conceptIds, members);
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#rebuildConceptSetClosure()
+	 */
+	@SuppressWarnings("unchecked")
+	public void rebuildConceptSetClosure() throws DAOException {
+		sessionFactory.getCurrentSession().createQuery("delete from ConceptSetClosure").executeUpdate();
+		List<Integer> setIds = sessionFactory.getCurrentSession().createQuery(
+		    "select distinct cs.conceptSet.conceptId from ConceptSet cs").list();
+		updateConceptSetClosure(setIds, new HashMap<Integer, List<Integer>>());
+	}
+	
+	/**
+	 * Replaces the rows of the given concepts in the concept set closure by their current members
+	 * 
+	 * @param conceptIds the ids of the concepts whose closure to compute again
+	 * @param members the direct members of the sets loaded so far, by concept id
+	 */
+	private void updateConceptSetClosure(Collection<Integer> conceptIds, Map<Integer, List<Integer>> members) {
+		if (conceptIds.isEmpty())
+			return;
+		Session session = sessionFactory.getCurrentSession();
+		session.createQuery("delete from ConceptSetClosure c where c.ancestorConceptId in (:conceptIds)")
+		        .setParameterList("conceptIds", conceptIds).executeUpdate();
+		for (Integer conceptId : conceptIds) {
+			for (Integer descendantId : explodeConceptSet(conceptId, members)) {
+				session.save(new ConceptSetClosure(conceptId, descendantId));
+			}
+		}
+	}
+	
+	/**
+	 * Gets the ids of the members of a set and of its nested sets, loading the members of a whole
+	 * level of nested sets with one query
+	 * 
+	 * @param conceptId the id of the set
+	 * @param members the direct members of the sets loaded so far, by concept id, which is added to
+	 * @return the ids of the members
+	 */
+	@SuppressWarnings("unchecked")
+	private Set<Integer> explodeConceptSet(Integer conceptId, Map<Integer, List<Integer>> members) {
+		Set<Integer> descendants = new HashSet<Integer>();
+		List<Integer> level = Collections.singletonList(conceptId);
+		while (!level.isEmpty()) {
+			List<Integer> toLoad = new ArrayList<Integer>();
+			for (Integer id : level) {
+				if (!members.containsKey(id)) {
+					members.put(id, new ArrayList<Integer>());
+					toLoad.add(id);
+				}
+			}
+			if (!toLoad.isEmpty()) {
+				List<Object[]> rows = sessionFactory.getCurrentSession().createQuery(
+				    "select cs.conceptSet.conceptId, cs.concept.conceptId from ConceptSet cs "
+				            + "where cs.conceptSet.conceptId in (:conceptIds)").setParameterList("conceptIds", toLoad).list();
+				for (Object[] row : rows) {
+					members.get(row[0]).add((Integer) row[1]);
+				}
+			}
+			
+			List<Integer> nextLevel = new ArrayList<Integer>();
+			for (Integer id : level) {
+				for (Integer memberId : members.get(id)) {
+					if (descendants.add(memberId))
+						nextLevel.add(memberId);
+				}
+			}
+			level = nextLevel;
+		}
+		return descendants;
+	}
+	
 	/**
 	 * returns a list of n-generations of parents of a concept in a concept set
 	 * 
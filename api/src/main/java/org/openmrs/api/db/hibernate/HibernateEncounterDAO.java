@@ -49,6 +49,7 @@ import org.openmrs.api.EncounterService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.EncounterDAO;
+import org.openmrs.util.KeysetToken;
 
 /**
  * Hibernate specific dao for the {@link EncounterService} All calls should be made on the
@@ -111,13 +112,13 @@ public class HibernateEncounterDAO implements EncounterDAO {
 	
 	/**
 	 * @see org.openmrs.api.db.EncounterDAO#getEncounters(org.openmrs.Patient, org.openmrs.Location,
-	 *      java.util.Date, java.util.Date, java.util.Collection, java.util.Collection,
-	 *      java.util.Collection, boolean)
+	 *      boolean, java.util.Date, java.util.Date, java.util.Collection, java.util.Collection,
+	 *      java.util.Collection, java.util.Collection, java.util.Collection, boolean)
 	 */
 	@SuppressWarnings("unchecked")
 	@Override
-	public List<Encounter> getEncounters(Patient patient, Location location, Date fromDate, Date toDate,
-	        Collection<Form> enteredViaForms, Collection<EncounterType> encounterTypes, Collection<Provider> providers,
+	public List<Encounter> getEncounters(Patient patient, Location location, boolean includeChildLocations,
+	        Date fromDate, Date toDate, Collection<Form> enteredViaForms, Collection<EncounterType> encounterTypes, Collection<Provider> providers,
 	        Collection<VisitType> visitTypes, Collection<Visit> visits, boolean includeVoided) {
 		
 		Criteria crit = sessionFactory.getCurrentSession().createCriteria(Encounter.class);
@@ -126,7 +127,10 @@ public class HibernateEncounterDAO implements EncounterDAO {
 			crit.add(Expression.eq("patient", patient));
 		}
 		if (location != null && location.getLocationId() != null) {
-			crit.add(Expression.eq("location", location));
+			if (includeChildLocations)
+				crit.add(HibernateUtil.getLocationSubtreeRestriction("location.locationId", location));
+			else
+				crit.add(Expression.eq("location", location));
 		}
 		if (fromDate != null) {
 			crit.add(Expression.ge("encounterDatetime", fromDate));
@@ -187,7 +191,8 @@ public class HibernateEncounterDAO implements EncounterDAO {
 		Criteria crit = sessionFactory.getCurrentSession().createCriteria(EncounterType.class);
 		crit.add(Expression.eq("retired", false));
 		crit.add(Expression.eq("name", name));
-		EncounterType encounterType = (EncounterType) crit.uniqueResult();
+		EncounterType encounterType = MetadataQueryCache.uniqueResult(sessionFactory.getCurrentSession(),
+		    EncounterType.class, "name:" + name, crit);
 		
 		return encounterType;
 	}
@@ -195,7 +200,6 @@ public class HibernateEncounterDAO implements EncounterDAO {
 	/**
 	 * @see org.openmrs.api.db.EncounterDAO#getAllEncounterTypes(java.lang.Boolean)
 	 */
-	@SuppressWarnings("unchecked")
 	public List<EncounterType> getAllEncounterTypes(Boolean includeRetired) throws DAOException {
 		
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(EncounterType.class);
@@ -205,7 +209,8 @@ public class HibernateEncounterDAO implements EncounterDAO {
 		if (includeRetired == false)
 			criteria.add(Expression.eq("retired", false));
 		
-		return criteria.list();
+		return MetadataQueryCache.list(sessionFactory.getCurrentSession(), EncounterType.class, "all:" + includeRetired,
+		    criteria);
 	}
 	
 	/**
@@ -240,7 +245,10 @@ public class HibernateEncounterDAO implements EncounterDAO {
 	 * @see org.openmrs.api.db.EncounterDAO#getEncounterTypeByUuid(java.lang.String)
 	 */
 	public EncounterType getEncounterTypeByUuid(String uuid) {
-		return getClassByUuid(EncounterType.class, uuid);
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(EncounterType.class).add(
+		    Restrictions.eq("uuid", uuid));
+		return MetadataQueryCache.uniqueResult(sessionFactory.getCurrentSession(), EncounterType.class, "uuid:" + uuid,
+		    criteria);
 	}
 	
 	/**
@@ -262,6 +270,68 @@ public class HibernateEncounterDAO implements EncounterDAO {
 		return criteria.list();
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.EncounterDAO#getEncounters(String, boolean, KeysetToken, int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<Encounter> getEncounters(String query, boolean includeVoided, KeysetToken after, int maxResults) {
+		if (StringUtils.isBlank(query)) {
+			return Collections.emptyList();
+		}
+		
+		// the patient name and identifier joins repeat the encounter rows, so page on the distinct
+		// sort keys and fetch the encounters of the page afterwards
+		Criteria criteria = createEncounterByQueryCriteria(query, includeVoided, false);
+		if (after != null)
+			criteria.add(HibernateUtil.getKeysetRestriction("enc.encounterDatetime", "enc.encounterId", after));
+		criteria.setProjection(Projections.distinct(Projections.projectionList().add(
+		    Projections.property("enc.encounterId")).add(Projections.property("enc.encounterDatetime"))));
+		HibernateUtil.addKeysetOrder(criteria, "enc.encounterDatetime", "enc.encounterId");
+		criteria.setMaxResults(maxResults);
+		
+		List<Object[]> keys = criteria.list();
+		if (keys.isEmpty())
+			return new ArrayList<Encounter>();
+		
+		List<Integer> encounterIds = new ArrayList<Integer>(keys.size());
+		for (Object[] key : keys) {
+			encounterIds.add((Integer) key[0]);
+		}
+		
+		Map<Integer, Encounter> encountersById = new HashMap<Integer, Encounter>();
+		for (Encounter encounter : (List<Encounter>) sessionFactory.getCurrentSession().createCriteria(Encounter.class)
+		        .add(Restrictions.in("encounterId", encounterIds)).list()) {
+			encountersById.put(encounter.getEncounterId(), encounter);
+		}
+		
+		List<Encounter> encounters = new ArrayList<Encounter>(encounterIds.size());
+		for (Integer encounterId : encounterIds) {
+			encounters.add(encountersById.get(encounterId));
+		}
+		return encounters;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.EncounterDAO#getEncountersByPatient(Patient, boolean, KeysetToken,
+	 *      int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<Encounter> getEncountersByPatient(Patient patient, boolean includeVoided, KeysetToken after,
+	        int maxResults) {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Encounter.class);
+		criteria.add(Restrictions.eq("patient", patient));
+		if (!includeVoided)
+			criteria.add(Restrictions.eq("voided", false));
+		if (after != null)
+			criteria.add(HibernateUtil.getKeysetRestriction("encounterDatetime", "encounterId", after));
+		HibernateUtil.addKeysetOrder(criteria, "encounterDatetime", "encounterId");
+		criteria.setMaxResults(maxResults);
+		
+		return criteria.list();
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.EncounterDAO#getSavedEncounterLocation(org.openmrs.Encounter)
 	 */
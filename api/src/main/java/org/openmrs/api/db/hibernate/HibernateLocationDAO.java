@@ -13,10 +13,18 @@
  */
 package org.openmrs.api.db.hibernate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.Criteria;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.MatchMode;
@@ -27,6 +35,7 @@ import org.hibernate.criterion.Restrictions;
 import org.openmrs.Location;
 import org.openmrs.LocationAttribute;
 import org.openmrs.LocationAttributeType;
+import org.openmrs.LocationClosure;
 import org.openmrs.LocationTag;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.LocationDAO;
@@ -104,6 +113,9 @@ public class HibernateLocationDAO implements LocationDAO {
 	 * @see org.openmrs.api.db.LocationDAO#deleteLocation(org.openmrs.Location)
 	 */
 	public void deleteLocation(Location location) {
+		sessionFactory.getCurrentSession().createQuery(
+		    "delete LocationClosure where ancestorLocationId = :l or descendantLocationId = :l").setInteger("l",
+		    location.getLocationId()).executeUpdate();
 		sessionFactory.getCurrentSession().delete(location);
 	}
 	
@@ -293,4 +305,122 @@ public class HibernateLocationDAO implements LocationDAO {
 		return (LocationAttribute) sessionFactory.getCurrentSession().createCriteria(LocationAttribute.class).add(
 		    Restrictions.eq("uuid", uuid)).uniqueResult();
 	}
+	
+	/**
+	 * @see org.openmrs.api.db.LocationDAO#getDescendantLocations(org.openmrs.Location, boolean)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Location> getDescendantLocations(Location location, boolean includeRetired) {
+		String hql = "select l from Location l, LocationClosure c where c.ancestorLocationId = :locationId "
+		        + "and l.locationId = c.descendantLocationId";
+		if (!includeRetired)
+			hql += " and l.retired = false";
+		hql += " order by c.depth, l.name";
+		return sessionFactory.getCurrentSession().createQuery(hql).setInteger("locationId", location.getLocationId())
+		        .list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.LocationDAO#getAncestorLocations(org.openmrs.Location)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Location> getAncestorLocations(Location location) {
+		return sessionFactory.getCurrentSession().createQuery(
+		    "select l from Location l, LocationClosure c where c.descendantLocationId = :locationId "
+		            + "and l.locationId = c.ancestorLocationId order by c.depth").setInteger("locationId",
+		    location.getLocationId()).list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.LocationDAO#updateLocationClosure(org.openmrs.Location)
+	 */
+	@SuppressWarnings("unchecked")
+	public void updateLocationClosure(Location location) {
+		Session session = sessionFactory.getCurrentSession();
+		Integer locationId = location.getLocationId();
+		
+		// the parents of the location and of its descendants, by location id
+		Map<Integer, Integer> parents = new HashMap<Integer, Integer>();
+		List<Integer> ancestorIds = new ArrayList<Integer>();
+		Integer childId = locationId;
+		for (Location parent = location.getParentLocation(); parent != null && parent.getLocationId() != null
+		        && !parents.containsKey(childId) && !parent.getLocationId().equals(locationId); parent = parent
+		        .getParentLocation()) {
+			parents.put(childId, parent.getLocationId());
+			ancestorIds.add(parent.getLocationId());
+			childId = parent.getLocationId();
+		}
+		
+		Set<Integer> descendantIds = new HashSet<Integer>();
+		List<Integer> level = Collections.singletonList(locationId);
+		while (!level.isEmpty()) {
+			List<Object[]> rows = session.createQuery(
+			    "select l.locationId, l.parentLocation.locationId from Location l "
+			            + "where l.parentLocation.locationId in (:locationIds)").setParameterList("locationIds", level)
+			        .list();
+			List<Integer> nextLevel = new ArrayList<Integer>();
+			for (Object[] row : rows) {
+				if (descendantIds.add((Integer) row[0]) && !row[0].equals(locationId)) {
+					parents.put((Integer) row[0], (Integer) row[1]);
+					nextLevel.add((Integer) row[0]);
+				}
+			}
+			level = nextLevel;
+		}
+		descendantIds.remove(locationId);
+		
+		List<Integer> storedAncestorIds = session.createQuery(
+		    "select c.ancestorLocationId from LocationClosure c where c.descendantLocationId = :locationId "
+		            + "order by c.depth").setInteger("locationId", locationId).list();
+		List<Integer> storedDescendantIds = session.createQuery(
+		    "select c.descendantLocationId from LocationClosure c where c.ancestorLocationId = :locationId").setInteger(
+		    "locationId", locationId).list();
+		if (storedAncestorIds.equals(ancestorIds) && new HashSet<Integer>(storedDescendantIds).equals(descendantIds))
+			return;
+		
+		// the ancestors of the whole subtree change with the location
+		List<Integer> subtreeIds = new ArrayList<Integer>(descendantIds);
+		subtreeIds.add(locationId);
+		session.createQuery(
+		    "delete LocationClosure where ancestorLocationId = :locationId or descendantLocationId in (:subtreeIds)")
+		        .setInteger("locationId", locationId).setParameterList("subtreeIds", subtreeIds).executeUpdate();
+		saveLocationClosure(subtreeIds, parents);
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.LocationDAO#rebuildLocationClosure()
+	 */
+	@SuppressWarnings("unchecked")
+	public void rebuildLocationClosure() {
+		Session session = sessionFactory.getCurrentSession();
+		session.createQuery("delete from LocationClosure").executeUpdate();
+		
+		Map<Integer, Integer> parents = new HashMap<Integer, Integer>();
+		List<Object[]> rows = session.createQuery(
+		    "select l.locationId, l.parentLocation.locationId from Location l where l.parentLocation is not null").list();
+		for (Object[] row : rows) {
+			parents.put((Integer) row[0], (Integer) row[1]);
+		}
+		saveLocationClosure(parents.keySet(), parents);
+	}
+	
+	/**
+	 * Saves the closure rows of the given locations, walking up their parents
+	 * 
+	 * @param locationIds the ids of the locations to save the rows of
+	 * @param parents the parent location ids, by location id
+	 */
+	private void saveLocationClosure(Collection<Integer> locationIds, Map<Integer, Integer> parents) {
+		Session session = sessionFactory.getCurrentSession();
+		for (Integer locationId : locationIds) {
+			Set<Integer> seen = new HashSet<Integer>();
+			seen.add(locationId);
+			int depth = 1;
+			// stop at the root, or at a cycle
+			for (Integer ancestorId = parents.get(locationId); ancestorId != null && seen.add(ancestorId); ancestorId = parents
+			        .get(ancestorId)) {
+				session.save(new LocationClosure(ancestorId, locationId, depth++));
+			}
+		}
+	}
 }
@@ -13,13 +13,23 @@
  */
 package org.openmrs.api.db.hibernate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
+import org.hibernate.LockMode;
+import org.hibernate.Query;
+import org.hibernate.SQLQuery;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Expression;
@@ -34,11 +44,13 @@ import org.openmrs.Encounter;
 import org.openmrs.Location;
 import org.openmrs.MimeType;
 import org.openmrs.Obs;
+import org.openmrs.ObsSummary;
 import org.openmrs.Patient;
 import org.openmrs.Person;
 import org.openmrs.User;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.ObsDAO;
+import org.openmrs.util.KeysetToken;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
 
 /**
@@ -52,6 +64,9 @@ public class HibernateObsDAO implements ObsDAO {
 	
 	protected final Log log = LogFactory.getLog(getClass());
 	
+	// the number of latest obs fetched per query when summarizing obs
+	private static final int OBS_SUMMARY_BATCH_SIZE = 1000;
+	
 	protected SessionFactory sessionFactory;
 	
 	/**
@@ -139,17 +154,38 @@ public class HibernateObsDAO implements ObsDAO {
 	}
 	
 	/**
-	 * @see org.openmrs.api.db.ObsDAO#getObservations(List, List, List, List, List, List, List,
-	 *      Integer, Integer, Date, Date, boolean)
+	 * @see org.openmrs.api.db.ObsDAO#getObservations(List, List, List, List, List, List, boolean,
+	 *      List, Integer, Integer, Date, Date, boolean)
 	 */
 	@SuppressWarnings("unchecked")
 	public List<Obs> getObservations(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
-	        List<Concept> answers, List<PERSON_TYPE> personTypes, List<Location> locations, List<String> sortList,
-	        Integer mostRecentN, Integer obsGroupId, Date fromDate, Date toDate, boolean includeVoidedObs)
+	        List<Concept> answers, List<PERSON_TYPE> personTypes, List<Location> locations, boolean includeChildLocations,
+	        List<String> sortList, Integer mostRecentN, Integer obsGroupId, Date fromDate, Date toDate,
+	        boolean includeVoidedObs) throws DAOException {
+		
+		Criteria criteria = createGetObservationsCriteria(whom, encounters, questions, answers, personTypes, locations,
+		    includeChildLocations, sortList, mostRecentN, obsGroupId, fromDate, toDate, null, includeVoidedObs);
+		
+		return criteria.list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getObservations(java.util.List, java.util.List,
+	 *      java.util.List, java.util.List, java.util.List, java.util.List, java.lang.Integer,
+	 *      java.util.Date, java.util.Date, boolean, org.openmrs.util.KeysetToken, int)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Obs> getObservations(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Concept> answers, List<PERSON_TYPE> personTypes, List<Location> locations, Integer obsGroupId,
+	        Date fromDate, Date toDate, boolean includeVoidedObs, KeysetToken after, int maxResults)
 	        throws DAOException {
 		
 		Criteria criteria = createGetObservationsCriteria(whom, encounters, questions, answers, personTypes, locations,
-		    sortList, mostRecentN, obsGroupId, fromDate, toDate, null, includeVoidedObs);
+		    false, null, null, obsGroupId, fromDate, toDate, null, includeVoidedObs);
+		if (after != null)
+			criteria.add(HibernateUtil.getKeysetRestriction("obsDatetime", "obsId", after));
+		HibernateUtil.addKeysetOrder(criteria, "obsDatetime", "obsId");
+		criteria.setMaxResults(maxResults);
 		
 		return criteria.list();
 	}
@@ -164,7 +200,7 @@ public class HibernateObsDAO implements ObsDAO {
 	        Date fromDate, Date toDate, List<ConceptName> valueCodedNameAnswers, boolean includeVoidedObs)
 	        throws DAOException {
 		Criteria criteria = createGetObservationsCriteria(whom, encounters, questions, answers, personTypes, locations,
-		    null, null, obsGroupId, fromDate, toDate, valueCodedNameAnswers, includeVoidedObs);
+		    false, null, null, obsGroupId, fromDate, toDate, valueCodedNameAnswers, includeVoidedObs);
 		criteria.setProjection(Projections.rowCount());
 		return (Long) criteria.list().get(0);
 	}
@@ -178,6 +214,7 @@ public class HibernateObsDAO implements ObsDAO {
 	 * @param answers
 	 * @param personTypes
 	 * @param locations
+	 * @param includeChildLocations
 	 * @param sortList
 	 * @param mostRecentN
 	 * @param obsGroupId
@@ -187,9 +224,9 @@ public class HibernateObsDAO implements ObsDAO {
 	 * @return
 	 */
 	private Criteria createGetObservationsCriteria(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
-	        List<Concept> answers, List<PERSON_TYPE> personTypes, List<Location> locations, List<String> sortList,
-	        Integer mostRecentN, Integer obsGroupId, Date fromDate, Date toDate, List<ConceptName> valueCodedNameAnswers,
-	        boolean includeVoidedObs) {
+	        List<Concept> answers, List<PERSON_TYPE> personTypes, List<Location> locations, boolean includeChildLocations,
+	        List<String> sortList, Integer mostRecentN, Integer obsGroupId, Date fromDate, Date toDate,
+	        List<ConceptName> valueCodedNameAnswers, boolean includeVoidedObs) {
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Obs.class, "obs");
 		
 		if (CollectionUtils.isNotEmpty(whom))
@@ -207,8 +244,12 @@ public class HibernateObsDAO implements ObsDAO {
 		if (CollectionUtils.isNotEmpty(personTypes))
 			getCriteriaPersonModifier(criteria, personTypes);
 		
-		if (CollectionUtils.isNotEmpty(locations))
-			criteria.add(Restrictions.in("location", locations));
+		if (CollectionUtils.isNotEmpty(locations)) {
+			if (includeChildLocations)
+				criteria.add(HibernateUtil.getLocationSubtreeRestriction("location.locationId", locations));
+			else
+				criteria.add(Restrictions.in("location", locations));
+		}
 		
 		// TODO add an option for each sort item to be asc/desc
 		if (CollectionUtils.isNotEmpty(sortList)) {
@@ -269,6 +310,248 @@ public class HibernateObsDAO implements ObsDAO {
 		return criteria;
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getNumericObsValues(org.openmrs.Person, org.openmrs.Concept,
+	 *      java.util.Date, java.util.Date)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getNumericObsValues(Person who, Concept question, Date fromDate, Date toDate)
+	        throws DAOException {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Obs.class);
+		criteria.add(Restrictions.eq("person", who));
+		criteria.add(Restrictions.eq("concept", question));
+		criteria.add(Restrictions.eq("voided", false));
+		criteria.add(Restrictions.isNotNull("valueNumeric"));
+		if (fromDate != null)
+			criteria.add(Restrictions.ge("obsDatetime", fromDate));
+		if (toDate != null)
+			criteria.add(Restrictions.lt("obsDatetime", toDate));
+		
+		criteria.setProjection(Projections.projectionList().add(Projections.property("obsDatetime")).add(
+		    Projections.property("valueNumeric")));
+		criteria.addOrder(Order.asc("obsDatetime"));
+		
+		return criteria.list();
+	}
+	
+	/**
+	 * The version is made of the count and the sum of the ids of the obs, which change when obs are
+	 * created, purged or moved between persons, the sum of the ids of the voided obs, which changes
+	 * when they are voided or unvoided, and the latest date created and date voided.
+	 * 
+	 * @see org.openmrs.api.db.ObsDAO#getObsVersion(org.openmrs.Person, java.util.List)
+	 */
+	public String getObsVersion(Person who, List<Concept> questions) throws DAOException {
+		Object[] version = (Object[]) sessionFactory.getCurrentSession().createQuery(
+		    "select count(o.obsId), sum(o.obsId), sum(case when o.voided = true then o.obsId else 0 end), "
+		            + "max(o.dateCreated), max(o.dateVoided) from Obs o "
+		            + "where o.person = :person and o.concept in (:questions)").setParameter("person", who)
+		        .setParameterList("questions", questions).uniqueResult();
+		
+		if (((Number) version[0]).longValue() == 0)
+			return null;
+		
+		StringBuilder result = new StringBuilder();
+		for (Object value : version) {
+			if (result.length() > 0)
+				result.append(':');
+			result.append(value instanceof Date ? ((Date) value).getTime() : value);
+		}
+		return result.toString();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getSavedPersonId(org.openmrs.Obs)
+	 */
+	public Integer getSavedPersonId(Obs obs) throws DAOException {
+		SQLQuery sql = sessionFactory.getCurrentSession().createSQLQuery(
+		    "select person_id from obs where obs_id = :obsId");
+		sql.setInteger("obsId", obs.getObsId());
+		Number personId = (Number) sql.uniqueResult();
+		return personId == null ? null : personId.intValue();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getObsSummaries(java.util.List, java.util.List)
+	 */
+	public List<ObsSummary> getObsSummaries(List<Person> whom, List<Concept> questions) throws DAOException {
+		List<Integer> personIds = null;
+		if (CollectionUtils.isNotEmpty(whom)) {
+			personIds = new ArrayList<Integer>(whom.size());
+			for (Person person : whom) {
+				personIds.add(person.getPersonId());
+			}
+		}
+		
+		List<Integer> conceptIds = new ArrayList<Integer>(questions.size());
+		for (Concept question : questions) {
+			conceptIds.add(question.getConceptId());
+		}
+		
+		List<ObsSummary> summaries = computeObsSummaries(personIds, conceptIds);
+		loadLatestObs(summaries);
+		return summaries;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getStoredObsSummaries(java.util.List, java.util.List)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<ObsSummary> getStoredObsSummaries(List<Person> whom, List<Concept> questions) throws DAOException {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(ObsSummary.class);
+		if (CollectionUtils.isNotEmpty(whom))
+			criteria.add(Restrictions.in("person", whom));
+		criteria.add(Restrictions.in("concept", questions));
+		
+		List<ObsSummary> summaries = criteria.list();
+		loadLatestObs(summaries);
+		return summaries;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#updateObsSummaries(org.openmrs.Person, java.util.Collection)
+	 */
+	@SuppressWarnings("unchecked")
+	public void updateObsSummaries(Person person, Collection<Integer> conceptIds) throws DAOException {
+		if (conceptIds.isEmpty())
+			return;
+		
+		Session session = sessionFactory.getCurrentSession();
+		// concurrent updates of the person wait here, and then read the summaries with a lock so that
+		// they see the ones the other update inserted
+		session.createSQLQuery(
+		    "select person_id from person where person_id = :personId"
+		            + HibernateUtil.getDialect(sessionFactory).getForUpdateString()).setInteger("personId",
+		    person.getPersonId()).list();
+		
+		Map<Integer, ObsSummary> storedSummaries = new HashMap<Integer, ObsSummary>();
+		for (ObsSummary stored : (List<ObsSummary>) session.createQuery(
+		    "from ObsSummary s where s.person = :person and s.concept.conceptId in (:conceptIds)").setParameter("person",
+		    person).setParameterList("conceptIds", conceptIds).setLockMode("s", LockMode.UPGRADE).list()) {
+			storedSummaries.put(stored.getConcept().getConceptId(), stored);
+		}
+		
+		for (ObsSummary computed : computeObsSummaries(Collections.singleton(person.getPersonId()), conceptIds)) {
+			ObsSummary summary = storedSummaries.remove(computed.getConcept().getConceptId());
+			if (summary == null) {
+				summary = computed;
+			} else {
+				summary.setObsCount(computed.getObsCount());
+				summary.setLatestObsDatetime(computed.getLatestObsDatetime());
+				summary.setLatestObsId(computed.getLatestObsId());
+			}
+			session.saveOrUpdate(summary);
+		}
+		
+		// the person has no obs of the remaining concepts anymore
+		for (ObsSummary stored : storedSummaries.values()) {
+			session.delete(stored);
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#deleteObsSummaries(java.util.Collection)
+	 */
+	public void deleteObsSummaries(Collection<Integer> keptConceptIds) throws DAOException {
+		Session session = sessionFactory.getCurrentSession();
+		session.flush();
+		if (keptConceptIds.isEmpty())
+			session.createQuery("delete from ObsSummary").executeUpdate();
+		else
+			session.createQuery("delete from ObsSummary s where s.concept.conceptId not in (:conceptIds)")
+			        .setParameterList("conceptIds", keptConceptIds).executeUpdate();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#storeObsSummaries(java.lang.Integer)
+	 */
+	public void storeObsSummaries(Integer conceptId) throws DAOException {
+		Session session = sessionFactory.getCurrentSession();
+		session.flush();
+		session.createSQLQuery("delete from obs_summary where concept_id = :conceptId").setInteger("conceptId",
+		    conceptId).executeUpdate();
+		session.createSQLQuery(
+		    "insert into obs_summary (person_id, concept_id, obs_count, latest_obs_datetime) "
+		            + "select person_id, concept_id, count(*), max(obs_datetime) from obs "
+		            + "where voided = :voided and concept_id = :conceptId group by person_id, concept_id").setBoolean(
+		    "voided", false).setInteger("conceptId", conceptId).executeUpdate();
+		// several obs can share the latest obs_datetime, the one with the highest id is the latest
+		session.createSQLQuery(
+		    "update obs_summary set latest_obs_id = (select max(o.obs_id) from obs o where o.voided = :voided "
+		            + "and o.person_id = obs_summary.person_id and o.concept_id = obs_summary.concept_id "
+		            + "and o.obs_datetime = obs_summary.latest_obs_datetime) where concept_id = :conceptId")
+		        .setBoolean("voided", false).setInteger("conceptId", conceptId).executeUpdate();
+	}
+	
+	/**
+	 * Counts the non voided obs of each (person, concept) pair and finds the latest of them, with one
+	 * grouped query for the counts and one for the latest obs ids
+	 * 
+	 * @param personIds the ids of the persons to summarize, all persons if null
+	 * @param conceptIds the ids of the question concepts to summarize
+	 * @return the summaries, with their latest obs ids but without the latest obs
+	 */
+	@SuppressWarnings("unchecked")
+	private List<ObsSummary> computeObsSummaries(Collection<Integer> personIds, Collection<Integer> conceptIds) {
+		Session session = sessionFactory.getCurrentSession();
+		String where = "o.voided = false and o.concept.conceptId in (:conceptIds)";
+		if (personIds != null)
+			where += " and o.person.personId in (:personIds)";
+		String groupBy = " group by o.person.personId, o.concept.conceptId";
+		
+		Query countQuery = session.createQuery("select o.person.personId, o.concept.conceptId, count(o.obsId), "
+		        + "max(o.obsDatetime) from Obs o where " + where + groupBy);
+		// several obs can share the latest obsDatetime, the one with the highest id is the latest
+		Query latestQuery = session.createQuery("select o.person.personId, o.concept.conceptId, max(o.obsId) from Obs o "
+		        + "where " + where + " and o.obsDatetime = (select max(l.obsDatetime) from Obs l where l.voided = false "
+		        + "and l.person = o.person and l.concept = o.concept)" + groupBy);
+		for (Query query : new Query[] { countQuery, latestQuery }) {
+			query.setParameterList("conceptIds", conceptIds);
+			if (personIds != null)
+				query.setParameterList("personIds", personIds);
+		}
+		
+		Map<String, ObsSummary> summaries = new LinkedHashMap<String, ObsSummary>();
+		for (Object[] row : (List<Object[]>) countQuery.list()) {
+			ObsSummary summary = new ObsSummary((Person) session.load(Person.class, (Integer) row[0]), (Concept) session
+			        .load(Concept.class, (Integer) row[1]));
+			summary.setObsCount(((Number) row[2]).intValue());
+			summary.setLatestObsDatetime((Date) row[3]);
+			summaries.put(row[0] + ":" + row[1], summary);
+		}
+		
+		for (Object[] row : (List<Object[]>) latestQuery.list()) {
+			ObsSummary summary = summaries.get(row[0] + ":" + row[1]);
+			if (summary != null)
+				summary.setLatestObsId((Integer) row[2]);
+		}
+		
+		return new ArrayList<ObsSummary>(summaries.values());
+	}
+	
+	/**
+	 * Sets the latest obs of the given summaries, fetching them in batches
+	 * 
+	 * @param summaries the summaries whose latest obs ids are set
+	 */
+	@SuppressWarnings("unchecked")
+	private void loadLatestObs(List<ObsSummary> summaries) {
+		Map<Integer, ObsSummary> summariesByLatestObsId = new HashMap<Integer, ObsSummary>();
+		for (ObsSummary summary : summaries) {
+			if (summary.getLatestObsId() != null)
+				summariesByLatestObsId.put(summary.getLatestObsId(), summary);
+		}
+		
+		List<Integer> obsIds = new ArrayList<Integer>(summariesByLatestObsId.keySet());
+		for (int start = 0; start < obsIds.size(); start += OBS_SUMMARY_BATCH_SIZE) {
+			List<Integer> batch = obsIds.subList(start, Math.min(start + OBS_SUMMARY_BATCH_SIZE, obsIds.size()));
+			for (Obs obs : (List<Obs>) sessionFactory.getCurrentSession().createCriteria(Obs.class).add(
+			    Restrictions.in("obsId", batch)).list()) {
+				summariesByLatestObsId.get(obs.getObsId()).setLatestObs(obs);
+			}
+		}
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.ObsDAO#getObsByUuid(java.lang.String)
 	 */
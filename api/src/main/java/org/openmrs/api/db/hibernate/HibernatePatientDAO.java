@@ -17,10 +17,14 @@ import java.lang.reflect.Field;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 
@@ -29,18 +33,24 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
 import org.hibernate.Query;
+import org.hibernate.SQLQuery;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.EntityKey;
+import org.openmrs.Encounter;
 import org.openmrs.Location;
+import org.openmrs.Obs;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifier;
 import org.openmrs.PatientIdentifierType;
 import org.openmrs.PatientIdentifierType.UniquenessBehavior;
 import org.openmrs.Person;
 import org.openmrs.PersonName;
+import org.openmrs.Visit;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.PatientDAO;
@@ -56,6 +66,11 @@ public class HibernatePatientDAO implements PatientDAO {
 	
 	protected final Log log = LogFactory.getLog(getClass());
 	
+	/**
+	 * The maximum number of identifiers looked up in a single query
+	 */
+	private static final int IDENTIFIER_BATCH_SIZE = 500;
+	
 	/**
 	 * Hibernate session factory
 	 */
@@ -305,7 +320,6 @@ public class HibernatePatientDAO implements PatientDAO {
 	 * @should return ordered
 	 * @see org.openmrs.api.db.PatientDAO#getAllPatientIdentifierTypes(boolean)
 	 */
-	@SuppressWarnings("unchecked")
 	public List<PatientIdentifierType> getAllPatientIdentifierTypes(boolean includeRetired) throws DAOException {
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(PatientIdentifierType.class);
 		
@@ -319,14 +333,14 @@ public class HibernatePatientDAO implements PatientDAO {
 		criteria.addOrder(Order.asc("name"));
 		criteria.addOrder(Order.asc("patientIdentifierTypeId"));
 		
-		return criteria.list();
+		return MetadataQueryCache.list(sessionFactory.getCurrentSession(), PatientIdentifierType.class, "all:"
+		        + includeRetired, criteria);
 	}
 	
 	/**
 	 * @see org.openmrs.api.db.PatientDAO#getPatientIdentifierTypes(java.lang.String,
 	 *      java.lang.String, java.lang.Boolean, java.lang.Boolean)
 	 */
-	@SuppressWarnings("unchecked")
 	public List<PatientIdentifierType> getPatientIdentifierTypes(String name, String format, Boolean required,
 	        Boolean hasCheckDigit) throws DAOException {
 		// TODO test this method
@@ -351,7 +365,8 @@ public class HibernatePatientDAO implements PatientDAO {
 		criteria.addOrder(Order.asc("name"));
 		criteria.addOrder(Order.asc("patientIdentifierTypeId"));
 		
-		return criteria.list();
+		return MetadataQueryCache.list(sessionFactory.getCurrentSession(), PatientIdentifierType.class, "search:" + name
+		        + ":" + format + ":" + required + ":" + hasCheckDigit, criteria);
 	}
 	
 	/**
@@ -500,8 +515,10 @@ public class HibernatePatientDAO implements PatientDAO {
 	 * @see org.openmrs.api.db.PatientDAO#getPatientIdentifierTypeByUuid(java.lang.String)
 	 */
 	public PatientIdentifierType getPatientIdentifierTypeByUuid(String uuid) {
-		return (PatientIdentifierType) sessionFactory.getCurrentSession().createQuery(
-		    "from PatientIdentifierType pit where pit.uuid = :uuid").setString("uuid", uuid).uniqueResult();
+		Query query = sessionFactory.getCurrentSession().createQuery(
+		    "from PatientIdentifierType pit where pit.uuid = :uuid").setString("uuid", uuid);
+		return MetadataQueryCache.uniqueResult(sessionFactory.getCurrentSession(), PatientIdentifierType.class, "uuid:"
+		        + uuid, query);
 	}
 	
 	/**
@@ -539,6 +556,70 @@ public class HibernatePatientDAO implements PatientDAO {
 		return !query.uniqueResult().toString().equals("0");
 	}
 	
+	/**
+	 * Like {@link #isIdentifierInUseByAnotherPatient(PatientIdentifier)} this uses an hql query so
+	 * the hibernate cache is considered as well, but it fetches the matches for all identifiers at
+	 * once and applies the patient and location rules to the results.
+	 * 
+	 * @see org.openmrs.api.db.PatientDAO#getPatientIdentifiersInUseByAnotherPatient(java.util.List)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<PatientIdentifier> getPatientIdentifiersInUseByAnotherPatient(List<PatientIdentifier> patientIdentifiers) {
+		List<PatientIdentifier> inUse = new ArrayList<PatientIdentifier>();
+		if (patientIdentifiers.isEmpty())
+			return inUse;
+		
+		// the identifiers to check, keyed by identifier and type
+		Map<String, List<PatientIdentifier>> identifiersByKey = new HashMap<String, List<PatientIdentifier>>();
+		Set<String> identifierValues = new HashSet<String>();
+		Set<Integer> identifierTypeIds = new HashSet<Integer>();
+		for (PatientIdentifier pi : patientIdentifiers) {
+			Integer typeId = pi.getIdentifierType().getPatientIdentifierTypeId();
+			String key = pi.getIdentifier() + " id type #: " + typeId;
+			List<PatientIdentifier> identifiers = identifiersByKey.get(key);
+			if (identifiers == null) {
+				identifiers = new ArrayList<PatientIdentifier>();
+				identifiersByKey.put(key, identifiers);
+			}
+			identifiers.add(pi);
+			identifierValues.add(pi.getIdentifier());
+			identifierTypeIds.add(typeId);
+		}
+		
+		String hql = "select pi.identifier, pi.identifierType.patientIdentifierTypeId, l.locationId, p.patientId "
+		        + "from PatientIdentifier pi join pi.patient p left join pi.location l where p.voided = false "
+		        + "and pi.voided = false and pi.identifier in (:identifiers) and pi.identifierType.patientIdentifierTypeId in (:idTypes)";
+		
+		Map<PatientIdentifier, Boolean> found = new IdentityHashMap<PatientIdentifier, Boolean>();
+		List<String> values = new ArrayList<String>(identifierValues);
+		for (int i = 0; i < values.size(); i += IDENTIFIER_BATCH_SIZE) {
+			Query query = sessionFactory.getCurrentSession().createQuery(hql);
+			query.setParameterList("identifiers", values.subList(i, Math.min(i + IDENTIFIER_BATCH_SIZE, values.size())));
+			query.setParameterList("idTypes", identifierTypeIds);
+			
+			for (Object[] row : (List<Object[]>) query.list()) {
+				List<PatientIdentifier> identifiers = identifiersByKey.get(row[0] + " id type #: " + row[1]);
+				if (identifiers == null)
+					continue;
+				for (PatientIdentifier pi : identifiers) {
+					if (pi.getPatient() != null && row[3].equals(pi.getPatient().getPatientId()))
+						continue;
+					if (pi.getLocation() != null
+					        && pi.getIdentifierType().getUniquenessBehavior() == UniquenessBehavior.LOCATION
+					        && !pi.getLocation().getLocationId().equals(row[2]))
+						continue;
+					found.put(pi, Boolean.TRUE);
+				}
+			}
+		}
+		
+		for (PatientIdentifier pi : patientIdentifiers) {
+			if (found.containsKey(pi))
+				inUse.add(pi);
+		}
+		return inUse;
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.PatientDAO#getPatientIdentifier(java.lang.Integer)
 	 */
@@ -582,4 +663,113 @@ public class HibernatePatientDAO implements PatientDAO {
 		criteria.setProjection(Projections.countDistinct("patientId"));
 		return (Long) criteria.uniqueResult();
 	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientDAO#mergeVisits(org.openmrs.Patient, org.openmrs.Patient)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<String> mergeVisits(Patient preferred, Patient notPreferred) throws DAOException {
+		Session session = sessionFactory.getCurrentSession();
+		session.flush();
+		
+		List<String> uuids = session.createSQLQuery("select uuid from visit where patient_id = :notPreferred").setInteger(
+		    "notPreferred", notPreferred.getPatientId()).list();
+		if (!uuids.isEmpty()) {
+			createMergeUpdate(
+			    "update visit set patient_id = :preferred, changed_by = :changedBy, date_changed = :dateChanged "
+			            + "where patient_id = :notPreferred", preferred, notPreferred).addSynchronizedEntityClass(Visit.class)
+			        .setInteger("changedBy", Context.getAuthenticatedUser().getUserId()).setTimestamp("dateChanged",
+			            new Date()).executeUpdate();
+			refreshMergedEntities(notPreferred);
+		}
+		
+		return uuids;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientDAO#mergeEncounters(org.openmrs.Patient, org.openmrs.Patient)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<String> mergeEncounters(Patient preferred, Patient notPreferred) throws DAOException {
+		Session session = sessionFactory.getCurrentSession();
+		session.flush();
+		
+		List<String> uuids = session.createSQLQuery("select uuid from encounter where patient_id = :notPreferred")
+		        .setInteger("notPreferred", notPreferred.getPatientId()).list();
+		if (!uuids.isEmpty()) {
+			createMergeUpdate(
+			    "update encounter set patient_id = :preferred, changed_by = :changedBy, date_changed = :dateChanged "
+			            + "where patient_id = :notPreferred", preferred, notPreferred).addSynchronizedEntityClass(
+			    Encounter.class).setInteger("changedBy", Context.getAuthenticatedUser().getUserId()).setTimestamp(
+			    "dateChanged", new Date()).executeUpdate();
+			
+			// the patient of the obs and orders in an encounter must always be the patient of the encounter
+			createMergeUpdate(
+			    "update obs set person_id = :preferred where person_id = :notPreferred "
+			            + "and encounter_id in (select encounter_id from encounter where patient_id = :preferred)",
+			    preferred, notPreferred).addSynchronizedEntityClass(Obs.class).executeUpdate();
+			createMergeUpdate(
+			    "update orders set patient_id = :preferred where patient_id = :notPreferred "
+			            + "and encounter_id in (select encounter_id from encounter where patient_id = :preferred)",
+			    preferred, notPreferred).addSynchronizedEntityClass(org.openmrs.Order.class).executeUpdate();
+			refreshMergedEntities(notPreferred);
+		}
+		
+		return uuids;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientDAO#mergeIndependentObs(org.openmrs.Patient,
+	 *      org.openmrs.Patient)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<String> mergeIndependentObs(Patient preferred, Patient notPreferred) throws DAOException {
+		Session session = sessionFactory.getCurrentSession();
+		session.flush();
+		
+		List<String> uuids = session.createSQLQuery(
+		    "select uuid from obs where person_id = :notPreferred and encounter_id is null and voided = :voided")
+		        .setInteger("notPreferred", notPreferred.getPatientId()).setBoolean("voided", false).list();
+		if (!uuids.isEmpty()) {
+			createMergeUpdate(
+			    "update obs set person_id = :preferred where person_id = :notPreferred "
+			            + "and encounter_id is null and voided = :voided", preferred, notPreferred)
+			        .addSynchronizedEntityClass(Obs.class).setBoolean("voided", false).executeUpdate();
+			refreshMergedEntities(notPreferred);
+		}
+		
+		return uuids;
+	}
+	
+	private SQLQuery createMergeUpdate(String sql, Patient preferred, Patient notPreferred) {
+		SQLQuery query = sessionFactory.getCurrentSession().createSQLQuery(sql);
+		query.setInteger("preferred", preferred.getPatientId());
+		query.setInteger("notPreferred", notPreferred.getPatientId());
+		return query;
+	}
+	
+	/**
+	 * The merge updates bypass the session, so any visits, encounters, obs or orders that were
+	 * already loaded still point to the notPreferred patient. They are reloaded from the database so
+	 * the rest of the merge and later flushes don't see or write back the old patient.
+	 */
+	@SuppressWarnings("unchecked")
+	private void refreshMergedEntities(Patient notPreferred) {
+		Session session = sessionFactory.getCurrentSession();
+		for (EntityKey key : new ArrayList<EntityKey>(session.getStatistics().getEntityKeys())) {
+			Object entity = session.get(key.getEntityName(), key.getIdentifier());
+			Person person = null;
+			if (entity instanceof Visit)
+				person = ((Visit) entity).getPatient();
+			else if (entity instanceof Encounter)
+				person = ((Encounter) entity).getPatient();
+			else if (entity instanceof Obs)
+				person = ((Obs) entity).getPerson();
+			else if (entity instanceof org.openmrs.Order)
+				person = ((org.openmrs.Order) entity).getPatient();
+			
+			if (person != null && notPreferred.getPatientId().equals(person.getPersonId()))
+				session.refresh(entity);
+		}
+	}
 }
@@ -47,6 +47,7 @@ import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.Query;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
@@ -1606,13 +1607,23 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 	}
 	
 	public Cohort getPatientsHavingLocation(Integer locationId, PatientSetService.PatientLocationMethod method) {
+		return getPatientsHavingLocation(locationId, method, false);
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientSetDAO#getPatientsHavingLocation(java.lang.Integer,
+	 *      org.openmrs.api.PatientSetService.PatientLocationMethod, boolean)
+	 */
+	public Cohort getPatientsHavingLocation(Integer locationId, PatientSetService.PatientLocationMethod method,
+	        boolean includeChildLocations) {
+		String locationClause = getLocationClause("e.location_id", includeChildLocations);
 		StringBuffer sb = new StringBuffer();
 		boolean argumentAsString = false;
 		if (method == PatientLocationMethod.ANY_ENCOUNTER) {
 			sb.append(" select e.patient_id from ");
 			sb.append(" encounter e ");
 			sb.append(" inner join patient p on e.patient_id = p.patient_id and p.voided = false ");
-			sb.append(" where e.location_id = :location_id ");
+			sb.append(" where " + locationClause + " ");
 			sb.append(" group by e.patient_id ");
 		} else if (method == PatientLocationMethod.EARLIEST_ENCOUNTER) {
 			sb.append(" select e.patient_id ");
@@ -1623,7 +1634,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 			sb.append("       from encounter ");
 			sb.append("       group by patient_id) subq ");
 			sb.append("     on e.patient_id = subq.patient_id and e.encounter_datetime = subq.earliest ");
-			sb.append(" where e.location_id = :location_id ");
+			sb.append(" where " + locationClause + " ");
 			sb.append(" group by e.patient_id ");
 		} else if (method == PatientLocationMethod.LATEST_ENCOUNTER) {
 			sb.append(" select e.patient_id ");
@@ -1634,13 +1645,17 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 			sb.append("       from encounter ");
 			sb.append("       group by patient_id) subq ");
 			sb.append("     on e.patient_id = subq.patient_id and e.encounter_datetime = subq.earliest ");
-			sb.append(" where e.location_id = :location_id ");
+			sb.append(" where " + locationClause + " ");
 			sb.append(" group by e.patient_id ");
 		} else {
 			sb.append(" select patient_id from patient p, person_attribute attr, person_attribute_type type ");
 			sb.append(" where type.name = 'Health Center' ");
 			sb.append(" and type.person_attribute_type_id = attr.person_attribute_type_id ");
-			sb.append(" and attr.value = :location_id ");
+			// the attribute values are strings, so the ids of the subtree are passed as strings too
+			if (includeChildLocations)
+				sb.append(" and attr.value in (:location_ids) ");
+			else
+				sb.append(" and attr.value = :location_id ");
 			sb.append(" and attr.person_id = p.patient_id ");
 			sb.append(" and attr.voided = false ");
 			sb.append(" and p.voided = false ");
@@ -1650,7 +1665,16 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		Query query = sessionFactory.getCurrentSession().createSQLQuery(sb.toString());
 		
-		if (argumentAsString) {
+		if (argumentAsString && includeChildLocations) {
+			List<String> locationIds = new ArrayList<String>();
+			locationIds.add(locationId.toString());
+			for (Object descendantId : sessionFactory.getCurrentSession().createSQLQuery(
+			    "select descendant_location_id from location_closure where ancestor_location_id = :location_id")
+			        .setInteger("location_id", locationId).list()) {
+				locationIds.add(descendantId.toString());
+			}
+			query.setParameterList("location_ids", locationIds);
+		} else if (argumentAsString) {
 			query.setString("location_id", locationId.toString());
 		} else {
 			query.setInteger("location_id", locationId);
@@ -1659,6 +1683,17 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		return new Cohort(query.list());
 	}
 	
+	/**
+	 * Gets the SQL condition of a location id column, which also matches the descendants of the
+	 * location given as the :location_id parameter if asked for
+	 */
+	private String getLocationClause(String column, boolean includeChildLocations) {
+		if (!includeChildLocations)
+			return column + " = :location_id";
+		return "(" + column + " = :location_id or " + column + " in (select lc.descendant_location_id "
+		        + "from location_closure lc where lc.ancestor_location_id = :location_id))";
+	}
+	
 	public Cohort convertPatientIdentifier(List<String> identifiers) throws DAOException {
 		
 		StringBuffer sb = new StringBuffer();
@@ -1815,9 +1850,22 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		return ret;
 	}
 	
-	@SuppressWarnings("unchecked")
 	public Map<Integer, List<DrugOrder>> getCurrentDrugOrders(Cohort patients, List<Concept> drugConcepts)
 	        throws DAOException {
+		return getCurrentDrugOrders(patients, drugConcepts == null ? null : Restrictions.in("concept", drugConcepts));
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientSetDAO#getCurrentDrugOrdersInConceptSet(org.openmrs.Cohort,
+	 *      org.openmrs.Concept)
+	 */
+	public Map<Integer, List<DrugOrder>> getCurrentDrugOrdersInConceptSet(Cohort patients, Concept drugSet)
+	        throws DAOException {
+		return getCurrentDrugOrders(patients, HibernateUtil.getConceptSetRestriction("concept.conceptId", drugSet));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Map<Integer, List<DrugOrder>> getCurrentDrugOrders(Cohort patients, Criterion conceptRestriction) {
 		Map<Integer, List<DrugOrder>> ret = new HashMap<Integer, List<DrugOrder>>();
 		
 		Date now = new Date();
@@ -1832,8 +1880,8 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		//criteria.add(Restrictions.in("encounter.patient.personId", ids));
 		//criteria.createCriteria("encounter").add(Restrictions.in("patient.personId", ids));
-		if (drugConcepts != null)
-			criteria.add(Restrictions.in("concept", drugConcepts));
+		if (conceptRestriction != null)
+			criteria.add(conceptRestriction);
 		criteria.add(Restrictions.eq("voided", false));
 		criteria.add(Restrictions.le("startDate", now));
 		criteria.add(Restrictions.or(Restrictions.and(Restrictions.eq("discontinued", false), Restrictions.or(Restrictions
@@ -1854,8 +1902,20 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		return ret;
 	}
 	
-	@SuppressWarnings("unchecked")
 	public Map<Integer, List<DrugOrder>> getDrugOrders(Cohort patients, List<Concept> drugConcepts) throws DAOException {
+		return getDrugOrders(patients, drugConcepts == null ? null : Restrictions.in("concept", drugConcepts));
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientSetDAO#getDrugOrdersInConceptSet(org.openmrs.Cohort,
+	 *      org.openmrs.Concept)
+	 */
+	public Map<Integer, List<DrugOrder>> getDrugOrdersInConceptSet(Cohort patients, Concept drugSet) throws DAOException {
+		return getDrugOrders(patients, HibernateUtil.getConceptSetRestriction("concept.conceptId", drugSet));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Map<Integer, List<DrugOrder>> getDrugOrders(Cohort patients, Criterion conceptRestriction) {
 		Map<Integer, List<DrugOrder>> ret = new HashMap<Integer, List<DrugOrder>>();
 		if (patients != null && patients.size() == 0)
 			return ret;
@@ -1868,8 +1928,8 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		if (patients != null)
 			criteria.add(Restrictions.in("patient.personId", patients.getMemberIds()));
 		
-		if (drugConcepts != null)
-			criteria.add(Restrictions.in("concept", drugConcepts));
+		if (conceptRestriction != null)
+			criteria.add(conceptRestriction);
 		criteria.add(Restrictions.eq("voided", false));
 		criteria.addOrder(org.hibernate.criterion.Order.asc("startDate"));
 		log.debug("criteria: " + criteria);
@@ -338,7 +338,6 @@ public class HibernatePersonDAO implements PersonDAO {
 	 * @see org.openmrs.api.PersonService#getAllPersonAttributeTypes(boolean)
 	 * @see org.openmrs.api.db.PersonDAO#getAllPersonAttributeTypes(boolean)
 	 */
-	@SuppressWarnings("unchecked")
 	public List<PersonAttributeType> getAllPersonAttributeTypes(boolean includeRetired) throws DAOException {
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(PersonAttributeType.class, "r");
 		
@@ -348,14 +347,14 @@ public class HibernatePersonDAO implements PersonDAO {
 		
 		criteria.addOrder(Order.asc("sortWeight"));
 		
-		return criteria.list();
+		return MetadataQueryCache.list(sessionFactory.getCurrentSession(), PersonAttributeType.class, "all:"
+		        + includeRetired, criteria);
 	}
 	
 	/**
 	 * @see org.openmrs.api.db.PersonDAO#getPersonAttributeTypes(java.lang.String, java.lang.String,
 	 *      java.lang.Integer, java.lang.Boolean)
 	 */
-	@SuppressWarnings("unchecked")
 	public List<PersonAttributeType> getPersonAttributeTypes(String exactName, String format, Integer foreignKey,
 	        Boolean searchable) throws DAOException {
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(PersonAttributeType.class, "r");
@@ -372,7 +371,8 @@ public class HibernatePersonDAO implements PersonDAO {
 		if (searchable != null)
 			criteria.add(Expression.eq("searchable", searchable));
 		
-		return criteria.list();
+		return MetadataQueryCache.list(sessionFactory.getCurrentSession(), PersonAttributeType.class, "search:"
+		        + exactName + ":" + format + ":" + foreignKey + ":" + searchable, criteria);
 	}
 	
 	/**
@@ -585,8 +585,10 @@ public class HibernatePersonDAO implements PersonDAO {
 	 * @see org.openmrs.api.db.PersonDAO#getPersonAttributeTypeByUuid(java.lang.String)
 	 */
 	public PersonAttributeType getPersonAttributeTypeByUuid(String uuid) {
-		return (PersonAttributeType) sessionFactory.getCurrentSession().createQuery(
-		    "from PersonAttributeType pat where pat.uuid = :uuid").setString("uuid", uuid).uniqueResult();
+		Query query = sessionFactory.getCurrentSession().createQuery(
+		    "from PersonAttributeType pat where pat.uuid = :uuid").setString("uuid", uuid);
+		return MetadataQueryCache.uniqueResult(sessionFactory.getCurrentSession(), PersonAttributeType.class, "uuid:"
+		        + uuid, query);
 	}
 	
 	/**
@@ -87,13 +87,13 @@ public class HibernateProgramWorkflowDAO implements ProgramWorkflowDAO {
 	/**
 	 * @see org.openmrs.api.db.ProgramWorkflowDAO#getAllPrograms(boolean)
 	 */
-	@SuppressWarnings("unchecked")
 	public List<Program> getAllPrograms(boolean includeRetired) throws DAOException {
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Program.class);
 		if (includeRetired == false) {
 			criteria.add(Expression.eq("retired", false));
 		}
-		return criteria.list();
+		return MetadataQueryCache.list(sessionFactory.getCurrentSession(), Program.class, "all:" + includeRetired,
+		    criteria);
 	}
 	
 	/**
@@ -106,10 +106,8 @@ public class HibernateProgramWorkflowDAO implements ProgramWorkflowDAO {
 			criteria.add(Restrictions.eq("retired", false));
 		}
 		
-		@SuppressWarnings("unchecked")
-		List<Program> list = criteria.list();
-		
-		return list;
+		return MetadataQueryCache.list(sessionFactory.getCurrentSession(), Program.class, "name:" + programName + ":"
+		        + includeRetired, criteria);
 	}
 	
 	/**
@@ -290,8 +288,9 @@ public class HibernateProgramWorkflowDAO implements ProgramWorkflowDAO {
 	 * @see org.openmrs.api.db.ProgramWorkflowDAO#getProgramByUuid(java.lang.String)
 	 */
 	public Program getProgramByUuid(String uuid) {
-		return (Program) sessionFactory.getCurrentSession().createQuery("from Program p where p.uuid = :uuid").setString(
-		    "uuid", uuid).uniqueResult();
+		Query query = sessionFactory.getCurrentSession().createQuery("from Program p where p.uuid = :uuid").setString(
+		    "uuid", uuid);
+		return MetadataQueryCache.uniqueResult(sessionFactory.getCurrentSession(), Program.class, "uuid:" + uuid, query);
 	}
 	
 	/**
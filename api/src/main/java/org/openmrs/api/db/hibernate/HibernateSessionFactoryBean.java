@@ -30,6 +30,7 @@ import org.apache.commons.logging.LogFactory;
 import org.hibernate.HibernateException;
 import org.hibernate.Interceptor;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.event.InitializeCollectionEventListener;
 import org.hibernate.util.ConfigHelper;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.Module;
@@ -114,6 +115,10 @@ public class HibernateSessionFactoryBean extends AnnotationSessionFactoryBean {
 		
 		config.setInterceptor(chainingInterceptor);
 		
+		// count the collection loads for the query profiler
+		config.getEventListeners().setInitializeCollectionEventListeners(
+		    new InitializeCollectionEventListener[] { new CollectionLoadCountingListener() });
+		
 		return config;
 	}
 	
@@ -15,14 +15,30 @@ package org.openmrs.api.db.hibernate;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.hibernate.Criteria;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.Subqueries;
 import org.hibernate.dialect.Dialect;
 import org.hibernate.dialect.HSQLDialect;
 import org.hibernate.engine.SessionFactoryImplementor;
+import org.openmrs.Concept;
+import org.openmrs.ConceptSetClosure;
+import org.openmrs.Location;
+import org.openmrs.LocationClosure;
+import org.openmrs.util.KeysetToken;
 
 /**
  * This class holds common methods and utilities that are used across the hibernate related classes
@@ -108,4 +124,80 @@ public class HibernateUtil {
 			return oldString;
 	}
 	
+	/**
+	 * Restricts a keyset page sorted newest first on the given date and id properties to the rows
+	 * that come after the given token, i.e. the rows with an earlier date or the same date and a
+	 * lower id.
+	 * 
+	 * @param dateProperty the date property the page is sorted on, which must not be nullable
+	 * @param idProperty the primary key property
+	 * @param after the sort key of the last result of the previous page
+	 * @return the restriction to add to the criteria
+	 * @see #addKeysetOrder(Criteria, String, String)
+	 */
+	public static Criterion getKeysetRestriction(String dateProperty, String idProperty, KeysetToken after) {
+		return Restrictions.or(Restrictions.lt(dateProperty, after.getDate()), Restrictions.and(Restrictions.eq(
+		    dateProperty, after.getDate()), Restrictions.lt(idProperty, after.getId())));
+	}
+	
+	/**
+	 * Sorts a keyset page newest first on the given date property and then on the given id property,
+	 * which makes the order stable for rows with the same date
+	 * 
+	 * @param criteria the criteria of the page
+	 * @param dateProperty the date property to sort on
+	 * @param idProperty the primary key property
+	 */
+	public static void addKeysetOrder(Criteria criteria, String dateProperty, String idProperty) {
+		criteria.addOrder(Order.desc(dateProperty));
+		criteria.addOrder(Order.desc(idProperty));
+	}
+	
+	/**
+	 * Restricts a concept id property to the members of a concept set and of its nested sets with a
+	 * subquery on the concept set closure, instead of an IN list of the exploded members
+	 * 
+	 * @param conceptIdProperty the concept id property to restrict, e.g. "concept.conceptId"
+	 * @param conceptSet the concept set
+	 * @return the restriction to add to the criteria
+	 * @see org.openmrs.ConceptSetClosure
+	 */
+	public static Criterion getConceptSetRestriction(String conceptIdProperty, Concept conceptSet) {
+		DetachedCriteria members = DetachedCriteria.forClass(ConceptSetClosure.class).add(
+		    Restrictions.eq("ancestorConceptId", conceptSet.getConceptId())).setProjection(
+		    Projections.property("descendantConceptId"));
+		return Subqueries.propertyIn(conceptIdProperty, members);
+	}
+	
+	/**
+	 * Restricts a location id property to a location and its descendants with a subquery on the
+	 * location closure, instead of an IN list of the locations of the subtree
+	 * 
+	 * @param locationIdProperty the location id property to restrict, e.g. "location.locationId"
+	 * @param location the root of the subtree
+	 * @return the restriction to add to the criteria
+	 * @see org.openmrs.LocationClosure
+	 */
+	public static Criterion getLocationSubtreeRestriction(String locationIdProperty, Location location) {
+		return getLocationSubtreeRestriction(locationIdProperty, Collections.singleton(location));
+	}
+	
+	/**
+	 * Restricts a location id property to the given locations and their descendants
+	 * 
+	 * @param locationIdProperty the location id property to restrict, e.g. "location.locationId"
+	 * @param locations the roots of the subtrees
+	 * @return the restriction to add to the criteria
+	 * @see #getLocationSubtreeRestriction(String, Location)
+	 */
+	public static Criterion getLocationSubtreeRestriction(String locationIdProperty, Collection<Location> locations) {
+		List<Integer> locationIds = new ArrayList<Integer>(locations.size());
+		for (Location location : locations) {
+			locationIds.add(location.getLocationId());
+		}
+		DetachedCriteria descendants = DetachedCriteria.forClass(LocationClosure.class).add(
+		    Restrictions.in("ancestorLocationId", locationIds)).setProjection(Projections.property("descendantLocationId"));
+		return Restrictions.or(Restrictions.in(locationIdProperty, locationIds), Subqueries.propertyIn(
+		    locationIdProperty, descendants));
+	}
 }
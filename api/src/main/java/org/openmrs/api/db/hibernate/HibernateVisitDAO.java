@@ -20,6 +20,7 @@ import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.hibernate.Criteria;
+import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.MatchMode;
@@ -35,6 +36,7 @@ import org.openmrs.VisitType;
 import org.openmrs.api.APIException;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.VisitDAO;
+import org.openmrs.util.KeysetToken;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -58,10 +60,10 @@ public class HibernateVisitDAO implements VisitDAO {
 	/**
 	 * @see org.openmrs.api.db.VisitDAO#getAllVisitTypes()
 	 */
-	@SuppressWarnings("unchecked")
 	@Transactional(readOnly = true)
 	public List<VisitType> getAllVisitTypes() throws APIException {
-		return getCurrentSession().createCriteria(VisitType.class).list();
+		return MetadataQueryCache.list(getCurrentSession(), VisitType.class, "all:true", getCurrentSession()
+		        .createCriteria(VisitType.class));
 	}
 	
 	/**
@@ -70,7 +72,9 @@ public class HibernateVisitDAO implements VisitDAO {
 	@Override
 	public List<VisitType> getAllVisitTypes(boolean includeRetired) throws DAOException {
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(VisitType.class);
-		return includeRetired ? criteria.list() : criteria.add(Restrictions.eq("retired", includeRetired)).list();
+		if (!includeRetired)
+			criteria.add(Restrictions.eq("retired", false));
+		return MetadataQueryCache.list(getCurrentSession(), VisitType.class, "all:" + includeRetired, criteria);
 	}
 	
 	/**
@@ -86,8 +90,9 @@ public class HibernateVisitDAO implements VisitDAO {
 	 */
 	@Transactional(readOnly = true)
 	public VisitType getVisitTypeByUuid(String uuid) {
-		return (VisitType) sessionFactory.getCurrentSession().createQuery("from VisitType vt where vt.uuid = :uuid")
-		        .setString("uuid", uuid).uniqueResult();
+		Query query = sessionFactory.getCurrentSession().createQuery("from VisitType vt where vt.uuid = :uuid").setString(
+		    "uuid", uuid);
+		return MetadataQueryCache.uniqueResult(getCurrentSession(), VisitType.class, "uuid:" + uuid, query);
 	}
 	
 	/**
@@ -170,6 +175,49 @@ public class HibernateVisitDAO implements VisitDAO {
 	        Date minEndDatetime, Date maxEndDatetime, final Map<VisitAttributeType, String> serializedAttributeValues,
 	        boolean includeInactive, boolean includeVoided) throws DAOException {
 		
+		Criteria criteria = createVisitCriteria(visitTypes, patients, locations, indications, minStartDatetime,
+		    maxStartDatetime, minEndDatetime, maxEndDatetime, includeInactive, includeVoided);
+		
+		criteria.addOrder(Order.desc("startDatetime"));
+		criteria.addOrder(Order.desc("visitId"));
+		
+		List<Visit> visits = criteria.list();
+		
+		if (serializedAttributeValues != null) {
+			CollectionUtils.filter(visits, new AttributeMatcherPredicate<Visit, VisitAttributeType>(
+			        serializedAttributeValues));
+		}
+		
+		return visits;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.VisitDAO#getVisits(java.util.Collection, boolean, boolean,
+	 *      org.openmrs.util.KeysetToken, int)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	@Transactional(readOnly = true)
+	public List<Visit> getVisits(Collection<Patient> patients, boolean includeInactive, boolean includeVoided,
+	        KeysetToken after, int maxResults) throws DAOException {
+		
+		Criteria criteria = createVisitCriteria(null, patients, null, null, null, null, null, null, includeInactive,
+		    includeVoided);
+		if (after != null)
+			criteria.add(HibernateUtil.getKeysetRestriction("startDatetime", "visitId", after));
+		HibernateUtil.addKeysetOrder(criteria, "startDatetime", "visitId");
+		criteria.setMaxResults(maxResults);
+		
+		return criteria.list();
+	}
+	
+	/**
+	 * Creates the criteria for the visits matching the given arguments, which are optional
+	 */
+	private Criteria createVisitCriteria(Collection<VisitType> visitTypes, Collection<Patient> patients,
+	        Collection<Location> locations, Collection<Concept> indications, Date minStartDatetime, Date maxStartDatetime,
+	        Date minEndDatetime, Date maxEndDatetime, boolean includeInactive, boolean includeVoided) {
+		
 		Criteria criteria = getCurrentSession().createCriteria(Visit.class);
 		
 		if (visitTypes != null)
@@ -202,17 +250,7 @@ public class HibernateVisitDAO implements VisitDAO {
 		if (!includeVoided)
 			criteria.add(Restrictions.eq("voided", false));
 		
-		criteria.addOrder(Order.desc("startDatetime"));
-		criteria.addOrder(Order.desc("visitId"));
-		
-		List<Visit> visits = criteria.list();
-		
-		if (serializedAttributeValues != null) {
-			CollectionUtils.filter(visits, new AttributeMatcherPredicate<Visit, VisitAttributeType>(
-			        serializedAttributeValues));
-		}
-		
-		return visits;
+		return criteria;
 	}
 	
 	/**
@@ -0,0 +1,304 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.Criteria;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Hibernate;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.OpenmrsMetadata;
+
+/**
+ * Remembers the results of the queries that the DAOs run to look up {@link OpenmrsMetadata} like
+ * encounter types, identifier types, attribute types, visit types and programs. These lookups are
+ * made for every record by form processors, HL7 handlers and validators while the metadata itself
+ * almost never changes.<br/>
+ * <br/>
+ * Only the ids of the matching rows are kept, as an immutable snapshot per metadata type and query
+ * key (e.g. "all", "name:Adult Initial", "uuid:..."). A cached lookup hands back the entities by
+ * loading these ids from the current session, which is served by the second level cache of the
+ * metadata class, so the returned objects are attached to the session just like the query results
+ * were. <br/>
+ * <br/>
+ * As an interceptor, this class drops all the snapshots of a type as soon as an object of that
+ * type is saved, changed (e.g. retired) or deleted, and again once that transaction completes.
+ * Within that transaction the lookups of the type always run the query. A change to a loaded object
+ * is only seen by hibernate when the session is flushed, so until then the lookups of the
+ * transaction that made it may still be served from the snapshots. <br/>
+ * <br/>
+ * Metadata that is changed with sql, e.g. by liquibase or a module's sqldiff, has to be followed by
+ * a call to {@link #clear()}.
+ *
+ * @since 1.10
+ */
+public class MetadataQueryCache extends EmptyInterceptor {
+	
+	private static final Log log = LogFactory.getLog(MetadataQueryCache.class);
+	
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * metadata class to query key to the ids of the matching objects, in query order
+	 */
+	private static final Map<Class<?>, Map<String, List<Serializable>>> results = new ConcurrentHashMap<Class<?>, Map<String, List<Serializable>>>();
+	
+	/**
+	 * the metadata classes that were written to in the current thread's transaction, only set while
+	 * a transaction is active
+	 */
+	private static final ThreadLocal<Set<Class<?>>> changedTypes = new ThreadLocal<Set<Class<?>>>();
+	
+	/**
+	 * guards storing of new snapshots against a concurrent invalidation of the same type
+	 */
+	private static final Object lock = new Object();
+	
+	private static long generation = 0;
+	
+	/**
+	 * Returns the results of the given criteria, from the snapshot stored under the given key if
+	 * there is one
+	 * 
+	 * @param session the current session
+	 * @param type the metadata class the criteria selects
+	 * @param key identifies the criteria among the other lookups of this type
+	 * @param criteria the query to run when nothing is cached yet
+	 * @return the matching objects, in query order
+	 * @should return the cached objects without running the query
+	 * @should run the query again after an object of the type is saved
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends OpenmrsMetadata> List<T> list(Session session, Class<T> type, String key, Criteria criteria) {
+		List<T> cached = getCached(session, type, key);
+		if (cached != null)
+			return cached;
+		
+		long generationBeforeQuery = getGeneration();
+		List<T> list = criteria.list();
+		store(session, type, key, list, generationBeforeQuery);
+		return list;
+	}
+	
+	/**
+	 * Returns the single result of the given criteria, from the snapshot stored under the given key
+	 * if there is one
+	 * 
+	 * @see #list(Session, Class, String, Criteria)
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends OpenmrsMetadata> T uniqueResult(Session session, Class<T> type, String key,
+	        Criteria criteria) {
+		List<T> cached = getCached(session, type, key);
+		if (cached != null)
+			return cached.get(0);
+		
+		long generationBeforeQuery = getGeneration();
+		T result = (T) criteria.uniqueResult();
+		if (result != null)
+			store(session, type, key, Collections.singletonList(result), generationBeforeQuery);
+		return result;
+	}
+	
+	/**
+	 * Returns the single result of the given query, from the snapshot stored under the given key if
+	 * there is one
+	 * 
+	 * @see #list(Session, Class, String, Criteria)
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends OpenmrsMetadata> T uniqueResult(Session session, Class<T> type, String key, Query query) {
+		List<T> cached = getCached(session, type, key);
+		if (cached != null)
+			return cached.get(0);
+		
+		long generationBeforeQuery = getGeneration();
+		T result = (T) query.uniqueResult();
+		if (result != null)
+			store(session, type, key, Collections.singletonList(result), generationBeforeQuery);
+		return result;
+	}
+	
+	/**
+	 * Drops all the snapshots of the given metadata class and its super classes
+	 * 
+	 * @param type the class of a saved, changed or deleted object
+	 */
+	public static void invalidate(Class<?> type) {
+		synchronized (lock) {
+			generation++;
+			for (Class<?> cachedType : results.keySet()) {
+				if (cachedType.isAssignableFrom(type))
+					results.remove(cachedType);
+			}
+		}
+	}
+	
+	/**
+	 * Drops all the snapshots. This is needed when metadata is changed directly in the database.
+	 */
+	public static void clear() {
+		synchronized (lock) {
+			generation++;
+			results.clear();
+		}
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onSave(java.lang.Object, java.io.Serializable,
+	 *      java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 */
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		metadataChanged(entity);
+		return false;
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onFlushDirty(java.lang.Object, java.io.Serializable,
+	 *      java.lang.Object[], java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 */
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		metadataChanged(entity);
+		return false;
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onDelete(java.lang.Object, java.io.Serializable,
+	 *      java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 */
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		metadataChanged(entity);
+	}
+	
+	/**
+	 * Starts recording the metadata types the transaction writes to. Writes made outside of a
+	 * transaction are not recorded, so nothing is left behind on the thread when no transaction
+	 * completes.
+	 * 
+	 * @see org.hibernate.EmptyInterceptor#afterTransactionBegin(org.hibernate.Transaction)
+	 */
+	@Override
+	public void afterTransactionBegin(Transaction tx) {
+		changedTypes.set(new HashSet<Class<?>>());
+	}
+	
+	/**
+	 * Invalidates the changed types again, so that snapshots taken by other threads between the
+	 * flush and the commit (or rollback) are not kept
+	 * 
+	 * @see org.hibernate.EmptyInterceptor#afterTransactionCompletion(org.hibernate.Transaction)
+	 */
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		Set<Class<?>> types = changedTypes.get();
+		changedTypes.remove();
+		if (types != null) {
+			for (Class<?> type : types)
+				invalidate(type);
+		}
+	}
+	
+	private void metadataChanged(Object entity) {
+		if (!(entity instanceof OpenmrsMetadata))
+			return;
+		
+		Class<?> type = Hibernate.getClass(entity);
+		Set<Class<?>> types = changedTypes.get();
+		if (types != null)
+			types.add(type);
+		invalidate(type);
+	}
+	
+	/**
+	 * @return the objects of the snapshot, or null if the query has to be run
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> List<T> getCached(Session session, Class<T> type, String key) {
+		Map<String, List<Serializable>> typeResults = results.get(type);
+		if (typeResults == null)
+			return null;
+		
+		List<Serializable> ids = typeResults.get(key);
+		if (ids == null || isChangedInCurrentTransaction(type))
+			return null;
+		
+		List<T> objects = new ArrayList<T>(ids.size());
+		for (Serializable id : ids) {
+			T object = (T) session.get(type, id);
+			if (object == null) {
+				// deleted behind hibernate's back
+				log.debug("Dropping the stale snapshots of " + type.getName());
+				invalidate(type);
+				return null;
+			}
+			objects.add(object);
+		}
+		return objects;
+	}
+	
+	private static <T> void store(Session session, Class<T> type, String key, List<T> objects, long generationBeforeQuery) {
+		if (isChangedInCurrentTransaction(type))
+			return; // the results may contain uncommitted changes
+		
+		List<Serializable> ids = new ArrayList<Serializable>(objects.size());
+		for (T object : objects)
+			ids.add(session.getIdentifier(object));
+		
+		synchronized (lock) {
+			if (generation != generationBeforeQuery)
+				return; // the type could have changed while the query ran
+			
+			Map<String, List<Serializable>> typeResults = results.get(type);
+			if (typeResults == null) {
+				typeResults = new ConcurrentHashMap<String, List<Serializable>>();
+				results.put(type, typeResults);
+			}
+			typeResults.put(key, Collections.unmodifiableList(ids));
+		}
+	}
+	
+	private static boolean isChangedInCurrentTransaction(Class<?> type) {
+		Set<Class<?>> types = changedTypes.get();
+		if (types != null) {
+			for (Class<?> changedType : types) {
+				if (type.isAssignableFrom(changedType))
+					return true;
+			}
+		}
+		return false;
+	}
+	
+	private static long getGeneration() {
+		synchronized (lock) {
+			return generation;
+		}
+	}
+}
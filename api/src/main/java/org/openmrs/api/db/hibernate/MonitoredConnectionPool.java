@@ -0,0 +1,350 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.mchange.v2.c3p0.DataSources;
+import com.mchange.v2.c3p0.PooledDataSource;
+
+/**
+ * One c3p0 pool of the {@link MonitoredConnectionProvider}, with the counts and timings of its
+ * checkouts. Hibernate releases connections after each transaction, so the time a connection is
+ * held is the time its transaction took. The connections that are checked out right now are kept
+ * with the thread that holds them, so that the ones held for too long can be shown with the stack
+ * trace of where they were taken or of what their thread is doing.
+ * 
+ * @since 1.10
+ */
+public class MonitoredConnectionPool {
+	
+	private static final Log log = LogFactory.getLog(MonitoredConnectionPool.class);
+	
+	private final String name;
+	
+	private final PooledDataSource dataSource;
+	
+	private final long longCheckoutMillis;
+	
+	private final boolean captureStackTraces;
+	
+	private final Map<Connection, Checkout> checkedOut = Collections
+	        .synchronizedMap(new IdentityHashMap<Connection, Checkout>());
+	
+	private final AtomicInteger waiting = new AtomicInteger();
+	
+	private final AtomicLong checkouts = new AtomicLong();
+	
+	private final AtomicLong checkins = new AtomicLong();
+	
+	private final AtomicLong failures = new AtomicLong();
+	
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	
+	private final AtomicLong totalHoldNanos = new AtomicLong();
+	
+	private final AtomicLong maxHoldNanos = new AtomicLong();
+	
+	private final AtomicLong longCheckouts = new AtomicLong();
+	
+	/**
+	 * @param name e.g. "web" or "background"
+	 * @param dataSource the c3p0 pool
+	 * @param longCheckoutMillis how long a connection may be held before it is reported
+	 * @param captureStackTraces whether to remember where each connection was checked out, which
+	 *            costs a stack trace per checkout
+	 */
+	public MonitoredConnectionPool(String name, PooledDataSource dataSource, long longCheckoutMillis,
+	    boolean captureStackTraces) {
+		this.name = name;
+		this.dataSource = dataSource;
+		this.longCheckoutMillis = longCheckoutMillis;
+		this.captureStackTraces = captureStackTraces;
+	}
+	
+	/**
+	 * Takes a connection from the pool, waiting for one if they are all busy
+	 * 
+	 * @return the connection
+	 * @throws SQLException if no connection could be had, e.g. because the checkout timed out
+	 * @should report connections held for longer than the long checkout time
+	 */
+	public Connection checkout() throws SQLException {
+		waiting.incrementAndGet();
+		long start = System.nanoTime();
+		Connection connection;
+		try {
+			connection = dataSource.getConnection();
+		}
+		catch (SQLException e) {
+			failures.incrementAndGet();
+			throw e;
+		}
+		finally {
+			waiting.decrementAndGet();
+		}
+		
+		long now = System.nanoTime();
+		checkouts.incrementAndGet();
+		totalWaitNanos.addAndGet(now - start);
+		setMax(maxWaitNanos, now - start);
+		checkedOut.put(connection, new Checkout(Thread.currentThread(), now, captureStackTraces ? new Throwable()
+		        .getStackTrace() : null));
+		return connection;
+	}
+	
+	/**
+	 * Gives a connection from this pool back
+	 * 
+	 * @param connection the connection
+	 * @return false if the connection was not checked out from this pool, in which case it is left
+	 *         open
+	 * @throws SQLException
+	 * @should leave connections of other pools open
+	 */
+	public boolean checkin(Connection connection) throws SQLException {
+		Checkout checkout = checkedOut.remove(connection);
+		if (checkout == null)
+			return false;
+		
+		long held = System.nanoTime() - checkout.startNanos;
+		checkins.incrementAndGet();
+		totalHoldNanos.addAndGet(held);
+		setMax(maxHoldNanos, held);
+		if (longCheckoutMillis > 0 && held > longCheckoutMillis * 1000000L) {
+			longCheckouts.incrementAndGet();
+			// without a captured trace, the holding thread would only show this checkin
+			if (log.isWarnEnabled())
+				log.warn("A " + name + " connection was held for " + held / 1000000 + "ms by thread "
+				        + checkout.threadName
+				        + (checkout.isCheckoutStackTrace() ? checkout.getStackTrace() : ", set "
+				                + MonitoredConnectionProvider.CAPTURE_STACK_TRACES + " to log where it was checked out"));
+		}
+		
+		connection.close();
+		return true;
+	}
+	
+	/**
+	 * Closes all the connections of the pool
+	 */
+	public void destroy() {
+		try {
+			DataSources.destroy(dataSource);
+		}
+		catch (SQLException e) {
+			log.warn("Unable to close the " + name + " connection pool", e);
+		}
+	}
+	
+	/**
+	 * Sets the counts and timings back to zero, the connections in use are not affected
+	 */
+	public void reset() {
+		checkouts.set(0);
+		checkins.set(0);
+		failures.set(0);
+		totalWaitNanos.set(0);
+		maxWaitNanos.set(0);
+		totalHoldNanos.set(0);
+		maxHoldNanos.set(0);
+		longCheckouts.set(0);
+	}
+	
+	/**
+	 * @return the connections that have been checked out for longer than the long checkout time,
+	 *         longest first
+	 */
+	public List<Checkout> getLongCheckouts() {
+		long now = System.nanoTime();
+		List<Checkout> longOnes = new ArrayList<Checkout>();
+		synchronized (checkedOut) {
+			for (Checkout checkout : checkedOut.values()) {
+				if ((now - checkout.startNanos) / 1000000 > longCheckoutMillis)
+					longOnes.add(checkout);
+			}
+		}
+		Collections.sort(longOnes);
+		return longOnes;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return the connections in use, or -1 if the pool cannot tell
+	 */
+	public int getBusy() {
+		try {
+			return dataSource.getNumBusyConnectionsDefaultUser();
+		}
+		catch (SQLException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * @return the connections waiting in the pool to be used, or -1 if the pool cannot tell
+	 */
+	public int getIdle() {
+		try {
+			return dataSource.getNumIdleConnectionsDefaultUser();
+		}
+		catch (SQLException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * @return the threads waiting for a connection right now
+	 */
+	public int getWaiting() {
+		return waiting.get();
+	}
+	
+	public long getCheckouts() {
+		return checkouts.get();
+	}
+	
+	/**
+	 * @return the checkouts that failed, usually because no connection became free in time
+	 */
+	public long getFailures() {
+		return failures.get();
+	}
+	
+	public long getMeanWaitMillis() {
+		long count = checkouts.get();
+		return count == 0 ? 0 : totalWaitNanos.get() / count / 1000000;
+	}
+	
+	public long getMaxWaitMillis() {
+		return maxWaitNanos.get() / 1000000;
+	}
+	
+	/**
+	 * @return the mean time the connections checked in since the last reset were held for, i.e. the
+	 *         mean transaction time
+	 * @should average the connections checked in since the last reset
+	 */
+	public long getMeanHoldMillis() {
+		long count = checkins.get();
+		return count == 0 ? 0 : totalHoldNanos.get() / count / 1000000;
+	}
+	
+	public long getMaxHoldMillis() {
+		return maxHoldNanos.get() / 1000000;
+	}
+	
+	/**
+	 * @return the number of connections that were held for longer than the long checkout time
+	 */
+	public long getLongCheckoutCount() {
+		return longCheckouts.get();
+	}
+	
+	public long getLongCheckoutMillis() {
+		return longCheckoutMillis;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return name + " busy=" + getBusy() + " idle=" + getIdle() + " waiting=" + getWaiting() + " checkouts="
+		        + getCheckouts() + " failures=" + getFailures() + " meanWait=" + getMeanWaitMillis() + "ms maxWait="
+		        + getMaxWaitMillis() + "ms meanHold=" + getMeanHoldMillis() + "ms maxHold=" + getMaxHoldMillis()
+		        + "ms longHolds=" + getLongCheckoutCount();
+	}
+	
+	private static void setMax(AtomicLong max, long value) {
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value))
+			current = max.get();
+	}
+	
+	/**
+	 * A connection that is checked out right now
+	 */
+	public static class Checkout implements Comparable<Checkout> {
+		
+		private final Thread thread;
+		
+		private final String threadName;
+		
+		private final long startNanos;
+		
+		private final StackTraceElement[] stackTrace;
+		
+		private Checkout(Thread thread, long startNanos, StackTraceElement[] stackTrace) {
+			this.thread = thread;
+			this.threadName = thread.getName();
+			this.startNanos = startNanos;
+			this.stackTrace = stackTrace;
+		}
+		
+		public String getThreadName() {
+			return threadName;
+		}
+		
+		public long getHeldMillis() {
+			return (System.nanoTime() - startNanos) / 1000000;
+		}
+		
+		/**
+		 * @return where the connection was checked out if that was captured, else what the holding
+		 *         thread is doing now, one line per frame
+		 */
+		public String getStackTrace() {
+			StackTraceElement[] frames = stackTrace != null ? stackTrace : thread.getStackTrace();
+			StringBuilder trace = new StringBuilder();
+			for (StackTraceElement frame : frames)
+				trace.append("\n\tat ").append(frame);
+			return trace.toString();
+		}
+		
+		/**
+		 * @return whether the stack trace is where the connection was checked out, rather than
+		 *         where its thread is now
+		 */
+		public boolean isCheckoutStackTrace() {
+			return stackTrace != null;
+		}
+		
+		/**
+		 * Orders the longest held first
+		 * 
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+		 */
+		@Override
+		public int compareTo(Checkout other) {
+			return startNanos < other.startNanos ? -1 : (startNanos == other.startNanos ? 0 : 1);
+		}
+	}
+}
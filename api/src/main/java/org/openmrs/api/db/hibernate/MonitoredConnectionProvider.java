@@ -0,0 +1,235 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.Environment;
+import org.hibernate.connection.ConnectionProvider;
+import org.hibernate.connection.ConnectionProviderFactory;
+import org.hibernate.util.PropertiesHelper;
+import org.hibernate.util.ReflectHelper;
+import org.openmrs.api.context.Daemon;
+
+import com.mchange.v2.c3p0.DataSources;
+
+/**
+ * A c3p0 connection provider that keeps counts and timings of the connections it hands out, see
+ * {@link MonitoredConnectionPool}, and that can keep the scheduler's tasks, such as hl7 processing
+ * and data exports, out of the pool that serves the web requests. It takes the same
+ * hibernate.c3p0.* properties as hibernate's own C3P0ConnectionProvider. <br/>
+ * <br/>
+ * When hibernate.c3p0.background.max_size is more than zero, the connections of daemon threads come
+ * from a second "background" pool of that size, so long running background work cannot take all
+ * the connections the users need. Any other hibernate.c3p0.background.* property overrides the
+ * hibernate.c3p0.* property of the same name for that pool. <br/>
+ * <br/>
+ * A warning is logged when a connection is held for longer than
+ * hibernate.connection_monitor.long_checkout_millis. Setting
+ * hibernate.connection_monitor.capture_stack_traces to true records where each connection was
+ * checked out, which costs a stack trace per checkout; otherwise the long holders are shown with
+ * what their thread is doing at the time.
+ * 
+ * @since 1.10
+ */
+public class MonitoredConnectionProvider implements ConnectionProvider {
+	
+	private static final Log log = LogFactory.getLog(MonitoredConnectionProvider.class);
+	
+	public static final String WEB_POOL = "web";
+	
+	public static final String BACKGROUND_POOL = "background";
+	
+	public static final String BACKGROUND_PREFIX = "hibernate.c3p0.background.";
+	
+	public static final String LONG_CHECKOUT_MILLIS = "hibernate.connection_monitor.long_checkout_millis";
+	
+	public static final String CAPTURE_STACK_TRACES = "hibernate.connection_monitor.capture_stack_traces";
+	
+	/**
+	 * the hibernate names of the c3p0 settings, the others are passed on as they are
+	 */
+	private static final Map<String, String> C3P0_NAMES = new HashMap<String, String>();
+	
+	static {
+		C3P0_NAMES.put(Environment.C3P0_MAX_SIZE, "maxPoolSize");
+		C3P0_NAMES.put(Environment.C3P0_MIN_SIZE, "minPoolSize");
+		C3P0_NAMES.put(Environment.C3P0_TIMEOUT, "maxIdleTime");
+		C3P0_NAMES.put(Environment.C3P0_MAX_STATEMENTS, "maxStatements");
+		C3P0_NAMES.put(Environment.C3P0_ACQUIRE_INCREMENT, "acquireIncrement");
+		C3P0_NAMES.put(Environment.C3P0_IDLE_TEST_PERIOD, "idleConnectionTestPeriod");
+	}
+	
+	/**
+	 * the pools of all configured providers, for the admin page and jmx
+	 */
+	private static final List<MonitoredConnectionPool> allPools = new CopyOnWriteArrayList<MonitoredConnectionPool>();
+	
+	private MonitoredConnectionPool webPool;
+	
+	private MonitoredConnectionPool backgroundPool;
+	
+	private Integer isolation;
+	
+	private Boolean autocommit;
+	
+	/**
+	 * @return the pools of the session factories that are open, the web pool first
+	 */
+	public static List<MonitoredConnectionPool> getPools() {
+		return new ArrayList<MonitoredConnectionPool>(allPools);
+	}
+	
+	/**
+	 * @see org.hibernate.connection.ConnectionProvider#configure(java.util.Properties)
+	 */
+	@Override
+	public void configure(Properties props) throws HibernateException {
+		String url = props.getProperty(Environment.URL);
+		String driver = props.getProperty(Environment.DRIVER);
+		if (driver != null) {
+			try {
+				ReflectHelper.classForName(driver);
+			}
+			catch (ClassNotFoundException e) {
+				throw new HibernateException("JDBC driver class not found: " + driver, e);
+			}
+		}
+		
+		isolation = PropertiesHelper.getInteger(Environment.ISOLATION, props);
+		String autocommitValue = props.getProperty(Environment.AUTOCOMMIT);
+		autocommit = autocommitValue == null ? null : Boolean.valueOf(autocommitValue);
+		
+		long longCheckoutMillis = PropertiesHelper.getInt(LONG_CHECKOUT_MILLIS, props, 30000);
+		boolean captureStackTraces = PropertiesHelper.getBoolean(CAPTURE_STACK_TRACES, props, false);
+		
+		try {
+			DataSource unpooled = DataSources.unpooledDataSource(url, ConnectionProviderFactory
+			        .getConnectionProperties(props));
+			
+			webPool = new MonitoredConnectionPool(WEB_POOL, DataSources.pooledDataSource(unpooled, getC3p0Properties(
+			    props, false)), longCheckoutMillis, captureStackTraces);
+			allPools.add(webPool);
+			
+			if (PropertiesHelper.getInt(BACKGROUND_PREFIX + "max_size", props, 0) > 0) {
+				backgroundPool = new MonitoredConnectionPool(BACKGROUND_POOL, DataSources.pooledDataSource(unpooled,
+				    getC3p0Properties(props, true)), longCheckoutMillis, captureStackTraces);
+				allPools.add(backgroundPool);
+			}
+		}
+		catch (SQLException e) {
+			throw new HibernateException("Unable to create the connection pool", e);
+		}
+		
+		log.info("Connection pools: " + (backgroundPool == null ? WEB_POOL : WEB_POOL + ", " + BACKGROUND_POOL));
+	}
+	
+	/**
+	 * Daemon threads get their connections from the background pool, if there is one
+	 * 
+	 * @see org.hibernate.connection.ConnectionProvider#getConnection()
+	 */
+	@Override
+	public Connection getConnection() throws SQLException {
+		MonitoredConnectionPool pool = backgroundPool != null && Daemon.isDaemonThread() ? backgroundPool : webPool;
+		Connection connection = pool.checkout();
+		try {
+			if (isolation != null)
+				connection.setTransactionIsolation(isolation);
+			if (autocommit != null && connection.getAutoCommit() != autocommit)
+				connection.setAutoCommit(autocommit);
+		}
+		catch (SQLException e) {
+			pool.checkin(connection);
+			throw e;
+		}
+		return connection;
+	}
+	
+	/**
+	 * @see org.hibernate.connection.ConnectionProvider#closeConnection(java.sql.Connection)
+	 */
+	@Override
+	public void closeConnection(Connection connection) throws SQLException {
+		if (webPool.checkin(connection))
+			return;
+		if (backgroundPool != null && backgroundPool.checkin(connection))
+			return;
+		connection.close();
+	}
+	
+	/**
+	 * @see org.hibernate.connection.ConnectionProvider#close()
+	 */
+	@Override
+	public void close() throws HibernateException {
+		if (webPool != null) {
+			allPools.remove(webPool);
+			webPool.destroy();
+		}
+		if (backgroundPool != null) {
+			allPools.remove(backgroundPool);
+			backgroundPool.destroy();
+		}
+	}
+	
+	/**
+	 * @see org.hibernate.connection.ConnectionProvider#supportsAggressiveRelease()
+	 */
+	@Override
+	public boolean supportsAggressiveRelease() {
+		return false;
+	}
+	
+	/**
+	 * Turns the hibernate.c3p0.* properties into the properties c3p0 expects
+	 * 
+	 * @param props the hibernate properties
+	 * @param background whether the hibernate.c3p0.background.* properties override the others
+	 * @return c3p0's properties
+	 */
+	private static Properties getC3p0Properties(Properties props, boolean background) {
+		Map<String, String> settings = new HashMap<String, String>();
+		for (String key : props.stringPropertyNames()) {
+			if (key.startsWith("hibernate.c3p0.") && !key.startsWith(BACKGROUND_PREFIX)
+			        && !settings.containsKey(key))
+				settings.put(key, props.getProperty(key));
+			else if (background && key.startsWith(BACKGROUND_PREFIX))
+				settings.put("hibernate.c3p0." + key.substring(BACKGROUND_PREFIX.length()), props.getProperty(key));
+		}
+		
+		Properties c3p0Props = new Properties();
+		for (Map.Entry<String, String> setting : settings.entrySet()) {
+			String name = C3P0_NAMES.get(setting.getKey());
+			if (name == null)
+				name = setting.getKey().substring("hibernate.".length());
+			c3p0Props.setProperty(name.startsWith("c3p0.") ? name : "c3p0." + name, setting.getValue().trim());
+		}
+		if (!c3p0Props.containsKey("c3p0.initialPoolSize") && c3p0Props.containsKey("c3p0.minPoolSize"))
+			c3p0Props.setProperty("c3p0.initialPoolSize", c3p0Props.getProperty("c3p0.minPoolSize"));
+		return c3p0Props;
+	}
+}
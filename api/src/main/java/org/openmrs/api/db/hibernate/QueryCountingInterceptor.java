@@ -0,0 +1,94 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ * 
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ * 
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.io.Serializable;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.type.Type;
+
+/**
+ * Counts the sql statements that hibernate prepares and the entities and collections that it loads
+ * in each thread. The counts only ever go up, so callers take the difference between two readings
+ * to get the work done in between, e.g. by one service method call. The statements are also passed
+ * on to the {@link QueryProfiler}. Collection loads are counted by the
+ * {@link CollectionLoadCountingListener}, since interceptors are not told about them.
+ * 
+ * @see org.openmrs.aop.MetricsAdvice
+ * @since 1.10
+ */
+public class QueryCountingInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final int STATEMENTS = 0;
+	
+	private static final int ENTITY_LOADS = 1;
+	
+	private static final int COLLECTION_LOADS = 2;
+	
+	private static final ThreadLocal<long[]> counts = new ThreadLocal<long[]>() {
+		
+		@Override
+		protected long[] initialValue() {
+			return new long[3];
+		}
+	};
+	
+	/**
+	 * @return the number of sql statements prepared by the current thread so far
+	 */
+	public static long getStatementCount() {
+		return counts.get()[STATEMENTS];
+	}
+	
+	/**
+	 * @return the number of entities loaded by the current thread so far
+	 */
+	public static long getEntityLoadCount() {
+		return counts.get()[ENTITY_LOADS];
+	}
+	
+	/**
+	 * @return the number of collections loaded by the current thread so far
+	 * @since 1.10
+	 */
+	public static long getCollectionLoadCount() {
+		return counts.get()[COLLECTION_LOADS];
+	}
+	
+	static void collectionLoaded() {
+		counts.get()[COLLECTION_LOADS]++;
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onPrepareStatement(java.lang.String)
+	 */
+	@Override
+	public String onPrepareStatement(String sql) {
+		counts.get()[STATEMENTS]++;
+		QueryProfiler.statementPrepared(sql);
+		return sql;
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onLoad(java.lang.Object, java.io.Serializable,
+	 *      java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 */
+	@Override
+	public boolean onLoad(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		counts.get()[ENTITY_LOADS]++;
+		return false;
+	}
+}
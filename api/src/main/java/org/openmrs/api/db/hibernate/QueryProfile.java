@@ -0,0 +1,126 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The database work of one unit of work, i.e. a web request or a scheduled task, as recorded by the
+ * {@link QueryProfiler}. Hibernate prepares statements with '?' for their parameters, so the same
+ * statement text prepared many times is usually one query per row of an earlier result, the N+1
+ * pattern.
+ * 
+ * @since 1.10
+ */
+public class QueryProfile {
+	
+	private final String name;
+	
+	private final long startNanos;
+	
+	private final long startStatements;
+	
+	private final long startEntityLoads;
+	
+	private final long startCollectionLoads;
+	
+	/**
+	 * statement text to the number of times it was prepared
+	 */
+	private final Map<String, Integer> statementCounts = new HashMap<String, Integer>();
+	
+	private long millis;
+	
+	private long statements;
+	
+	private long entityLoads;
+	
+	private long collectionLoads;
+	
+	private String mostRepeatedStatement;
+	
+	private int mostRepeatedCount;
+	
+	/**
+	 * Starts the profile in the current thread
+	 * 
+	 * @param name the url or task name
+	 */
+	QueryProfile(String name) {
+		this.name = name;
+		startNanos = System.nanoTime();
+		startStatements = QueryCountingInterceptor.getStatementCount();
+		startEntityLoads = QueryCountingInterceptor.getEntityLoadCount();
+		startCollectionLoads = QueryCountingInterceptor.getCollectionLoadCount();
+	}
+	
+	void statementPrepared(String sql) {
+		Integer count = statementCounts.get(sql);
+		count = count == null ? 1 : count + 1;
+		statementCounts.put(sql, count);
+		if (count > mostRepeatedCount) {
+			mostRepeatedCount = count;
+			mostRepeatedStatement = sql;
+		}
+	}
+	
+	/**
+	 * Stops the profile, in the thread that started it
+	 */
+	void finish() {
+		millis = (System.nanoTime() - startNanos) / 1000000;
+		statements = QueryCountingInterceptor.getStatementCount() - startStatements;
+		entityLoads = QueryCountingInterceptor.getEntityLoadCount() - startEntityLoads;
+		collectionLoads = QueryCountingInterceptor.getCollectionLoadCount() - startCollectionLoads;
+		statementCounts.clear();
+	}
+	
+	/**
+	 * @return the url or task name
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	public long getMillis() {
+		return millis;
+	}
+	
+	public long getStatements() {
+		return statements;
+	}
+	
+	public long getEntityLoads() {
+		return entityLoads;
+	}
+	
+	public long getCollectionLoads() {
+		return collectionLoads;
+	}
+	
+	/**
+	 * @return the text of the statement that was prepared most often, null if there was none
+	 */
+	public String getMostRepeatedStatement() {
+		return mostRepeatedStatement;
+	}
+	
+	/**
+	 * @return how often the most repeated statement was prepared
+	 */
+	public int getMostRepeatedCount() {
+		return mostRepeatedCount;
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+/**
+ * The {@link QueryProfile}s of all the requests to one url, or all the runs of one task, added up
+ * 
+ * @since 1.10
+ */
+public class QueryProfileSummary {
+	
+	private final String name;
+	
+	private long count;
+	
+	private long flagged;
+	
+	private long totalMillis;
+	
+	private long maxMillis;
+	
+	private long totalStatements;
+	
+	private long maxStatements;
+	
+	private long totalEntityLoads;
+	
+	private long totalCollectionLoads;
+	
+	private String mostRepeatedStatement;
+	
+	private int mostRepeatedCount;
+	
+	/**
+	 * @param name the url or task name
+	 */
+	public QueryProfileSummary(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Adds a finished profile
+	 * 
+	 * @param profile a profile with the name of this summary
+	 * @param isFlagged whether the profile went over one of the thresholds
+	 */
+	public synchronized void add(QueryProfile profile, boolean isFlagged) {
+		count++;
+		if (isFlagged)
+			flagged++;
+		totalMillis += profile.getMillis();
+		maxMillis = Math.max(maxMillis, profile.getMillis());
+		totalStatements += profile.getStatements();
+		maxStatements = Math.max(maxStatements, profile.getStatements());
+		totalEntityLoads += profile.getEntityLoads();
+		totalCollectionLoads += profile.getCollectionLoads();
+		if (profile.getMostRepeatedCount() > mostRepeatedCount) {
+			mostRepeatedCount = profile.getMostRepeatedCount();
+			mostRepeatedStatement = profile.getMostRepeatedStatement();
+		}
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return the number of requests or task runs
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+	
+	/**
+	 * @return the number of requests or task runs that went over one of the thresholds
+	 */
+	public synchronized long getFlagged() {
+		return flagged;
+	}
+	
+	public synchronized long getTotalStatements() {
+		return totalStatements;
+	}
+	
+	public synchronized long getMaxStatements() {
+		return maxStatements;
+	}
+	
+	public synchronized long getMeanStatements() {
+		return count == 0 ? 0 : totalStatements / count;
+	}
+	
+	public synchronized long getMeanEntityLoads() {
+		return count == 0 ? 0 : totalEntityLoads / count;
+	}
+	
+	public synchronized long getMeanCollectionLoads() {
+		return count == 0 ? 0 : totalCollectionLoads / count;
+	}
+	
+	public synchronized long getMeanMillis() {
+		return count == 0 ? 0 : totalMillis / count;
+	}
+	
+	public synchronized long getMaxMillis() {
+		return maxMillis;
+	}
+	
+	/**
+	 * @return the statement that was repeated most often within one request or task run
+	 */
+	public synchronized String getMostRepeatedStatement() {
+		return mostRepeatedStatement;
+	}
+	
+	/**
+	 * @return how often the most repeated statement was prepared within that request or task run
+	 */
+	public synchronized int getMostRepeatedCount() {
+		return mostRepeatedCount;
+	}
+}
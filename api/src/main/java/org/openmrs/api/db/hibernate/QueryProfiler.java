@@ -0,0 +1,300 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.util.GlobalPropertySettings;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * An opt-in diagnostic that counts the sql statements and the entity and collection loads of each
+ * web request and scheduled task, to find the ones that run too many queries, often because of N+1
+ * lazy loading. The OpenmrsFilter and the scheduler call {@link #begin(String)} and {@link #end()}
+ * around their unit of work, and the {@link QueryCountingInterceptor} passes on each statement. <br/>
+ * <br/>
+ * It is switched on with the {@link OpenmrsConstants#GP_QUERY_PROFILER_ENABLED} global property.
+ * A request or task is flagged, and logged as one line of key=value pairs at WARN level, when it
+ * goes over one of the thresholds in the other queryProfiler.* global properties: the number of
+ * statements, the number of times the same statement is repeated and the duration. The totals per
+ * url or task are kept for the query profiles page.
+ * 
+ * @since 1.10
+ */
+public class QueryProfiler implements GlobalPropertyListener {
+	
+	private static final Log log = LogFactory.getLog(QueryProfiler.class);
+	
+	/**
+	 * the most urls and tasks to keep totals for, later ones are added up under {@link #OTHER}
+	 */
+	public static final int MAX_SUMMARIES = 500;
+	
+	public static final String OTHER = "(other)";
+	
+	/**
+	 * path parameters, e.g. ";jsessionid=..."
+	 */
+	private static final Pattern PATH_PARAMETERS = Pattern.compile(";[^/]*");
+	
+	/**
+	 * path segments that are numeric ids or uuids
+	 */
+	private static final Pattern ID_SEGMENTS = Pattern.compile("/(\\d+|[0-9a-fA-F-]{36})(?=/|$)");
+	
+	private static final ThreadLocal<QueryProfile> currentProfile = new ThreadLocal<QueryProfile>();
+	
+	private static final ConcurrentMap<String, QueryProfileSummary> summaries = new ConcurrentHashMap<String, QueryProfileSummary>();
+	
+	private static final GlobalPropertySettings<Settings> settings = new GlobalPropertySettings<Settings>(
+	        OpenmrsConstants.GP_QUERY_PROFILER_ENABLED, OpenmrsConstants.GP_QUERY_PROFILER_STATEMENT_THRESHOLD,
+	        OpenmrsConstants.GP_QUERY_PROFILER_REPEATED_STATEMENT_THRESHOLD,
+	        OpenmrsConstants.GP_QUERY_PROFILER_DURATION_THRESHOLD) {
+		
+		@Override
+		protected Settings parse(Map<String, String> values) {
+			return new Settings(values);
+		}
+	};
+	
+	/**
+	 * Starts profiling the current thread's unit of work, if the profiler is enabled and no other
+	 * profile has been started in this thread
+	 * 
+	 * @param name the url or task name that the profile is added up under
+	 * @should record the statements until end is called
+	 */
+	public static void begin(String name) {
+		if (currentProfile.get() != null || !isEnabled())
+			return;
+		
+		currentProfile.set(new QueryProfile(name));
+	}
+	
+	/**
+	 * Stops profiling the current thread's unit of work, adds it to the totals of its name and logs
+	 * it if it went over a threshold
+	 * 
+	 * @return the finished profile, or null if there was none
+	 * @should flag the profile when a statement is repeated too often
+	 */
+	public static QueryProfile end() {
+		QueryProfile profile = currentProfile.get();
+		if (profile == null)
+			return null;
+		
+		currentProfile.remove();
+		profile.finish();
+		if (profile.getStatements() == 0 && profile.getEntityLoads() == 0)
+			return profile; // e.g. a static file
+		
+		Settings current = settings.get();
+		List<String> exceeded = current == null ? new ArrayList<String>() : current.getExceededThresholds(profile);
+		getSummary(profile.getName()).add(profile, !exceeded.isEmpty());
+		
+		if (!exceeded.isEmpty() && log.isWarnEnabled())
+			log.warn(format(profile, exceeded));
+		else if (log.isDebugEnabled())
+			log.debug(format(profile, exceeded));
+		
+		return profile;
+	}
+	
+	/**
+	 * Called for every sql statement that hibernate prepares
+	 * 
+	 * @param sql the statement text
+	 */
+	public static void statementPrepared(String sql) {
+		QueryProfile profile = currentProfile.get();
+		if (profile != null)
+			profile.statementPrepared(sql);
+	}
+	
+	/**
+	 * @return the totals per url and task, with the most statements first
+	 */
+	public static List<QueryProfileSummary> getSummaries() {
+		List<QueryProfileSummary> list = new ArrayList<QueryProfileSummary>(summaries.values());
+		Collections.sort(list, new Comparator<QueryProfileSummary>() {
+			
+			@Override
+			public int compare(QueryProfileSummary s1, QueryProfileSummary s2) {
+				long t1 = s1.getTotalStatements();
+				long t2 = s2.getTotalStatements();
+				return t1 < t2 ? 1 : (t1 == t2 ? 0 : -1);
+			}
+		});
+		return list;
+	}
+	
+	/**
+	 * @param name a url or task name
+	 * @return the totals of the given url or task, which are added the first time they are asked for
+	 */
+	public static QueryProfileSummary getSummary(String name) {
+		QueryProfileSummary summary = summaries.get(name);
+		if (summary == null) {
+			if (summaries.size() >= MAX_SUMMARIES)
+				name = OTHER;
+			QueryProfileSummary added = new QueryProfileSummary(name);
+			summary = summaries.putIfAbsent(name, added);
+			if (summary == null)
+				summary = added;
+		}
+		return summary;
+	}
+	
+	/**
+	 * Turns a request path into the name that its profile is added up under, so that the urls of
+	 * one page or rest resource share their totals instead of each taking one of the
+	 * {@link #MAX_SUMMARIES}: path parameters are dropped and the path segments that are ids or
+	 * uuids are replaced with "{id}"
+	 * 
+	 * @param path the request uri without the context path
+	 * @return the name
+	 * @should replace the ids and uuids in the path
+	 */
+	public static String getUrlName(String path) {
+		String name = PATH_PARAMETERS.matcher(path).replaceAll("");
+		return ID_SEGMENTS.matcher(name).replaceAll("/{id}");
+	}
+	
+	/**
+	 * Drops the totals of all urls and tasks
+	 */
+	public static void clear() {
+		summaries.clear();
+	}
+	
+	/**
+	 * @return whether requests and tasks are being profiled
+	 */
+	public static boolean isEnabled() {
+		Settings current = settings.get();
+		return current != null && current.enabled;
+	}
+	
+	/**
+	 * @return the global property names and the values that the profiler is using
+	 */
+	public static Map<String, String> getSettings() {
+		return new HashMap<String, String>(settings.getValues());
+	}
+	
+	private static String format(QueryProfile profile, List<String> exceeded) {
+		StringBuilder line = new StringBuilder("queryProfile name=\"").append(profile.getName()).append("\"");
+		if (!exceeded.isEmpty())
+			line.append(" flagged=").append(StringUtils.join(exceeded, ','));
+		line.append(" millis=").append(profile.getMillis());
+		line.append(" statements=").append(profile.getStatements());
+		line.append(" entityLoads=").append(profile.getEntityLoads());
+		line.append(" collectionLoads=").append(profile.getCollectionLoads());
+		if (profile.getMostRepeatedStatement() != null) {
+			line.append(" mostRepeatedCount=").append(profile.getMostRepeatedCount());
+			line.append(" mostRepeatedStatement=\"").append(profile.getMostRepeatedStatement()).append("\"");
+		}
+		return line.toString();
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyChanged(org.openmrs.GlobalProperty)
+	 */
+	@Override
+	public void globalPropertyChanged(GlobalProperty newValue) {
+		settings.globalPropertyChanged(newValue);
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyDeleted(java.lang.String)
+	 */
+	@Override
+	public void globalPropertyDeleted(String propertyName) {
+		settings.globalPropertyDeleted(propertyName);
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#supportsPropertyName(java.lang.String)
+	 */
+	@Override
+	public boolean supportsPropertyName(String propertyName) {
+		return settings.supportsPropertyName(propertyName);
+	}
+	
+	/**
+	 * The thresholds parsed from the global properties
+	 */
+	private static class Settings {
+		
+		private final boolean enabled;
+		
+		private final long statementThreshold;
+		
+		private final long repeatedStatementThreshold;
+		
+		private final long durationThreshold;
+		
+		public Settings(Map<String, String> values) {
+			enabled = "true".equalsIgnoreCase(StringUtils.trimToEmpty(values
+			        .get(OpenmrsConstants.GP_QUERY_PROFILER_ENABLED)));
+			statementThreshold = getThreshold(values, OpenmrsConstants.GP_QUERY_PROFILER_STATEMENT_THRESHOLD);
+			repeatedStatementThreshold = getThreshold(values,
+			    OpenmrsConstants.GP_QUERY_PROFILER_REPEATED_STATEMENT_THRESHOLD);
+			durationThreshold = getThreshold(values, OpenmrsConstants.GP_QUERY_PROFILER_DURATION_THRESHOLD);
+		}
+		
+		/**
+		 * @return the names of the thresholds the profile went over
+		 */
+		public List<String> getExceededThresholds(QueryProfile profile) {
+			List<String> exceeded = new ArrayList<String>();
+			if (statementThreshold > 0 && profile.getStatements() > statementThreshold)
+				exceeded.add("statements");
+			if (repeatedStatementThreshold > 0 && profile.getMostRepeatedCount() > repeatedStatementThreshold)
+				exceeded.add("repeatedStatement");
+			if (durationThreshold > 0 && profile.getMillis() > durationThreshold)
+				exceeded.add("duration");
+			return exceeded;
+		}
+		
+		/**
+		 * @return the threshold, or 0 to not check it when the value is not a number
+		 */
+		private static long getThreshold(Map<String, String> values, String property) {
+			String value = StringUtils.trimToNull(values.get(property));
+			if (value != null) {
+				try {
+					return Long.parseLong(value);
+				}
+				catch (NumberFormatException e) {
+					log.warn("The " + property + " global property should be a number, not " + value);
+				}
+			}
+			return 0;
+		}
+	}
+}
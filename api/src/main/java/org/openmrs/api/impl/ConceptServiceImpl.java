@@ -304,6 +304,8 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 		// add/remove entries in the concept_word table (used for searching)
 		this.updateConceptIndex(conceptToReturn);
 		
+		dao.updateConceptSetClosure(conceptToReturn);
+		
 		return conceptToReturn;
 	}
 	
@@ -1388,6 +1390,26 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 		return conceptWords;
 	}
 	
+	/**
+	 * @see org.openmrs.api.ConceptService#getConceptIdsByConceptSet(org.openmrs.Concept)
+	 */
+	@Transactional(readOnly = true)
+	public int[] getConceptIdsByConceptSet(Concept concept) throws APIException {
+		List<Integer> conceptIds = dao.getConceptIdsByConceptSet(concept);
+		int[] ret = new int[conceptIds.size()];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = conceptIds.get(i);
+		}
+		return ret;
+	}
+	
+	/**
+	 * @see org.openmrs.api.ConceptService#rebuildConceptSetClosure()
+	 */
+	public void rebuildConceptSetClosure() throws APIException {
+		dao.rebuildConceptSetClosure();
+	}
+	
 	/**
 	 * Utility method used by getConceptsInSet(Concept concept)
 	 * 
@@ -1933,6 +1955,17 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 		dao.updateConceptWord(concept);
 	}
 	
+	/**
+	 * @see ConceptService#updateConceptIndexes(List, boolean, boolean)
+	 */
+	@Override
+	public List<Concept> updateConceptIndexes(List<Concept> concepts, boolean onlyChanged, boolean dryRun)
+	        throws APIException {
+		if (!dryRun)
+			checkIfLocked();
+		return dao.updateConceptWords(concepts, onlyChanged, dryRun);
+	}
+	
 	/**
 	 * @see ConceptService#updateConceptIndexes()
 	 */
@@ -2300,6 +2333,28 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 		return dao.getConceptsByName(name, locale, exactLocale);
 	}
 	
+	/**
+	 * @see org.openmrs.api.ConceptService#getConceptBatch(java.lang.Integer, java.lang.Integer,
+	 *      boolean)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<Concept> getConceptBatch(Integer afterConceptId, Integer maxResults, boolean includeRetired)
+	        throws APIException {
+		return dao.getConceptBatch(afterConceptId, maxResults, includeRetired);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ConceptService#getConceptsForListing(java.util.List)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<Concept> getConceptsForListing(List<Integer> conceptIds) throws APIException {
+		if (conceptIds == null || conceptIds.isEmpty())
+			return new ArrayList<Concept>();
+		return dao.getConceptsForListing(conceptIds);
+	}
+	
 	/**
 	 * @see org.openmrs.api.ConceptService#getDefaultConceptMapType()
 	 */
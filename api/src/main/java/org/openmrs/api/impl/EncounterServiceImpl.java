@@ -20,6 +20,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 
 import org.apache.commons.lang.StringUtils;
@@ -32,6 +33,7 @@ import org.openmrs.Location;
 import org.openmrs.Obs;
 import org.openmrs.Order;
 import org.openmrs.Patient;
+import org.openmrs.Person;
 import org.openmrs.Privilege;
 import org.openmrs.Provider;
 import org.openmrs.User;
@@ -46,6 +48,8 @@ import org.openmrs.api.context.Context;
 import org.openmrs.api.db.EncounterDAO;
 import org.openmrs.api.handler.EncounterVisitHandler;
 import org.openmrs.util.HandlerUtil;
+import org.openmrs.util.KeysetPage;
+import org.openmrs.util.KeysetToken;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
@@ -68,6 +72,10 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 	
 	// private Log log = LogFactory.getLog(this.getClass());
 	
+	private static final String PATIENT_ENCOUNTERS_KEYSET_KIND = "patientEncounters";
+	
+	private static final String ENCOUNTER_SEARCH_KEYSET_KIND = "encounterSearch";
+	
 	private EncounterDAO dao;
 	
 	/**
@@ -123,6 +131,8 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 		Date originalDate = null;
 		Location newLocation = encounter.getLocation();
 		Location originalLocation = null;
+		// the patients the obs of the encounter are moved away from
+		Set<Person> previousPersons = new HashSet<Person>();
 		// check permissions
 		if (encounter.getEncounterId() == null) {
 			isNewEncounter = true;
@@ -176,6 +186,7 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 				// if the Person in the obs doesn't match the Patient in the
 				// encounter, fix it
 				if (!obs.getPerson().getPersonId().equals(p.getPatientId())) {
+					previousPersons.add(obs.getPerson());
 					obs.setPerson(p);
 				}
 			}
@@ -191,6 +202,19 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 		// do the actual saving to the database
 		dao.saveEncounter(encounter);
 		
+		// the obs of the encounter are saved through it rather than through the obs service
+		try {
+			Context.addProxyPrivilege(PrivilegeConstants.EDIT_OBS);
+			ObsService os = Context.getObsService();
+			os.updateObsSummaries(encounter.getPatient(), encounter.getAllObs(true));
+			for (Person previousPerson : previousPersons) {
+				os.updateObsSummaries(previousPerson, encounter.getAllObs(true));
+			}
+		}
+		finally {
+			Context.removeProxyPrivilege(PrivilegeConstants.EDIT_OBS);
+		}
+		
 		return encounter;
 	}
 	
@@ -220,6 +244,23 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 		return getEncounters(patient, null, null, null, null, null, null, false);
 	}
 	
+	/**
+	 * @see org.openmrs.api.EncounterService#getEncountersByPatient(org.openmrs.Patient, boolean,
+	 *      java.lang.String, int)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public KeysetPage<Encounter> getEncountersByPatient(Patient patient, boolean includeVoided, String continuationToken,
+	        int length) throws APIException {
+		if (patient == null)
+			throw new IllegalArgumentException("The 'patient' parameter is requred and cannot be null");
+		if (length < 1)
+			throw new IllegalArgumentException("The 'length' parameter must be positive");
+		KeysetToken after = KeysetToken.decode(PATIENT_ENCOUNTERS_KEYSET_KIND, continuationToken);
+		return createEncounterPage(dao.getEncountersByPatient(patient, includeVoided, after, length + 1), length,
+		    PATIENT_ENCOUNTERS_KEYSET_KIND);
+	}
+	
 	/**
 	 * @see org.openmrs.api.EncounterService#getEncountersByPatient(String)
 	 */
@@ -280,7 +321,7 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 	public List<Encounter> getEncounters(Patient who, Location loc, Date fromDate, Date toDate,
 	        Collection<Form> enteredViaForms, Collection<EncounterType> encounterTypes, Collection<User> providers,
 	        boolean includeVoided) {
-		return filterEncountersByViewPermissions(dao.getEncounters(who, loc, fromDate, toDate, enteredViaForms,
+		return filterEncountersByViewPermissions(dao.getEncounters(who, loc, false, fromDate, toDate, enteredViaForms,
 		    encounterTypes, usersToProviders(providers), null, null, includeVoided), null);
 	}
 	
@@ -311,8 +352,24 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 	public List<Encounter> getEncounters(Patient who, Location loc, Date fromDate, Date toDate,
 	        Collection<Form> enteredViaForms, Collection<EncounterType> encounterTypes, Collection<Provider> providers,
 	        Collection<VisitType> visitTypes, Collection<Visit> visits, boolean includeVoided) {
-		return filterEncountersByViewPermissions(dao.getEncounters(who, loc, fromDate, toDate, enteredViaForms,
-		    encounterTypes, providers, visitTypes, visits, includeVoided), null);
+		return getEncounters(who, loc, false, fromDate, toDate, enteredViaForms, encounterTypes, providers, visitTypes,
+		    visits, includeVoided);
+	}
+	
+	/**
+	 * @see org.openmrs.api.EncounterService#getEncounters(org.openmrs.Patient,
+	 *      org.openmrs.Location, boolean, java.util.Date, java.util.Date, java.util.Collection,
+	 *      java.util.Collection, java.util.Collection, java.util.Collection, java.util.Collection,
+	 *      boolean)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<Encounter> getEncounters(Patient who, Location loc, boolean includeChildLocations, Date fromDate,
+	        Date toDate, Collection<Form> enteredViaForms, Collection<EncounterType> encounterTypes,
+	        Collection<Provider> providers, Collection<VisitType> visitTypes, Collection<Visit> visits,
+	        boolean includeVoided) {
+		return filterEncountersByViewPermissions(dao.getEncounters(who, loc, includeChildLocations, fromDate, toDate,
+		    enteredViaForms, encounterTypes, providers, visitTypes, visits, includeVoided), null);
 	}
 	
 	/**
@@ -704,6 +761,41 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 		return filterEncountersByViewPermissions(dao.getEncounters(query, start, length, includeVoided), null);
 	}
 	
+	/**
+	 * @see org.openmrs.api.EncounterService#getEncounters(java.lang.String, boolean,
+	 *      java.lang.String, int)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public KeysetPage<Encounter> getEncounters(String query, boolean includeVoided, String continuationToken, int length)
+	        throws APIException {
+		if (length < 1)
+			throw new IllegalArgumentException("The 'length' parameter must be positive");
+		KeysetToken after = KeysetToken.decode(ENCOUNTER_SEARCH_KEYSET_KIND, continuationToken);
+		return createEncounterPage(dao.getEncounters(query, includeVoided, after, length + 1), length,
+		    ENCOUNTER_SEARCH_KEYSET_KIND);
+	}
+	
+	/**
+	 * Turns the encounters fetched for a keyset page, which include one more encounter than the
+	 * page length if there is a next page, into the page of encounters the user may see
+	 * 
+	 * @param encounters the encounters fetched for the page
+	 * @param length the length of the page
+	 * @param kind the kind of listing, so that its tokens are not accepted by other listings
+	 * @return the page
+	 */
+	private KeysetPage<Encounter> createEncounterPage(List<Encounter> encounters, int length, String kind) {
+		String continuationToken = null;
+		if (encounters.size() > length) {
+			encounters = new ArrayList<Encounter>(encounters.subList(0, length));
+			// the token is taken before filtering so that hidden encounters are not fetched again
+			Encounter last = encounters.get(length - 1);
+			continuationToken = new KeysetToken(kind, last.getEncounterDatetime(), last.getEncounterId()).encode();
+		}
+		return new KeysetPage<Encounter>(filterEncountersByViewPermissions(encounters, null), continuationToken);
+	}
+	
 	/**
 	 * @see org.openmrs.api.EncounterService#getCountOfEncounters(java.lang.String, boolean)
 	 */
@@ -84,7 +84,9 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 		
 		CustomDatatypeUtil.saveAttributesIfNecessary(location);
 		
-		return dao.saveLocation(location);
+		Location savedLocation = dao.saveLocation(location);
+		dao.updateLocationClosure(savedLocation);
+		return savedLocation;
 	}
 	
 	/**
@@ -458,4 +460,27 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 		Context.getAdministrationService().setGlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_ADDRESS_TEMPLATE, xml);
 		
 	}
+	
+	/**
+	 * @see org.openmrs.api.LocationService#getDescendantLocations(org.openmrs.Location, boolean)
+	 */
+	@Transactional(readOnly = true)
+	public List<Location> getDescendantLocations(Location location, boolean includeRetired) {
+		return dao.getDescendantLocations(location, includeRetired);
+	}
+	
+	/**
+	 * @see org.openmrs.api.LocationService#getAncestorLocations(org.openmrs.Location)
+	 */
+	@Transactional(readOnly = true)
+	public List<Location> getAncestorLocations(Location location) {
+		return dao.getAncestorLocations(location);
+	}
+	
+	/**
+	 * @see org.openmrs.api.LocationService#rebuildLocationClosure()
+	 */
+	public void rebuildLocationClosure() {
+		dao.rebuildLocationClosure();
+	}
 }
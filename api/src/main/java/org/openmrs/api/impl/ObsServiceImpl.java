@@ -13,32 +13,47 @@
  */
 package org.openmrs.api.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.Vector;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.openmrs.Cohort;
 import org.openmrs.Concept;
 import org.openmrs.ConceptName;
 import org.openmrs.Encounter;
+import org.openmrs.GlobalProperty;
 import org.openmrs.Location;
 import org.openmrs.MimeType;
 import org.openmrs.Obs;
+import org.openmrs.ObsSummary;
 import org.openmrs.Patient;
 import org.openmrs.Person;
 import org.openmrs.aop.RequiredDataAdvice;
 import org.openmrs.api.APIException;
+import org.openmrs.api.AdministrationService;
 import org.openmrs.api.EncounterService;
+import org.openmrs.api.GlobalPropertyListener;
 import org.openmrs.api.ObsService;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.ObsDAO;
 import org.openmrs.api.handler.SaveHandler;
+import org.openmrs.obs.ComplexData;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.FileComplexObsHandler;
+import org.openmrs.util.KeysetPage;
+import org.openmrs.util.KeysetToken;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
@@ -52,7 +67,14 @@ import org.springframework.transaction.annotation.Transactional;
  * @see org.openmrs.api.ObsService
  */
 @Transactional
-public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
+public class ObsServiceImpl extends BaseOpenmrsService implements ObsService, GlobalPropertyListener {
+	
+	private static final String OBS_KEYSET_KIND = "obs";
+	
+	private static final Log log = LogFactory.getLog(ObsServiceImpl.class);
+	
+	// the ids of the concepts whose summaries are stored, null until the global property is read
+	private static volatile Set<Integer> obsSummaryConceptIds = null;
 	
 	/**
 	 * The data access object for the obs service
@@ -108,13 +130,18 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 		
 		if (obs.getObsId() == null) {
 			Context.requirePrivilege(PrivilegeConstants.ADD_OBS);
-			return dao.saveObs(obs);
+			Obs savedObs = dao.saveObs(obs);
+			updateObsSummaries(savedObs);
+			return savedObs;
 		} else {
 			Context.requirePrivilege(PrivilegeConstants.EDIT_OBS);
 			
 			if (changeMessage == null)
 				throw new APIException("ChangeMessage is required when updating an obs in the database");
 			
+			// the person the obs is saved under, in case it is being moved to another one
+			Integer savedPersonId = dao.getSavedPersonId(obs);
+			
 			// get a copy of the passed in obs and save it to the
 			// database. This allows us to create a new row and new obs_id
 			// this method doesn't copy the obs_id
@@ -155,6 +182,11 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 				Context.removeProxyPrivilege(PrivilegeConstants.DELETE_OBS);
 			}
 			
+			updateObsSummaries(newObs);
+			// voiding the original updated the person it was read back under, which is the new
+			// person if the change was already flushed
+			if (savedPersonId != null && !savedPersonId.equals(obs.getPerson().getPersonId()))
+				updateObsSummaries(new Person(savedPersonId), Collections.singleton(newObs));
 			return newObs;
 		}
 	}
@@ -185,7 +217,9 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 	 * @throws APIException
 	 */
 	public Obs voidObs(Obs obs, String reason) throws APIException {
-		return dao.saveObs(obs);
+		Obs voidedObs = dao.saveObs(obs);
+		updateObsSummaries(voidedObs);
+		return voidedObs;
 	}
 	
 	/**
@@ -200,7 +234,9 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 	 * @throws APIException
 	 */
 	public Obs unvoidObs(Obs obs) throws APIException {
-		return dao.saveObs(obs);
+		Obs unvoidedObs = dao.saveObs(obs);
+		updateObsSummaries(unvoidedObs);
+		return unvoidedObs;
 	}
 	
 	/**
@@ -219,6 +255,7 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 		}
 		
 		dao.deleteObs(obs);
+		updateObsSummaries(obs);
 	}
 	
 	/**
@@ -305,14 +342,54 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 	        List<Concept> answers, List<PERSON_TYPE> personTypes, List<Location> locations, List<String> sort,
 	        Integer mostRecentN, Integer obsGroupId, Date fromDate, Date toDate, boolean includeVoidedObs)
 	        throws APIException {
+		return getObservations(whom, encounters, questions, answers, personTypes, locations, false, sort, mostRecentN,
+		    obsGroupId, fromDate, toDate, includeVoidedObs);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getObservations(java.util.List, java.util.List,
+	 *      java.util.List, java.util.List, List, List, boolean, java.util.List, java.lang.Integer,
+	 *      java.lang.Integer, java.util.Date, java.util.Date, boolean)
+	 */
+	@Transactional(readOnly = true)
+	public List<Obs> getObservations(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Concept> answers, List<PERSON_TYPE> personTypes, List<Location> locations, boolean includeChildLocations,
+	        List<String> sort, Integer mostRecentN, Integer obsGroupId, Date fromDate, Date toDate,
+	        boolean includeVoidedObs) throws APIException {
 		
 		if (sort == null)
 			sort = new Vector<String>();
 		if (sort.isEmpty())
 			sort.add("obsDatetime");
 		
-		return dao.getObservations(whom, encounters, questions, answers, personTypes, locations, sort, mostRecentN,
-		    obsGroupId, fromDate, toDate, includeVoidedObs);
+		return dao.getObservations(whom, encounters, questions, answers, personTypes, locations, includeChildLocations,
+		    sort, mostRecentN, obsGroupId, fromDate, toDate, includeVoidedObs);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getObservations(java.util.List, java.util.List,
+	 *      java.util.List, java.util.List, java.util.List, java.util.List, java.lang.Integer,
+	 *      java.util.Date, java.util.Date, boolean, java.lang.String, int)
+	 */
+	@Transactional(readOnly = true)
+	public KeysetPage<Obs> getObservations(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Concept> answers, List<PERSON_TYPE> personTypes, List<Location> locations, Integer obsGroupId,
+	        Date fromDate, Date toDate, boolean includeVoidedObs, String continuationToken, int length)
+	        throws APIException {
+		if (length < 1)
+			throw new IllegalArgumentException("The 'length' parameter must be positive");
+		
+		KeysetToken after = KeysetToken.decode(OBS_KEYSET_KIND, continuationToken);
+		List<Obs> obs = dao.getObservations(whom, encounters, questions, answers, personTypes, locations, obsGroupId,
+		    fromDate, toDate, includeVoidedObs, after, length + 1);
+		
+		String nextToken = null;
+		if (obs.size() > length) {
+			obs = obs.subList(0, length);
+			Obs last = obs.get(length - 1);
+			nextToken = new KeysetToken(OBS_KEYSET_KIND, last.getObsDatetime(), last.getObsId()).encode();
+		}
+		return new KeysetPage<Obs>(obs, nextToken);
 	}
 	
 	/**
@@ -566,6 +643,185 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 		return getObservations(whom, null, questions, null, null, null, null, null, null, null, null, false);
 	}
 	
+	/**
+	 * @see org.openmrs.api.ObsService#getNumericObsValues(org.openmrs.Person, org.openmrs.Concept,
+	 *      java.util.Date, java.util.Date)
+	 */
+	@Transactional(readOnly = true)
+	public List<Object[]> getNumericObsValues(Person who, Concept question, Date fromDate, Date toDate)
+	        throws APIException {
+		return dao.getNumericObsValues(who, question, fromDate, toDate);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getObsVersion(org.openmrs.Person, java.util.List)
+	 */
+	@Transactional(readOnly = true)
+	public String getObsVersion(Person who, List<Concept> questions) throws APIException {
+		if (questions == null || questions.isEmpty())
+			return null;
+		return dao.getObsVersion(who, questions);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getObsSummaries(java.util.List, java.util.List)
+	 */
+	@Transactional(readOnly = true)
+	public List<ObsSummary> getObsSummaries(List<Person> whom, List<Concept> questions) throws APIException {
+		List<ObsSummary> summaries = new ArrayList<ObsSummary>();
+		if (questions == null || questions.isEmpty())
+			return summaries;
+		
+		Set<Integer> storedConceptIds = getObsSummaryConceptIds();
+		List<Concept> storedQuestions = new ArrayList<Concept>();
+		List<Concept> computedQuestions = new ArrayList<Concept>();
+		for (Concept question : questions) {
+			if (storedConceptIds.contains(question.getConceptId()))
+				storedQuestions.add(question);
+			else
+				computedQuestions.add(question);
+		}
+		
+		if (!storedQuestions.isEmpty())
+			summaries.addAll(dao.getStoredObsSummaries(whom, storedQuestions));
+		if (!computedQuestions.isEmpty())
+			summaries.addAll(dao.getObsSummaries(whom, computedQuestions));
+		return summaries;
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#updateObsSummaries(org.openmrs.Person)
+	 */
+	public void updateObsSummaries(Person person) throws APIException {
+		Set<Integer> conceptIds = getObsSummaryConceptIds();
+		if (person != null && person.getPersonId() != null && !conceptIds.isEmpty())
+			dao.updateObsSummaries(person, conceptIds);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#updateObsSummaries(org.openmrs.Person, java.util.Collection)
+	 */
+	public void updateObsSummaries(Person person, Collection<Obs> obs) throws APIException {
+		Set<Integer> storedConceptIds = getObsSummaryConceptIds();
+		if (person == null || person.getPersonId() == null || obs == null || storedConceptIds.isEmpty())
+			return;
+		
+		Set<Integer> conceptIds = new HashSet<Integer>();
+		for (Obs o : obs) {
+			addObsSummaryConceptIds(o, storedConceptIds, conceptIds);
+		}
+		if (!conceptIds.isEmpty())
+			dao.updateObsSummaries(person, conceptIds);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#updateObsSummaries()
+	 */
+	public void updateObsSummaries() throws APIException {
+		Set<Integer> listedConceptIds = parseConceptIds(OpenmrsConstants.GLOBAL_PROPERTY_OBS_SUMMARY_CONCEPTS);
+		Set<Integer> storedConceptIds = parseConceptIds(OpenmrsConstants.GLOBAL_PROPERTY_OBS_SUMMARY_STORED_CONCEPTS);
+		
+		dao.deleteObsSummaries(listedConceptIds);
+		for (Integer conceptId : listedConceptIds) {
+			if (!storedConceptIds.contains(conceptId))
+				dao.storeObsSummaries(conceptId);
+		}
+		
+		// the listener of the global property makes the new summaries used
+		AdministrationService as = Context.getAdministrationService();
+		GlobalProperty gp = as.getGlobalPropertyObject(OpenmrsConstants.GLOBAL_PROPERTY_OBS_SUMMARY_STORED_CONCEPTS);
+		if (gp == null)
+			gp = new GlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_OBS_SUMMARY_STORED_CONCEPTS);
+		gp.setPropertyValue(StringUtils.join(new TreeSet<Integer>(listedConceptIds), ","));
+		as.saveGlobalProperty(gp);
+	}
+	
+	/**
+	 * Brings the stored summaries of the person of the given obs up to date for the concepts of the
+	 * obs and its group members
+	 * 
+	 * @param obs the obs that was saved, voided, unvoided or purged
+	 */
+	private void updateObsSummaries(Obs obs) {
+		updateObsSummaries(obs.getPerson(), Collections.singleton(obs));
+	}
+	
+	private void addObsSummaryConceptIds(Obs obs, Set<Integer> storedConceptIds, Set<Integer> conceptIds) {
+		if (obs.getConcept() != null && storedConceptIds.contains(obs.getConcept().getConceptId()))
+			conceptIds.add(obs.getConcept().getConceptId());
+		if (obs.isObsGrouping()) {
+			for (Obs member : obs.getGroupMembers(true)) {
+				addObsSummaryConceptIds(member, storedConceptIds, conceptIds);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the ids of the concepts whose summaries are stored in the obs_summary table, parsing the
+	 * global property the first time and again after it changes. These are the concepts the table
+	 * was last rebuilt for, which are kept up to date until the next rebuild even if they are no
+	 * longer listed.
+	 * 
+	 * @return the concept ids, empty if no summaries are stored
+	 */
+	private static Set<Integer> getObsSummaryConceptIds() {
+		Set<Integer> conceptIds = obsSummaryConceptIds;
+		if (conceptIds == null) {
+			synchronized (ObsServiceImpl.class) {
+				if (obsSummaryConceptIds == null)
+					obsSummaryConceptIds = parseConceptIds(OpenmrsConstants.GLOBAL_PROPERTY_OBS_SUMMARY_STORED_CONCEPTS);
+				conceptIds = obsSummaryConceptIds;
+			}
+		}
+		return conceptIds;
+	}
+	
+	private static Set<Integer> parseConceptIds(String propertyName) {
+		String value = Context.getAdministrationService().getGlobalProperty(propertyName, "");
+		Set<Integer> conceptIds = new HashSet<Integer>();
+		for (String conceptIdOrUuid : value.split(",")) {
+			conceptIdOrUuid = conceptIdOrUuid.trim();
+			if (conceptIdOrUuid.length() == 0)
+				continue;
+			
+			if (conceptIdOrUuid.matches("\\d+")) {
+				conceptIds.add(Integer.valueOf(conceptIdOrUuid));
+			} else {
+				Concept concept = Context.getConceptService().getConceptByUuid(conceptIdOrUuid);
+				if (concept != null)
+					conceptIds.add(concept.getConceptId());
+				else
+					log.warn("Ignoring unknown concept '" + conceptIdOrUuid + "' in the " + propertyName
+					        + " global property");
+			}
+		}
+		return Collections.unmodifiableSet(conceptIds);
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#supportsPropertyName(java.lang.String)
+	 */
+	public boolean supportsPropertyName(String propertyName) {
+		return OpenmrsConstants.GLOBAL_PROPERTY_OBS_SUMMARY_STORED_CONCEPTS.equals(propertyName);
+	}
+	
+	/**
+	 * Forgets the ids of the concepts whose summaries are stored when the obs_summary table has
+	 * been rebuilt
+	 * 
+	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyChanged(org.openmrs.GlobalProperty)
+	 */
+	public void globalPropertyChanged(GlobalProperty newValue) {
+		obsSummaryConceptIds = null;
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyDeleted(java.lang.String)
+	 */
+	public void globalPropertyDeleted(String propertyName) {
+		obsSummaryConceptIds = null;
+	}
+	
 	/**
 	 * @see org.openmrs.api.ObsService#getLastNObservations(java.lang.Integer, org.openmrs.Person,
 	 *      org.openmrs.Concept, boolean includeVoided)
@@ -744,6 +1000,28 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 		return obs;
 	}
 	
+	/**
+	 * @see org.openmrs.api.ObsService#getComplexObsFile(java.lang.Integer, java.lang.String)
+	 */
+	@Transactional(readOnly = true)
+	public Obs getComplexObsFile(Integer obsId, String view) throws APIException {
+		Obs obs = dao.getObs(obsId);
+		
+		if (obs != null && obs.isComplex()) {
+			ComplexObsHandler handler = getHandler(obs);
+			if (handler instanceof FileComplexObsHandler) {
+				ComplexData complexData = ((FileComplexObsHandler) handler).getComplexDataAsFile(obs, view);
+				if (complexData != null) {
+					obs.setComplexData(complexData);
+					return obs;
+				}
+			}
+			return handler.getObs(obs, view);
+		}
+		
+		return obs;
+	}
+	
 	/**
 	 * Internal method to remove ComplexData when an Obs is purged.
 	 */
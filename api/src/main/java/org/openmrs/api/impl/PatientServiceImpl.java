@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -29,13 +30,13 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Concept;
-import org.openmrs.Encounter;
 import org.openmrs.Location;
 import org.openmrs.Obs;
 import org.openmrs.Order;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifier;
 import org.openmrs.PatientIdentifierType;
+import org.openmrs.PatientIdentifierType.UniquenessBehavior;
 import org.openmrs.PatientProgram;
 import org.openmrs.Person;
 import org.openmrs.PersonAddress;
@@ -43,23 +44,20 @@ import org.openmrs.PersonAttribute;
 import org.openmrs.PersonName;
 import org.openmrs.Relationship;
 import org.openmrs.User;
-import org.openmrs.Visit;
 import org.openmrs.activelist.Allergy;
 import org.openmrs.activelist.Problem;
 import org.openmrs.api.APIException;
 import org.openmrs.api.BlankIdentifierException;
 import org.openmrs.api.DuplicateIdentifierException;
-import org.openmrs.api.EncounterService;
+import org.openmrs.api.IdentifierNotUniqueException;
 import org.openmrs.api.InsufficientIdentifiersException;
 import org.openmrs.api.MissingRequiredIdentifierException;
-import org.openmrs.api.ObsService;
 import org.openmrs.api.OrderService;
 import org.openmrs.api.PatientIdentifierException;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.PersonService;
 import org.openmrs.api.ProgramWorkflowService;
 import org.openmrs.api.UserService;
-import org.openmrs.api.VisitService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.PatientDAO;
 import org.openmrs.order.OrderUtil;
@@ -72,6 +70,8 @@ import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
 import org.openmrs.validator.PatientIdentifierValidator;
+import org.openmrs.validator.PatientValidator;
+import org.openmrs.validator.ValidateUtil;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -95,6 +95,11 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 	 */
 	private static Map<Class<? extends IdentifierValidator>, IdentifierValidator> identifierValidators = null;
 	
+	/**
+	 * The number of patients saved by {@link #savePatients(List)} between flushes of the session
+	 */
+	private static final int SAVE_PATIENTS_BATCH_SIZE = 100;
+	
 	/**
 	 * @see org.openmrs.api.PatientService#setPatientDAO(org.openmrs.api.db.PatientDAO)
 	 */
@@ -146,6 +151,68 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 		return dao.savePatient(patient);
 	}
 	
+	/**
+	 * @see org.openmrs.api.PatientService#savePatients(java.util.List)
+	 */
+	public List<Patient> savePatients(List<Patient> patients) throws APIException {
+		// the unique identifiers of all patients, to find duplicates among the patients themselves
+		Map<String, PatientIdentifier> uniqueIdentifiers = new HashMap<String, PatientIdentifier>();
+		List<PatientIdentifier> identifiersToCheck = new ArrayList<PatientIdentifier>();
+		
+		for (Patient patient : patients) {
+			if (patient.getPatientId() == null)
+				Context.requirePrivilege(PrivilegeConstants.ADD_PATIENTS);
+			else
+				Context.requirePrivilege(PrivilegeConstants.EDIT_PATIENTS);
+			if (patient.isVoided()) {
+				Context.requirePrivilege(PrivilegeConstants.DELETE_PATIENTS);
+			}
+			
+			if (patient.getIdentifiers().size() == 1) {
+				patient.getPatientIdentifier().setPreferred(true);
+			}
+			
+			if (!patient.isVoided())
+				checkPatientIdentifiers(patient, false);
+			
+			// the advice only validates the list, and the identifiers of all patients are checked below
+			PatientValidator.setCheckIdentifierUniqueness(false);
+			try {
+				ValidateUtil.validate(patient);
+			}
+			finally {
+				PatientValidator.setCheckIdentifierUniqueness(true);
+			}
+			
+			if (patient.isVoided())
+				continue;
+			
+			for (PatientIdentifier pi : patient.getActiveIdentifiers()) {
+				UniquenessBehavior uniqueness = pi.getIdentifierType().getUniquenessBehavior();
+				if (uniqueness == UniquenessBehavior.NON_UNIQUE)
+					continue;
+				
+				String key = pi.getIdentifier() + " id type #: " + pi.getIdentifierType().getPatientIdentifierTypeId();
+				if (uniqueness == UniquenessBehavior.LOCATION && pi.getLocation() != null)
+					key += " location #: " + pi.getLocation().getLocationId();
+				PatientIdentifier other = uniqueIdentifiers.put(key, pi);
+				if (other != null && other.getPatient() != patient)
+					throw new IdentifierNotUniqueException(PatientIdentifierValidator.getNotUniqueMessage(pi), pi);
+				identifiersToCheck.add(pi);
+			}
+		}
+		
+		PatientIdentifierValidator.validateIdentifiersAreUnique(identifiersToCheck);
+		
+		List<Patient> saved = new ArrayList<Patient>(patients.size());
+		for (Patient patient : patients) {
+			saved.add(dao.savePatient(patient));
+			if (saved.size() % SAVE_PATIENTS_BATCH_SIZE == 0)
+				Context.flushSession();
+		}
+		return saved;
+	}
+	
 	/**
 	 * @see org.openmrs.api.PatientService#getPatient(java.lang.Integer)
 	 */
@@ -231,25 +298,32 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 	 */
 	@Transactional(readOnly = true)
 	public void checkPatientIdentifiers(Patient patient) throws PatientIdentifierException {
+		checkPatientIdentifiers(patient, true);
+	}
+	
+	/**
+	 * Checks the identifiers of the given patient, see {@link #checkPatientIdentifiers(Patient)}.
+	 * All identifiers are checked against the other patients with a single query.
+	 * 
+	 * @param patient the patient whose identifiers to check
+	 * @param checkUniqueness whether to check that no other patient has any of the identifiers, so
+	 *            callers checking many patients at once can do that for all of them together
+	 */
+	private void checkPatientIdentifiers(Patient patient, boolean checkUniqueness) throws PatientIdentifierException {
 		// check patient has at least one identifier
 		if (!patient.isVoided() && patient.getActiveIdentifiers().size() < 1)
 			throw new InsufficientIdentifiersException("At least one nonvoided Patient Identifier is required");
 		
-		List<PatientIdentifier> identifiers = new Vector<PatientIdentifier>();
-		identifiers.addAll(patient.getIdentifiers());
-		List<String> identifiersUsed = new Vector<String>();
-		List<PatientIdentifierType> requiredTypes = Context.getPatientService().getPatientIdentifierTypes(null, null, true,
-		    null);
-		if (requiredTypes == null)
-			requiredTypes = new ArrayList<PatientIdentifierType>();
-		List<PatientIdentifierType> foundRequiredTypes = new ArrayList<PatientIdentifierType>();
+		List<PatientIdentifier> identifiers = new ArrayList<PatientIdentifier>(patient.getIdentifiers());
+		Set<String> identifiersUsed = new HashSet<String>();
+		Map<Integer, String> missingRequiredTypes = new LinkedHashMap<Integer, String>(getRequiredIdentifierTypes());
 		
 		for (PatientIdentifier pi : identifiers) {
 			if (pi.isVoided())
 				continue;
 			
 			try {
-				checkPatientIdentifier(pi);
+				PatientIdentifierValidator.validateIdentifier(pi, false);
 			}
 			catch (BlankIdentifierException bie) {
 				patient.removeIdentifier(pi);
@@ -257,13 +331,7 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 			}
 			
 			// check if this is a required identifier
-			for (PatientIdentifierType requiredType : requiredTypes) {
-				if (pi.getIdentifierType().equals(requiredType)) {
-					foundRequiredTypes.add(requiredType);
-					requiredTypes.remove(requiredType);
-					break;
-				}
-			}
+			missingRequiredTypes.remove(pi.getIdentifierType().getPatientIdentifierTypeId());
 			
 			// TODO: check patient has at least one "sufficient" identifier
 			// TODO: what makes a patient identifier unique ... can you have the
@@ -271,26 +339,36 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 			// 		 check duplicate algorithm does not handle this case
 			
 			// check this patient for duplicate identifiers+identifierType
-			if (identifiersUsed.contains(pi.getIdentifier() + " id type #: "
+			if (!identifiersUsed.add(pi.getIdentifier() + " id type #: "
 			        + pi.getIdentifierType().getPatientIdentifierTypeId())) {
 				throw new DuplicateIdentifierException("This patient has two identical identifiers of type "
 				        + pi.getIdentifierType().getName() + ": " + pi.getIdentifier(), pi);
-			} else {
-				identifiersUsed.add(pi.getIdentifier() + " id type #: "
-				        + pi.getIdentifierType().getPatientIdentifierTypeId());
 			}
 		}
 		
-		if (requiredTypes.size() > 0) {
-			String missingNames = "";
-			for (PatientIdentifierType pit : requiredTypes) {
-				missingNames += (missingNames.length() > 0) ? ", " + pit.getName() : pit.getName();
-			}
+		if (checkUniqueness)
+			PatientIdentifierValidator.validateIdentifiersAreUnique(identifiers);
+		
+		if (missingRequiredTypes.size() > 0) {
 			throw new MissingRequiredIdentifierException("Patient is missing the following required identifier(s): "
-			        + missingNames);
+			        + StringUtils.join(missingRequiredTypes.values(), ", "));
 		}
 	}
 	
+	/**
+	 * The lookup is served by the {@link org.openmrs.api.db.hibernate.MetadataQueryCache}, which
+	 * drops it when an identifier type is saved or purged and again when that transaction completes
+	 * 
+	 * @return the names of the required identifier types keyed by their ids
+	 */
+	private Map<Integer, String> getRequiredIdentifierTypes() {
+		Map<Integer, String> requiredTypes = new LinkedHashMap<Integer, String>();
+		for (PatientIdentifierType type : dao.getPatientIdentifierTypes(null, null, true, null)) {
+			requiredTypes.put(type.getPatientIdentifierTypeId(), type.getName());
+		}
+		return requiredTypes;
+	}
+	
 	/**
 	 * @see org.openmrs.api.PatientService#checkPatientIdentifier(org.openmrs.PatientIdentifier)
 	 * @deprecated use {@link PatientIdentifierValidator#validateIdentifier(PatientIdentifier)}
@@ -710,7 +788,11 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 	 * 1) Moves object (encounters/obs) pointing to <code>nonPreferred</code> to
 	 * <code>preferred</code> 2) Copies data (gender/birthdate/names/ids/etc) from
 	 * <code>nonPreferred</code> to <code>preferred</code> iff the data is missing or null in
-	 * <code>preferred</code> 3) <code>notPreferred</code> is marked as voided
+	 * <code>preferred</code> 3) <code>notPreferred</code> is marked as voided <br/>
+	 * <br/>
+	 * Visits, encounters (with their obs and orders) and independent obs are moved with set based
+	 * updates instead of saving each object, so the time a merge takes does not grow with the size
+	 * of the patient's record.
 	 * 
 	 * @param preferred
 	 * @param notPreferred
@@ -729,24 +811,14 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 		
 		// move all visits, including voided ones (encounters will be handled below)
 		// TODO: this should be a copy, not a move
-		VisitService vs = Context.getVisitService();
-		for (Visit v : vs.getVisitsByPatient(notPreferred, true, true)) {
-			if (log.isDebugEnabled()) {
-				log.debug("Merging visit " + v.getVisitId() + " to " + preferred.getPatientId());
-			}
-			v.setPatient(preferred);
-			Visit persisted = vs.saveVisit(v);
-			mergedData.addMovedVisit(persisted.getUuid());
+		for (String uuid : dao.mergeVisits(preferred, notPreferred)) {
+			mergedData.addMovedVisit(uuid);
 		}
 		
-		// change all encounters, including voided ones. This will cascade to obs and orders contained in those encounters
+		// change all encounters, including voided ones, together with the obs and orders contained in those encounters
 		// TODO: this should be a copy, not a move
-		EncounterService es = Context.getEncounterService();
-		for (Encounter e : es.getEncounters(notPreferred, null, null, null, null, null, null, null, null, true)) {
-			e.setPatient(preferred);
-			log.debug("Merging encounter " + e.getEncounterId() + " to " + preferred.getPatientId());
-			Encounter persisted = es.saveEncounter(e);
-			mergedData.addMovedEncounter(persisted.getUuid());
+		for (String uuid : dao.mergeEncounters(preferred, notPreferred)) {
+			mergedData.addMovedEncounter(uuid);
 		}
 		
 		// copy all program enrollments
@@ -807,13 +879,18 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 		
 		// move all obs that weren't contained in encounters
 		// TODO: this should be a copy, not a move
-		ObsService obsService = Context.getObsService();
-		for (Obs obs : obsService.getObservationsByPerson(notPreferred)) {
-			if (obs.getEncounter() == null && !obs.isVoided()) {
-				obs.setPerson(preferred);
-				Obs persisted = obsService.saveObs(obs, "Merged from patient #" + notPreferred.getPatientId());
-				mergedData.addMovedIndependentObservation(persisted.getUuid());
-			}
+		for (String uuid : dao.mergeIndependentObs(preferred, notPreferred)) {
+			mergedData.addMovedIndependentObservation(uuid);
+		}
+		
+		// the obs were moved with set based updates, so the obs service did not see them change
+		try {
+			Context.addProxyPrivilege(PrivilegeConstants.EDIT_OBS);
+			Context.getObsService().updateObsSummaries(preferred);
+			Context.getObsService().updateObsSummaries(notPreferred);
+		}
+		finally {
+			Context.removeProxyPrivilege(PrivilegeConstants.EDIT_OBS);
 		}
 		
 		// copy all orders that weren't contained in encounters
@@ -1344,6 +1421,14 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 		return dao.isIdentifierInUseByAnotherPatient(patientIdentifier);
 	}
 	
+	/**
+	 * @see org.openmrs.api.PatientService#getPatientIdentifiersInUseByAnotherPatient(java.util.List)
+	 */
+	@Transactional(readOnly = true)
+	public List<PatientIdentifier> getPatientIdentifiersInUseByAnotherPatient(List<PatientIdentifier> patientIdentifiers) {
+		return dao.getPatientIdentifiersInUseByAnotherPatient(patientIdentifiers);
+	}
+	
 	/**
 	 * @see org.openmrs.api.PatientService#getPatientIdentifier(java.lang.Integer)
 	 */
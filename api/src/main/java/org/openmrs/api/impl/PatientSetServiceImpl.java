@@ -28,7 +28,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Cohort;
 import org.openmrs.Concept;
-import org.openmrs.ConceptSet;
 import org.openmrs.Drug;
 import org.openmrs.DrugOrder;
 import org.openmrs.Encounter;
@@ -185,6 +184,14 @@ public class PatientSetServiceImpl extends BaseOpenmrsService implements Patient
 		return getPatientSetDAO().getPatientsHavingLocation(locationId, method);
 	}
 	
+	/**
+	 * @see org.openmrs.api.PatientSetService#getPatientsHavingLocation(org.openmrs.Location,
+	 *      org.openmrs.api.PatientSetService.PatientLocationMethod, boolean)
+	 */
+	public Cohort getPatientsHavingLocation(Location loc, PatientLocationMethod method, boolean includeChildLocations) {
+		return getPatientSetDAO().getPatientsHavingLocation(loc.getLocationId(), method, includeChildLocations);
+	}
+	
 	/**
 	 * Returns a PatientSet of patient who had drug orders for a set of drugs active on a certain
 	 * date. Can also be used to find patient with no drug orders on that date.
@@ -443,32 +450,19 @@ public class PatientSetServiceImpl extends BaseOpenmrsService implements Patient
 	 *         null)
 	 */
 	public Map<Integer, List<DrugOrder>> getCurrentDrugOrders(Cohort ps, Concept drugSet) {
-		List<Concept> drugConcepts = null;
-		if (drugSet != null) {
-			List<ConceptSet> concepts = Context.getConceptService().getConceptSetsByConcept(drugSet);
-			drugConcepts = new ArrayList<Concept>();
-			for (ConceptSet cs : concepts) {
-				drugConcepts.add(cs.getConcept());
-			}
-		}
 		log.debug("drugSet: " + drugSet);
-		log.debug("drugConcepts: " + drugConcepts);
-		return getPatientSetDAO().getCurrentDrugOrders(ps, drugConcepts);
+		if (drugSet == null)
+			return getPatientSetDAO().getCurrentDrugOrders(ps, null);
+		return getPatientSetDAO().getCurrentDrugOrdersInConceptSet(ps, drugSet);
 	}
 	
 	/**
 	 * @return all drug orders whose drug concept is in the given set (or all drugs if that's null)
 	 */
 	public Map<Integer, List<DrugOrder>> getDrugOrders(Cohort ps, Concept drugSet) {
-		List<Concept> drugConcepts = null;
-		if (drugSet != null) {
-			List<ConceptSet> concepts = Context.getConceptService().getConceptSetsByConcept(drugSet);
-			drugConcepts = new ArrayList<Concept>();
-			for (ConceptSet cs : concepts) {
-				drugConcepts.add(cs.getConcept());
-			}
-		}
-		return getPatientSetDAO().getDrugOrders(ps, drugConcepts);
+		if (drugSet == null)
+			return getPatientSetDAO().getDrugOrders(ps, null);
+		return getPatientSetDAO().getDrugOrdersInConceptSet(ps, drugSet);
 	}
 	
 	/**
@@ -34,6 +34,8 @@ import org.openmrs.api.VisitService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.VisitDAO;
 import org.openmrs.customdatatype.CustomDatatypeUtil;
+import org.openmrs.util.KeysetPage;
+import org.openmrs.util.KeysetToken;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.PrivilegeConstants;
 import org.openmrs.validator.ValidateUtil;
@@ -48,6 +50,8 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public class VisitServiceImpl extends BaseOpenmrsService implements VisitService {
 	
+	private static final String VISIT_KEYSET_KIND = "visit";
+	
 	private VisitDAO dao;
 	
 	/**
@@ -271,6 +275,33 @@ public class VisitServiceImpl extends BaseOpenmrsService implements VisitService
 		    includeInactive, includeVoided);
 	}
 	
+	/**
+	 * @see org.openmrs.api.VisitService#getVisitsByPatient(org.openmrs.Patient, boolean, boolean,
+	 *      java.lang.String, int)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public KeysetPage<Visit> getVisitsByPatient(Patient patient, boolean includeInactive, boolean includeVoided,
+	        String continuationToken, int length) throws APIException {
+		if (length < 1)
+			throw new IllegalArgumentException("The 'length' parameter must be positive");
+		
+		KeysetToken after = KeysetToken.decode(VISIT_KEYSET_KIND, continuationToken);
+		if (patient == null || patient.getId() == null)
+			return new KeysetPage<Visit>(new ArrayList<Visit>(), null);
+		
+		List<Visit> visits = dao.getVisits(Collections.singletonList(patient), includeInactive, includeVoided, after,
+		    length + 1);
+		
+		String nextToken = null;
+		if (visits.size() > length) {
+			visits = visits.subList(0, length);
+			Visit last = visits.get(length - 1);
+			nextToken = new KeysetToken(VISIT_KEYSET_KIND, last.getStartDatetime(), last.getVisitId()).encode();
+		}
+		return new KeysetPage<Visit>(visits, nextToken);
+	}
+	
 	/**
 	 * @see org.openmrs.api.VisitService#getAllVisitAttributeTypes()
 	 */
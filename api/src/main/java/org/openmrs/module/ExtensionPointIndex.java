@@ -0,0 +1,136 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openmrs.module.Extension.MEDIA_TYPE;
+
+/**
+ * An immutable index of the extensions of the started modules by extension point id. It is built
+ * from the {@link ModuleFactory#getExtensionMap()} whenever a module starts or stops, so that
+ * looking up the extensions of a point does not merge the extensions of each media type into the
+ * stored lists on every call. <br/>
+ * <br/>
+ * The extensions of a point id without a media type are the extensions registered for that exact
+ * id followed by the extensions registered for the point id with each {@link MEDIA_TYPE}. All of
+ * the lists returned are unmodifiable.
+ */
+public class ExtensionPointIndex {
+	
+	/**
+	 * An index without any extensions
+	 */
+	public static final ExtensionPointIndex EMPTY = new ExtensionPointIndex(Collections
+	        .<String, List<Extension>> emptyMap());
+	
+	// the extensions registered for each extension id, with or without media type
+	private final Map<String, List<Extension>> exactExtensions = new HashMap<String, List<Extension>>();
+	
+	// the extensions of each point id including all media types
+	private final Map<String, List<Extension>> pointExtensions = new HashMap<String, List<Extension>>();
+	
+	/**
+	 * Builds the index of the given extensions
+	 * 
+	 * @param extensionMap the extensions keyed on extension id, as stored by the ModuleFactory
+	 * @return the compiled index
+	 */
+	public static ExtensionPointIndex build(Map<String, List<Extension>> extensionMap) {
+		return new ExtensionPointIndex(extensionMap);
+	}
+	
+	private ExtensionPointIndex(Map<String, List<Extension>> extensionMap) {
+		Set<String> pointIds = new HashSet<String>();
+		for (Map.Entry<String, List<Extension>> entry : extensionMap.entrySet()) {
+			String extensionId = entry.getKey();
+			if (extensionId == null || entry.getValue() == null || entry.getValue().isEmpty())
+				continue;
+			
+			exactExtensions.put(extensionId, Collections.unmodifiableList(new ArrayList<Extension>(entry.getValue())));
+			
+			int separator = extensionId.indexOf(Extension.extensionIdSeparator);
+			pointIds.add(separator < 0 ? extensionId : extensionId.substring(0, separator));
+		}
+		
+		for (String pointId : pointIds) {
+			List<Extension> extensions = new ArrayList<Extension>();
+			List<Extension> pointIdExtensions = exactExtensions.get(pointId);
+			if (pointIdExtensions != null)
+				extensions.addAll(pointIdExtensions);
+			
+			for (MEDIA_TYPE mediaType : MEDIA_TYPE.values()) {
+				List<Extension> mediaTypeExtensions = exactExtensions.get(Extension.toExtensionId(pointId, mediaType));
+				if (mediaTypeExtensions != null) {
+					// the list should be unique
+					for (Extension extension : mediaTypeExtensions) {
+						if (!extensions.contains(extension))
+							extensions.add(extension);
+					}
+				}
+			}
+			
+			pointExtensions.put(pointId, Collections.unmodifiableList(extensions));
+		}
+	}
+	
+	/**
+	 * Returns the extensions of the given point. If the point id has no media type, the extensions
+	 * of every media type of the point are included.
+	 * 
+	 * @param pointId the extension point id, with or without a media type
+	 * @return an unmodifiable list of the extensions, never null
+	 * @should return the extensions of all media types for a point id without media type
+	 * @should return only the extensions of the media type for a point id with media type
+	 * @should not return an extension twice
+	 * @should return an empty list for an unknown point id
+	 */
+	public List<Extension> getExtensions(String pointId) {
+		List<Extension> extensions = null;
+		if (pointId != null) {
+			if (pointId.contains(Extension.extensionIdSeparator))
+				extensions = exactExtensions.get(pointId);
+			else
+				extensions = pointExtensions.get(pointId);
+		}
+		
+		if (extensions == null)
+			return Collections.emptyList();
+		return extensions;
+	}
+	
+	/**
+	 * Returns the extensions of the given point and media type, or all of the extensions of the
+	 * point if there are none for that media type
+	 * 
+	 * @param pointId the extension point id
+	 * @param mediaType the media type
+	 * @return an unmodifiable list of the extensions, never null
+	 * @should return the extensions of the media type
+	 * @should return the extensions of the point if there are none for the media type
+	 */
+	public List<Extension> getExtensions(String pointId, MEDIA_TYPE mediaType) {
+		List<Extension> extensions = exactExtensions.get(Extension.toExtensionId(pointId, mediaType));
+		if (extensions == null)
+			return getExtensions(pointId);
+		return extensions;
+	}
+	
+}
@@ -156,7 +156,7 @@ public class ModuleClassLoader extends URLClassLoader {
 	 * @param module Module in which to look
 	 * @return List<URL> of all urls found (and cached) in the module
 	 */
-	private static List<URL> getUrls(final Module module) {
+	static List<URL> getUrls(final Module module) {
 		List<URL> result = new LinkedList<URL>();
 		
 		File tmpModuleDir = getLibCacheFolderForModule(module);
@@ -1003,6 +1003,7 @@ public class ModuleClassLoader extends URLClassLoader {
 	 */
 	public void setAdditionalPackages(Set<String> additionalPackages) {
 		this.additionalPackages = additionalPackages;
+		OpenmrsClassLoader.moduleClassLoadersChanged();
 	}
 	
 	/**
@@ -1018,8 +1019,8 @@ public class ModuleClassLoader extends URLClassLoader {
 		
 		// its pointless to add a package that is below the module's package
 		// name because we are automatically looking at that in the classloader
-		if (!additionalPackage.startsWith(module.getPackageName()))
-			this.additionalPackages.add(additionalPackage);
+		if (!additionalPackage.startsWith(module.getPackageName()) && this.additionalPackages.add(additionalPackage))
+			OpenmrsClassLoader.moduleClassLoadersChanged();
 	}
 	
 	/**
@@ -0,0 +1,150 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmrs.util.CharTrieNode;
+
+/**
+ * An immutable index of the module classloaders by the packages they own, i.e. the package of
+ * their module and their {@link ModuleClassLoader#getAdditionalPackages()}. It is built whenever a
+ * module starts or stops, so that finding the classloaders that may have a class does not compare
+ * the class name to the packages of every module on each class load. <br/>
+ * <br/>
+ * The packages are stored in a character trie. Every node that ends a package holds the
+ * classloaders owning that package or any shorter package on the path to it, so looking up a class
+ * name walks the trie once and returns the list of the deepest package node it passed. A class name
+ * matches a package if it starts with it, just like before.
+ */
+public class ModuleClassLoaderRoutingTable {
+	
+	/**
+	 * A routing table without any classloaders
+	 */
+	public static final ModuleClassLoaderRoutingTable EMPTY = new ModuleClassLoaderRoutingTable(Collections
+	        .<ModuleClassLoader> emptyList());
+	
+	private final Node root = new Node();
+	
+	/**
+	 * Builds the routing table for the given classloaders
+	 * 
+	 * @param classLoaders the classloaders in the order in which they should be tried
+	 * @return the compiled routing table
+	 */
+	public static ModuleClassLoaderRoutingTable build(Collection<ModuleClassLoader> classLoaders) {
+		return new ModuleClassLoaderRoutingTable(classLoaders);
+	}
+	
+	private ModuleClassLoaderRoutingTable(Collection<ModuleClassLoader> classLoaders) {
+		ModuleClassLoader[] loaders = classLoaders.toArray(new ModuleClassLoader[classLoaders.size()]);
+		for (int i = 0; i < loaders.length; i++) {
+			String packageName = loaders[i].getModule().getPackageName();
+			if (packageName != null)
+				getOrCreateNode(packageName).packages.set(i);
+			
+			Collection<String> additionalPackages = loaders[i].getAdditionalPackages();
+			if (additionalPackages != null) {
+				for (String additionalPackage : additionalPackages) {
+					if (additionalPackage != null)
+						getOrCreateNode(additionalPackage).packages.set(i);
+				}
+			}
+		}
+		
+		compile(root, new BitSet(), loaders, new HashMap<BitSet, List<ModuleClassLoader>>());
+	}
+	
+	/**
+	 * Returns the classloaders owning a package the given class name starts with
+	 * 
+	 * @param className the fully qualified name of a class
+	 * @return an immutable list of the classloaders in the order they were given, never null
+	 * @should return the classloaders of the module package
+	 * @should return the classloaders of an additional package
+	 * @should match packages the class name starts with
+	 * @should return the classloaders in the order they were given
+	 * @should return an empty list if no package matches
+	 */
+	public List<ModuleClassLoader> getClassLoaders(String className) {
+		List<ModuleClassLoader> result = root.classLoaders;
+		if (className == null)
+			return result;
+		
+		Node node = root;
+		int length = className.length();
+		for (int i = 0; i < length; i++) {
+			node = node.child(className.charAt(i));
+			if (node == null)
+				break;
+			if (node.classLoaders != null)
+				result = node.classLoaders;
+		}
+		return result;
+	}
+	
+	private Node getOrCreateNode(String packageName) {
+		return root.getOrCreateDescendant(packageName);
+	}
+	
+	/**
+	 * Resolves the classloader lists of the given node and its children
+	 * 
+	 * @param node the node to compile
+	 * @param inherited the classloaders owning packages on the path to this node
+	 */
+	private void compile(Node node, BitSet inherited, ModuleClassLoader[] loaders,
+	        Map<BitSet, List<ModuleClassLoader>> listCache) {
+		BitSet matches = inherited;
+		if (node == root || !node.packages.isEmpty()) {
+			matches = (BitSet) inherited.clone();
+			matches.or(node.packages);
+			
+			List<ModuleClassLoader> list = listCache.get(matches);
+			if (list == null) {
+				List<ModuleClassLoader> classLoaders = new ArrayList<ModuleClassLoader>(matches.cardinality());
+				for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1))
+					classLoaders.add(loaders[i]);
+				list = Collections.unmodifiableList(classLoaders);
+				listCache.put(matches, list);
+			}
+			node.classLoaders = list;
+		}
+		
+		for (int i = 0; i < node.getChildCount(); i++)
+			compile(node.getChild(i), matches, loaders, listCache);
+	}
+	
+	/**
+	 * A node in the character trie of package names
+	 */
+	private static class Node extends CharTrieNode<Node> {
+		
+		private BitSet packages = new BitSet();
+		
+		private List<ModuleClassLoader> classLoaders;
+		
+		@Override
+		protected Node createChild() {
+			return new Node();
+		}
+	}
+}
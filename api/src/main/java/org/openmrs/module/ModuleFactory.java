@@ -24,11 +24,15 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.Vector;
 import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 
@@ -41,7 +45,7 @@ import org.openmrs.api.AdministrationService;
 import org.openmrs.api.OpenmrsService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.Daemon;
-import org.openmrs.module.Extension.MEDIA_TYPE;
+import org.openmrs.api.db.hibernate.MetadataQueryCache;
 import org.openmrs.util.DatabaseUpdateException;
 import org.openmrs.util.DatabaseUpdater;
 import org.openmrs.util.InputRequiredException;
@@ -66,6 +70,8 @@ public class ModuleFactory {
 	
 	protected static Map<String, List<Extension>> extensionMap = new HashMap<String, List<Extension>>();
 	
+	private static volatile ExtensionPointIndex extensionPointIndex = ExtensionPointIndex.EMPTY;
+	
 	// maps to keep track of the memory and objects to free/close
 	protected static Map<Module, ModuleClassLoader> moduleClassLoaders = new WeakHashMap<Module, ModuleClassLoader>();
 	
@@ -74,6 +80,10 @@ public class ModuleFactory {
 	
 	private static final Map<String, DaemonToken> daemonTokens = new WeakHashMap<String, DaemonToken>();
 	
+	// the files of the modules being started by startModules(), read ahead of time for startModuleInternal()
+	private static final Map<Module, PreparedModule> preparedModules = Collections
+	        .synchronizedMap(new HashMap<Module, PreparedModule>());
+	
 	/**
 	 * Add a module (in the form of a jar file) to the list of openmrs modules Returns null if an
 	 * error occurred and/or module was not successfully loaded
@@ -188,12 +198,13 @@ public class ModuleFactory {
 	public static void startModules() {
 		// loop over and try starting each of the loaded modules
 		if (getLoadedModules().size() > 0) {
-			List<Module> leftoverModules = new Vector<Module>();
+			long startTime = System.currentTimeMillis();
+			List<Module> modulesToStart = new ArrayList<Module>();
 			
 			try {
 				Context.addProxyPrivilege("");
 				AdministrationService as = Context.getAdministrationService();
-				// try and start the modules that should be started
+				// find the modules that should be started
 				for (Module mod : getLoadedModulesCoreFirst()) {
 					if (mod.isStarted())
 						continue; // skip over modules that are already started
@@ -209,7 +220,26 @@ public class ModuleFactory {
 					// as this is probably the first time they are loading it
 					if (startedProp == null || startedProp.equals("true") || "true".equalsIgnoreCase(mandatoryProp)
 					        || mod.isMandatory() || isCoreToOpenmrs) {
-						if (requiredModulesStarted(mod))
+						modulesToStart.add(mod);
+					}
+				}
+				
+				// start the required modules of a module before it
+				ModuleStartupPlan plan = new ModuleStartupPlan(modulesToStart);
+				long planTime = System.currentTimeMillis();
+				
+				// extracting the jars and reading the sql diffs of a module doesn't depend on any
+				// other module, so it is done for all of them at once
+				prepareModules(plan.getModules());
+				long prepareTime = System.currentTimeMillis();
+				
+				Map<String, Long> moduleTimes = new LinkedHashMap<String, Long>();
+				try {
+					for (Module mod : plan.getModules()) {
+						// the modules are started in dependency order, so if the modules required
+						// by this mod are not started by now, they never will be
+						if (requiredModulesStarted(mod)) {
+							long moduleStartTime = System.currentTimeMillis();
 							try {
 								if (log.isDebugEnabled())
 									log.debug("starting module: " + mod.getModuleId());
@@ -221,73 +251,82 @@ public class ModuleFactory {
 								mod.setStartupErrorMessage("Error while starting module", e);
 								notifySuperUsersAboutModuleFailure(mod);
 							}
-						else {
-							// if not all the modules required by this mod are loaded, save it for later
-							leftoverModules.add(mod);
-							if (log.isDebugEnabled())
-								log.debug("cannot start because required modules are not started: " + mod.getModuleId());
+							moduleTimes.put(mod.getModuleId(), System.currentTimeMillis() - moduleStartTime);
+						} else {
+							String message = "Unable to start module '" + mod.getName()
+							        + "'.  All required modules are not available: "
+							        + OpenmrsUtil.join(getMissingRequiredModules(mod), ", ");
+							log.error(message);
+							mod.setStartupErrorMessage(message);
+							notifySuperUsersAboutModuleFailure(mod);
 						}
 					}
 				}
+				finally {
+					preparedModules.clear();
+				}
+				
+				if (log.isInfoEnabled()) {
+					long endTime = System.currentTimeMillis();
+					log.info("Started " + moduleTimes.size() + " of " + modulesToStart.size() + " modules in "
+					        + (endTime - startTime) + "ms (planning: " + (planTime - startTime) + "ms, preparing: "
+					        + (prepareTime - planTime) + "ms, starting: " + (endTime - prepareTime) + "ms)");
+					log.info("Module startup waves: " + plan.getWaves());
+					log.info("Module startup times in ms: " + moduleTimes);
+				}
 			}
 			finally {
 				Context.removeProxyPrivilege("");
 			}
-			
-			// loop over the leftover modules until we can't load
-			// anymore or we've loaded them all
-			boolean atLeastOneModuleLoaded = true;
-			while (leftoverModules.size() > 0 && atLeastOneModuleLoaded) {
-				if (log.isDebugEnabled())
-					log.debug("Trying to start leftover modules: " + leftoverModules);
-				
-				atLeastOneModuleLoaded = false;
-				List<Module> modulesStartedInThisLoop = new Vector<Module>();
+		}
+		
+	}
+	
+	/**
+	 * Extracts the jars and reads the sql diffs of the given modules in parallel, for
+	 * {@link #startModuleInternal(Module, boolean, AbstractRefreshableApplicationContext)} to use
+	 * instead of doing it one module at a time. The classloaders themselves are created when the
+	 * modules are started, because they import the modules that are started at that point.
+	 * 
+	 * @param modules the modules about to be started
+	 */
+	private static void prepareModules(List<Module> modules) {
+		if (modules.isEmpty())
+			return;
+		
+		// create the lib cache folder before the modules extract their jars into it
+		OpenmrsClassLoader.getLibCacheFolder();
+		
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (final Module module : modules) {
+			tasks.add(new Callable<Object>() {
 				
-				for (Module leftoverModule : leftoverModules) {
-					if (requiredModulesStarted(leftoverModule)) {
-						if (log.isDebugEnabled())
-							log.debug("starting leftover module: " + leftoverModule.getModuleId());
-						
-						try {
-							// don't need to check globalproperty here because
-							// it would only be on the leftover modules list if
-							// it were set to true already
-							startModule(leftoverModule);
-							
-							// set this boolean flag to true so we keep looping over the modules
-							atLeastOneModuleLoaded = true;
-							
-							// save the module we just started
-							modulesStartedInThisLoop.add(leftoverModule);
-						}
-						catch (Exception e) {
-							log.error("Error while starting leftover module: " + leftoverModule.getName(), e);
-						}
-					} else {
-						if (log.isDebugEnabled())
-							log.debug("cannot start leftover module because required modules are not started: "
-							        + leftoverModule.getModuleId());
+				public Object call() {
+					try {
+						preparedModules.put(module, new PreparedModule(ModuleClassLoader.getUrls(module),
+						        SqlDiffFileParser.getSqlDiffs(module)));
 					}
+					catch (Exception e) {
+						// the module reads its files again when it is started, and reports the error then
+						log.debug("Unable to prepare module: " + module.getModuleId(), e);
+					}
+					return null;
 				}
-				
-				// remove the modules we started in this loop from the overall
-				// leftover modules list
-				leftoverModules.removeAll(modulesStartedInThisLoop);
-			}
-			
-			// if we failed to start all the modules, error out
-			if (leftoverModules.size() > 0)
-				for (Module leftoverModule : leftoverModules) {
-					String message = "Unable to start module '" + leftoverModule.getName()
-					        + "'.  All required modules are not available: "
-					        + OpenmrsUtil.join(getMissingRequiredModules(leftoverModule), ", ");
-					log.error(message);
-					leftoverModule.setStartupErrorMessage(message);
-					notifySuperUsersAboutModuleFailure(leftoverModule);
-				}
+			});
 		}
 		
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(modules.size(), Runtime.getRuntime()
+		        .availableProcessors()));
+		try {
+			executor.invokeAll(tasks);
+		}
+		catch (InterruptedException e) {
+			// the modules that were not prepared are prepared when they are started
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			executor.shutdownNow();
+		}
 	}
 	
 	/**
@@ -534,9 +573,16 @@ public class ModuleFactory {
 					        + ". Please add and start these modules first.");
 				}
 				
-				// fire up the classloader for this module
-				ModuleClassLoader moduleClassLoader = new ModuleClassLoader(module, ModuleFactory.class.getClassLoader());
+				// fire up the classloader for this module, using the jars startModules() extracted if it did
+				PreparedModule preparedModule = preparedModules.remove(module);
+				ModuleClassLoader moduleClassLoader;
+				if (preparedModule != null)
+					moduleClassLoader = new ModuleClassLoader(module, preparedModule.urls, ModuleFactory.class
+					        .getClassLoader());
+				else
+					moduleClassLoader = new ModuleClassLoader(module, ModuleFactory.class.getClassLoader());
 				getModuleClassLoaderMap().put(module, moduleClassLoader);
+				OpenmrsClassLoader.moduleClassLoadersChanged();
 				
 				// don't load the advice objects into the Context
 				// At startup, the spring context isn't refreshed until all modules
@@ -585,12 +631,14 @@ public class ModuleFactory {
 						extensions.add(ext);
 					}
 				}
+				extensionsChanged();
 				
 				// run the module's sql update script
 				// This and the property updates are the only things that can't
 				// be undone at startup, so put these calls after any other
 				// calls that might hinder startup
-				SortedMap<String, String> diffs = SqlDiffFileParser.getSqlDiffs(module);
+				SortedMap<String, String> diffs = preparedModule != null ? preparedModule.sqlDiffs : SqlDiffFileParser
+				        .getSqlDiffs(module);
 				
 				try {
 					// this method must check and run queries against the database.
@@ -616,6 +664,9 @@ public class ModuleFactory {
 				// effectively mark this module as started successfully
 				getStartedModulesMap().put(moduleId, module);
 				
+				// classes of this module could not be loaded before it was started
+				OpenmrsClassLoader.moduleClassLoadersChanged();
+				
 				try {
 					// save the state of this module for future restarts
 					saveGlobalProperty(moduleId + ".started", "true", getGlobalPropertyStartedDescription(moduleId));
@@ -692,6 +743,9 @@ public class ModuleFactory {
 		if (applicationContext != null)
 			ModuleUtil.refreshApplicationContext(applicationContext, isOpenmrsStartup, module);
 		
+		// the module's sql diffs and activator may have changed metadata behind hibernate's back
+		MetadataQueryCache.clear();
+		
 		return module;
 	}
 	
@@ -964,12 +1018,9 @@ public class ModuleFactory {
 					for (Extension ext : mod.getExtensions()) {
 						String extId = ext.getExtensionId();
 						try {
-							List<Extension> tmpExtensions = getExtensions(extId);
-							if (tmpExtensions == null)
-								tmpExtensions = new Vector<Extension>();
-							
-							tmpExtensions.remove(ext);
-							getExtensionMap().put(extId, tmpExtensions);
+							List<Extension> tmpExtensions = getExtensionMap().get(extId);
+							if (tmpExtensions != null)
+								tmpExtensions.remove(ext);
 						}
 						catch (Exception exterror) {
 							log.warn("Error while getting extension: " + ext, exterror);
@@ -979,6 +1030,7 @@ public class ModuleFactory {
 				catch (Throwable t) {
 					log.warn("Error while getting extensions from module: " + moduleId, t);
 				}
+				extensionsChanged();
 			}
 			
 			//Run the onShutdown() method for openmrs services in this module.
@@ -1038,7 +1090,9 @@ public class ModuleFactory {
 		if (!moduleClassLoaders.containsKey(mod))
 			log.warn("Module: " + mod.getModuleId() + " does not exist");
 		
-		return moduleClassLoaders.remove(mod);
+		ModuleClassLoader classLoader = moduleClassLoaders.remove(mod);
+		OpenmrsClassLoader.moduleClassLoadersChanged();
+		return classLoader;
 	}
 	
 	/**
@@ -1075,41 +1129,14 @@ public class ModuleFactory {
 	 * extension list if no modules extend this pointId
 	 * 
 	 * @param pointId
-	 * @return List of extensions
+	 * @return unmodifiable List of extensions
+	 * @see ExtensionPointIndex#getExtensions(String)
 	 */
 	public static List<Extension> getExtensions(String pointId) {
-		List<Extension> extensions = null;
-		Map<String, List<Extension>> extensionMap = getExtensionMap();
-		
-		// get all extensions for this exact pointId
-		extensions = extensionMap.get(pointId);
-		if (extensions == null)
-			extensions = new ArrayList<Extension>();
-		
-		// if this pointId doesn't contain the separator character, search
-		// for this point prepended with each MEDIA TYPE
-		if (pointId.contains(Extension.extensionIdSeparator) == false) {
-			for (MEDIA_TYPE mediaType : Extension.MEDIA_TYPE.values()) {
-				
-				// get all extensions for this type and point id
-				List<Extension> tmpExtensions = extensionMap.get(Extension.toExtensionId(pointId, mediaType));
-				
-				// 'extensions' should be a unique list
-				if (tmpExtensions != null)
-					for (Extension ext : tmpExtensions) {
-						if (extensions.contains(ext) == false) {
-							extensions.add(ext);
-						}
-					}
-			}
-		}
-		
-		if (extensions != null) {
+		if (log.isDebugEnabled())
 			log.debug("Getting extensions defined by : " + pointId);
-			return extensions;
-		} else {
-			return new Vector<Extension>();
-		}
+		
+		return extensionPointIndex.getExtensions(pointId);
 	}
 	
 	/**
@@ -1118,17 +1145,23 @@ public class ModuleFactory {
 	 * 
 	 * @param pointId
 	 * @param type Extension.MEDIA_TYPE
-	 * @return List of extensions
+	 * @return unmodifiable List of extensions
+	 * @see ExtensionPointIndex#getExtensions(String, Extension.MEDIA_TYPE)
 	 */
 	public static List<Extension> getExtensions(String pointId, Extension.MEDIA_TYPE type) {
-		String key = Extension.toExtensionId(pointId, type);
-		List<Extension> extensions = getExtensionMap().get(key);
-		if (extensions != null) {
-			log.debug("Getting extensions defined by : " + key);
-			return extensions;
-		} else {
-			return getExtensions(pointId);
-		}
+		if (log.isDebugEnabled())
+			log.debug("Getting extensions defined by : " + Extension.toExtensionId(pointId, type));
+		
+		return extensionPointIndex.getExtensions(pointId, type);
+	}
+	
+	/**
+	 * Rebuilds the index used by {@link #getExtensions(String)} from the
+	 * {@link #getExtensionMap()}. This needs to be called after changing the extension map.
+	 */
+	public static synchronized void extensionsChanged() {
+		extensionPointIndex = extensionMap == null ? ExtensionPointIndex.EMPTY : ExtensionPointIndex
+		        .build(extensionMap);
 	}
 	
 	/**
@@ -1248,7 +1281,8 @@ public class ModuleFactory {
 	}
 	
 	/**
-	 * Return the current extension map keyed on extension point id
+	 * Return the current extension map keyed on extension point id. {@link #getExtensions(String)}
+	 * only sees changes to this map after {@link #extensionsChanged()} is called.
 	 * 
 	 * @return Map<String, List<Extension>>
 	 */
@@ -1446,4 +1480,19 @@ public class ModuleFactory {
 			log.warn("Unable to save the global property", t);
 		}
 	}
+	
+	/**
+	 * The files of a module that were read before starting it
+	 */
+	private static class PreparedModule {
+		
+		private final List<URL> urls;
+		
+		private final SortedMap<String, String> sqlDiffs;
+		
+		public PreparedModule(List<URL> urls, SortedMap<String, String> sqlDiffs) {
+			this.urls = urls;
+			this.sqlDiffs = sqlDiffs;
+		}
+	}
 }
@@ -0,0 +1,131 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The order in which a set of modules is started, worked out from the dependency graph of their
+ * required modules. The modules are grouped in waves: the modules of a wave only require modules of
+ * earlier waves, or modules that are not part of the plan, so they do not depend on each other.
+ * Within a wave the modules keep the order they were given in, so passing the modules core first
+ * starts the core modules as early as their requirements allow. <br/>
+ * <br/>
+ * Modules that require each other in a cycle can never be started, they are put in a last wave of
+ * their own so that starting them fails with the usual missing required modules error.
+ *
+ * @since 1.10
+ */
+public class ModuleStartupPlan {
+	
+	private final List<List<Module>> waves;
+	
+	private final List<Module> modules;
+	
+	/**
+	 * Plans the startup of the given modules
+	 * 
+	 * @param modules the modules to start, in the order they should be started in if nothing else
+	 *            matters
+	 * @should put modules after the modules they require
+	 * @should keep the given order of independent modules
+	 * @should ignore required modules that are not part of the plan
+	 * @should put modules with cyclic requirements in the last wave
+	 */
+	public ModuleStartupPlan(Collection<Module> modules) {
+		Map<String, Module> modulesByPackage = new HashMap<String, Module>();
+		for (Module module : modules) {
+			modulesByPackage.put(module.getPackageName(), module);
+		}
+		
+		// the number of planned modules each module requires, and the modules requiring each module
+		Map<Module, Integer> unplannedRequirements = new LinkedHashMap<Module, Integer>();
+		Map<Module, List<Module>> requiredBy = new HashMap<Module, List<Module>>();
+		for (Module module : modules) {
+			int count = 0;
+			List<String> requiredPackages = module.getRequiredModules();
+			if (requiredPackages == null)
+				requiredPackages = Collections.emptyList();
+			for (String requiredPackage : requiredPackages) {
+				Module requiredModule = modulesByPackage.get(requiredPackage);
+				if (requiredModule != null && requiredModule != module) {
+					List<Module> dependents = requiredBy.get(requiredModule);
+					if (dependents == null) {
+						dependents = new ArrayList<Module>();
+						requiredBy.put(requiredModule, dependents);
+					}
+					dependents.add(module);
+					count++;
+				}
+			}
+			unplannedRequirements.put(module, count);
+		}
+		
+		List<List<Module>> waves = new ArrayList<List<Module>>();
+		List<Module> wave = getModulesWithoutRequirements(unplannedRequirements);
+		while (!wave.isEmpty()) {
+			waves.add(Collections.unmodifiableList(wave));
+			for (Module module : wave) {
+				unplannedRequirements.remove(module);
+				List<Module> dependents = requiredBy.get(module);
+				if (dependents != null) {
+					for (Module dependent : dependents)
+						unplannedRequirements.put(dependent, unplannedRequirements.get(dependent) - 1);
+				}
+			}
+			wave = getModulesWithoutRequirements(unplannedRequirements);
+		}
+		
+		if (!unplannedRequirements.isEmpty())
+			waves.add(Collections.unmodifiableList(new ArrayList<Module>(unplannedRequirements.keySet())));
+		
+		List<Module> ordered = new ArrayList<Module>(modules.size());
+		for (List<Module> plannedWave : waves) {
+			ordered.addAll(plannedWave);
+		}
+		
+		this.waves = Collections.unmodifiableList(waves);
+		this.modules = Collections.unmodifiableList(ordered);
+	}
+	
+	private static List<Module> getModulesWithoutRequirements(Map<Module, Integer> unplannedRequirements) {
+		List<Module> result = new ArrayList<Module>();
+		for (Map.Entry<Module, Integer> entry : unplannedRequirements.entrySet()) {
+			if (entry.getValue() == 0)
+				result.add(entry.getKey());
+		}
+		return result;
+	}
+	
+	/**
+	 * @return the waves of modules that do not depend on each other, in the order they are started
+	 */
+	public List<List<Module>> getWaves() {
+		return waves;
+	}
+	
+	/**
+	 * @return all of the planned modules in the order they are started
+	 */
+	public List<Module> getModules() {
+		return modules;
+	}
+	
+}
@@ -24,6 +24,8 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -34,10 +36,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.Vector;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.logging.Log;
@@ -46,6 +51,7 @@ import org.openmrs.GlobalProperty;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.ServiceContext;
+import org.openmrs.api.db.hibernate.MetadataQueryCache;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.util.OpenmrsUtil;
 import org.springframework.context.support.AbstractRefreshableApplicationContext;
@@ -57,6 +63,9 @@ public class ModuleUtil {
 	
 	private static Log log = LogFactory.getLog(ModuleUtil.class);
 	
+	// the file recording the hash of the jar contents that were expanded into a directory
+	private static final String EXPANDED_JAR_HASH_FILENAME = ".openmrs-jar-hash";
+	
 	/**
 	 * Start up the module system with the given properties.
 	 * 
@@ -159,8 +168,10 @@ public class ModuleUtil {
 		
 		// clean up the static variables just in case they weren't done before
 		ModuleFactory.extensionMap = null;
+		ModuleFactory.extensionsChanged();
 		ModuleFactory.loadedModules = null;
 		ModuleFactory.moduleClassLoaders = null;
+		OpenmrsClassLoader.moduleClassLoadersChanged();
 		ModuleFactory.startedModules = null;
 	}
 	
@@ -549,6 +560,102 @@ public class ModuleUtil {
 		return file;
 	}
 	
+	/**
+	 * Computes a hash of the contents of the entries of the given jar whose names start with the
+	 * given prefix. Only the names, sizes and CRC-32 checksums the jar keeps in its central directory
+	 * are hashed, so the entries themselves don't have to be read, and the order of the entries in
+	 * the jar doesn't matter.
+	 * 
+	 * @param file file pointing at a .jar
+	 * @param prefix the start of the names of the entries to hash, or null for all entries
+	 * @return the hash as a hex string
+	 * @throws IOException if the jar can't be read
+	 * @should return the same hash for jars with the same entries
+	 * @should return a different hash if the contents of an entry changed
+	 * @should only hash the entries starting with the prefix
+	 */
+	public static String getJarContentHash(File file, String prefix) throws IOException {
+		SortedMap<String, String> entryChecksums = new TreeMap<String, String>();
+		JarFile jarFile = new JarFile(file);
+		try {
+			Enumeration<JarEntry> entries = jarFile.entries();
+			while (entries.hasMoreElements()) {
+				JarEntry entry = entries.nextElement();
+				if (prefix == null || entry.getName().startsWith(prefix))
+					entryChecksums.put(entry.getName(), entry.getSize() + ":" + entry.getCrc());
+			}
+		}
+		finally {
+			jarFile.close();
+		}
+		
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new ModuleException("Unable to hash the contents of " + file.getAbsolutePath(), e);
+		}
+		for (Map.Entry<String, String> entry : entryChecksums.entrySet()) {
+			digest.update((entry.getKey() + "=" + entry.getValue() + "\n").getBytes("UTF-8"));
+		}
+		
+		StringBuilder hash = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hash.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hash.toString();
+	}
+	
+	/**
+	 * Checks whether the given directory holds the files expanded from a jar whose contents had the
+	 * given hash, as recorded by {@link #setExpandedJarContentHash(File, String)}
+	 * 
+	 * @param directory the directory the jar was expanded into
+	 * @param hash the hash of the contents of the jar, see {@link #getJarContentHash(File, String)}
+	 * @return true if the files in the directory don't need to be expanded again
+	 * @should return true if the directory was expanded from the same contents
+	 * @should return false if the directory was expanded from other contents
+	 * @should return false if the directory was never expanded
+	 */
+	public static boolean isExpandedFromJarContent(File directory, String hash) {
+		File hashFile = new File(directory, EXPANDED_JAR_HASH_FILENAME);
+		if (hash == null || !hashFile.isFile())
+			return false;
+		
+		try {
+			return hash.equals(FileUtils.readFileToString(hashFile, "UTF-8").trim());
+		}
+		catch (IOException e) {
+			log.debug("Unable to read " + hashFile.getAbsolutePath(), e);
+			return false;
+		}
+	}
+	
+	/**
+	 * Records that the given directory holds the files expanded from a jar whose contents have the
+	 * given hash. A null hash forgets the recorded one, which should be done before changing the
+	 * files so that a failed expansion is not taken for a complete one.
+	 * 
+	 * @param directory the directory the jar was expanded into
+	 * @param hash the hash of the contents of the jar, see {@link #getJarContentHash(File, String)}
+	 */
+	public static void setExpandedJarContentHash(File directory, String hash) {
+		File hashFile = new File(directory, EXPANDED_JAR_HASH_FILENAME);
+		try {
+			if (hash == null) {
+				if (hashFile.exists() && !hashFile.delete())
+					log.warn("Unable to delete " + hashFile.getAbsolutePath());
+			} else {
+				directory.mkdirs();
+				FileUtils.writeStringToFile(hashFile, hash, "UTF-8");
+			}
+		}
+		catch (IOException e) {
+			log.warn("Unable to write " + hashFile.getAbsolutePath(), e);
+		}
+	}
+	
 	/**
 	 * Downloads the contents of a URL and copies them to a string (Borrowed from oreilly)
 	 * 
@@ -824,6 +931,9 @@ public class ModuleUtil {
 					log.warn("Unable to invoke method on the module's activator ", t);
 				}
 			}
+			
+			// the activators may have changed metadata behind hibernate's back
+			MetadataQueryCache.clear();
 		}
 		finally {
 			Context.closeSessionWithCurrentUser();
@@ -0,0 +1,48 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.obs;
+
+import java.io.File;
+
+import org.openmrs.Obs;
+
+/**
+ * A {@link ComplexObsHandler} that keeps its complex data in files. Callers that only need to pass
+ * the data on, like the web layer writing it to a response, can get the file from the handler and
+ * stream it instead of loading the whole data into memory through {@link #getObs(Obs, String)}. <br/>
+ * <br/>
+ * Use case:
+ *
+ * <pre>
+ *   Obs complexObs = Context.getObsService().getComplexObsFile(123, OpenmrsConstants.RAW_VIEW);
+ *   File file = (File) complexObs.getComplexData().getData();
+ * </pre>
+ *
+ * @since 1.10
+ */
+public interface FileComplexObsHandler extends ComplexObsHandler {
+
+	/**
+	 * Gets the ComplexData for the given obs and view, where the data is the {@link File} holding
+	 * the complex data in that view rather than the loaded data itself. The title is the same as
+	 * the one {@link #getObs(Obs, String)} would use.
+	 *
+	 * @param obs an obs without complex data filled in
+	 * @param view nullable view type. This is defined by the ui and view/handler
+	 * @return the ComplexData with a File as data, or null if the given view is not stored in a
+	 *         file or the data has to go through getObs, e.g. because a subclass overrides it
+	 */
+	public ComplexData getComplexDataAsFile(Obs obs, String view);
+
+}
@@ -170,4 +170,25 @@ public class AbstractHandler {
 		return new File(dir, filename);
 	}
 	
+	/**
+	 * Whether the file of the obs can be handed out in place of what {@link #getObs(Obs, String)}
+	 * returns. That is not the case when a subclass overrides getObs, e.g. to decrypt the data or
+	 * to load it from somewhere else, without also overriding getComplexDataAsFile.
+	 * 
+	 * @return true if getComplexDataAsFile is declared by the same class as getObs or a subclass of
+	 *         it
+	 * @since 1.10
+	 */
+	protected boolean isFileConsistentWithGetObs() {
+		try {
+			Class<?> getObsClass = getClass().getMethod("getObs", Obs.class, String.class).getDeclaringClass();
+			Class<?> asFileClass = getClass().getMethod("getComplexDataAsFile", Obs.class, String.class)
+			        .getDeclaringClass();
+			return getObsClass.isAssignableFrom(asFileClass);
+		}
+		catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+	
 }
@@ -23,7 +23,7 @@ import org.apache.commons.logging.LogFactory;
 import org.openmrs.Obs;
 import org.openmrs.api.APIException;
 import org.openmrs.obs.ComplexData;
-import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.FileComplexObsHandler;
 import org.openmrs.util.OpenmrsUtil;
 
 /**
@@ -32,7 +32,7 @@ import org.openmrs.util.OpenmrsUtil;
  * 
  * @since 1.5
  */
-public class BinaryDataHandler extends AbstractHandler implements ComplexObsHandler {
+public class BinaryDataHandler extends AbstractHandler implements FileComplexObsHandler {
 	
 	public static final Log log = LogFactory.getLog(BinaryDataHandler.class);
 	
@@ -55,16 +55,8 @@ public class BinaryDataHandler extends AbstractHandler implements ComplexObsHand
 		log.debug("file path: " + file.getAbsolutePath());
 		ComplexData complexData = null;
 		
-		// to handle problem with downloading/saving files with blank spaces or commas in their names
-		// also need to remove the "file" text appended to the end of the file name
-		String[] names = obs.getValueComplex().split("\\|");
-		String originalFilename = names[0];
-		if ("download".equals(view)) {
-			originalFilename = originalFilename.replaceAll(",", "").replaceAll(" ", "").replaceAll("file$", "");
-		}
-		
 		try {
-			complexData = new ComplexData(originalFilename, OpenmrsUtil.getFileAsBytes(file));
+			complexData = new ComplexData(getOriginalFilename(obs, view), OpenmrsUtil.getFileAsBytes(file));
 		}
 		catch (IOException e) {
 			log.error("Trying to read file: " + file.getAbsolutePath(), e);
@@ -75,6 +67,33 @@ public class BinaryDataHandler extends AbstractHandler implements ComplexObsHand
 		return obs;
 	}
 	
+	/**
+	 * Currently supports all views
+	 * 
+	 * @see org.openmrs.obs.FileComplexObsHandler#getComplexDataAsFile(org.openmrs.Obs,
+	 *      java.lang.String)
+	 */
+	public ComplexData getComplexDataAsFile(Obs obs, String view) {
+		if (!isFileConsistentWithGetObs())
+			return null;
+		
+		return new ComplexData(getOriginalFilename(obs, view), getComplexDataFile(obs));
+	}
+	
+	/**
+	 * Gets the name the file had when it was uploaded, to be used as the title of the complex data
+	 */
+	private String getOriginalFilename(Obs obs, String view) {
+		// to handle problem with downloading/saving files with blank spaces or commas in their names
+		// also need to remove the "file" text appended to the end of the file name
+		String[] names = obs.getValueComplex().split("\\|");
+		String originalFilename = names[0];
+		if ("download".equals(view)) {
+			originalFilename = originalFilename.replaceAll(",", "").replaceAll(" ", "").replaceAll("file$", "");
+		}
+		return originalFilename;
+	}
+	
 	/**
 	 * TODO should this support a StringReader too?
 	 * 
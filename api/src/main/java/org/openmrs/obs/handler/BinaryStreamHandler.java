@@ -25,6 +25,7 @@ import org.openmrs.Obs;
 import org.openmrs.api.APIException;
 import org.openmrs.obs.ComplexData;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.FileComplexObsHandler;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 
@@ -34,7 +35,7 @@ import org.openmrs.util.OpenmrsUtil;
  * @see OpenmrsConstants#GLOBAL_PROPERTY_COMPLEX_OBS_DIR
  * @since 1.8
  */
-public class BinaryStreamHandler extends AbstractHandler implements ComplexObsHandler {
+public class BinaryStreamHandler extends AbstractHandler implements FileComplexObsHandler {
 	
 	public static final Log log = LogFactory.getLog(BinaryStreamHandler.class);
 	
@@ -60,15 +61,9 @@ public class BinaryStreamHandler extends AbstractHandler implements ComplexObsHa
 		
 		try {
 			File file = getComplexDataFile(obs);
-			String[] names = obs.getValueComplex().split("\\|");
-			String originalFilename = names[0];
-			if ("download".equals(view)) {
-				originalFilename = originalFilename.replace(",", "").replace(" ", "");
-			}
-			
 			if (file.exists()) {
 				FileInputStream fileInputStream = new FileInputStream(file);
-				obs.setComplexData(new ComplexData(originalFilename, fileInputStream));
+				obs.setComplexData(new ComplexData(getOriginalFilename(obs, view), fileInputStream));
 			} else {
 				log.error("Unable to find file associated with complex obs " + obs.getId());
 			}
@@ -79,6 +74,30 @@ public class BinaryStreamHandler extends AbstractHandler implements ComplexObsHa
 		return obs;
 	}
 	
+	/**
+	 * Returns the same ComplexData for all views, with the file of the obs as data
+	 * 
+	 * @see FileComplexObsHandler#getComplexDataAsFile(Obs, String)
+	 */
+	public ComplexData getComplexDataAsFile(Obs obs, String view) {
+		if (!isFileConsistentWithGetObs())
+			return null;
+		
+		return new ComplexData(getOriginalFilename(obs, view), getComplexDataFile(obs));
+	}
+	
+	/**
+	 * Gets the name the file had when it was uploaded, to be used as the title of the complex data
+	 */
+	private String getOriginalFilename(Obs obs, String view) {
+		String[] names = obs.getValueComplex().split("\\|");
+		String originalFilename = names[0];
+		if ("download".equals(view)) {
+			originalFilename = originalFilename.replace(",", "").replace(" ", "");
+		}
+		return originalFilename;
+	}
+	
 	/**
 	 * @see ComplexObsHandler#saveObs(Obs)
 	 */
@@ -13,6 +13,8 @@
  */
 package org.openmrs.obs.handler;
 
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -27,7 +29,7 @@ import org.apache.commons.logging.LogFactory;
 import org.openmrs.Obs;
 import org.openmrs.api.APIException;
 import org.openmrs.obs.ComplexData;
-import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.FileComplexObsHandler;
 import org.openmrs.util.OpenmrsConstants;
 
 /**
@@ -35,14 +37,26 @@ import org.openmrs.util.OpenmrsConstants;
  * taken from the image name. if the .* image name suffix matches
  * {@link javax.imageio.ImageIO#getWriterFormatNames()} then that mime type will be used to save the
  * image. Images are stored in the location specified by the global property: "obs.complex_obs_dir"
+ * <br/>
+ * <br/>
+ * The {@link OpenmrsConstants#THUMBNAIL_VIEW} returns a scaled down copy of the image that is
+ * created the first time it is requested and kept in the "thumbnails" subdirectory of the complex
+ * obs directory until the image changes.
  * 
  * @see OpenmrsConstants#GLOBAL_PROPERTY_COMPLEX_OBS_DIR
  * @since 1.5
  */
-public class ImageHandler extends AbstractHandler implements ComplexObsHandler {
+public class ImageHandler extends AbstractHandler implements FileComplexObsHandler {
 	
 	public static final Log log = LogFactory.getLog(ImageHandler.class);
 	
+	/**
+	 * The maximum width and height of the images returned for the thumbnail view
+	 */
+	public static final int THUMBNAIL_SIZE = 200;
+	
+	private static final String THUMBNAIL_DIRECTORY = "thumbnails";
+	
 	private Set<String> extensions;
 	
 	/**
@@ -60,7 +74,8 @@ public class ImageHandler extends AbstractHandler implements ComplexObsHandler {
 	}
 	
 	/**
-	 * Currently supports all views and puts the Image file data into the ComplexData object
+	 * Currently supports all views and puts the Image file data into the ComplexData object. The
+	 * {@link OpenmrsConstants#THUMBNAIL_VIEW} puts the thumbnail of the image instead.
 	 * 
 	 * @see org.openmrs.obs.ComplexObsHandler#getObs(org.openmrs.Obs, java.lang.String)
 	 */
@@ -68,7 +83,8 @@ public class ImageHandler extends AbstractHandler implements ComplexObsHandler {
 		File file = getComplexDataFile(obs);
 		BufferedImage img = null;
 		try {
-			img = ImageIO.read(file);
+			File imageFile = OpenmrsConstants.THUMBNAIL_VIEW.equals(view) ? getThumbnailFile(file) : file;
+			img = ImageIO.read(imageFile);
 		}
 		catch (IOException e) {
 			log.error("Trying to read file: " + file.getAbsolutePath(), e);
@@ -81,6 +97,105 @@ public class ImageHandler extends AbstractHandler implements ComplexObsHandler {
 		return obs;
 	}
 	
+	/**
+	 * Currently supports all views. The data of the {@link OpenmrsConstants#THUMBNAIL_VIEW} is the
+	 * thumbnail file, which is created if it doesn't exist yet or is older than the image.
+	 * 
+	 * @see org.openmrs.obs.FileComplexObsHandler#getComplexDataAsFile(org.openmrs.Obs,
+	 *      java.lang.String)
+	 * @should return the image file for the raw view
+	 * @should return a scaled down thumbnail for the thumbnail view
+	 * @should return the image file for the thumbnail view if the image is smaller than the
+	 *         thumbnail size
+	 * @should return null if a subclass overrides getObs only
+	 */
+	public ComplexData getComplexDataAsFile(Obs obs, String view) {
+		if (!isFileConsistentWithGetObs())
+			return null;
+		
+		File file = getComplexDataFile(obs);
+		if (OpenmrsConstants.THUMBNAIL_VIEW.equals(view)) {
+			try {
+				return new ComplexData(file.getName(), getThumbnailFile(file));
+			}
+			catch (IOException e) {
+				log.error("Trying to create thumbnail of file: " + file.getAbsolutePath(), e);
+			}
+		}
+		return new ComplexData(file.getName(), file);
+	}
+	
+	/**
+	 * Also deletes the thumbnail of the image, if there is one
+	 * 
+	 * @see org.openmrs.obs.handler.AbstractHandler#purgeComplexData(org.openmrs.Obs)
+	 */
+	@Override
+	public boolean purgeComplexData(Obs obs) {
+		File thumbnail = new File(new File(getComplexDataFile(obs).getParentFile(), THUMBNAIL_DIRECTORY),
+		        getComplexDataFile(obs).getName());
+		if (thumbnail.exists() && !thumbnail.delete())
+			log.warn("Could not delete thumbnail located at " + thumbnail.getAbsolutePath());
+		
+		return super.purgeComplexData(obs);
+	}
+	
+	/**
+	 * Gets the thumbnail of the given image file, scaling it down first if there is no thumbnail yet
+	 * or the image has changed since. The thumbnail is written to a temporary file and then renamed,
+	 * so concurrent requests never see a partially written thumbnail.
+	 * 
+	 * @param file the image file
+	 * @return the thumbnail, or the image file itself if it is no larger than the thumbnail size or
+	 *         can't be scaled
+	 * @throws IOException
+	 */
+	protected File getThumbnailFile(File file) throws IOException {
+		if (!file.exists())
+			return file;
+		
+		File thumbnailDir = new File(file.getParentFile(), THUMBNAIL_DIRECTORY);
+		File thumbnail = new File(thumbnailDir, file.getName());
+		if (thumbnail.exists() && thumbnail.lastModified() >= file.lastModified())
+			return thumbnail;
+		
+		BufferedImage img = ImageIO.read(file);
+		if (img == null || (img.getWidth() <= THUMBNAIL_SIZE && img.getHeight() <= THUMBNAIL_SIZE))
+			return file;
+		
+		double scale = Math.min((double) THUMBNAIL_SIZE / img.getWidth(), (double) THUMBNAIL_SIZE / img.getHeight());
+		int width = Math.max(1, (int) Math.round(img.getWidth() * scale));
+		int height = Math.max(1, (int) Math.round(img.getHeight() * scale));
+		int type = img.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+		BufferedImage scaled = new BufferedImage(width, height, type);
+		Graphics2D g = scaled.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.drawImage(img, 0, 0, width, height, null);
+		}
+		finally {
+			g.dispose();
+		}
+		
+		if (!thumbnailDir.exists() && !thumbnailDir.mkdirs())
+			return file;
+		
+		String extension = getExtension(file.getName());
+		File tempFile = File.createTempFile("thumbnail", ".tmp", thumbnailDir);
+		boolean written = ImageIO.write(scaled, extension, tempFile);
+		if (written && !tempFile.renameTo(thumbnail)) {
+			// renameTo doesn't replace an outdated thumbnail on all platforms
+			thumbnail.delete();
+			written = tempFile.renameTo(thumbnail);
+		}
+		if (!written) {
+			tempFile.delete();
+			return file;
+		}
+		
+		return thumbnail;
+	}
+	
 	/**
 	 * @see org.openmrs.obs.ComplexObsHandler#saveObs(org.openmrs.Obs)
 	 */
@@ -13,6 +13,7 @@
  */
 package org.openmrs.report;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -22,6 +23,12 @@ import org.openmrs.Cohort;
 import org.openmrs.api.CohortService;
 import org.openmrs.api.context.Context;
 import org.openmrs.cohort.CohortDefinition;
+import org.openmrs.reporting.CohortBitmap;
+import org.openmrs.reporting.PatientFilter;
+import org.openmrs.reporting.PatientFilterEvaluator;
+import org.openmrs.reporting.PatientFilterResultCache;
+import org.openmrs.reporting.PatientSearch;
+import org.openmrs.util.OpenmrsUtil;
 
 /**
  * The logic that evaluates a {@link CohortDataSetDefinition} and produces a {@link CohortDataSet}
@@ -58,12 +65,33 @@ public class CohortDataSetProvider implements DataSetProvider {
 		data.setEvaluationContext(evalContext);
 		data.setName(def.getName());
 		
+		// evaluate the patient searches together, so the filters they share are evaluated only once
+		Map<String, PatientFilter> filters = new LinkedHashMap<String, PatientFilter>();
+		for (Map.Entry<String, CohortDefinition> e : def.getStrategies().entrySet()) {
+			if (e.getValue() instanceof PatientSearch)
+				filters.put(e.getKey(), OpenmrsUtil.toPatientFilter((PatientSearch) e.getValue(), null, evalContext));
+		}
+		Map<String, Cohort> filterResults = Collections.emptyMap();
+		if (!filters.isEmpty()) {
+			Cohort universe = inputCohort;
+			if (inputCohort != null && evalContext != null)
+				universe = PatientFilterResultCache.getBaseCohort(evalContext).and(CohortBitmap.of(inputCohort))
+				        .toCohort();
+			filterResults = PatientFilterEvaluator.evaluate(filters, universe, evalContext);
+		}
+		
 		Map<String, Cohort> results = new LinkedHashMap<String, Cohort>();
 		CohortService cs = Context.getCohortService();
 		for (Map.Entry<String, CohortDefinition> e : def.getStrategies().entrySet()) {
-			Cohort temp = cs.evaluate(e.getValue(), evalContext);
-			if (inputCohort != null)
-				temp = Cohort.intersect(temp, inputCohort);
+			Cohort temp = filterResults.get(e.getKey());
+			if (temp != null) {
+				temp.setCohortDefinition(e.getValue());
+				temp.setEvaluationContext(evalContext);
+			} else {
+				temp = cs.evaluate(e.getValue(), evalContext);
+				if (inputCohort != null)
+					temp = Cohort.intersect(temp, inputCohort);
+			}
 			results.put(e.getKey(), temp);
 		}
 		data.setCohortData(results);
@@ -43,10 +43,11 @@ public abstract class CachingPatientFilter extends AbstractPatientFilter impleme
 	public abstract String getCacheKey();
 	
 	/**
-	 * TODO Auto generated method comment
+	 * Gets the result of this filter from the cache of the context, or else from the
+	 * {@link PatientFilterResultCache} shared by all contexts, and evaluates it if neither has it
 	 * 
 	 * @param context
-	 * @return
+	 * @return the unrestricted result of this filter
 	 */
 	private Cohort getAndMaybeCache(EvaluationContext context) {
 		if (context == null) {
@@ -55,7 +56,14 @@ public abstract class CachingPatientFilter extends AbstractPatientFilter impleme
 			String key = getCacheKey();
 			Cohort cached = (Cohort) context.getFromCache(key);
 			if (cached == null) {
-				cached = filterImpl(context);
+				CohortBitmap baseCohort = PatientFilterResultCache.getBaseCohort(context);
+				CohortBitmap shared = PatientFilterResultCache.get(key, baseCohort);
+				if (shared != null) {
+					cached = shared.toCohort();
+				} else {
+					cached = filterImpl(context);
+					PatientFilterResultCache.put(key, baseCohort, CohortBitmap.of(cached));
+				}
 				context.addToCache(key, cached);
 			}
 			return cached;
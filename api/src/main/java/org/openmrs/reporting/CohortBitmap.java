@@ -0,0 +1,166 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.openmrs.Cohort;
+
+/**
+ * An immutable set of patient ids stored as a bitmap, with one bit per patient id. Patient ids are
+ * dense auto increment keys, so this takes a fraction of the memory of a set of boxed ids and the
+ * boolean operations between filter results work on whole words at a time.
+ *
+ * @deprecated see reportingcompatibility module
+ */
+@Deprecated
+public class CohortBitmap {
+	
+	/**
+	 * A bitmap without any patients
+	 */
+	public static final CohortBitmap EMPTY = new CohortBitmap(new BitSet());
+	
+	private final BitSet bits;
+	
+	private CohortBitmap(BitSet bits) {
+		this.bits = bits;
+	}
+	
+	/**
+	 * @param cohort the cohort, may be null
+	 * @return the bitmap of the members of the cohort
+	 */
+	public static CohortBitmap of(Cohort cohort) {
+		if (cohort == null || cohort.getMemberIds() == null)
+			return EMPTY;
+		return of(cohort.getMemberIds());
+	}
+	
+	/**
+	 * @param patientIds the patient ids
+	 * @return the bitmap of the patient ids
+	 */
+	public static CohortBitmap of(Collection<Integer> patientIds) {
+		BitSet bits = new BitSet();
+		for (Integer patientId : patientIds) {
+			if (patientId != null && patientId >= 0)
+				bits.set(patientId);
+		}
+		return new CohortBitmap(bits);
+	}
+	
+	/**
+	 * @param other another bitmap
+	 * @return the patients that are in both bitmaps
+	 * @should return the patients in both bitmaps
+	 */
+	public CohortBitmap and(CohortBitmap other) {
+		BitSet result = (BitSet) bits.clone();
+		result.and(other.bits);
+		return new CohortBitmap(result);
+	}
+	
+	/**
+	 * @param other another bitmap
+	 * @return the patients that are in either bitmap
+	 * @should return the patients in either bitmap
+	 */
+	public CohortBitmap or(CohortBitmap other) {
+		BitSet result = (BitSet) bits.clone();
+		result.or(other.bits);
+		return new CohortBitmap(result);
+	}
+	
+	/**
+	 * @param other another bitmap
+	 * @return the patients of this bitmap that are not in the other one
+	 * @should return the patients that are not in the other bitmap
+	 */
+	public CohortBitmap andNot(CohortBitmap other) {
+		BitSet result = (BitSet) bits.clone();
+		result.andNot(other.bits);
+		return new CohortBitmap(result);
+	}
+	
+	/**
+	 * @param patientId the patient id
+	 * @return true if the patient is in this bitmap
+	 */
+	public boolean contains(Integer patientId) {
+		return patientId != null && patientId >= 0 && bits.get(patientId);
+	}
+	
+	/**
+	 * @return the number of patients in this bitmap
+	 */
+	public int size() {
+		return bits.cardinality();
+	}
+	
+	/**
+	 * @return true if there are no patients in this bitmap
+	 */
+	public boolean isEmpty() {
+		return bits.isEmpty();
+	}
+	
+	/**
+	 * @return the ids of the patients in this bitmap, in ascending order
+	 */
+	public Set<Integer> getMemberIds() {
+		Set<Integer> memberIds = new TreeSet<Integer>();
+		for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1))
+			memberIds.add(id);
+		return memberIds;
+	}
+	
+	/**
+	 * @return a new cohort of the patients in this bitmap
+	 * @should return a cohort of the patients in the bitmap
+	 */
+	public Cohort toCohort() {
+		Cohort cohort = new Cohort();
+		cohort.setMemberIds(getMemberIds());
+		return cohort;
+	}
+	
+	/**
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof CohortBitmap && bits.equals(((CohortBitmap) obj).bits);
+	}
+	
+	/**
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return bits.hashCode();
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "CohortBitmap of " + size() + " patients";
+	}
+	
+}
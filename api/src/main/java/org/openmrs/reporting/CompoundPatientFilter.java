@@ -13,10 +13,8 @@
  */
 package org.openmrs.reporting;
 
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -60,42 +58,23 @@ public class CompoundPatientFilter extends AbstractPatientFilter implements Pati
 		this.operator = operator;
 	}
 	
+	/**
+	 * Evaluates the whole tree of filters at once with a {@link PatientFilterEvaluator}, so that
+	 * each distinct leaf is evaluated only once and the results are combined as bitmaps
+	 * 
+	 * @see org.openmrs.reporting.PatientFilter#filter(org.openmrs.Cohort,
+	 *      org.openmrs.report.EvaluationContext)
+	 */
 	public Cohort filter(Cohort input, EvaluationContext context) {
-		if (operator == BooleanOperator.AND) {
-			Cohort temp = input;
-			for (PatientFilter pf : filters) {
-				temp = pf.filter(temp, context);
-			}
-			return temp;
-		} else {
-			Set<Integer> ptIds = new HashSet<Integer>();
-			for (PatientFilter pf : filters) {
-				ptIds.addAll(pf.filter(input, context).getMemberIds());
-				log.debug("or " + pf.getName() + " (" + pf.toString() + ")");
-			}
-			Cohort ret = new Cohort();
-			ret.setMemberIds(ptIds);
-			return ret;
-		}
+		return PatientFilterEvaluator.evaluate(this, input, context);
 	}
 	
+	/**
+	 * @see org.openmrs.reporting.PatientFilter#filterInverse(org.openmrs.Cohort,
+	 *      org.openmrs.report.EvaluationContext)
+	 */
 	public Cohort filterInverse(Cohort input, EvaluationContext context) {
-		if (operator == BooleanOperator.AND) {
-			// NOT(AND(x, y)) -> OR(NOT x, NOT y)
-			Set<Integer> ptIds = new HashSet<Integer>();
-			for (PatientFilter pf : filters)
-				ptIds.addAll(pf.filterInverse(input, context).getMemberIds());
-			Cohort ret = new Cohort();
-			ret.setMemberIds(ptIds);
-			return ret;
-		} else {
-			// NOT(OR(x, y)) -> AND(NOT x, NOT y)
-			Cohort temp = input;
-			for (PatientFilter pf : filters) {
-				temp = pf.filterInverse(temp, context);
-			}
-			return temp;
-		}
+		return PatientFilterEvaluator.evaluate(new InversePatientFilter(this), input, context);
 	}
 	
 	public String getDescription() {
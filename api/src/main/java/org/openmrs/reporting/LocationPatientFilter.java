@@ -29,6 +29,8 @@ public class LocationPatientFilter extends CachingPatientFilter {
 	
 	private PatientLocationMethod calculationMethod;
 	
+	private boolean includeChildLocations = false;
+	
 	public LocationPatientFilter() {
 		calculationMethod = PatientLocationMethod.PATIENT_HEALTH_CENTER;
 	}
@@ -40,6 +42,8 @@ public class LocationPatientFilter extends CachingPatientFilter {
 		sb.append(getCalculationMethod()).append(".");
 		if (getLocation() != null)
 			sb.append(getLocation().getLocationId());
+		if (isIncludeChildLocations())
+			sb.append(".includeChildLocations");
 		return sb.toString();
 	}
 	
@@ -47,13 +51,16 @@ public class LocationPatientFilter extends CachingPatientFilter {
 		StringBuilder sb = new StringBuilder();
 		sb.append("Patients who belong to ");
 		sb.append(getLocation() == null ? "NULL" : getLocation().getName());
+		if (isIncludeChildLocations())
+			sb.append(" or its sub-locations");
 		sb.append(" (by method " + getCalculationMethod() + ")");
 		return sb.toString();
 	}
 	
 	@Override
 	public Cohort filterImpl(EvaluationContext context) {
-		return Context.getPatientSetService().getPatientsHavingLocation(getLocation(), getCalculationMethod());
+		return Context.getPatientSetService().getPatientsHavingLocation(getLocation(), getCalculationMethod(),
+		    isIncludeChildLocations());
 	}
 	
 	public boolean isReadyToRun() {
@@ -78,4 +85,12 @@ public class LocationPatientFilter extends CachingPatientFilter {
 		this.calculationMethod = method;
 	}
 	
+	public boolean isIncludeChildLocations() {
+		return includeChildLocations;
+	}
+	
+	public void setIncludeChildLocations(boolean includeChildLocations) {
+		this.includeChildLocations = includeChildLocations;
+	}
+	
 }
@@ -0,0 +1,264 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.Cohort;
+import org.openmrs.api.APIException;
+import org.openmrs.api.PatientSetService.BooleanOperator;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.report.EvaluationContext;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * Evaluates trees of {@link PatientFilter}s as a whole instead of filter by filter:
+ * <ol>
+ * <li>the {@link CompoundPatientFilter}s and {@link InversePatientFilter}s of the trees are
+ * planned down to their leaves</li>
+ * <li>leaves with the same {@link CachingPatientFilter#getCacheKey()} are evaluated only once,
+ * however often they appear in the trees</li>
+ * <li>leaves already in the cache of the evaluation context or in the
+ * {@link PatientFilterResultCache} are not evaluated again, and the others are evaluated on the
+ * number of threads set by the {@link OpenmrsConstants#GLOBAL_PROPERTY_REPORT_FILTER_EVALUATION_THREADS}
+ * global property</li>
+ * <li>the trees are combined from the results of their leaves as {@link CohortBitmap}s</li>
+ * </ol>
+ * Filters that are neither compound, inverse nor caching filters are evaluated as they are.
+ *
+ * @deprecated see reportingcompatibility module
+ */
+@Deprecated
+public class PatientFilterEvaluator {
+	
+	private static final Log log = LogFactory.getLog(PatientFilterEvaluator.class);
+	
+	private final EvaluationContext context;
+	
+	// the patients the results are restricted to
+	private final CohortBitmap universe;
+	
+	private final Cohort universeCohort;
+	
+	// the results of the leaves and of the opaque filters, by cache key or identity
+	private final Map<String, CohortBitmap> leafResults = new HashMap<String, CohortBitmap>();
+	
+	private final Map<PatientFilter, CohortBitmap> opaqueResults = new HashMap<PatientFilter, CohortBitmap>();
+	
+	private PatientFilterEvaluator(Cohort input, EvaluationContext context) {
+		this.context = context;
+		if (input == null) {
+			if (context != null)
+				input = context.getBaseCohort();
+			else
+				input = Context.getPatientSetService().getAllPatients();
+		}
+		this.universeCohort = input;
+		this.universe = CohortBitmap.of(input);
+	}
+	
+	/**
+	 * Evaluates a filter
+	 * 
+	 * @param filter the filter to evaluate
+	 * @param input the patients to filter, the base cohort of the context (or all patients if there
+	 *            is no context) if null
+	 * @param context the evaluation context, may be null
+	 * @return the patients of the input that match the filter
+	 * @should combine the leaves of compound filters
+	 * @should evaluate inverse filters against the input
+	 * @should evaluate a leaf that appears more than once only once
+	 */
+	public static Cohort evaluate(PatientFilter filter, Cohort input, EvaluationContext context) {
+		return evaluate(Collections.singletonMap("filter", filter), input, context).get("filter");
+	}
+	
+	/**
+	 * Evaluates several filters at once, sharing the results of the leaves they have in common
+	 * 
+	 * @param filters the filters to evaluate, keyed on anything
+	 * @param input the patients to filter, the base cohort of the context (or all patients if there
+	 *            is no context) if null
+	 * @param context the evaluation context, may be null
+	 * @return the patients of the input that match each filter, under the key of the filter
+	 * @should share the leaves of the filters
+	 */
+	public static <K> Map<K, Cohort> evaluate(Map<K, PatientFilter> filters, Cohort input, EvaluationContext context) {
+		PatientFilterEvaluator evaluator = new PatientFilterEvaluator(input, context);
+		
+		Map<String, CachingPatientFilter> leaves = new LinkedHashMap<String, CachingPatientFilter>();
+		for (PatientFilter filter : filters.values())
+			evaluator.collectLeaves(filter, leaves);
+		evaluator.evaluateLeaves(leaves);
+		
+		Map<K, Cohort> results = new LinkedHashMap<K, Cohort>();
+		for (Map.Entry<K, PatientFilter> entry : filters.entrySet())
+			results.put(entry.getKey(), evaluator.combine(entry.getValue()).and(evaluator.universe).toCohort());
+		return results;
+	}
+	
+	private void collectLeaves(PatientFilter filter, Map<String, CachingPatientFilter> leaves) {
+		if (filter instanceof CompoundPatientFilter) {
+			for (PatientFilter child : ((CompoundPatientFilter) filter).getFilters())
+				collectLeaves(child, leaves);
+		} else if (filter instanceof InversePatientFilter) {
+			collectLeaves(((InversePatientFilter) filter).getBaseFilter(), leaves);
+		} else if (filter instanceof CachingPatientFilter) {
+			CachingPatientFilter leaf = (CachingPatientFilter) filter;
+			String key = leaf.getCacheKey();
+			if (!leaves.containsKey(key))
+				leaves.put(key, leaf);
+		}
+	}
+	
+	/**
+	 * Gets the results of the leaves from the caches, and evaluates the others
+	 */
+	private void evaluateLeaves(Map<String, CachingPatientFilter> leaves) {
+		CohortBitmap baseCohort = PatientFilterResultCache.getBaseCohort(context);
+		Map<String, CachingPatientFilter> toEvaluate = new LinkedHashMap<String, CachingPatientFilter>();
+		for (Map.Entry<String, CachingPatientFilter> entry : leaves.entrySet()) {
+			CohortBitmap result = null;
+			if (context != null) {
+				Cohort cached = (Cohort) context.getFromCache(entry.getKey());
+				if (cached != null)
+					result = CohortBitmap.of(cached);
+				else
+					result = PatientFilterResultCache.get(entry.getKey(), baseCohort);
+			}
+			
+			if (result != null)
+				leafResults.put(entry.getKey(), result);
+			else
+				toEvaluate.put(entry.getKey(), entry.getValue());
+		}
+		
+		int threads = toEvaluate.size() > 1 ? Math.min(getEvaluationThreads(), toEvaluate.size()) : 1;
+		if (threads > 1)
+			evaluateInParallel(toEvaluate, threads);
+		else {
+			for (Map.Entry<String, CachingPatientFilter> entry : toEvaluate.entrySet())
+				leafResults.put(entry.getKey(), CohortBitmap.of(entry.getValue().filterImpl(context)));
+		}
+		
+		// cache the new results on this thread, as the cache of the context is not thread safe
+		if (context != null) {
+			for (String key : toEvaluate.keySet()) {
+				CohortBitmap result = leafResults.get(key);
+				context.addToCache(key, result.toCohort());
+				PatientFilterResultCache.put(key, baseCohort, result);
+			}
+		}
+	}
+	
+	private void evaluateInParallel(Map<String, CachingPatientFilter> toEvaluate, int threads) {
+		final UserContext userContext = Context.getUserContext();
+		Map<String, Future<Cohort>> futures = new LinkedHashMap<String, Future<Cohort>>();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (Map.Entry<String, CachingPatientFilter> entry : toEvaluate.entrySet()) {
+				final CachingPatientFilter leaf = entry.getValue();
+				futures.put(entry.getKey(), executor.submit(new Callable<Cohort>() {
+					
+					public Cohort call() throws Exception {
+						// evaluate as the current user, in a session of this thread
+						Context.setUserContext(userContext);
+						Context.openSessionWithCurrentUser();
+						try {
+							return leaf.filterImpl(context);
+						}
+						finally {
+							Context.closeSessionWithCurrentUser();
+							Context.clearUserContext();
+						}
+					}
+				}));
+			}
+			
+			for (Map.Entry<String, Future<Cohort>> entry : futures.entrySet())
+				leafResults.put(entry.getKey(), CohortBitmap.of(entry.getValue().get()));
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new APIException("Interrupted while evaluating patient filters", e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new APIException("Unable to evaluate patient filters", e.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Combines the results of the leaves of a filter, the result still has to be restricted to the
+	 * universe
+	 */
+	private CohortBitmap combine(PatientFilter filter) {
+		if (filter instanceof CompoundPatientFilter) {
+			CompoundPatientFilter compound = (CompoundPatientFilter) filter;
+			CohortBitmap result = null;
+			for (PatientFilter child : compound.getFilters()) {
+				CohortBitmap childResult = combine(child);
+				if (result == null)
+					result = childResult;
+				else if (compound.getOperator() == BooleanOperator.AND)
+					result = result.and(childResult);
+				else
+					result = result.or(childResult);
+			}
+			if (result == null)
+				return compound.getOperator() == BooleanOperator.AND ? universe : CohortBitmap.EMPTY;
+			return result;
+		} else if (filter instanceof InversePatientFilter) {
+			return universe.andNot(combine(((InversePatientFilter) filter).getBaseFilter()));
+		} else if (filter instanceof CachingPatientFilter) {
+			return leafResults.get(((CachingPatientFilter) filter).getCacheKey());
+		} else {
+			CohortBitmap result = opaqueResults.get(filter);
+			if (result == null) {
+				result = CohortBitmap.of(filter.filter(universeCohort, context));
+				opaqueResults.put(filter, result);
+			}
+			return result;
+		}
+	}
+	
+	private static int getEvaluationThreads() {
+		String threads = Context.getAdministrationService().getGlobalProperty(
+		    OpenmrsConstants.GLOBAL_PROPERTY_REPORT_FILTER_EVALUATION_THREADS, "1");
+		try {
+			return Integer.parseInt(threads.trim());
+		}
+		catch (NumberFormatException e) {
+			log.warn("Invalid value for " + OpenmrsConstants.GLOBAL_PROPERTY_REPORT_FILTER_EVALUATION_THREADS + ": "
+			        + threads);
+			return 1;
+		}
+	}
+	
+}
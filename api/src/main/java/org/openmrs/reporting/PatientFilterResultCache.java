@@ -0,0 +1,132 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openmrs.report.EvaluationContext;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A bounded cache of the results of {@link CachingPatientFilter}s that is shared by all
+ * evaluation contexts, so that reports that are run one after the other, or indicator reports that
+ * evaluate the same base filters in many cells, do not query the database again for them. <br/>
+ * <br/>
+ * Results are keyed on {@link CachingPatientFilter#getCacheKey()}, which is made of the class of
+ * the filter and its property values, including the parameter values substituted into it. As some
+ * filters restrict their query to the base cohort of the context, a result is only reused for the
+ * same base cohort. Results expire {@link #TIME_TO_LIVE_MINUTES} minutes after they were computed,
+ * which bounds how stale a report can be after the underlying data changes.
+ *
+ * @deprecated see reportingcompatibility module
+ */
+@Deprecated
+public class PatientFilterResultCache {
+	
+	/**
+	 * The maximum number of filter results kept
+	 */
+	public static final int MAX_ENTRIES = 500;
+	
+	/**
+	 * The number of minutes after which a result is computed again
+	 */
+	public static final int TIME_TO_LIVE_MINUTES = 10;
+	
+	private static final String BASE_COHORT_CACHE_KEY = PatientFilterResultCache.class.getName() + ".baseCohort";
+	
+	private static final Cache<String, Entry> cache = CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES)
+	        .expireAfterWrite(TIME_TO_LIVE_MINUTES, TimeUnit.MINUTES).build();
+	
+	private PatientFilterResultCache() {
+	}
+	
+	/**
+	 * Gets the cached result of a filter
+	 * 
+	 * @param cacheKey the cache key of the filter
+	 * @param baseCohort the base cohort of the evaluation context, null if there is no context
+	 * @return the cached result, or null if there is none for the base cohort
+	 * @should return a result for the same key and base cohort
+	 * @should not return a result for another base cohort
+	 */
+	public static CohortBitmap get(String cacheKey, CohortBitmap baseCohort) {
+		if (cacheKey == null)
+			return null;
+		Entry entry = cache.getIfPresent(cacheKey);
+		if (entry == null || !entry.isFor(baseCohort))
+			return null;
+		return entry.result;
+	}
+	
+	/**
+	 * Caches the result of a filter
+	 * 
+	 * @param cacheKey the cache key of the filter
+	 * @param baseCohort the base cohort of the evaluation context the result was computed in, null
+	 *            if there was no context
+	 * @param result the result of the filter
+	 */
+	public static void put(String cacheKey, CohortBitmap baseCohort, CohortBitmap result) {
+		if (cacheKey != null && result != null)
+			cache.put(cacheKey, new Entry(baseCohort, result));
+	}
+	
+	/**
+	 * Drops all of the cached results, e.g. after data was imported
+	 */
+	public static void clear() {
+		cache.invalidateAll();
+	}
+	
+	/**
+	 * Gets the bitmap of the base cohort of a context, which is kept in the cache of the context as
+	 * that is cleared whenever the base cohort changes
+	 * 
+	 * @param context the evaluation context, may be null
+	 * @return the bitmap of the base cohort, or null if there is no context
+	 */
+	public static CohortBitmap getBaseCohort(EvaluationContext context) {
+		if (context == null)
+			return null;
+		CohortBitmap baseCohort = (CohortBitmap) context.getFromCache(BASE_COHORT_CACHE_KEY);
+		if (baseCohort == null) {
+			baseCohort = CohortBitmap.of(context.getBaseCohort());
+			context.addToCache(BASE_COHORT_CACHE_KEY, baseCohort);
+		}
+		return baseCohort;
+	}
+	
+	/**
+	 * A cached result and the base cohort it was computed for
+	 */
+	private static class Entry {
+		
+		private final CohortBitmap baseCohort;
+		
+		private final CohortBitmap result;
+		
+		public Entry(CohortBitmap baseCohort, CohortBitmap result) {
+			this.baseCohort = baseCohort;
+			this.result = result;
+		}
+		
+		public boolean isFor(CohortBitmap otherBaseCohort) {
+			return baseCohort == null ? otherBaseCohort == null : baseCohort.equals(otherBaseCohort);
+		}
+	}
+	
+}
@@ -15,6 +15,8 @@ package org.openmrs.reporting.export;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
@@ -65,6 +67,11 @@ public class DataExportFunctions {
 	
 	public final Log log = LogFactory.getLog(this.getClass());
 	
+	/**
+	 * The number of patients written per batch when the export is written in batches
+	 */
+	public static final int DEFAULT_PATIENT_SET_BATCH_SIZE = 1000;
+	
 	protected Integer patientId;
 	
 	protected Patient patient;
@@ -74,6 +81,14 @@ public class DataExportFunctions {
 	
 	protected boolean isAllPatients = false;
 	
+	protected int patientSetBatchSize = DEFAULT_PATIENT_SET_BATCH_SIZE;
+	
+	// the sorted ids of all of the patients of the export, set once it is written in batches
+	protected int[] exportPatientIds = null;
+	
+	// loads the columns of the export for each batch, null if nothing is prefetched
+	protected DataExportPrefetcher prefetcher = null;
+	
 	private Integer patientCounter = 0; // used for garbage collection (Clean up every x patients)
 	
 	protected String separator = "	";
@@ -196,6 +211,11 @@ public class DataExportFunctions {
 			map.clear();
 		patientAttributeMap.clear();
 		patientAttributeMap = null;
+		if (prefetcher != null) {
+			prefetcher.clear();
+			prefetcher = null;
+		}
+		exportPatientIds = null;
 		
 		patientSetService = null;
 		patientService = null;
@@ -246,6 +266,8 @@ public class DataExportFunctions {
 				map.remove(this.patientId);
 			for (Map<Integer, ?> map : patientIdentifierMap.values())
 				map.remove(this.patientId);
+			if (prefetcher != null)
+				prefetcher.release(this.patientId);
 		}
 		
 		// reclaim some memory
@@ -293,6 +315,97 @@ public class DataExportFunctions {
 		this.isAllPatients = isAllPatients;
 	}
 	
+	/**
+	 * @param patientSetBatchSize the number of patients to write per batch
+	 */
+	public void setPatientSetBatchSize(int patientSetBatchSize) {
+		if (patientSetBatchSize < 1)
+			throw new IllegalArgumentException("The batch size must be at least 1");
+		this.patientSetBatchSize = patientSetBatchSize;
+	}
+	
+	/**
+	 * @param prefetcher the prefetcher of the columns of the export, or null to load them all
+	 *            lazily
+	 */
+	public void setPrefetcher(DataExportPrefetcher prefetcher) {
+		this.prefetcher = prefetcher;
+	}
+	
+	/**
+	 * Splits the patient set into batches that are written one after the other, so that only the
+	 * values of one batch are held at a time. The export template loops from 0 to the returned
+	 * index, calling {@link #setPatientSetFromBatch(Integer)} for each of them.
+	 * 
+	 * @return the index of the last batch, or null if the export is of all patients and is written
+	 *         in one go
+	 */
+	public Integer getPatientSetBatchCount() {
+		if (exportPatientIds == null) {
+			Cohort exportPatientSet = getPatientSetIfNotAllPatients();
+			if (exportPatientSet == null)
+				return null;
+			
+			exportPatientIds = new int[exportPatientSet.getMemberIds().size()];
+			int i = 0;
+			for (Integer memberId : exportPatientSet.getMemberIds())
+				exportPatientIds[i++] = memberId;
+			Arrays.sort(exportPatientIds);
+			
+			if (prefetcher != null)
+				prefetcher.prefetchCohorts(this, exportPatientIds);
+		}
+		
+		if (exportPatientIds.length == 0)
+			return 0;
+		return (exportPatientIds.length - 1) / patientSetBatchSize;
+	}
+	
+	/**
+	 * Makes the given batch of the export the current patient set. Everything loaded for the
+	 * previous batch is released and the columns of the export are prefetched for the new one.
+	 * 
+	 * @param batchIndex the index of the batch, from 0 to {@link #getPatientSetBatchCount()}
+	 */
+	public void setPatientSetFromBatch(Integer batchIndex) {
+		if (exportPatientIds == null && getPatientSetBatchCount() == null)
+			return;
+		
+		int from = Math.min(batchIndex * patientSetBatchSize, exportPatientIds.length);
+		int to = Math.min(from + patientSetBatchSize, exportPatientIds.length);
+		int[] batchPatientIds = Arrays.copyOfRange(exportPatientIds, from, to);
+		List<Integer> memberIds = new ArrayList<Integer>(batchPatientIds.length);
+		for (int memberId : batchPatientIds)
+			memberIds.add(memberId);
+		
+		clearPatientSetMaps();
+		Cohort batch = new Cohort(memberIds);
+		setPatientSet(batch);
+		
+		if (prefetcher != null && !prefetcher.isEmpty()) {
+			long start = System.currentTimeMillis();
+			prefetcher.prefetchBatch(batch, batchPatientIds);
+			log.debug("Took: " + (System.currentTimeMillis() - start) + " ms to prefetch batch " + batchIndex);
+		}
+	}
+	
+	/**
+	 * Drops everything that was lazily loaded for the current patient set
+	 */
+	protected void clearPatientSetMaps() {
+		patientEncounterMap.clear();
+		patientIdentifierMap.clear();
+		patientFirstEncounterMap.clear();
+		conceptAttrObsMap.clear();
+		relationshipMap.clear();
+		programMap.clear();
+		drugOrderMap.clear();
+		currentDrugOrderMap.clear();
+		patientAttributeMap.clear();
+		personAttributeMap.clear();
+		cohortMap.clear();
+	}
+	
 	/**
 	 * @return Returns the separator.
 	 */
@@ -320,9 +433,27 @@ public class DataExportFunctions {
 	}
 	
 	protected Boolean getCohortHelper(String key) {
+		if (prefetcher != null && prefetcher.hasCohort(key))
+			return prefetcher.isCohortMember(key, getPatientId());
+		
 		if (cohortMap.containsKey(key))
 			return cohortMap.get(key).contains(getPatientId());
 		
+		Cohort ps = evaluateCohort(key, getPatientSet());
+		Set<Integer> set = new HashSet<Integer>(ps.getMemberIds());
+		cohortMap.put(key, set);
+		
+		return set.contains(getPatientId());
+	}
+	
+	/**
+	 * Evaluates the cohort, cohort definition or patient search of a cohort column
+	 * 
+	 * @param key the key of the cohort, e.g. "C.1", "F.2" or "S.3"
+	 * @param patientSet the patients to filter on
+	 * @return the members of the cohort
+	 */
+	protected Cohort evaluateCohort(String key, Cohort patientSet) {
 		//TODO try to cache the evaluation context
 		EvaluationContext context = new EvaluationContext();
 		
@@ -333,19 +464,16 @@ public class DataExportFunctions {
 			ps = Context.getCohortService().getCohort(Integer.valueOf(key.substring(2)));
 		} else if (key.startsWith("F.")) {
 			PatientFilter pf = Context.getReportObjectService().getPatientFilterById(Integer.valueOf(key.substring(2)));
-			ps = pf.filter(getPatientSet(), context);
+			ps = pf.filter(patientSet, context);
 		} else if (key.startsWith("S.")) {
 			PatientSearchReportObject ro = (PatientSearchReportObject) Context.getReportObjectService().getReportObject(
 			    Integer.valueOf(key.substring(2)));
 			PatientFilter pf = OpenmrsUtil.toPatientFilter(ro.getPatientSearch(), null);
-			ps = pf.filter(getPatientSet(), context);
+			ps = pf.filter(patientSet, context);
 		} else {
 			log.error("key = " + key);
 		}
-		Set<Integer> set = new HashSet<Integer>(ps.getMemberIds());
-		cohortMap.put(key, set);
-		
-		return set.contains(getPatientId());
+		return ps;
 	}
 	
 	/**
@@ -524,10 +652,15 @@ public class DataExportFunctions {
 	}
 	*/
 
+	@SuppressWarnings("unchecked")
 	public List<List<Object>> getObsWithValues(Concept c, List<String> attrs) {
 		if (attrs == null)
 			attrs = new Vector<String>();
 		
+		String prefetchKey = DataExportPrefetcher.getObsKey(c.getConceptId(), attrs);
+		if (prefetcher != null && prefetcher.hasColumn(prefetchKey))
+			return (List<List<Object>>) prefetcher.getValue(prefetchKey, patientId);
+		
 		String key = c.getConceptId() + "";
 		Map<Integer, List<List<Object>>> patientIdObsMap = conceptAttrObsMap.get(key);
 		if (patientIdObsMap == null) {
@@ -718,6 +851,10 @@ public class DataExportFunctions {
 		if (returnAll)
 			key += "--all";
 		
+		String prefetchKey = DataExportPrefetcher.getPatientAttrKey(className, property, returnAll);
+		if (prefetcher != null && prefetcher.hasColumn(prefetchKey))
+			return prefetcher.getValue(prefetchKey, patientId);
+		
 		Map<Integer, Object> patientIdAttrMap;
 		if (patientAttributeMap.containsKey(key)) {
 			patientIdAttrMap = patientAttributeMap.get(key);
@@ -1012,21 +1149,15 @@ public class DataExportFunctions {
 	public Object getPatientIdentifier(String typeName) {
 		
 		log.debug("Identifier Type: " + typeName);
+		String prefetchKey = DataExportPrefetcher.getIdentifierKey(typeName);
+		if (prefetcher != null && prefetcher.hasColumn(prefetchKey))
+			return prefetcher.getValue(prefetchKey, patientId);
+		
 		Map<Integer, PatientIdentifier> patientIdentifiers;
 		if (patientIdentifierMap.containsKey(typeName)) {
 			patientIdentifiers = patientIdentifierMap.get(typeName);
 		} else {
-			PatientIdentifierType type = null;
-			// First try by Integer id
-			try {
-				Integer id = Integer.valueOf(typeName);
-				type = patientService.getPatientIdentifierType(id);
-			}
-			catch (NumberFormatException ex) {}
-			// otherwise get identifier type by the given name
-			if (type == null) {
-				type = patientService.getPatientIdentifierTypeByName(typeName);
-			}
+			PatientIdentifierType type = getPatientIdentifierType(typeName);
 			// Get identifiers by type 
 			patientIdentifiers = patientSetService.getPatientIdentifiersByType(getPatientSetIfNotAllPatients(), type);
 			
@@ -1039,6 +1170,28 @@ public class DataExportFunctions {
 		
 	}
 	
+	/**
+	 * Gets a patient identifier type by id or by name
+	 * 
+	 * @param typeName the id or the name of the type
+	 * @return the identifier type, or null if there is none
+	 */
+	protected static PatientIdentifierType getPatientIdentifierType(String typeName) {
+		PatientService patientService = Context.getPatientService();
+		PatientIdentifierType type = null;
+		// First try by Integer id
+		try {
+			Integer id = Integer.valueOf(typeName);
+			type = patientService.getPatientIdentifierType(id);
+		}
+		catch (NumberFormatException ex) {}
+		// otherwise get identifier type by the given name
+		if (type == null) {
+			type = patientService.getPatientIdentifierTypeByName(typeName);
+		}
+		return type;
+	}
+	
 	// /**
 	// * Get all obs for the current patient that match this
 	// * <code>obs.concept</code>=<code>concept</code> and
@@ -0,0 +1,361 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting.export;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.Cohort;
+import org.openmrs.Concept;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.PatientSetService;
+import org.openmrs.api.context.Context;
+
+/**
+ * Loads the values of the columns of a data export for a whole batch of patients up front, instead
+ * of the first time a column asks for them. The plan is made once from the columns of the export:
+ * <ul>
+ * <li>{@link ConceptColumn}s prefetch the obs values of their concept (or of each member of their
+ * concept set) with the same extra attributes the template asks for</li>
+ * <li>{@link SimpleColumn}s and {@link CalculatedColumn}s prefetch the patient attributes and
+ * identifiers they call <code>fn.getPatientAttr</code> and <code>fn.getPatientIdentifier</code>
+ * for with literal arguments</li>
+ * <li>{@link CohortColumn}s are evaluated once for all of the patients of the export</li>
+ * </ul>
+ * Everything else is still loaded lazily by the {@link DataExportFunctions}. <br/>
+ * <br/>
+ * The values of a batch are kept in one array per column, indexed by the position of the patient
+ * in the sorted patient ids of the batch, rather than in maps keyed on boxed patient ids. The
+ * values of a patient are released as soon as its row has been written, and the whole batch when
+ * the next one is prefetched.
+ *
+ * @deprecated see reportingcompatibility module
+ */
+@Deprecated
+public class DataExportPrefetcher {
+	
+	private static final Log log = LogFactory.getLog(DataExportPrefetcher.class);
+	
+	private static final Pattern PATIENT_ATTR_PATTERN = Pattern
+	        .compile("fn\\.getPatientAttr\\(\\s*'([^']*)'\\s*,\\s*'([^']*)'\\s*(?:,\\s*(true|false)\\s*)?\\)");
+	
+	private static final Pattern PATIENT_IDENTIFIER_PATTERN = Pattern
+	        .compile("fn\\.getPatientIdentifier\\(\\s*'([^']*)'\\s*\\)");
+	
+	// the obs columns to prefetch, keyed on getObsKey(conceptId, attrs)
+	private final Map<String, ObsColumn> obsColumns = new LinkedHashMap<String, ObsColumn>();
+	
+	// the patient attribute columns to prefetch as {className, property, returnAll}
+	private final Map<String, String[]> patientAttrColumns = new LinkedHashMap<String, String[]>();
+	
+	// the identifier type ids or names to prefetch
+	private final Set<String> identifierColumns = new LinkedHashSet<String>();
+	
+	// the cohort keys ("C.1", "F.2", "S.3") to evaluate once for the whole export
+	private final Set<String> cohortColumns = new LinkedHashSet<String>();
+	
+	// the sorted ids of all of the patients of the export, the cohorts are indexed on them
+	private int[] exportPatientIds = null;
+	
+	private final Map<String, BitSet> cohorts = new HashMap<String, BitSet>();
+	
+	// the sorted ids of the patients of the current batch, the columns are indexed on them
+	private int[] batchPatientIds = new int[0];
+	
+	private final Map<String, Object[]> columns = new HashMap<String, Object[]>();
+	
+	/**
+	 * Plans what to prefetch for the given columns of an export
+	 * 
+	 * @param exportColumns the columns of the export
+	 * @return the prefetcher of the columns
+	 */
+	public static DataExportPrefetcher plan(List<ExportColumn> exportColumns) {
+		DataExportPrefetcher prefetcher = new DataExportPrefetcher();
+		if (exportColumns == null)
+			return prefetcher;
+		
+		ConceptService conceptService = Context.getConceptService();
+		for (ExportColumn column : exportColumns) {
+			if (column instanceof ConceptColumn) {
+				prefetcher.planConceptColumn((ConceptColumn) column, conceptService);
+			} else if (column instanceof CohortColumn) {
+				CohortColumn cohortColumn = (CohortColumn) column;
+				if (cohortColumn.getCohortId() != null)
+					prefetcher.cohortColumns.add("C." + cohortColumn.getCohortId());
+				else if (cohortColumn.getFilterId() != null)
+					prefetcher.cohortColumns.add("F." + cohortColumn.getFilterId());
+				else if (cohortColumn.getPatientSearchId() != null)
+					prefetcher.cohortColumns.add("S." + cohortColumn.getPatientSearchId());
+			} else if (column instanceof SimpleColumn) {
+				prefetcher.planSimpleColumn(((SimpleColumn) column).getReturnValue());
+			}
+		}
+		
+		return prefetcher;
+	}
+	
+	private void planConceptColumn(ConceptColumn column, ConceptService conceptService) {
+		if (column.getConceptId() == null)
+			return;
+		Concept concept = conceptService.getConcept(column.getConceptId());
+		if (concept == null)
+			return;
+		
+		// mirror the attributes that the functions called by ConceptColumn#toTemplateString pass on
+		List<String> attrs = new Vector<String>();
+		String[] extras = column.getExtras();
+		boolean hasExtras = extras != null && extras.length > 0;
+		// only getFirstObs(String) asks for the obs without the leading value column
+		if (hasExtras || !DataExportReportObject.MODIFIER_FIRST.equals(column.getModifier()))
+			attrs.add(null);
+		if (extras != null)
+			attrs.addAll(Arrays.asList(extras));
+		
+		List<Concept> concepts = concept.isSet() ? conceptService.getConceptsByConceptSet(concept) : Arrays
+		        .asList(concept);
+		for (Concept c : concepts)
+			obsColumns.put(getObsKey(c.getConceptId(), attrs), new ObsColumn(c, attrs));
+	}
+	
+	private void planSimpleColumn(String template) {
+		if (template == null)
+			return;
+		
+		Matcher matcher = PATIENT_ATTR_PATTERN.matcher(template);
+		while (matcher.find()) {
+			boolean returnAll = "true".equals(matcher.group(3));
+			patientAttrColumns.put(getPatientAttrKey(matcher.group(1), matcher.group(2), returnAll), new String[] {
+			        matcher.group(1), matcher.group(2), String.valueOf(returnAll) });
+		}
+		
+		matcher = PATIENT_IDENTIFIER_PATTERN.matcher(template);
+		while (matcher.find())
+			identifierColumns.add(matcher.group(1));
+	}
+	
+	/**
+	 * @return true if nothing is prefetched for the planned columns
+	 */
+	public boolean isEmpty() {
+		return obsColumns.isEmpty() && patientAttrColumns.isEmpty() && identifierColumns.isEmpty()
+		        && cohortColumns.isEmpty();
+	}
+	
+	/**
+	 * Evaluates the planned cohort columns once for all of the patients of the export
+	 * 
+	 * @param functions the functions of the export, used to evaluate the cohorts
+	 * @param exportPatientIds the sorted ids of all of the patients of the export
+	 */
+	public void prefetchCohorts(DataExportFunctions functions, int[] exportPatientIds) {
+		this.exportPatientIds = exportPatientIds;
+		cohorts.clear();
+		if (cohortColumns.isEmpty())
+			return;
+		
+		Cohort exportPatientSet = new Cohort(toList(exportPatientIds));
+		for (String key : cohortColumns) {
+			try {
+				Cohort cohort = functions.evaluateCohort(key, exportPatientSet);
+				BitSet members = new BitSet(exportPatientIds.length);
+				for (Integer memberId : cohort.getMemberIds()) {
+					int index = Arrays.binarySearch(exportPatientIds, memberId);
+					if (index >= 0)
+						members.set(index);
+				}
+				cohorts.put(key, members);
+			}
+			catch (Exception e) {
+				log.warn("Unable to prefetch cohort " + key + ", it will be evaluated for each batch", e);
+			}
+		}
+	}
+	
+	/**
+	 * Loads the planned columns for the given batch of patients, releasing the previous batch
+	 * 
+	 * @param batchPatientSet the patients of the batch
+	 * @param batchPatientIds the sorted ids of the patients of the batch
+	 */
+	public void prefetchBatch(Cohort batchPatientSet, int[] batchPatientIds) {
+		columns.clear();
+		this.batchPatientIds = batchPatientIds;
+		
+		PatientSetService patientSetService = Context.getPatientSetService();
+		for (Map.Entry<String, ObsColumn> entry : obsColumns.entrySet()) {
+			ObsColumn obsColumn = entry.getValue();
+			try {
+				// the dao prepends to some attribute lists, so hand it a copy
+				putColumn(entry.getKey(), patientSetService.getObservationsValues(batchPatientSet, obsColumn.concept,
+				    new Vector<String>(obsColumn.attrs)));
+			}
+			catch (Exception e) {
+				log.warn("Unable to prefetch the obs of " + obsColumn.concept + ", they will be loaded lazily", e);
+			}
+		}
+		
+		for (Map.Entry<String, String[]> entry : patientAttrColumns.entrySet()) {
+			String[] attr = entry.getValue();
+			try {
+				putColumn(entry.getKey(), patientSetService.getPatientAttributes(batchPatientSet, attr[0], attr[1], Boolean
+				        .valueOf(attr[2])));
+			}
+			catch (Exception e) {
+				log.warn("Unable to prefetch patient attribute " + entry.getKey() + ", it will be loaded lazily", e);
+			}
+		}
+		
+		for (String typeName : identifierColumns) {
+			try {
+				putColumn(getIdentifierKey(typeName), patientSetService.getPatientIdentifiersByType(batchPatientSet,
+				    DataExportFunctions.getPatientIdentifierType(typeName)));
+			}
+			catch (Exception e) {
+				log.warn("Unable to prefetch identifier type " + typeName + ", it will be loaded lazily", e);
+			}
+		}
+	}
+	
+	private void putColumn(String key, Map<Integer, ?> valuesByPatientId) {
+		Object[] values = new Object[batchPatientIds.length];
+		for (int i = 0; i < batchPatientIds.length; i++)
+			values[i] = valuesByPatientId.get(batchPatientIds[i]);
+		columns.put(key, values);
+	}
+	
+	/**
+	 * @param key the key of the column
+	 * @return true if the column is prefetched for the current batch
+	 */
+	public boolean hasColumn(String key) {
+		return columns.containsKey(key);
+	}
+	
+	/**
+	 * @param key the key of the column
+	 * @param patientId the patient
+	 * @return the prefetched value of the patient, null if the patient has none or is not in the
+	 *         current batch
+	 */
+	public Object getValue(String key, Integer patientId) {
+		Object[] values = columns.get(key);
+		if (values == null || patientId == null)
+			return null;
+		int index = Arrays.binarySearch(batchPatientIds, patientId);
+		return index < 0 ? null : values[index];
+	}
+	
+	/**
+	 * @param key the cohort key, e.g. "C.1"
+	 * @return true if the cohort was evaluated for the whole export
+	 */
+	public boolean hasCohort(String key) {
+		return cohorts.containsKey(key);
+	}
+	
+	/**
+	 * @param key the cohort key, e.g. "C.1"
+	 * @param patientId the patient
+	 * @return true if the patient is a member of the prefetched cohort
+	 */
+	public boolean isCohortMember(String key, Integer patientId) {
+		BitSet members = cohorts.get(key);
+		if (members == null || patientId == null || exportPatientIds == null)
+			return false;
+		int index = Arrays.binarySearch(exportPatientIds, patientId);
+		return index >= 0 && members.get(index);
+	}
+	
+	/**
+	 * Releases the prefetched values of a patient whose row has been written
+	 * 
+	 * @param patientId the patient
+	 */
+	public void release(Integer patientId) {
+		if (patientId == null)
+			return;
+		int index = Arrays.binarySearch(batchPatientIds, patientId);
+		if (index < 0)
+			return;
+		for (Object[] values : columns.values())
+			values[index] = null;
+	}
+	
+	/**
+	 * Releases everything that was prefetched
+	 */
+	public void clear() {
+		columns.clear();
+		cohorts.clear();
+		batchPatientIds = new int[0];
+		exportPatientIds = null;
+	}
+	
+	/**
+	 * @return the key of the prefetched obs values of the concept with the given attributes
+	 */
+	public static String getObsKey(Integer conceptId, List<String> attrs) {
+		return "obs." + conceptId + "." + attrs;
+	}
+	
+	/**
+	 * @return the key of the prefetched patient attribute
+	 */
+	public static String getPatientAttrKey(String className, String property, boolean returnAll) {
+		return "attr." + className + "." + property + (returnAll ? "--all" : "");
+	}
+	
+	/**
+	 * @return the key of the prefetched identifiers of the given type
+	 */
+	public static String getIdentifierKey(String typeName) {
+		return "identifier." + typeName;
+	}
+	
+	private static List<Integer> toList(int[] ids) {
+		List<Integer> list = new ArrayList<Integer>(ids.length);
+		for (int id : ids)
+			list.add(id);
+		return list;
+	}
+	
+	/**
+	 * The concept and the attributes of a prefetched obs column
+	 */
+	private static class ObsColumn {
+		
+		private final Concept concept;
+		
+		private final List<String> attrs;
+		
+		public ObsColumn(Concept concept, List<String> attrs) {
+			this.concept = concept;
+			this.attrs = attrs;
+		}
+	}
+	
+}
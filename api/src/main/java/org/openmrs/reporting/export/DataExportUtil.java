@@ -185,6 +185,12 @@ public class DataExportUtil {
 		
 		velocityContext.put("patientSet", patientSet);
 		
+		// let the template write the patients in batches, prefetching the columns of each batch
+		if (patientSet != null && !functions.isAllPatients()) {
+			functions.setPatientSet(patientSet);
+			functions.setPrefetcher(DataExportPrefetcher.plan(dataExport.getColumns()));
+		}
+		
 		String template = dataExport.generateTemplate();
 		
 		// check if some deprecated columns are being used in this export
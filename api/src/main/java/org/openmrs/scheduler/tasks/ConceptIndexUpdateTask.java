@@ -13,6 +13,11 @@
  */
 package org.openmrs.scheduler.tasks;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Concept;
@@ -21,19 +26,51 @@ import org.openmrs.api.APIException;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
 import org.openmrs.api.impl.ConceptServiceImpl;
 import org.openmrs.scheduler.SchedulerService;
 import org.openmrs.scheduler.TaskDefinition;
 import org.openmrs.util.OpenmrsConstants;
 
 /**
- * A utility class for updating concept words in a scheduled task.
+ * A utility class for updating concept words in a scheduled task. <br/>
+ * <br/>
+ * The concept id range is split into partitions that are updated in parallel, each in its own
+ * daemon thread and hibernate session, one batch of concepts at a time. The position of every
+ * partition is saved in the {@link OpenmrsConstants#GP_CONCEPT_INDEX_UPDATE_TASK_LAST_UPDATED_CONCEPT}
+ * global property, so a stopped update continues where each partition left off. The following
+ * task properties are supported:
+ * <ul>
+ * <li>{@value #PROPERTY_PARTITIONS}: the number of partitions, defaults to the number of
+ * processors</li>
+ * <li>{@value #PROPERTY_BATCH_SIZE}: the number of concepts updated at once, defaults to
+ * {@value #DEFAULT_BATCH_SIZE}</li>
+ * <li>{@value #PROPERTY_ONLY_CHANGED}: if true only the concepts whose words differ from the ones in
+ * the index are rewritten</li>
+ * <li>{@value #PROPERTY_DRY_RUN}: if true the index is not changed, the task only logs how many
+ * concepts differ</li>
+ * </ul>
  */
 public class ConceptIndexUpdateTask extends AbstractTask {
 	
+	public static final String PROPERTY_PARTITIONS = "partitions";
+	
+	public static final String PROPERTY_BATCH_SIZE = "batchSize";
+	
+	public static final String PROPERTY_ONLY_CHANGED = "onlyChanged";
+	
+	public static final String PROPERTY_DRY_RUN = "dryRun";
+	
+	public static final int DEFAULT_BATCH_SIZE = 100;
+	
+	/**
+	 * How often the positions of the partitions are saved, in milliseconds
+	 */
+	private static final long CHECKPOINT_INTERVAL = 10000;
+	
 	private Log log = LogFactory.getLog(ConceptIndexUpdateTask.class);
 	
-	private boolean shouldExecute = true;
+	private volatile boolean shouldExecute = true;
 	
 	/**
 	 * @see org.openmrs.scheduler.tasks.AbstractTask#execute()
@@ -44,50 +81,60 @@ public class ConceptIndexUpdateTask extends AbstractTask {
 			isExecuting = true;
 			shouldExecute = true;
 			AdministrationService as = Context.getAdministrationService();
-			ConceptService cs = Context.getConceptService();
 			GlobalProperty gp = as
 			        .getGlobalPropertyObject(OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_LAST_UPDATED_CONCEPT);
 			if (gp == null)
 				gp = new GlobalProperty(OpenmrsConstants.GP_CONCEPT_INDEX_UPDATE_TASK_LAST_UPDATED_CONCEPT);
 			
+			int batchSize = getIntegerProperty(PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+			boolean onlyChanged = Boolean.valueOf(getProperty(PROPERTY_ONLY_CHANGED));
+			boolean dryRun = Boolean.valueOf(getProperty(PROPERTY_DRY_RUN));
+			
 			if (log.isDebugEnabled())
 				log.debug("Updating concept words ... ");
 			try {
-				Concept currentConcept = null; // assumes that all conceptIds are positive
-				//check if we have a saved last updated concept id
-				try {
-					currentConcept = cs.getConcept(Integer.valueOf(gp.getPropertyValue()));
-				}
-				catch (NumberFormatException e) {
-					//do nothing, most likely there was none
-				}
+				List<Partition> partitions = null;
+				//check if we have saved the positions of an earlier update
+				if (!dryRun)
+					partitions = Partition.parse(gp.getPropertyValue());
+				if (partitions == null)
+					partitions = Partition.split(Context.getConceptService().getMaxConceptId(), getIntegerProperty(
+					    PROPERTY_PARTITIONS, Runtime.getRuntime().availableProcessors()));
 				
-				if (currentConcept == null)
-					currentConcept = new Concept(0);
+				List<Thread> threads = new ArrayList<Thread>(partitions.size());
+				for (Partition partition : partitions) {
+					threads.add(Daemon.runInNewDaemonThread(new PartitionUpdater(partition, batchSize, onlyChanged,
+					        dryRun)));
+				}
 				
-				currentConcept = cs.getNextConcept(currentConcept);
-				int counter = 0;
-				while (currentConcept != null && shouldExecute) {
-					if (log.isDebugEnabled())
-						log.debug("updateConceptWords() : current concept: " + currentConcept);
-					cs.updateConceptIndex(currentConcept);
-					
-					// keep memory consumption low
-					if (counter++ > 25) {
-						gp.setPropertyValue(currentConcept.getConceptId().toString());
-						as.saveGlobalProperty(gp);
-						
-						//persist to DB prior to releasing memory
-						Context.flushSession();
-						Context.clearSession();
-						counter = 0;
+				// save the positions of the partitions while they are being updated
+				for (Thread thread : threads) {
+					while (thread.isAlive()) {
+						try {
+							thread.join(CHECKPOINT_INTERVAL);
+						}
+						catch (InterruptedException e) {
+							shouldExecute = false;
+						}
+						if (!dryRun)
+							saveCheckpoint(as, gp, partitions);
 					}
-					
-					currentConcept = cs.getNextConcept(currentConcept);
 				}
 				
+				int changedConcepts = 0;
+				for (Partition partition : partitions) {
+					if (partition.exception != null)
+						throw new APIException("Updating the concept words of partition " + partition
+						        + " failed", partition.exception);
+					changedConcepts += partition.changedConcepts;
+				}
+				if (dryRun)
+					log.info("The words of " + changedConcepts + " concepts differ from the concept index");
+				else if (log.isDebugEnabled())
+					log.debug("Updated the concept words of " + changedConcepts + " concepts");
+				
 				//we have reached the end, get rid of the GP
-				if (currentConcept == null)
+				if (!dryRun && Partition.format(partitions) == null)
 					as.purgeGlobalProperty(gp);
 			}
 			catch (APIException e) {
@@ -110,12 +157,185 @@ public class ConceptIndexUpdateTask extends AbstractTask {
 		}
 	}
 	
+	private void saveCheckpoint(AdministrationService as, GlobalProperty gp, List<Partition> partitions) {
+		String checkpoint = Partition.format(partitions);
+		if (checkpoint != null && !checkpoint.equals(gp.getPropertyValue())) {
+			gp.setPropertyValue(checkpoint);
+			as.saveGlobalProperty(gp);
+			Context.flushSession();
+		}
+	}
+	
+	private String getProperty(String name) {
+		return taskDefinition == null ? null : taskDefinition.getProperty(name);
+	}
+	
+	private int getIntegerProperty(String name, int defaultValue) {
+		String value = getProperty(name);
+		if (StringUtils.isNotBlank(value)) {
+			try {
+				return Math.max(1, Integer.valueOf(value.trim()));
+			}
+			catch (NumberFormatException e) {
+				log.warn("Ignoring invalid value '" + value + "' of task property " + name);
+			}
+		}
+		return defaultValue;
+	}
+	
+	/**
+	 * Updates the concept words of one partition in batches, in the daemon thread it is run in
+	 */
+	private class PartitionUpdater implements Runnable {
+		
+		private final Partition partition;
+		
+		private final int batchSize;
+		
+		private final boolean onlyChanged;
+		
+		private final boolean dryRun;
+		
+		public PartitionUpdater(Partition partition, int batchSize, boolean onlyChanged, boolean dryRun) {
+			this.partition = partition;
+			this.batchSize = batchSize;
+			this.onlyChanged = onlyChanged;
+			this.dryRun = dryRun;
+		}
+		
+		public void run() {
+			ConceptService cs = Context.getConceptService();
+			try {
+				while (shouldExecute && !partition.isDone()) {
+					List<Concept> batch = cs.getConceptBatch(partition.afterConceptId, batchSize, true);
+					
+					// the last batch may reach into the next partition
+					boolean reachedEnd = batch.size() < batchSize;
+					for (Iterator<Concept> i = batch.iterator(); i.hasNext();) {
+						if (i.next().getConceptId() > partition.lastConceptId) {
+							i.remove();
+							reachedEnd = true;
+						}
+					}
+					
+					if (!batch.isEmpty()) {
+						List<Concept> changed = cs.updateConceptIndexes(batch, onlyChanged, dryRun);
+						partition.changedConcepts += changed.size();
+						if (dryRun && log.isDebugEnabled()) {
+							for (Concept concept : changed)
+								log.debug("The words of concept " + concept.getConceptId() + " differ from the index");
+						}
+					}
+					partition.afterConceptId = reachedEnd ? partition.lastConceptId : batch.get(batch.size() - 1)
+					        .getConceptId();
+					
+					// keep memory consumption low
+					Context.clearSession();
+				}
+			}
+			catch (Throwable t) {
+				partition.exception = t;
+			}
+		}
+	}
+	
+	/**
+	 * A range of concept ids that is updated by one thread, starting after {@link #afterConceptId}
+	 * up to and including {@link #lastConceptId}
+	 */
+	private static class Partition {
+		
+		private volatile int afterConceptId;
+		
+		private final int lastConceptId;
+		
+		private volatile int changedConcepts;
+		
+		private volatile Throwable exception;
+		
+		public Partition(int afterConceptId, int lastConceptId) {
+			this.afterConceptId = afterConceptId;
+			this.lastConceptId = lastConceptId;
+		}
+		
+		public boolean isDone() {
+			return afterConceptId >= lastConceptId;
+		}
+		
+		/**
+		 * Splits all concept ids up to the given one into partitions of about the same size
+		 */
+		public static List<Partition> split(Integer maxConceptId, int count) {
+			List<Partition> partitions = new ArrayList<Partition>(count);
+			if (maxConceptId == null)
+				return partitions;
+			
+			// assumes that all conceptIds are positive
+			int size = (maxConceptId + count - 1) / count;
+			for (int after = 0; after < maxConceptId; after += size)
+				partitions.add(new Partition(after, Math.min(after + size, maxConceptId)));
+			return partitions;
+		}
+		
+		/**
+		 * Parses the positions of the partitions saved by {@link #format(List)}, a single concept id
+		 * saved before the update was split into partitions continues after that concept
+		 * 
+		 * @return the partitions or null if there were none saved
+		 */
+		public static List<Partition> parse(String checkpoint) {
+			if (StringUtils.isBlank(checkpoint))
+				return null;
+			
+			try {
+				List<Partition> partitions = new ArrayList<Partition>();
+				if (!checkpoint.contains(":")) {
+					Integer maxConceptId = Context.getConceptService().getMaxConceptId();
+					if (maxConceptId != null)
+						partitions.add(new Partition(Integer.valueOf(checkpoint.trim()), maxConceptId));
+					return partitions;
+				}
+				
+				for (String range : checkpoint.split(",")) {
+					String[] ids = range.split(":");
+					partitions.add(new Partition(Integer.valueOf(ids[0].trim()), Integer.valueOf(ids[1].trim())));
+				}
+				return partitions;
+			}
+			catch (RuntimeException e) {
+				//do nothing, start over
+				return null;
+			}
+		}
+		
+		/**
+		 * @return the positions of the partitions that are not done yet, or null if all are
+		 */
+		public static String format(List<Partition> partitions) {
+			StringBuilder checkpoint = new StringBuilder();
+			for (Partition partition : partitions) {
+				if (!partition.isDone()) {
+					if (checkpoint.length() > 0)
+						checkpoint.append(",");
+					checkpoint.append(partition);
+				}
+			}
+			return checkpoint.length() > 0 ? checkpoint.toString() : null;
+		}
+		
+		@Override
+		public String toString() {
+			return afterConceptId + ":" + lastConceptId;
+		}
+	}
+	
 	/**
 	 * @see org.openmrs.scheduler.Task#initialize(org.openmrs.scheduler.TaskDefinition)
 	 */
 	@Override
 	public void initialize(TaskDefinition config) {
-		// do nothing
+		// keep the definition for its properties
+		super.initialize(config);
 	}
 	
 	/**
@@ -0,0 +1,64 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.tasks;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+
+/**
+ * A scheduled task that computes the concept set closure and the location closure again from the
+ * concept set members and the parent locations. The closures are kept up to date when concepts and
+ * locations are saved through the API, but not when a concept dictionary or locations are loaded
+ * into the database with sql. The task runs once on every startup, and can be run by hand after
+ * such an import.
+ * 
+ * @see org.openmrs.api.ConceptService#rebuildConceptSetClosure()
+ * @see org.openmrs.api.LocationService#rebuildLocationClosure()
+ * @since 1.10
+ */
+public class RebuildClosureTablesTask extends AbstractTask {
+	
+	private static final Log log = LogFactory.getLog(RebuildClosureTablesTask.class);
+	
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#execute()
+	 */
+	@Override
+	public void execute() {
+		if (!isExecuting) {
+			if (log.isDebugEnabled())
+				log.debug("Starting Rebuild Closure Tables Task...");
+			
+			startExecuting();
+			try {
+				try {
+					Context.getConceptService().rebuildConceptSetClosure();
+				}
+				catch (Exception e) {
+					log.error("Error while rebuilding the concept set closure:", e);
+				}
+				try {
+					Context.getLocationService().rebuildLocationClosure();
+				}
+				catch (Exception e) {
+					log.error("Error while rebuilding the location closure:", e);
+				}
+			}
+			finally {
+				stopExecuting();
+			}
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.tasks;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * A scheduled task that brings the obs_summary table in line with the concepts listed in the
+ * global property {@link OpenmrsConstants#GLOBAL_PROPERTY_OBS_SUMMARY_CONCEPTS}. It is run by hand
+ * after the global property is changed, as rebuilding the summaries of a concept reads all of its
+ * obs.
+ * 
+ * @see org.openmrs.api.ObsService#updateObsSummaries()
+ * @since 1.10
+ */
+public class RebuildObsSummariesTask extends AbstractTask {
+	
+	private static final Log log = LogFactory.getLog(RebuildObsSummariesTask.class);
+	
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#execute()
+	 */
+	@Override
+	public void execute() {
+		if (!isExecuting) {
+			if (log.isDebugEnabled())
+				log.debug("Starting Rebuild Obs Summaries Task...");
+			
+			startExecuting();
+			try {
+				Context.getObsService().updateObsSummaries();
+			}
+			catch (Exception e) {
+				log.error("Error while rebuilding the obs summaries:", e);
+			}
+			finally {
+				stopExecuting();
+			}
+		}
+	}
+}
@@ -20,6 +20,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.Daemon;
+import org.openmrs.api.db.hibernate.QueryProfiler;
 import org.openmrs.scheduler.SchedulerService;
 import org.openmrs.scheduler.SchedulerUtil;
 import org.openmrs.scheduler.Task;
@@ -95,7 +96,15 @@ public class TimerSchedulerTask extends TimerTask {
 	 * Executes the given task.
 	 */
 	public static void execute(Task task) {
-		task.execute();
+		String name = task.getTaskDefinition() != null ? task.getTaskDefinition().getName() : task.getClass()
+		        .getSimpleName();
+		QueryProfiler.begin("task: " + name);
+		try {
+			task.execute();
+		}
+		finally {
+			QueryProfiler.end();
+		}
 		saveLastExecutionTime(task);
 	}
 }
@@ -0,0 +1,110 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+/**
+ * A node of a character trie, for the routing tables that match names against many prefixes at
+ * once by walking the name one character at a time. The children are kept in two small parallel
+ * arrays, since most nodes of a trie of package names or url patterns have only one child.
+ * Subclasses hold whatever the trie maps to.
+ * 
+ * @param <N> the node class itself
+ * @since 1.10
+ */
+public abstract class CharTrieNode<N extends CharTrieNode<N>> {
+	
+	private char[] childKeys;
+	
+	private Object[] children;
+	
+	/**
+	 * @return a new, empty node to be added as a child of this one
+	 */
+	protected abstract N createChild();
+	
+	/**
+	 * @param c the next character
+	 * @return the child for the given character, or null if there is none
+	 * @should return the child added for the character
+	 * @should return null for a character without a child
+	 */
+	@SuppressWarnings("unchecked")
+	public N child(char c) {
+		if (childKeys != null) {
+			for (int i = 0; i < childKeys.length; i++) {
+				if (childKeys[i] == c)
+					return (N) children[i];
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @param c the next character
+	 * @return the child for the given character, which is added if there is none yet
+	 */
+	public N getOrCreateChild(char c) {
+		N child = child(c);
+		if (child == null) {
+			int size = getChildCount();
+			char[] keys = new char[size + 1];
+			Object[] nodes = new Object[size + 1];
+			if (size > 0) {
+				System.arraycopy(childKeys, 0, keys, 0, size);
+				System.arraycopy(children, 0, nodes, 0, size);
+			}
+			child = createChild();
+			keys[size] = c;
+			nodes[size] = child;
+			childKeys = keys;
+			children = nodes;
+		}
+		return child;
+	}
+	
+	/**
+	 * @param path the characters to follow from this node
+	 * @return the node at the end of the path, adding the missing nodes on the way
+	 * @should add a node per character
+	 */
+	@SuppressWarnings("unchecked")
+	public N getOrCreateDescendant(String path) {
+		N node = (N) this;
+		for (int i = 0; i < path.length(); i++) {
+			node = node.getOrCreateChild(path.charAt(i));
+		}
+		return node;
+	}
+	
+	public int getChildCount() {
+		return childKeys == null ? 0 : childKeys.length;
+	}
+	
+	/**
+	 * @param index from 0 to {@link #getChildCount()} - 1
+	 * @return the character of the child at the given index
+	 */
+	public char getChildKey(int index) {
+		return childKeys[index];
+	}
+	
+	/**
+	 * @param index from 0 to {@link #getChildCount()} - 1
+	 * @return the child at the given index
+	 */
+	@SuppressWarnings("unchecked")
+	public N getChild(int index) {
+		return (N) children[index];
+	}
+}
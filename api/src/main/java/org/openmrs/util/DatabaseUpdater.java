@@ -58,6 +58,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.context.Context;
+import org.openmrs.api.db.hibernate.MetadataQueryCache;
 
 /**
  * This class uses Liquibase to update the database. <br/>
@@ -233,6 +234,9 @@ public class DatabaseUpdater {
 			throw e;
 		}
 		finally {
+			// the changesets may have changed metadata behind hibernate's back
+			MetadataQueryCache.clear();
+			
 			try {
 				lockHandler.releaseLock();
 			}
@@ -0,0 +1,191 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.api.context.Context;
+
+/**
+ * Settings that are parsed from a group of global properties. The properties are read the first
+ * time the settings are asked for and then kept up to date by registering the object, or one that
+ * passes the calls on to it, as a global property listener. This suits code that consults its
+ * settings on every call, like the service metrics and the query profiler, where reading the global
+ * properties each time would cost a query.<br/>
+ * <br/>
+ * Reading the properties calls the administration service, so they cannot be read before there is
+ * a session or from the service calls that the reading makes itself. {@link #get()} returns null in
+ * these cases. It also returns null for {@value #RETRY_MILLIS}ms after reading the properties
+ * failed, unless one of them changes in the meantime, so that callers do not pay for a failing read
+ * on every call.
+ * 
+ * @param <T> the parsed settings
+ * @since 1.10
+ */
+public abstract class GlobalPropertySettings<T> implements GlobalPropertyListener {
+	
+	private static final Log log = LogFactory.getLog(GlobalPropertySettings.class);
+	
+	/**
+	 * How long to wait before reading the properties again after reading them failed, in
+	 * milliseconds
+	 */
+	public static final long RETRY_MILLIS = 10000;
+	
+	private final List<String> propertyNames;
+	
+	/**
+	 * the values of the properties, null until they have been read
+	 */
+	private volatile Map<String, String> values = null;
+	
+	private volatile T settings = null;
+	
+	/**
+	 * the number of property changes so far, a read that overlaps one is not kept
+	 */
+	private long changes = 0;
+	
+	/**
+	 * when reading the properties last failed, 0 if they have changed since
+	 */
+	private volatile long failedAt = 0;
+	
+	/**
+	 * set while the properties are being read by the current thread
+	 */
+	private final ThreadLocal<Boolean> loading = new ThreadLocal<Boolean>();
+	
+	/**
+	 * @param propertyNames the names of the global properties the settings are parsed from
+	 */
+	public GlobalPropertySettings(String... propertyNames) {
+		this.propertyNames = Arrays.asList(propertyNames);
+	}
+	
+	/**
+	 * Parses the settings
+	 * 
+	 * @param values the property names and their values, a value is null if the property does not
+	 *            exist
+	 * @return the settings
+	 */
+	protected abstract T parse(Map<String, String> values);
+	
+	/**
+	 * @return the current settings, or null if the global properties cannot be read yet
+	 * @should keep the settings up to date when a property changes
+	 * @should not read the properties again until one changes after reading them failed
+	 */
+	public T get() {
+		T current = settings;
+		return current != null ? current : load();
+	}
+	
+	/**
+	 * @return the property names and the values the settings were parsed from, empty until the
+	 *         properties have been read
+	 */
+	public Map<String, String> getValues() {
+		Map<String, String> current = values;
+		return current == null ? Collections.<String, String> emptyMap() : Collections.unmodifiableMap(current);
+	}
+	
+	private T load() {
+		if (loading.get() != null || !Context.isSessionOpen())
+			return null;
+		if (failedAt != 0 && System.currentTimeMillis() - failedAt < RETRY_MILLIS)
+			return null;
+		
+		long changesBeforeRead;
+		synchronized (this) {
+			changesBeforeRead = changes;
+		}
+		
+		loading.set(Boolean.TRUE);
+		try {
+			AdministrationService as = Context.getAdministrationService();
+			Map<String, String> read = new HashMap<String, String>();
+			for (String propertyName : propertyNames)
+				read.put(propertyName, as.getGlobalProperty(propertyName));
+			T parsed = parse(read);
+			
+			synchronized (this) {
+				// a property that changed while reading may have been read before the change
+				if (changes == changesBeforeRead) {
+					values = read;
+					settings = parsed;
+				}
+			}
+			return parsed;
+		}
+		catch (Exception e) {
+			log.debug("Unable to read the global properties " + propertyNames + " yet", e);
+			synchronized (this) {
+				if (changes == changesBeforeRead)
+					failedAt = System.currentTimeMillis();
+			}
+			return null;
+		}
+		finally {
+			loading.remove();
+		}
+	}
+	
+	private synchronized void setValue(String propertyName, String value) {
+		changes++;
+		failedAt = 0;
+		Map<String, String> current = values;
+		if (current == null)
+			return; // they are read when the settings are next asked for
+		
+		Map<String, String> changed = new HashMap<String, String>(current);
+		changed.put(propertyName, value);
+		values = changed;
+		settings = parse(changed);
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyChanged(org.openmrs.GlobalProperty)
+	 */
+	@Override
+	public void globalPropertyChanged(GlobalProperty newValue) {
+		setValue(newValue.getProperty(), newValue.getPropertyValue());
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyDeleted(java.lang.String)
+	 */
+	@Override
+	public void globalPropertyDeleted(String propertyName) {
+		setValue(propertyName, null);
+	}
+	
+	/**
+	 * @see org.openmrs.api.GlobalPropertyListener#supportsPropertyName(java.lang.String)
+	 */
+	@Override
+	public boolean supportsPropertyName(String propertyName) {
+		return propertyNames.contains(propertyName);
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of results fetched by keyset (seek) pagination. The next page is fetched by passing the
+ * continuation token of this page back to the method that returned it, which costs the same no
+ * matter how many pages came before. The token is null on the last page.
+ *
+ * @param <T> the type of the results
+ * @see KeysetToken
+ * @since 1.10
+ */
+public class KeysetPage<T> {
+	
+	private final List<T> results;
+	
+	private final String continuationToken;
+	
+	/**
+	 * @param results the results of the page
+	 * @param continuationToken the token to fetch the next page with, or null if this is the last
+	 *            page
+	 */
+	public KeysetPage(List<T> results, String continuationToken) {
+		this.results = Collections.unmodifiableList(results);
+		this.continuationToken = continuationToken;
+	}
+	
+	/**
+	 * @return the unmodifiable results of the page
+	 */
+	public List<T> getResults() {
+		return results;
+	}
+	
+	/**
+	 * @return the token to fetch the next page with, or null if this is the last page
+	 */
+	public String getContinuationToken() {
+		return continuationToken;
+	}
+	
+	/**
+	 * @return true if there are more results after this page
+	 */
+	public boolean hasMore() {
+		return continuationToken != null;
+	}
+	
+}
@@ -0,0 +1,126 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Date;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.xerces.impl.dv.util.Base64;
+import org.openmrs.api.APIException;
+
+/**
+ * The sort key of the last result of a {@link KeysetPage}, from which the next page is fetched.
+ * Keyset pages are sorted newest first on a date and then on the primary key, so the next page is
+ * made of the rows whose (date, id) comes before the token in that order. Unlike an offset, this
+ * lets the database seek straight to the page through its indexes no matter how deep it is. <br/>
+ * <br/>
+ * Callers only ever see the token as an opaque string, the kind of the paged objects is part of
+ * it so that a token of one listing cannot be passed to another.
+ *
+ * @since 1.10
+ */
+public class KeysetToken {
+	
+	private static final String SEPARATOR = ":";
+	
+	private final String kind;
+	
+	private final Date date;
+	
+	private final Integer id;
+	
+	/**
+	 * @param kind the kind of the paged objects, e.g. "encounter"
+	 * @param date the date the last result is sorted on
+	 * @param id the primary key of the last result
+	 */
+	public KeysetToken(String kind, Date date, Integer id) {
+		if (kind == null || kind.contains(SEPARATOR) || date == null || id == null)
+			throw new IllegalArgumentException("A keyset token needs a kind without '" + SEPARATOR + "', a date and an id");
+		this.kind = kind;
+		this.date = date;
+		this.id = id;
+	}
+	
+	/**
+	 * @return the kind of the paged objects
+	 */
+	public String getKind() {
+		return kind;
+	}
+	
+	/**
+	 * @return the date the last result is sorted on
+	 */
+	public Date getDate() {
+		return date;
+	}
+	
+	/**
+	 * @return the primary key of the last result
+	 */
+	public Integer getId() {
+		return id;
+	}
+	
+	/**
+	 * @return the opaque string handed to callers as the continuation token
+	 * @should encode a token that decodes to the same sort key
+	 */
+	public String encode() {
+		String key = kind + SEPARATOR + date.getTime() + SEPARATOR + id;
+		try {
+			return Base64.encode(key.getBytes("UTF-8"));
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new APIException("UTF-8 is not supported", e);
+		}
+	}
+	
+	/**
+	 * Decodes a continuation token of the given kind
+	 * 
+	 * @param kind the kind of the paged objects
+	 * @param token the continuation token returned with the previous page, or blank for the first
+	 *            page
+	 * @return the decoded sort key, or null if the token is blank
+	 * @throws APIException if the token is not a valid token of the given kind
+	 * @should return null for a blank token
+	 * @should fail for a token of another kind
+	 * @should fail for a token that is not a keyset token
+	 */
+	public static KeysetToken decode(String kind, String token) throws APIException {
+		if (StringUtils.isBlank(token))
+			return null;
+		
+		byte[] bytes = Base64.decode(token.trim());
+		if (bytes != null) {
+			try {
+				String[] parts = new String(bytes, "UTF-8").split(SEPARATOR);
+				if (parts.length == 3 && parts[0].equals(kind))
+					return new KeysetToken(kind, new Date(Long.parseLong(parts[1])), Integer.valueOf(parts[2]));
+			}
+			catch (UnsupportedEncodingException e) {
+				throw new APIException("UTF-8 is not supported", e);
+			}
+			catch (NumberFormatException e) {
+				// fall through to the invalid token error
+			}
+		}
+		
+		throw new APIException("Invalid continuation token for " + kind + " results: " + token);
+	}
+	
+}
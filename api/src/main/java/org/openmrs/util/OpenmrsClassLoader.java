@@ -29,16 +29,19 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.ModuleClassLoader;
+import org.openmrs.module.ModuleClassLoaderRoutingTable;
 import org.openmrs.module.ModuleFactory;
 import org.openmrs.module.ModuleUtil;
 import org.openmrs.scheduler.SchedulerException;
@@ -65,6 +68,39 @@ public class OpenmrsClassLoader extends URLClassLoader {
 	// suffix of the OpenMRS required library cache folder
 	private static final String LIBCACHESUFFIX = ".openmrs-lib-cache";
 	
+	// the maximum number of names of classes that could not be loaded to remember
+	private static final int NOT_FOUND_CACHE_SIZE = 10000;
+	
+	// the module classloaders by the packages they own, built when first needed after modules were started or stopped
+	private static volatile ModuleClassLoaderRoutingTable moduleClassLoaderRoutingTable = null;
+	
+	// names of classes that no classloader could load, so that repeated lookups (e.g. for BeanInfo
+	// classes) don't ask every classloader again. Cleared whenever modules are started or stopped
+	private static final Map<String, Boolean> notFoundClassNames = Collections
+	        .synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+		        
+		        private static final long serialVersionUID = 1L;
+		        
+		        @Override
+		        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+			        return size() > NOT_FOUND_CACHE_SIZE;
+		        }
+	        });
+	
+	// incremented whenever modules are started or stopped, so that a lookup that began before the
+	// change does not remember a class as not found after the cache was cleared
+	private static final AtomicLong moduleClassLoaderGeneration = new AtomicLong();
+	
+	private static final AtomicLong classLoadRequests = new AtomicLong();
+	
+	private static final AtomicLong moduleClassLoads = new AtomicLong();
+	
+	private static final AtomicLong parentClassLoads = new AtomicLong();
+	
+	private static final AtomicLong classesNotFound = new AtomicLong();
+	
+	private static final AtomicLong notFoundCacheHits = new AtomicLong();
+	
 	/**
 	 * Creates the instance for the OpenmrsClassLoader
 	 */
@@ -119,33 +155,24 @@ public class OpenmrsClassLoader extends URLClassLoader {
 	 */
 	@Override
 	public Class<?> loadClass(String name, final boolean resolve) throws ClassNotFoundException {
-		for (ModuleClassLoader classLoader : ModuleFactory.getModuleClassLoaders()) {
-			// this is to prevent unnecessary looping over providedPackages
-			boolean tryToLoad = name.startsWith(classLoader.getModule().getPackageName());
-			
-			// the given class name doesn't match the config.xml package in this module,
-			// check the "providedPackage" list to see if its in a lib
-			if (!tryToLoad) {
-				
-				for (String providedPackage : classLoader.getAdditionalPackages()) {
-					// break out early if we match a package
-					if (name.startsWith(providedPackage)) {
-						tryToLoad = true;
-						break;
-					}
-				}
+		classLoadRequests.incrementAndGet();
+		long generation = moduleClassLoaderGeneration.get();
+		if (notFoundClassNames.containsKey(name)) {
+			notFoundCacheHits.incrementAndGet();
+			throw new ClassNotFoundException(name);
+		}
+		
+		// only the classloaders of modules whose package or "providedPackage" list matches can have the class
+		for (ModuleClassLoader classLoader : getModuleClassLoaderRoutingTable().getClassLoaders(name)) {
+			try {
+				//if (classLoader.isLoadingFromParent() == false)
+				Class<?> c = classLoader.loadClass(name);
+				loadedClasses.add(c);
+				moduleClassLoads.incrementAndGet();
+				return c;
 			}
-			
-			if (tryToLoad) {
-				try {
-					//if (classLoader.isLoadingFromParent() == false)
-					Class<?> c = classLoader.loadClass(name);
-					loadedClasses.add(c);
-					return c;
-				}
-				catch (ClassNotFoundException e) {
-					//log.debug("Didn't find entry for: " + name);
-				}
+			catch (ClassNotFoundException e) {
+				//log.debug("Didn't find entry for: " + name);
 			}
 		}
 		
@@ -156,6 +183,7 @@ public class OpenmrsClassLoader extends URLClassLoader {
 		try {
 			Class<?> c = getParent().loadClass(name);
 			loadedClasses.add(c);
+			parentClassLoads.incrementAndGet();
 			return c;
 		}
 		catch (ClassNotFoundException e) {
@@ -170,9 +198,77 @@ public class OpenmrsClassLoader extends URLClassLoader {
 			ex = e;
 		}
 		
+		synchronized (notFoundClassNames) {
+			if (generation == moduleClassLoaderGeneration.get())
+				notFoundClassNames.put(name, Boolean.TRUE);
+		}
+		classesNotFound.incrementAndGet();
 		throw ex;
 	}
 	
+	/**
+	 * Gets the routing table of the current module classloaders, building it if the started modules
+	 * changed since it was last used
+	 * 
+	 * @return the routing table
+	 */
+	private static ModuleClassLoaderRoutingTable getModuleClassLoaderRoutingTable() {
+		ModuleClassLoaderRoutingTable routingTable = moduleClassLoaderRoutingTable;
+		if (routingTable == null) {
+			synchronized (OpenmrsClassLoader.class) {
+				routingTable = moduleClassLoaderRoutingTable;
+				if (routingTable == null) {
+					routingTable = ModuleClassLoaderRoutingTable.build(new ArrayList<ModuleClassLoader>(ModuleFactory
+					        .getModuleClassLoaders()));
+					moduleClassLoaderRoutingTable = routingTable;
+				}
+			}
+		}
+		return routingTable;
+	}
+	
+	/**
+	 * Drops the routing table of the module classloaders and the names of the classes that could
+	 * not be loaded. This must be called whenever a module classloader is added or removed, or the
+	 * packages it provides change.
+	 * 
+	 * @since 1.10
+	 */
+	public static void moduleClassLoadersChanged() {
+		synchronized (OpenmrsClassLoader.class) {
+			moduleClassLoaderRoutingTable = null;
+			synchronized (notFoundClassNames) {
+				moduleClassLoaderGeneration.incrementAndGet();
+				notFoundClassNames.clear();
+			}
+		}
+	}
+	
+	/**
+	 * Gets the number of classes loaded through this classloader since startup, by where they were
+	 * found:
+	 * <ul>
+	 * <li>requests: all calls to {@link #loadClass(String, boolean)}</li>
+	 * <li>modules: classes loaded by a module classloader</li>
+	 * <li>parent: classes loaded by the parent classloader</li>
+	 * <li>notFound: classes that could not be found by any classloader</li>
+	 * <li>notFoundCacheHits: requests answered from the names of classes that were not found
+	 * before</li>
+	 * </ul>
+	 * 
+	 * @return the counts keyed by the names above
+	 * @since 1.10
+	 */
+	public static Map<String, Long> getClassLoadingStatistics() {
+		Map<String, Long> statistics = new LinkedHashMap<String, Long>();
+		statistics.put("requests", classLoadRequests.get());
+		statistics.put("modules", moduleClassLoads.get());
+		statistics.put("parent", parentClassLoads.get());
+		statistics.put("notFound", classesNotFound.get());
+		statistics.put("notFoundCacheHits", notFoundCacheHits.get());
+		return statistics;
+	}
+	
 	/**
 	 * @see java.net.URLClassLoader#findResource(java.lang.String)
 	 */
@@ -279,6 +375,8 @@ public class OpenmrsClassLoader extends URLClassLoader {
 	 */
 	public static void destroyInstance() {
 		
+		moduleClassLoadersChanged();
+		
 		// remove all thread references to this class
 		// Walk up all the way to the root thread group
 		ThreadGroup rootGroup = Thread.currentThread().getThreadGroup();
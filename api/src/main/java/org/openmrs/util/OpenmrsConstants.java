@@ -791,6 +791,8 @@ public final class OpenmrsConstants {
 	@Deprecated
 	public static final String GLOBAL_PROPERTY_REPORT_XML_MACROS = "report.xmlMacros";
 	
+	public static final String GLOBAL_PROPERTY_REPORT_FILTER_EVALUATION_THREADS = "report.filterEvaluationThreads";
+	
 	public static final String GLOBAL_PROPERTY_STANDARD_DRUG_REGIMENS = "dashboard.regimen.standardRegimens";
 	
 	public static final String GLOBAL_PROPERTY_SHOW_PATIENT_NAME = "dashboard.showPatientName";
@@ -813,6 +815,14 @@ public final class OpenmrsConstants {
 	
 	public static final String GLOBAL_PROPERTY_COMPLEX_OBS_DIR = "obs.complex_obs_dir";
 	
+	public static final String GLOBAL_PROPERTY_OBS_SUMMARY_CONCEPTS = "obs.summaryConcepts";
+	
+	/**
+	 * The ids of the concepts whose summaries are in the obs_summary table, set by the
+	 * {@link org.openmrs.scheduler.tasks.RebuildObsSummariesTask}
+	 */
+	public static final String GLOBAL_PROPERTY_OBS_SUMMARY_STORED_CONCEPTS = "obs.summaryConcepts.stored";
+	
 	public static final String GLOBAL_PROPERTY_MIN_SEARCH_CHARACTERS = "minSearchCharacters";
 	
 	public static final int GLOBAL_PROPERTY_DEFAULT_MIN_SEARCH_CHARACTERS = 3;
@@ -1041,6 +1051,53 @@ public final class OpenmrsConstants {
 	
 	public static final String GP_CASE_SENSITIVE_NAMES_IN_CONCEPT_NAME_TABLE = "concept.caseSensitiveNamesInConceptNameTable";
 	
+	/**
+	 * Global property name that switches the measuring of service calls on or off
+	 * 
+	 * @see org.openmrs.aop.ServiceMetrics
+	 * @since 1.10
+	 */
+	public static final String GP_METRICS_ENABLED = "metrics.enabled";
+	
+	/**
+	 * Global property name for the comma separated service interface names whose calls are
+	 * measured, all services are measured when it is empty
+	 * 
+	 * @since 1.10
+	 */
+	public static final String GP_METRICS_SERVICES = "metrics.services";
+	
+	/**
+	 * Global property name that switches the counting of the statements of each request and task
+	 * on or off
+	 * 
+	 * @see org.openmrs.api.db.hibernate.QueryProfiler
+	 * @since 1.10
+	 */
+	public static final String GP_QUERY_PROFILER_ENABLED = "queryProfiler.enabled";
+	
+	/**
+	 * Global property name for the number of statements above which a request or task is flagged
+	 * 
+	 * @since 1.10
+	 */
+	public static final String GP_QUERY_PROFILER_STATEMENT_THRESHOLD = "queryProfiler.statementThreshold";
+	
+	/**
+	 * Global property name for the number of times the same statement may be repeated before a
+	 * request or task is flagged
+	 * 
+	 * @since 1.10
+	 */
+	public static final String GP_QUERY_PROFILER_REPEATED_STATEMENT_THRESHOLD = "queryProfiler.repeatedStatementThreshold";
+	
+	/**
+	 * Global property name for the milliseconds above which a request or task is flagged
+	 * 
+	 * @since 1.10
+	 */
+	public static final String GP_QUERY_PROFILER_DURATION_THRESHOLD = "queryProfiler.durationThreshold";
+	
 	/**
 	 * At OpenMRS startup these global properties/default values/descriptions are inserted into the
 	 * database if they do not exist yet.
@@ -1315,6 +1372,17 @@ public final class OpenmrsConstants {
 		props.add(new GlobalProperty(GLOBAL_PROPERTY_COMPLEX_OBS_DIR, "complex_obs",
 		        "Default directory for storing complex obs."));
 		
+		props.add(new GlobalProperty(GLOBAL_PROPERTY_REPORT_FILTER_EVALUATION_THREADS, "1",
+		        "The number of threads the distinct filters of a cohort definition or an indicator report are evaluated on. "
+		                + "Each thread queries the database in its own session, so leave this at 1 if the filters "
+		                + "need to see data that was changed in the same transaction."));
+		
+		props.add(new GlobalProperty(GLOBAL_PROPERTY_OBS_SUMMARY_CONCEPTS, "",
+		        "Comma delimited list of concept ids or uuids whose obs counts and latest obs per person are kept in the "
+		                + "obs_summary table, for the counters that are read the most, e.g. on dashboards. "
+		                + "Run the Rebuild Obs Summaries task after changing this property, until then the summaries "
+		                + "of newly listed concepts are computed from the obs table."));
+		
 		props
 		        .add(new GlobalProperty(
 		                GLOBAL_PROPERTY_ENCOUNTER_FORM_OBS_SORT_ORDER,
@@ -1484,6 +1552,28 @@ public final class OpenmrsConstants {
 		props.add(new GlobalProperty(GLOBAL_PROPERTY_USER_REQUIRE_EMAIL_AS_USERNAME, "false",
 		        "Indicates whether a username must be a valid e-mail or not.", BooleanDatatype.class, null));
 		
+		props.add(new GlobalProperty(GP_METRICS_ENABLED, "false",
+		        "Set to true to record call counts, timings and database work of the service methods, "
+		                + "see Admin > Maintenance > Service Metrics", BooleanDatatype.class, null));
+		
+		props.add(new GlobalProperty(GP_METRICS_SERVICES, "",
+		        "A comma-separated list of the services to record metrics for, e.g. PatientService,ObsService. "
+		                + "Metrics are recorded for all services when this is empty"));
+		
+		props.add(new GlobalProperty(GP_QUERY_PROFILER_ENABLED, "false",
+		        "Set to true to count the sql statements of each request and scheduled task, "
+		                + "see Admin > Maintenance > Query Profiles", BooleanDatatype.class, null));
+		
+		props.add(new GlobalProperty(GP_QUERY_PROFILER_STATEMENT_THRESHOLD, "100",
+		        "Requests and tasks that run more sql statements than this are logged by the query profiler, 0 to not check"));
+		
+		props.add(new GlobalProperty(GP_QUERY_PROFILER_REPEATED_STATEMENT_THRESHOLD, "10",
+		        "Requests and tasks that run the same sql statement more often than this are logged by the query profiler, "
+		                + "as this usually means one query per row of an earlier result. 0 to not check"));
+		
+		props.add(new GlobalProperty(GP_QUERY_PROFILER_DURATION_THRESHOLD, "2000",
+		        "Requests and tasks that take longer than this many milliseconds are logged by the query profiler, 0 to not check"));
+		
 		for (GlobalProperty gp : ModuleFactory.getGlobalProperties()) {
 			props.add(gp);
 		}
@@ -1735,6 +1825,8 @@ public final class OpenmrsConstants {
 	
 	public static final String TEXT_VIEW = "TEXT_VIEW";
 	
+	public static final String THUMBNAIL_VIEW = "THUMBNAIL_VIEW";
+	
 	public static final String ORDER_NUMBER_DEFAULT_PREFIX = "OR:";
 	
 	/** The data type to return on failing to load a custom data type. */
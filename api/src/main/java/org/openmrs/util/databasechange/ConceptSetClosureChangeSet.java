@@ -0,0 +1,155 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util.databasechange;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import liquibase.change.custom.CustomChange;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+/**
+ * This change set fills the concept_set_closure table with every (set, member) pair of the
+ * concept_set table, including the members of nested sets
+ */
+public class ConceptSetClosureChangeSet implements CustomTaskChange {
+	
+	// the number of rows inserted per batch
+	private static final int BATCH_SIZE = 1000;
+	
+	/**
+	 * @see CustomTaskChange#execute(Database)
+	 */
+	@Override
+	public void execute(Database database) throws CustomChangeException {
+		JdbcConnection connection = (JdbcConnection) database.getConnection();
+		
+		Statement selectStatement = null;
+		PreparedStatement insertStatement = null;
+		try {
+			// the direct members of every set
+			Map<Integer, List<Integer>> members = new LinkedHashMap<Integer, List<Integer>>();
+			selectStatement = connection.createStatement();
+			ResultSet rs = selectStatement.executeQuery("SELECT concept_set, concept_id FROM concept_set");
+			while (rs.next()) {
+				List<Integer> setMembers = members.get(rs.getInt(1));
+				if (setMembers == null) {
+					setMembers = new ArrayList<Integer>();
+					members.put(rs.getInt(1), setMembers);
+				}
+				setMembers.add(rs.getInt(2));
+			}
+			rs.close();
+			
+			insertStatement = connection
+			        .prepareStatement("INSERT INTO concept_set_closure (ancestor_concept_id, descendant_concept_id) VALUES (?, ?)");
+			int batched = 0;
+			for (Integer setId : members.keySet()) {
+				for (Integer descendantId : getDescendants(setId, members)) {
+					insertStatement.setInt(1, setId);
+					insertStatement.setInt(2, descendantId);
+					insertStatement.addBatch();
+					if (++batched % BATCH_SIZE == 0)
+						insertStatement.executeBatch();
+				}
+			}
+			insertStatement.executeBatch();
+		}
+		catch (SQLException e) {
+			throw new CustomChangeException("Unable to populate the concept_set_closure table", e);
+		}
+		catch (DatabaseException e) {
+			throw new CustomChangeException("Unable to populate the concept_set_closure table", e);
+		}
+		finally {
+			try {
+				if (selectStatement != null)
+					selectStatement.close();
+				if (insertStatement != null)
+					insertStatement.close();
+			}
+			catch (SQLException e) {
+				// nothing to do
+			}
+		}
+	}
+	
+	/**
+	 * Gets the members of a set and of its nested sets, breadth first so that cycles end
+	 */
+	private Set<Integer> getDescendants(Integer setId, Map<Integer, List<Integer>> members) {
+		Set<Integer> descendants = new LinkedHashSet<Integer>();
+		List<Integer> level = Collections.singletonList(setId);
+		while (!level.isEmpty()) {
+			List<Integer> nextLevel = new ArrayList<Integer>();
+			for (Integer conceptId : level) {
+				List<Integer> setMembers = members.get(conceptId);
+				if (setMembers == null)
+					continue;
+				for (Integer memberId : setMembers) {
+					if (descendants.add(memberId))
+						nextLevel.add(memberId);
+				}
+			}
+			level = nextLevel;
+		}
+		return descendants;
+	}
+	
+	/**
+	 * @see CustomChange#getConfirmationMessage()
+	 */
+	@Override
+	public String getConfirmationMessage() {
+		return "Finished populating the concept_set_closure table";
+	}
+	
+	/**
+	 * @see CustomChange#setFileOpener(ResourceAccessor)
+	 */
+	@Override
+	public void setFileOpener(ResourceAccessor fo) {
+	}
+	
+	/**
+	 * @see CustomChange#setUp()
+	 */
+	@Override
+	public void setUp() throws SetupException {
+	}
+	
+	/**
+	 * @see CustomChange#validate(Database)
+	 */
+	@Override
+	public ValidationErrors validate(Database db) {
+		return new ValidationErrors();
+	}
+}
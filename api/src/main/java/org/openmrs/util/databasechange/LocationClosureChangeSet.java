@@ -0,0 +1,131 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util.databasechange;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import liquibase.change.custom.CustomChange;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+/**
+ * This change set fills the location_closure table with every (ancestor, descendant) pair of the
+ * location hierarchy, from the parent_location column of the location table
+ */
+public class LocationClosureChangeSet implements CustomTaskChange {
+	
+	// the number of rows inserted per batch
+	private static final int BATCH_SIZE = 1000;
+	
+	/**
+	 * @see CustomTaskChange#execute(Database)
+	 */
+	@Override
+	public void execute(Database database) throws CustomChangeException {
+		JdbcConnection connection = (JdbcConnection) database.getConnection();
+		
+		Statement selectStatement = null;
+		PreparedStatement insertStatement = null;
+		try {
+			Map<Integer, Integer> parents = new HashMap<Integer, Integer>();
+			selectStatement = connection.createStatement();
+			ResultSet rs = selectStatement.executeQuery("SELECT location_id, parent_location FROM location");
+			while (rs.next()) {
+				int parentId = rs.getInt(2);
+				parents.put(rs.getInt(1), rs.wasNull() ? null : parentId);
+			}
+			rs.close();
+			
+			insertStatement = connection
+			        .prepareStatement("INSERT INTO location_closure (ancestor_location_id, descendant_location_id, depth) VALUES (?, ?, ?)");
+			int batched = 0;
+			for (Integer locationId : parents.keySet()) {
+				// walk up to the root, stopping at a cycle
+				Set<Integer> seen = new HashSet<Integer>();
+				seen.add(locationId);
+				int depth = 1;
+				for (Integer ancestorId = parents.get(locationId); ancestorId != null && seen.add(ancestorId); ancestorId = parents
+				        .get(ancestorId)) {
+					insertStatement.setInt(1, ancestorId);
+					insertStatement.setInt(2, locationId);
+					insertStatement.setInt(3, depth++);
+					insertStatement.addBatch();
+					if (++batched % BATCH_SIZE == 0)
+						insertStatement.executeBatch();
+				}
+			}
+			insertStatement.executeBatch();
+		}
+		catch (SQLException e) {
+			throw new CustomChangeException("Unable to populate the location_closure table", e);
+		}
+		catch (DatabaseException e) {
+			throw new CustomChangeException("Unable to populate the location_closure table", e);
+		}
+		finally {
+			try {
+				if (selectStatement != null)
+					selectStatement.close();
+				if (insertStatement != null)
+					insertStatement.close();
+			}
+			catch (SQLException e) {
+				// nothing to do
+			}
+		}
+	}
+	
+	/**
+	 * @see CustomChange#getConfirmationMessage()
+	 */
+	@Override
+	public String getConfirmationMessage() {
+		return "Finished populating the location_closure table";
+	}
+	
+	/**
+	 * @see CustomChange#setFileOpener(ResourceAccessor)
+	 */
+	@Override
+	public void setFileOpener(ResourceAccessor fo) {
+	}
+	
+	/**
+	 * @see CustomChange#setUp()
+	 */
+	@Override
+	public void setUp() throws SetupException {
+	}
+	
+	/**
+	 * @see CustomChange#validate(Database)
+	 */
+	@Override
+	public ValidationErrors validate(Database db) {
+		return new ValidationErrors();
+	}
+}
@@ -13,6 +13,10 @@
  */
 package org.openmrs.validator;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -75,6 +79,22 @@ public class PatientIdentifierValidator implements Validator {
 	 * @see #validateIdentifier(String, PatientIdentifierType)
 	 */
 	public static void validateIdentifier(PatientIdentifier pi) throws PatientIdentifierException {
+		validateIdentifier(pi, true);
+	}
+	
+	/**
+	 * Checks that the given {@link PatientIdentifier} is valid, optionally leaving out the check
+	 * whether another patient already has it. Callers validating many identifiers can leave it out
+	 * and check all of them at once with {@link #validateIdentifiersAreUnique(Collection)}.
+	 * 
+	 * @param pi - the {@link PatientIdentifier} to validate
+	 * @param checkUniqueness whether to check that no other patient has the identifier
+	 * @throws PatientIdentifierException if the {@link PatientIdentifier} is invalid
+	 * @since 1.10
+	 * @should not fail validation if another patient has a matching identifier and uniqueness is
+	 *         not checked
+	 */
+	public static void validateIdentifier(PatientIdentifier pi, boolean checkUniqueness) throws PatientIdentifierException {
 		
 		// Validate that the identifier is non-null
 		if (pi == null) {
@@ -95,17 +115,54 @@ public class PatientIdentifierValidator implements Validator {
 				    "PatientIdentifier.location.null", new Object[] { identifierString }, Context.getLocale()));
 			}
 			
-			if (pi.getIdentifierType().getUniquenessBehavior() != UniquenessBehavior.NON_UNIQUE) {
+			if (checkUniqueness && pi.getIdentifierType().getUniquenessBehavior() != UniquenessBehavior.NON_UNIQUE) {
 				// Check is already in use by another patient
 				if (Context.getPatientService().isIdentifierInUseByAnotherPatient(pi)) {
-					throw new IdentifierNotUniqueException(Context.getMessageSourceService().getMessage(
-					    "PatientIdentifier.error.notUniqueWithParameter", new Object[] { pi.getIdentifier() },
-					    Context.getLocale()), pi);
+					throw new IdentifierNotUniqueException(getNotUniqueMessage(pi), pi);
 				}
 			}
 		}
 	}
 	
+	/**
+	 * Checks that none of the given identifiers is in use by another patient, using a single query
+	 * for all of them. Voided identifiers and identifiers of types that don't need to be unique are
+	 * skipped.
+	 * 
+	 * @param identifiers the identifiers to check
+	 * @throws IdentifierNotUniqueException for the first identifier that is in use by another
+	 *             patient
+	 * @since 1.10
+	 * @should fail validation if another patient has a matching identifier of the same type
+	 * @should pass if in use and id type uniqueness is set to non unique
+	 * @should pass if the identifiers are only used by their own patient
+	 */
+	public static void validateIdentifiersAreUnique(Collection<PatientIdentifier> identifiers)
+	        throws IdentifierNotUniqueException {
+		List<PatientIdentifier> identifiersToCheck = new ArrayList<PatientIdentifier>(identifiers.size());
+		for (PatientIdentifier pi : identifiers) {
+			if (pi != null && !pi.isVoided() && pi.getIdentifierType() != null
+			        && pi.getIdentifierType().getUniquenessBehavior() != UniquenessBehavior.NON_UNIQUE)
+				identifiersToCheck.add(pi);
+		}
+		if (identifiersToCheck.isEmpty())
+			return;
+		
+		List<PatientIdentifier> inUse = Context.getPatientService().getPatientIdentifiersInUseByAnotherPatient(
+		    identifiersToCheck);
+		if (!inUse.isEmpty())
+			throw new IdentifierNotUniqueException(getNotUniqueMessage(inUse.get(0)), inUse.get(0));
+	}
+	
+	/**
+	 * @return the message for an identifier that is already in use by another patient
+	 * @since 1.10
+	 */
+	public static String getNotUniqueMessage(PatientIdentifier pi) {
+		return Context.getMessageSourceService().getMessage("PatientIdentifier.error.notUniqueWithParameter",
+		    new Object[] { pi.getIdentifier() }, Context.getLocale());
+	}
+	
 	/**
 	 * Validates that a given identifier string is valid for a given {@link PatientIdentifierType}
 	 * Checks for things like blank identifiers, invalid check digits, and invalid format.
@@ -20,7 +20,7 @@ import org.apache.commons.logging.LogFactory;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifier;
 import org.openmrs.annotation.Handler;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.openmrs.api.IdentifierNotUniqueException;
 import org.springframework.validation.Errors;
 
 /**
@@ -31,8 +31,29 @@ public class PatientValidator extends PersonValidator {
 	
 	private static Log log = LogFactory.getLog(PersonNameValidator.class);
 	
-	@Autowired
-	private PatientIdentifierValidator patientIdentifierValidator;
+	/**
+	 * set while the caller checks the identifiers of the validated patients for uniqueness itself,
+	 * see {@link #setCheckIdentifierUniqueness(boolean)}
+	 */
+	private static final ThreadLocal<Boolean> identifierUniquenessCheckedByCaller = new ThreadLocal<Boolean>();
+	
+	/**
+	 * Sets whether the patients validated by the current thread have their identifiers checked
+	 * against the other patients. Callers that validate many patients, like
+	 * {@link org.openmrs.api.PatientService#savePatients(java.util.List)}, turn the check off and
+	 * check the identifiers of all the patients at once with
+	 * {@link PatientIdentifierValidator#validateIdentifiersAreUnique(Collection)}. It has to be
+	 * turned on again in a finally block.
+	 * 
+	 * @param checkIdentifierUniqueness whether to check the identifiers for uniqueness
+	 * @since 1.10
+	 */
+	public static void setCheckIdentifierUniqueness(boolean checkIdentifierUniqueness) {
+		if (checkIdentifierUniqueness)
+			identifierUniquenessCheckedByCaller.remove();
+		else
+			identifierUniquenessCheckedByCaller.set(Boolean.TRUE);
+	}
 	
 	/**
 	 * Returns whether or not this validator supports validating a given class.
@@ -95,7 +116,22 @@ public class PatientValidator extends PersonValidator {
 			// Validate PatientIdentifers
 			if (patient != null && patient.getIdentifiers() != null) {
 				for (PatientIdentifier identifier : patient.getIdentifiers()) {
-					patientIdentifierValidator.validate(identifier, errors);
+					try {
+						PatientIdentifierValidator.validateIdentifier(identifier, false);
+					}
+					catch (Exception e) {
+						errors.reject(e.getMessage());
+					}
+				}
+				
+				// all the identifiers are checked against the other patients with one query
+				if (!errors.hasErrors() && identifierUniquenessCheckedByCaller.get() == null) {
+					try {
+						PatientIdentifierValidator.validateIdentifiersAreUnique(patient.getIdentifiers());
+					}
+					catch (IdentifierNotUniqueException e) {
+						errors.reject(e.getMessage());
+					}
 				}
 			}
 		}
@@ -0,0 +1,83 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.aop;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+public class MethodMetricsTest {
+	
+	private static final long MILLIS = 1000000L;
+	
+	/**
+	 * @see {@link MethodMetrics#record(long,boolean,long,long)}
+	 */
+	@Test
+	@Verifies(value = "should count the call in the histogram bucket of its duration", method = "record(long,boolean,long,long)")
+	public void record_shouldCountTheCallInTheHistogramBucketOfItsDuration() throws Exception {
+		MethodMetrics metrics = new MethodMetrics("TestService.test()");
+		metrics.record(MILLIS / 2, false, 1, 2);
+		metrics.record(3 * MILLIS, true, 4, 0);
+		metrics.record(60000 * MILLIS, false, 0, 0);
+		
+		long[] histogram = metrics.getHistogram();
+		Assert.assertEquals(1, histogram[0]);
+		Assert.assertEquals(1, histogram[2]);
+		Assert.assertEquals(1, histogram[MethodMetrics.BUCKET_BOUNDS_MILLIS.length]);
+		Assert.assertEquals(3, metrics.getCalls());
+		Assert.assertEquals(1, metrics.getErrors());
+		Assert.assertEquals(5, metrics.getStatements());
+		Assert.assertEquals(2, metrics.getEntityLoads());
+	}
+	
+	/**
+	 * @see {@link MethodMetrics#record(long,boolean,long,long)}
+	 */
+	@Test
+	@Verifies(value = "should keep the longest duration", method = "record(long,boolean,long,long)")
+	public void record_shouldKeepTheLongestDuration() throws Exception {
+		MethodMetrics metrics = new MethodMetrics("TestService.test()");
+		metrics.record(7 * MILLIS, false, 0, 0);
+		metrics.record(2 * MILLIS, false, 0, 0);
+		
+		Assert.assertEquals(7d, metrics.getMaxMillis(), 0);
+		Assert.assertEquals(4.5d, metrics.getMeanMillis(), 0);
+	}
+	
+	/**
+	 * @see {@link MethodMetrics#getPercentileMillis(double)}
+	 */
+	@Test
+	@Verifies(value = "should return the upper bound of the bucket that holds the percentile", method = "getPercentileMillis(double)")
+	public void getPercentileMillis_shouldReturnTheUpperBoundOfTheBucketThatHoldsThePercentile() throws Exception {
+		MethodMetrics metrics = new MethodMetrics("TestService.test()");
+		for (int i = 0; i < 19; i++)
+			metrics.record(MILLIS / 2, false, 0, 0);
+		metrics.record(80 * MILLIS, false, 0, 0);
+		
+		Assert.assertEquals(1d, metrics.getPercentileMillis(50), 0);
+		Assert.assertEquals(1d, metrics.getPercentileMillis(95), 0);
+		Assert.assertEquals(80d, metrics.getPercentileMillis(100), 0);
+	}
+	
+	/**
+	 * @see {@link MethodMetrics#getPercentileMillis(double)}
+	 */
+	@Test
+	@Verifies(value = "should return zero when there are no calls", method = "getPercentileMillis(double)")
+	public void getPercentileMillis_shouldReturnZeroWhenThereAreNoCalls() throws Exception {
+		Assert.assertEquals(0d, new MethodMetrics("TestService.test()").getPercentileMillis(95), 0);
+	}
+}
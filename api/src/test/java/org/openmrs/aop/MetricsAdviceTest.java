@@ -0,0 +1,78 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.aop;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * Tests the {@link MetricsAdvice} that the ServiceContext adds to each service
+ */
+public class MetricsAdviceTest extends BaseContextSensitiveTest {
+	
+	private static final String GET_LOCATION = "LocationService.getLocation(Integer)";
+	
+	@After
+	public void disableMetrics() throws Exception {
+		setGlobalProperty(OpenmrsConstants.GP_METRICS_SERVICES, "");
+		setGlobalProperty(OpenmrsConstants.GP_METRICS_ENABLED, "false");
+	}
+	
+	/**
+	 * @see {@link MetricsAdvice#invoke(MethodInvocation)}
+	 */
+	@Test
+	@Verifies(value = "should record the call when the service is measured", method = "invoke(MethodInvocation)")
+	public void invoke_shouldRecordTheCallWhenTheServiceIsMeasured() throws Exception {
+		setGlobalProperty(OpenmrsConstants.GP_METRICS_ENABLED, "true");
+		setGlobalProperty(OpenmrsConstants.GP_METRICS_SERVICES, "LocationService");
+		long calls = ServiceMetrics.getMethodMetrics(GET_LOCATION).getCalls();
+		
+		Context.getLocationService().getLocation(1);
+		Context.getLocationService().getLocation(1);
+		
+		Assert.assertEquals(calls + 2, ServiceMetrics.getMethodMetrics(GET_LOCATION).getCalls());
+		Assert.assertTrue(ServiceMetrics.getAllMethodMetrics().contains(ServiceMetrics.getMethodMetrics(GET_LOCATION)));
+		
+		long encounterCalls = ServiceMetrics.getMethodMetrics("EncounterService.getEncounter(Integer)").getCalls();
+		Context.getEncounterService().getEncounter(3);
+		Assert.assertEquals(encounterCalls, ServiceMetrics.getMethodMetrics("EncounterService.getEncounter(Integer)")
+		        .getCalls());
+	}
+	
+	/**
+	 * @see {@link MetricsAdvice#invoke(MethodInvocation)}
+	 */
+	@Test
+	@Verifies(value = "should not record the call when metrics are disabled", method = "invoke(MethodInvocation)")
+	public void invoke_shouldNotRecordTheCallWhenMetricsAreDisabled() throws Exception {
+		setGlobalProperty(OpenmrsConstants.GP_METRICS_ENABLED, "false");
+		long calls = ServiceMetrics.getMethodMetrics(GET_LOCATION).getCalls();
+		
+		Context.getLocationService().getLocation(1);
+		
+		Assert.assertEquals(calls, ServiceMetrics.getMethodMetrics(GET_LOCATION).getCalls());
+	}
+	
+	private void setGlobalProperty(String property, String value) {
+		Context.getAdministrationService().saveGlobalProperty(new GlobalProperty(property, value));
+	}
+}
@@ -33,6 +33,7 @@ import java.util.Set;
 import junit.framework.Assert;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.hibernate.Hibernate;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -1373,6 +1374,55 @@ public class ConceptServiceTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(true, conceptSet.contains(conceptService.getConcept(6)));
 	}
 	
+	/**
+	 * @see {@link ConceptService#getConceptIdsByConceptSet(Concept)}
+	 */
+	@Test
+	@Verifies(value = "should return the ids of the concepts in the set and its nested sets", method = "getConceptIdsByConceptSet(Concept)")
+	public void getConceptIdsByConceptSet_shouldReturnTheIdsOfTheConceptsInTheSetAndItsNestedSets() throws Exception {
+		executeDataSet(GET_CONCEPTS_BY_SET_XML);
+		conceptService.rebuildConceptSetClosure();
+		
+		Assert.assertArrayEquals(new int[] { 2, 3, 4, 5, 6 }, conceptService.getConceptIdsByConceptSet(conceptService
+		        .getConcept(1)));
+		Assert.assertArrayEquals(new int[] { 4, 5, 6 }, conceptService.getConceptIdsByConceptSet(conceptService
+		        .getConcept(3)));
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptIdsByConceptSet(Concept)}
+	 */
+	@Test
+	@Verifies(value = "should return the new members of a saved set and of the sets that contain it", method = "getConceptIdsByConceptSet(Concept)")
+	public void getConceptIdsByConceptSet_shouldReturnTheNewMembersOfASavedSetAndOfTheSetsThatContainIt()
+	        throws Exception {
+		Concept parent = new Concept();
+		parent.addName(new ConceptName("Parent set", Context.getLocale()));
+		parent.setDatatype(conceptService.getConceptDatatypeByName("N/A"));
+		parent.setConceptClass(conceptService.getConceptClassByName("Finding"));
+		parent.setSet(true);
+		parent.addSetMember(conceptService.getConcept(23));
+		conceptService.saveConcept(parent);
+		Assert.assertArrayEquals(new int[] { 18, 19, 20, 23 }, conceptService.getConceptIdsByConceptSet(parent));
+		
+		Concept child = conceptService.getConcept(23);
+		child.addSetMember(conceptService.getConcept(5089));
+		conceptService.saveConcept(child);
+		
+		Assert.assertArrayEquals(new int[] { 18, 19, 20, 5089 }, conceptService.getConceptIdsByConceptSet(child));
+		Assert.assertArrayEquals(new int[] { 18, 19, 20, 23, 5089 }, conceptService.getConceptIdsByConceptSet(parent));
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptIdsByConceptSet(Concept)}
+	 */
+	@Test
+	@Verifies(value = "should return an empty array for a concept that is not a set", method = "getConceptIdsByConceptSet(Concept)")
+	public void getConceptIdsByConceptSet_shouldReturnAnEmptyArrayForAConceptThatIsNotASet() throws Exception {
+		conceptService.rebuildConceptSetClosure();
+		Assert.assertEquals(0, conceptService.getConceptIdsByConceptSet(conceptService.getConcept(5089)).length);
+	}
+	
 	/**
 	 * @see {@link ConceptService#saveConceptStopWord(org.openmrs.ConceptStopWord)}
 	 */
@@ -2613,4 +2663,178 @@ public class ConceptServiceTest extends BaseContextSensitiveTest {
 		cs.mapConceptProposalToConcept(cp, mappedConcept, locale);
 	}
 	
+	/**
+	 * @see {@link ConceptService#getConceptBatch(Integer,Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should return concepts in ascending concept id order starting after the given concept id", method = "getConceptBatch(Integer,Integer,boolean)")
+	public void getConceptBatch_shouldReturnConceptsInAscendingConceptIdOrderStartingAfterTheGivenConceptId()
+	        throws Exception {
+		ConceptService cs = Context.getConceptService();
+		List<Concept> batch = cs.getConceptBatch(5, 1000, true);
+		
+		Assert.assertFalse(batch.isEmpty());
+		Assert.assertEquals(cs.getNextConcept(cs.getConcept(5)), batch.get(0));
+		Integer previousConceptId = 5;
+		for (Concept concept : batch) {
+			Assert.assertTrue(concept.getConceptId() > previousConceptId);
+			previousConceptId = concept.getConceptId();
+		}
+		Assert.assertEquals(cs.getMaxConceptId(), previousConceptId);
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptBatch(Integer,Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should not return more than maxResults concepts", method = "getConceptBatch(Integer,Integer,boolean)")
+	public void getConceptBatch_shouldNotReturnMoreThanMaxResultsConcepts() throws Exception {
+		Assert.assertEquals(2, Context.getConceptService().getConceptBatch(null, 2, true).size());
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptBatch(Integer,Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should exclude retired concepts if includeRetired is false", method = "getConceptBatch(Integer,Integer,boolean)")
+	public void getConceptBatch_shouldExcludeRetiredConceptsIfIncludeRetiredIsFalse() throws Exception {
+		ConceptService cs = Context.getConceptService();
+		Concept retiredConcept = cs.getConcept(24);
+		Assert.assertTrue(retiredConcept.isRetired());
+		
+		Assert.assertTrue(cs.getConceptBatch(null, 1000, true).contains(retiredConcept));
+		List<Concept> batch = cs.getConceptBatch(null, 1000, false);
+		Assert.assertFalse(batch.contains(retiredConcept));
+		for (Concept concept : batch)
+			Assert.assertFalse(concept.isRetired());
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptBatch(Integer,Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should fetch the names answers and set members of the returned concepts", method = "getConceptBatch(Integer,Integer,boolean)")
+	public void getConceptBatch_shouldFetchTheNamesAnswersAndSetMembersOfTheReturnedConcepts() throws Exception {
+		Context.clearSession();
+		
+		List<Concept> batch = Context.getConceptService().getConceptBatch(20, 4, true);
+		Concept foodConstruct = null;
+		for (Concept concept : batch) {
+			Assert.assertTrue(Hibernate.isInitialized(concept.getConceptSets()));
+			Assert.assertTrue(Hibernate.isInitialized(concept.getConceptMappings()));
+			if (concept.getConceptId() == 23)
+				foodConstruct = concept;
+		}
+		
+		Assert.assertNotNull(foodConstruct);
+		Assert.assertEquals(3, foodConstruct.getConceptSets().size());
+		for (ConceptSet conceptSet : foodConstruct.getConceptSets())
+			Assert.assertTrue(Hibernate.isInitialized(conceptSet.getConcept()));
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptsForListing(List)}
+	 */
+	@Test
+	@Verifies(value = "should return the concepts in the order of the given ids", method = "getConceptsForListing(List)")
+	public void getConceptsForListing_shouldReturnTheConceptsInTheOrderOfTheGivenIds() throws Exception {
+		List<Concept> concepts = Context.getConceptService().getConceptsForListing(Arrays.asList(23, 5089, 3));
+		Assert.assertEquals(3, concepts.size());
+		Assert.assertEquals(23, concepts.get(0).getConceptId().intValue());
+		Assert.assertEquals(5089, concepts.get(1).getConceptId().intValue());
+		Assert.assertEquals(3, concepts.get(2).getConceptId().intValue());
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptsForListing(List)}
+	 */
+	@Test
+	@Verifies(value = "should fetch the names and descriptions of the concepts", method = "getConceptsForListing(List)")
+	public void getConceptsForListing_shouldFetchTheNamesAndDescriptionsOfTheConcepts() throws Exception {
+		Context.clearSession();
+		
+		// a concept already in the session gets its collections initialized as well
+		Concept foodConstruct = Context.getConceptService().getConcept(23);
+		Assert.assertFalse(Hibernate.isInitialized(foodConstruct.getNames()));
+		
+		List<Concept> concepts = Context.getConceptService().getConceptsForListing(Arrays.asList(23, 5089));
+		Assert.assertSame(foodConstruct, concepts.get(0));
+		for (Concept concept : concepts) {
+			Assert.assertTrue(Hibernate.isInitialized(concept.getNames()));
+			Assert.assertTrue(Hibernate.isInitialized(concept.getDescriptions()));
+		}
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptsForListing(List)}
+	 */
+	@Test
+	@Verifies(value = "should leave out the ids of concepts that do not exist", method = "getConceptsForListing(List)")
+	public void getConceptsForListing_shouldLeaveOutTheIdsOfConceptsThatDoNotExist() throws Exception {
+		List<Concept> concepts = Context.getConceptService().getConceptsForListing(Arrays.asList(99999, 3));
+		Assert.assertEquals(1, concepts.size());
+		Assert.assertEquals(3, concepts.get(0).getConceptId().intValue());
+		Assert.assertTrue(Context.getConceptService().getConceptsForListing(Collections.<Integer> emptyList()).isEmpty());
+	}
+	
+	/**
+	 * @return the number of concept words of the concept with the given id
+	 */
+	private int countConceptWords(Integer conceptId) {
+		return Context.getAdministrationService().executeSQL(
+		    "select concept_word_id from concept_word where concept_id = " + conceptId, true).size();
+	}
+	
+	/**
+	 * @see {@link ConceptService#updateConceptIndexes(List,boolean,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should update the index of all the given concepts", method = "updateConceptIndexes(List,boolean,boolean)")
+	public void updateConceptIndexes_shouldUpdateTheIndexOfAllTheGivenConcepts() throws Exception {
+		Context.getAdministrationService().executeSQL("delete from concept_word where concept_id = 23", false);
+		Assert.assertEquals(0, countConceptWords(23));
+		
+		List<Concept> batch = Context.getConceptService().getConceptBatch(20, 4, true);
+		List<Concept> updated = Context.getConceptService().updateConceptIndexes(batch, false, false);
+		
+		Assert.assertEquals(batch, updated);
+		// FOOD CONSTRUCT
+		Assert.assertEquals(2, countConceptWords(23));
+	}
+	
+	/**
+	 * @see {@link ConceptService#updateConceptIndexes(List,boolean,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should only update the index of changed concepts if onlyChanged is true", method = "updateConceptIndexes(List,boolean,boolean)")
+	public void updateConceptIndexes_shouldOnlyUpdateTheIndexOfChangedConceptsIfOnlyChangedIsTrue() throws Exception {
+		ConceptService cs = Context.getConceptService();
+		List<Concept> batch = cs.getConceptBatch(20, 4, true);
+		cs.updateConceptIndexes(batch, false, false);
+		Context.getAdministrationService().executeSQL("delete from concept_word where concept_id = 23", false);
+		
+		List<Concept> updated = cs.updateConceptIndexes(batch, true, false);
+		
+		Assert.assertEquals(1, updated.size());
+		Assert.assertEquals(23, updated.get(0).getConceptId().intValue());
+		Assert.assertEquals(2, countConceptWords(23));
+	}
+	
+	/**
+	 * @see {@link ConceptService#updateConceptIndexes(List,boolean,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should not change the index if dryRun is true", method = "updateConceptIndexes(List,boolean,boolean)")
+	public void updateConceptIndexes_shouldNotChangeTheIndexIfDryRunIsTrue() throws Exception {
+		ConceptService cs = Context.getConceptService();
+		List<Concept> batch = cs.getConceptBatch(20, 4, true);
+		cs.updateConceptIndexes(batch, false, false);
+		Context.getAdministrationService().executeSQL("delete from concept_word where concept_id = 23", false);
+		
+		List<Concept> changed = cs.updateConceptIndexes(batch, false, true);
+		
+		Assert.assertEquals(1, changed.size());
+		Assert.assertEquals(23, changed.get(0).getConceptId().intValue());
+		Assert.assertEquals(0, countConceptWords(23));
+	}
 }
@@ -25,7 +25,9 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
@@ -43,8 +45,10 @@ import org.openmrs.Form;
 import org.openmrs.GlobalProperty;
 import org.openmrs.Location;
 import org.openmrs.Obs;
+import org.openmrs.ObsSummary;
 import org.openmrs.Order;
 import org.openmrs.Patient;
+import org.openmrs.Person;
 import org.openmrs.Privilege;
 import org.openmrs.Provider;
 import org.openmrs.Role;
@@ -58,6 +62,7 @@ import org.openmrs.api.handler.ExistingVisitAssignmentHandler;
 import org.openmrs.api.handler.NoVisitAssignmentHandler;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.Verifies;
+import org.openmrs.util.KeysetPage;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.PrivilegeConstants;
 
@@ -2430,4 +2435,182 @@ public class EncounterServiceTest extends BaseContextSensitiveTest {
 		return encounter;
 	}
 	
+	/**
+	 * @see {@link EncounterService#getEncountersByPatient(Patient,boolean,String,int)}
+	 */
+	@Test
+	@Verifies(value = "should return the encounters of the patient newest first", method = "getEncountersByPatient(Patient,boolean,String,int)")
+	public void getEncountersByPatient_shouldReturnTheEncountersOfThePatientNewestFirst() throws Exception {
+		KeysetPage<Encounter> page = Context.getEncounterService().getEncountersByPatient(new Patient(7), false, null, 10);
+		
+		assertEquals(3, page.getResults().size());
+		assertEquals(5, page.getResults().get(0).getEncounterId().intValue());
+		assertEquals(4, page.getResults().get(1).getEncounterId().intValue());
+		assertEquals(3, page.getResults().get(2).getEncounterId().intValue());
+	}
+	
+	/**
+	 * @see {@link EncounterService#getEncountersByPatient(Patient,boolean,String,int)}
+	 */
+	@Test
+	@Verifies(value = "should return the next page for the continuation token", method = "getEncountersByPatient(Patient,boolean,String,int)")
+	public void getEncountersByPatient_shouldReturnTheNextPageForTheContinuationToken() throws Exception {
+		EncounterService es = Context.getEncounterService();
+		KeysetPage<Encounter> page = es.getEncountersByPatient(new Patient(7), false, null, 2);
+		assertEquals(2, page.getResults().size());
+		assertEquals(5, page.getResults().get(0).getEncounterId().intValue());
+		assertEquals(4, page.getResults().get(1).getEncounterId().intValue());
+		assertTrue(page.hasMore());
+		
+		page = es.getEncountersByPatient(new Patient(7), false, page.getContinuationToken(), 2);
+		assertEquals(1, page.getResults().size());
+		assertEquals(3, page.getResults().get(0).getEncounterId().intValue());
+	}
+	
+	/**
+	 * @see {@link EncounterService#getEncountersByPatient(Patient,boolean,String,int)}
+	 */
+	@Test
+	@Verifies(value = "should not return a continuation token on the last page", method = "getEncountersByPatient(Patient,boolean,String,int)")
+	public void getEncountersByPatient_shouldNotReturnAContinuationTokenOnTheLastPage() throws Exception {
+		KeysetPage<Encounter> page = Context.getEncounterService().getEncountersByPatient(new Patient(7), false, null, 3);
+		
+		assertEquals(3, page.getResults().size());
+		assertNull(page.getContinuationToken());
+		assertFalse(page.hasMore());
+	}
+	
+	/**
+	 * @see {@link EncounterService#getEncountersByPatient(Patient,boolean,String,int)}
+	 */
+	@Test(expected = APIException.class)
+	@Verifies(value = "should fail for an invalid continuation token", method = "getEncountersByPatient(Patient,boolean,String,int)")
+	public void getEncountersByPatient_shouldFailForAnInvalidContinuationToken() throws Exception {
+		Context.getEncounterService().getEncountersByPatient(new Patient(7), false, "not a token", 2);
+	}
+	
+	/**
+	 * @see {@link EncounterService#getEncountersByPatient(Patient,boolean,String,int)}
+	 */
+	@Test(expected = APIException.class)
+	@Verifies(value = "should fail for a continuation token of another listing", method = "getEncountersByPatient(Patient,boolean,String,int)")
+	public void getEncountersByPatient_shouldFailForAContinuationTokenOfAnotherListing() throws Exception {
+		EncounterService es = Context.getEncounterService();
+		KeysetPage<Encounter> page = es.getEncountersByPatient(new Patient(7), false, null, 2);
+		assertNotNull(page.getContinuationToken());
+		
+		es.getEncounters("qwerty", true, page.getContinuationToken(), 2);
+	}
+	
+	/**
+	 * @see {@link EncounterService#getEncounters(String,boolean,String,int)}
+	 */
+	@Test
+	@Verifies(value = "should page through all the unique encounters that match the query", method = "getEncounters(String,boolean,String,int)")
+	public void getEncounters_shouldPageThroughAllTheUniqueEncountersThatMatchTheQuery() throws Exception {
+		executeDataSet(UNIQUE_ENC_WITH_PAGING_XML);
+		EncounterService es = Context.getEncounterService();
+		List<Encounter> expected = es.getEncounters("qwerty", null, null, true);
+		
+		List<Encounter> paged = new ArrayList<Encounter>();
+		KeysetPage<Encounter> page = es.getEncounters("qwerty", true, null, 2);
+		paged.addAll(page.getResults());
+		while (page.hasMore()) {
+			page = es.getEncounters("qwerty", true, page.getContinuationToken(), 2);
+			paged.addAll(page.getResults());
+		}
+		
+		assertEquals(expected.size(), paged.size());
+		assertEquals(new HashSet<Encounter>(expected), new HashSet<Encounter>(paged));
+		for (int i = 1; i < paged.size(); i++) {
+			assertFalse(paged.get(i).getEncounterDatetime().after(paged.get(i - 1).getEncounterDatetime()));
+		}
+	}
+	
+	/**
+	 * @see {@link EncounterService#getEncounters(String,boolean,String,int)}
+	 */
+	@Test
+	@Verifies(value = "should return an empty page for empty query", method = "getEncounters(String,boolean,String,int)")
+	public void getEncounters_shouldReturnAnEmptyPageForEmptyQuery() throws Exception {
+		KeysetPage<Encounter> page = Context.getEncounterService().getEncounters("", true, null, 2);
+		
+		assertTrue(page.getResults().isEmpty());
+		assertFalse(page.hasMore());
+	}
+	
+	/**
+	 * @see {@link EncounterService#getEncounters(Patient,Location,boolean,Date,Date,Collection,Collection,Collection,Collection,Collection,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should get encounters at child locations if includeChildLocations is true", method = "getEncounters(Patient,Location,boolean,Date,Date,Collection,Collection,Collection,Collection,Collection,boolean)")
+	public void getEncounters_shouldGetEncountersAtChildLocationsIfIncludeChildLocationsIsTrue() throws Exception {
+		Location parent = createParentOfLocationOne();
+		EncounterService es = Context.getEncounterService();
+		List<Encounter> atLocationOne = es.getEncounters(null, Context.getLocationService().getLocation(1), null, null,
+		    null, null, null, null, null, true);
+		assertTrue(atLocationOne.size() > 0);
+		
+		List<Encounter> atParent = es.getEncounters(null, parent, true, null, null, null, null, null, null, null, true);
+		assertEquals(new HashSet<Encounter>(atLocationOne), new HashSet<Encounter>(atParent));
+	}
+	
+	/**
+	 * @see {@link EncounterService#getEncounters(Patient,Location,boolean,Date,Date,Collection,Collection,Collection,Collection,Collection,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should only get encounters at the location if includeChildLocations is false", method = "getEncounters(Patient,Location,boolean,Date,Date,Collection,Collection,Collection,Collection,Collection,boolean)")
+	public void getEncounters_shouldOnlyGetEncountersAtTheLocationIfIncludeChildLocationsIsFalse() throws Exception {
+		Location parent = createParentOfLocationOne();
+		
+		assertEquals(0, Context.getEncounterService().getEncounters(null, parent, false, null, null, null, null, null,
+		    null, null, true).size());
+	}
+	
+	/**
+	 * @see {@link EncounterService#saveEncounter(Encounter)}
+	 */
+	@Test
+	@Verifies(value = "should update the stored obs summaries of the previous patient when the patient is changed", method = "saveEncounter(Encounter)")
+	public void saveEncounter_shouldUpdateTheStoredObsSummariesOfThePreviousPatientWhenThePatientIsChanged()
+	        throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Concept> questions = Collections.singletonList(Context.getConceptService().getConcept(5089));
+		AdministrationService as = Context.getAdministrationService();
+		
+		try {
+			as.saveGlobalProperty(new GlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_OBS_SUMMARY_CONCEPTS, "5089"));
+			obsService.updateObsSummaries();
+			
+			// encounter 5 has one of the three weight obs of patient 7
+			Encounter encounter = Context.getEncounterService().getEncounter(5);
+			encounter.setPatient(Context.getPatientService().getPatient(2));
+			Context.getEncounterService().saveEncounter(encounter);
+			
+			List<ObsSummary> summaries = obsService.getObsSummaries(Collections.singletonList(new Person(7)), questions);
+			assertEquals(2, summaries.get(0).getObsCount().intValue());
+			summaries = obsService.getObsSummaries(Collections.singletonList(new Person(2)), questions);
+			assertEquals(1, summaries.get(0).getObsCount().intValue());
+		}
+		finally {
+			as.saveGlobalProperty(new GlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_OBS_SUMMARY_CONCEPTS, ""));
+			obsService.updateObsSummaries();
+		}
+	}
+	
+	/**
+	 * Saves a new location and moves location 1, where there are encounters, under it
+	 */
+	private Location createParentOfLocationOne() {
+		LocationService ls = Context.getLocationService();
+		Location parent = new Location();
+		parent.setName("Parent of location one");
+		ls.saveLocation(parent);
+		
+		Location location = ls.getLocation(1);
+		location.setParentLocation(parent);
+		ls.saveLocation(location);
+		return parent;
+	}
+	
 }
@@ -1131,4 +1131,74 @@ public class LocationServiceTest extends BaseContextSensitiveTest {
 		Assert.assertNull(service.getLocationAttributeByUuid("not-a-uuid"));
 	}
 	
+	
+	/**
+	 * @see LocationService#getDescendantLocations(Location,boolean)
+	 * @verifies return the child locations at every level
+	 */
+	@Test
+	public void getDescendantLocations_shouldReturnTheChildLocationsAtEveryLevel() throws Exception {
+		LocationService ls = Context.getLocationService();
+		ls.rebuildLocationClosure();
+		
+		List<Location> descendants = ls.getDescendantLocations(ls.getLocation(1), true);
+		Assert.assertEquals(3, descendants.size());
+		Assert.assertEquals(ls.getLocation(2), descendants.get(0));
+		Assert.assertEquals(ls.getLocation(3), descendants.get(1));
+		Assert.assertEquals(ls.getLocation(4), descendants.get(2));
+	}
+	
+	/**
+	 * @see LocationService#getDescendantLocations(Location,boolean)
+	 * @verifies not return retired locations if includeRetired is false
+	 */
+	@Test
+	public void getDescendantLocations_shouldNotReturnRetiredLocationsIfIncludeRetiredIsFalse() throws Exception {
+		LocationService ls = Context.getLocationService();
+		ls.rebuildLocationClosure();
+		ls.retireLocation(ls.getLocation(4), "test");
+		
+		List<Location> descendants = ls.getDescendantLocations(ls.getLocation(1), false);
+		Assert.assertEquals(2, descendants.size());
+		Assert.assertFalse(descendants.contains(ls.getLocation(4)));
+		Assert.assertEquals(3, ls.getDescendantLocations(ls.getLocation(1), true).size());
+	}
+	
+	/**
+	 * @see LocationService#getDescendantLocations(Location,boolean)
+	 * @verifies return the locations that were moved under the location
+	 */
+	@Test
+	public void getDescendantLocations_shouldReturnTheLocationsThatWereMovedUnderTheLocation() throws Exception {
+		LocationService ls = Context.getLocationService();
+		ls.rebuildLocationClosure();
+		
+		// move the subtree of location 3 under location 2
+		Location location = ls.getLocation(3);
+		location.setParentLocation(ls.getLocation(2));
+		ls.saveLocation(location);
+		
+		List<Location> descendants = ls.getDescendantLocations(ls.getLocation(2), true);
+		Assert.assertEquals(2, descendants.size());
+		Assert.assertTrue(descendants.contains(ls.getLocation(3)));
+		Assert.assertTrue(descendants.contains(ls.getLocation(4)));
+		Assert.assertEquals(3, ls.getDescendantLocations(ls.getLocation(1), true).size());
+		Assert.assertEquals(3, ls.getAncestorLocations(ls.getLocation(4)).size());
+	}
+	
+	/**
+	 * @see LocationService#getAncestorLocations(Location)
+	 * @verifies return the parent locations up to the root
+	 */
+	@Test
+	public void getAncestorLocations_shouldReturnTheParentLocationsUpToTheRoot() throws Exception {
+		LocationService ls = Context.getLocationService();
+		ls.rebuildLocationClosure();
+		
+		List<Location> ancestors = ls.getAncestorLocations(ls.getLocation(4));
+		Assert.assertEquals(2, ancestors.size());
+		Assert.assertEquals(ls.getLocation(3), ancestors.get(0));
+		Assert.assertEquals(ls.getLocation(1), ancestors.get(1));
+		Assert.assertEquals(0, ls.getAncestorLocations(ls.getLocation(1)).size());
+	}
 }
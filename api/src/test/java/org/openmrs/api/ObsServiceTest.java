@@ -32,6 +32,7 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -48,8 +49,10 @@ import org.junit.Test;
 import org.openmrs.Concept;
 import org.openmrs.ConceptName;
 import org.openmrs.Encounter;
+import org.openmrs.GlobalProperty;
 import org.openmrs.Location;
 import org.openmrs.Obs;
+import org.openmrs.ObsSummary;
 import org.openmrs.Order;
 import org.openmrs.Patient;
 import org.openmrs.Person;
@@ -62,6 +65,7 @@ import org.openmrs.obs.handler.ImageHandler;
 import org.openmrs.obs.handler.TextHandler;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.Verifies;
+import org.openmrs.util.KeysetPage;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
@@ -507,6 +511,36 @@ public class ObsServiceTest extends BaseContextSensitiveTest {
 		Assert.assertFalse(normalObs.isComplex());
 	}
 	
+	/**
+	 * @see ObsService#getComplexObsFile(Integer,String)
+	 */
+	@Test
+	@Verifies(value = "should fill in the file of the complex data for a file based handler", method = "getComplexObsFile(Integer,String)")
+	public void getComplexObsFile_shouldFillInTheFileOfTheComplexDataForAFileBasedHandler() throws Exception {
+		executeDataSet(COMPLEX_OBS_XML);
+		
+		Obs complexObs = Context.getObsService().getComplexObsFile(45, OpenmrsConstants.RAW_VIEW);
+		
+		Assert.assertTrue(complexObs.isComplex());
+		Assert.assertEquals("txt image ", complexObs.getComplexData().getTitle());
+		File file = (File) complexObs.getComplexData().getData();
+		Assert.assertEquals("sometext.txt", file.getName());
+	}
+	
+	/**
+	 * @see ObsService#getComplexObsFile(Integer,String)
+	 */
+	@Test
+	@Verifies(value = "should return normal obs for non complex obs", method = "getComplexObsFile(Integer,String)")
+	public void getComplexObsFile_shouldReturnNormalObsForNonComplexObs() throws Exception {
+		executeDataSet(COMPLEX_OBS_XML);
+		
+		Obs normalObs = Context.getObsService().getComplexObsFile(7, OpenmrsConstants.RAW_VIEW);
+		
+		Assert.assertFalse(normalObs.isComplex());
+		Assert.assertNull(normalObs.getComplexData());
+	}
+	
 	/**
 	 * @see ObsService#getHandler(String)
 	 */
@@ -1648,4 +1682,483 @@ public class ObsServiceTest extends BaseContextSensitiveTest {
 		assertEquals(changeMessage, obs.getVoidReason());
 	}
 	
+	
+	/**
+	 * @see ObsService#getNumericObsValues(Person,Concept,Date,Date)
+	 */
+	@Test
+	@Verifies(value = "should return the datetimes and numeric values ordered by obsDatetime", method = "getNumericObsValues(Person,Concept,Date,Date)")
+	public void getNumericObsValues_shouldReturnTheDatetimesAndNumericValuesOrderedByObsDatetime() throws Exception {
+		List<Object[]> values = Context.getObsService().getNumericObsValues(new Person(7), new Concept(5089), null, null);
+		
+		Assert.assertEquals(3, values.size());
+		Assert.assertEquals(50.0, (Double) values.get(0)[1], 0);
+		Assert.assertEquals(55.0, (Double) values.get(1)[1], 0);
+		Assert.assertEquals(61.0, (Double) values.get(2)[1], 0);
+		Assert.assertTrue(((Date) values.get(0)[0]).before((Date) values.get(1)[0]));
+		Assert.assertTrue(((Date) values.get(1)[0]).before((Date) values.get(2)[0]));
+	}
+	
+	/**
+	 * @see ObsService#getNumericObsValues(Person,Concept,Date,Date)
+	 */
+	@Test
+	@Verifies(value = "should only return values within the given date range", method = "getNumericObsValues(Person,Concept,Date,Date)")
+	public void getNumericObsValues_shouldOnlyReturnValuesWithinTheGivenDateRange() throws Exception {
+		DateFormat ymd = new SimpleDateFormat("yyyy-MM-dd");
+		List<Object[]> values = Context.getObsService().getNumericObsValues(new Person(7), new Concept(5089),
+		    ymd.parse("2008-08-01"), ymd.parse("2008-08-19"));
+		
+		Assert.assertEquals(1, values.size());
+		Assert.assertEquals(55.0, (Double) values.get(0)[1], 0);
+	}
+	
+	/**
+	 * @see ObsService#getObsVersion(Person,List)
+	 */
+	@Test
+	@Verifies(value = "should change when an observation is created or voided", method = "getObsVersion(Person,List)")
+	public void getObsVersion_shouldChangeWhenAnObservationIsCreatedOrVoided() throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Concept> questions = Collections.singletonList(new Concept(5089));
+		
+		String version = obsService.getObsVersion(new Person(7), questions);
+		Assert.assertNotNull(version);
+		
+		obsService.voidObs(obsService.getObs(7), "testing");
+		String versionAfterVoiding = obsService.getObsVersion(new Person(7), questions);
+		Assert.assertFalse(version.equals(versionAfterVoiding));
+		
+		Obs obs = new Obs(new Person(7), Context.getConceptService().getConcept(5089), new Date(), Context
+		        .getLocationService().getLocation(1));
+		obs.setValueNumeric(60.0);
+		obsService.saveObs(obs, null);
+		Assert.assertFalse(versionAfterVoiding.equals(obsService.getObsVersion(new Person(7), questions)));
+	}
+	
+	/**
+	 * @see ObsService#getObsVersion(Person,List)
+	 */
+	@Test
+	@Verifies(value = "should change when an observation is unvoided or purged", method = "getObsVersion(Person,List)")
+	public void getObsVersion_shouldChangeWhenAnObservationIsUnvoidedOrPurged() throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Concept> questions = Collections.singletonList(new Concept(5089));
+		obsService.voidObs(obsService.getObs(7), "testing");
+		
+		String version = obsService.getObsVersion(new Person(7), questions);
+		obsService.unvoidObs(obsService.getObs(7));
+		String versionAfterUnvoiding = obsService.getObsVersion(new Person(7), questions);
+		Assert.assertFalse(version.equals(versionAfterUnvoiding));
+		
+		obsService.purgeObs(obsService.getObs(7));
+		Assert.assertFalse(versionAfterUnvoiding.equals(obsService.getObsVersion(new Person(7), questions)));
+	}
+	
+	/**
+	 * @see ObsService#getObsVersion(Person,List)
+	 */
+	@Test
+	@Verifies(value = "should return null if there are no matching observations", method = "getObsVersion(Person,List)")
+	public void getObsVersion_shouldReturnNullIfThereAreNoMatchingObservations() throws Exception {
+		Assert.assertNull(Context.getObsService().getObsVersion(new Person(7), Collections.singletonList(new Concept(24))));
+	}
+	/**
+	 * @see {@link ObsService#getObservations(List,List,List,List,List,List,Integer,Date,Date,boolean,String,int)}
+	 */
+	@Test
+	@Verifies(value = "should return the obs newest first", method = "getObservations(List,List,List,List,List,List,Integer,Date,Date,boolean,String,int)")
+	public void getObservations_shouldReturnTheObsNewestFirst() throws Exception {
+		List<Person> whom = Collections.singletonList(new Person(7));
+		KeysetPage<Obs> page = Context.getObsService().getObservations(whom, null, null, null, null, null, null, null,
+		    null, false, null, 100);
+		
+		List<Obs> obs = page.getResults();
+		assertFalse(obs.isEmpty());
+		assertFalse(page.hasMore());
+		for (int i = 1; i < obs.size(); i++) {
+			Obs previous = obs.get(i - 1);
+			Obs current = obs.get(i);
+			assertFalse(current.getObsDatetime().after(previous.getObsDatetime()));
+			if (current.getObsDatetime().equals(previous.getObsDatetime()))
+				assertTrue(current.getObsId() < previous.getObsId());
+		}
+	}
+	
+	/**
+	 * @see {@link ObsService#getObservations(List,List,List,List,List,List,Integer,Date,Date,boolean,String,int)}
+	 */
+	@Test
+	@Verifies(value = "should page through all the matching obs without repeating any", method = "getObservations(List,List,List,List,List,List,Integer,Date,Date,boolean,String,int)")
+	public void getObservations_shouldPageThroughAllTheMatchingObsWithoutRepeatingAny() throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Person> whom = Collections.singletonList(new Person(7));
+		List<Obs> expected = obsService.getObservations(whom, null, null, null, null, null, null, null, null, null,
+		    null, false);
+		
+		// a page length of 2 splits the obs that share the same obsDatetime over several pages
+		List<Obs> paged = new ArrayList<Obs>();
+		KeysetPage<Obs> page = obsService.getObservations(whom, null, null, null, null, null, null, null, null, false,
+		    null, 2);
+		paged.addAll(page.getResults());
+		while (page.hasMore()) {
+			assertEquals(2, page.getResults().size());
+			page = obsService.getObservations(whom, null, null, null, null, null, null, null, null, false, page
+			        .getContinuationToken(), 2);
+			paged.addAll(page.getResults());
+		}
+		
+		assertEquals(expected.size(), paged.size());
+		assertEquals(new HashSet<Obs>(expected), new HashSet<Obs>(paged));
+	}
+	
+	/**
+	 * @see {@link ObsService#getObservations(List,List,List,List,List,List,Integer,Date,Date,boolean,String,int)}
+	 */
+	@Test(expected = APIException.class)
+	@Verifies(value = "should fail for an invalid continuation token", method = "getObservations(List,List,List,List,List,List,Integer,Date,Date,boolean,String,int)")
+	public void getObservations_shouldFailForAnInvalidContinuationToken() throws Exception {
+		String visitToken = Context.getVisitService().getVisitsByPatient(new Patient(2), true, false, null, 1)
+		        .getContinuationToken();
+		Context.getObsService().getObservations(null, null, null, null, null, null, null, null, null, false, visitToken,
+		    2);
+	}
+	
+	/**
+	 * Stores the obs summaries of the given concepts, as the rebuild obs summaries task does after
+	 * the global property is changed
+	 */
+	private void setObsSummaryConcepts(String conceptIds) {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_OBS_SUMMARY_CONCEPTS, conceptIds));
+		Context.getObsService().updateObsSummaries();
+	}
+	
+	private int countStoredObsSummaries(Integer conceptId) {
+		List<List<Object>> rows = Context.getAdministrationService().executeSQL(
+		    "select count(*) from obs_summary where concept_id = " + conceptId, true);
+		return ((Number) rows.get(0).get(0)).intValue();
+	}
+	
+	private ObsSummary getObsSummary(List<ObsSummary> summaries, Integer conceptId) {
+		for (ObsSummary summary : summaries) {
+			if (summary.getConcept().getConceptId().equals(conceptId))
+				return summary;
+		}
+		return null;
+	}
+	
+	/**
+	 * @see {@link ObsService#getObsSummaries(List,List)}
+	 */
+	@Test
+	@Verifies(value = "should return the count and latest obs of each person and question", method = "getObsSummaries(List,List)")
+	public void getObsSummaries_shouldReturnTheCountAndLatestObsOfEachPersonAndQuestion() throws Exception {
+		ConceptService cs = Context.getConceptService();
+		List<ObsSummary> summaries = Context.getObsService().getObsSummaries(Collections.singletonList(new Person(7)),
+		    Arrays.asList(cs.getConcept(5089), cs.getConcept(5497)));
+		
+		assertEquals(2, summaries.size());
+		ObsSummary weight = getObsSummary(summaries, 5089);
+		assertEquals(7, weight.getPerson().getPersonId().intValue());
+		assertEquals(3, weight.getObsCount().intValue());
+		assertEquals(16, weight.getLatestObs().getObsId().intValue());
+		ObsSummary cd4 = getObsSummary(summaries, 5497);
+		assertEquals(2, cd4.getObsCount().intValue());
+		assertEquals(11, cd4.getLatestObs().getObsId().intValue());
+	}
+	
+	/**
+	 * @see {@link ObsService#getObsSummaries(List,List)}
+	 */
+	@Test
+	@Verifies(value = "should not count voided obs", method = "getObsSummaries(List,List)")
+	public void getObsSummaries_shouldNotCountVoidedObs() throws Exception {
+		ObsService obsService = Context.getObsService();
+		obsService.voidObs(obsService.getObs(16), "testing");
+		
+		List<ObsSummary> summaries = obsService.getObsSummaries(Collections.singletonList(new Person(7)), Collections
+		        .singletonList(Context.getConceptService().getConcept(5089)));
+		
+		assertEquals(1, summaries.size());
+		assertEquals(2, summaries.get(0).getObsCount().intValue());
+		assertEquals(10, summaries.get(0).getLatestObs().getObsId().intValue());
+	}
+	
+	/**
+	 * @see {@link ObsService#getObsSummaries(List,List)}
+	 */
+	@Test
+	@Verifies(value = "should not return summaries for questions without obs", method = "getObsSummaries(List,List)")
+	public void getObsSummaries_shouldNotReturnSummariesForQuestionsWithoutObs() throws Exception {
+		List<ObsSummary> summaries = Context.getObsService().getObsSummaries(Collections.singletonList(new Person(7)),
+		    Collections.singletonList(Context.getConceptService().getConcept(3)));
+		
+		assertTrue(summaries.isEmpty());
+	}
+	
+	/**
+	 * @see {@link ObsService#getObsSummaries(List,List)}
+	 */
+	@Test
+	@Verifies(value = "should return an empty list if there are no questions", method = "getObsSummaries(List,List)")
+	public void getObsSummaries_shouldReturnAnEmptyListIfThereAreNoQuestions() throws Exception {
+		assertTrue(Context.getObsService().getObsSummaries(Collections.singletonList(new Person(7)),
+		    new ArrayList<Concept>()).isEmpty());
+		assertTrue(Context.getObsService().getObsSummaries(null, null).isEmpty());
+	}
+	
+	/**
+	 * @see {@link ObsService#getObsSummaries(List,List)}
+	 */
+	@Test
+	@Verifies(value = "should return the same summaries from the summary table as from the obs table", method = "getObsSummaries(List,List)")
+	public void getObsSummaries_shouldReturnTheSameSummariesFromTheSummaryTableAsFromTheObsTable() throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Concept> questions = Arrays.asList(Context.getConceptService().getConcept(5089), Context
+		        .getConceptService().getConcept(5497));
+		List<ObsSummary> computed = obsService.getObsSummaries(null, questions);
+		
+		try {
+			setObsSummaryConcepts("5089,5497");
+			List<ObsSummary> stored = obsService.getObsSummaries(null, questions);
+			
+			assertEquals(computed.size(), stored.size());
+			for (ObsSummary summary : computed) {
+				boolean found = false;
+				for (ObsSummary storedSummary : stored) {
+					if (storedSummary.getPerson().equals(summary.getPerson())
+					        && storedSummary.getConcept().equals(summary.getConcept())) {
+						assertNotNull(storedSummary.getObsSummaryId());
+						assertEquals(summary.getObsCount(), storedSummary.getObsCount());
+						assertEquals(summary.getLatestObs(), storedSummary.getLatestObs());
+						found = true;
+					}
+				}
+				assertTrue("No stored summary for " + summary, found);
+			}
+		}
+		finally {
+			setObsSummaryConcepts("");
+		}
+	}
+	
+	/**
+	 * @see {@link ObsService#getObsSummaries(List,List)}
+	 */
+	@Test
+	@Verifies(value = "should compute the summaries of listed concepts until the summary table is rebuilt", method = "getObsSummaries(List,List)")
+	public void getObsSummaries_shouldComputeTheSummariesOfListedConceptsUntilTheSummaryTableIsRebuilt()
+	        throws Exception {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_OBS_SUMMARY_CONCEPTS, "5089"));
+		
+		List<ObsSummary> summaries = Context.getObsService().getObsSummaries(Collections.singletonList(new Person(7)),
+		    Collections.singletonList(Context.getConceptService().getConcept(5089)));
+		
+		assertEquals(0, countStoredObsSummaries(5089));
+		assertEquals(1, summaries.size());
+		assertNull(summaries.get(0).getObsSummaryId());
+		assertEquals(3, summaries.get(0).getObsCount().intValue());
+	}
+	
+	/**
+	 * @see {@link ObsService#updateObsSummaries(Person)}
+	 */
+	@Test
+	@Verifies(value = "should update the stored summaries of the person", method = "updateObsSummaries(Person)")
+	public void updateObsSummaries_shouldUpdateTheStoredSummariesOfThePerson() throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Person> whom = Collections.singletonList(new Person(7));
+		List<Concept> questions = Collections.singletonList(Context.getConceptService().getConcept(5089));
+		
+		try {
+			setObsSummaryConcepts("5089");
+			// change the obs behind the back of the service, as saving an encounter or merging patients does
+			Context.getAdministrationService().executeSQL("update obs set voided = 1 where obs_id = 16", false);
+			assertEquals(3, obsService.getObsSummaries(whom, questions).get(0).getObsCount().intValue());
+			
+			obsService.updateObsSummaries(new Person(7));
+			
+			ObsSummary summary = obsService.getObsSummaries(whom, questions).get(0);
+			assertEquals(2, summary.getObsCount().intValue());
+			assertEquals(10, summary.getLatestObs().getObsId().intValue());
+		}
+		finally {
+			setObsSummaryConcepts("");
+		}
+	}
+	
+	/**
+	 * @see {@link ObsService#updateObsSummaries()}
+	 */
+	@Test
+	@Verifies(value = "should store the summaries of the listed concepts", method = "updateObsSummaries()")
+	public void updateObsSummaries_shouldStoreTheSummariesOfTheListedConcepts() throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Person> whom = Collections.singletonList(new Person(7));
+		Concept weight = Context.getConceptService().getConcept(5089);
+		
+		try {
+			setObsSummaryConcepts("5089");
+			obsService.updateObsSummaries();
+			
+			List<ObsSummary> summaries = obsService.getObsSummaries(whom, Collections.singletonList(weight));
+			assertEquals(1, summaries.size());
+			assertNotNull(summaries.get(0).getObsSummaryId());
+			assertEquals(3, summaries.get(0).getObsCount().intValue());
+			
+			// a new obs of the concept is counted right away
+			Obs obs = new Obs(new Person(7), weight, new Date(), new Location(1));
+			obs.setValueNumeric(60.0);
+			obsService.saveObs(obs, null);
+			
+			summaries = obsService.getObsSummaries(whom, Collections.singletonList(weight));
+			assertEquals(4, summaries.get(0).getObsCount().intValue());
+			assertEquals(obs, summaries.get(0).getLatestObs());
+		}
+		finally {
+			setObsSummaryConcepts("");
+		}
+	}
+	
+	/**
+	 * @see {@link ObsService#updateObsSummaries()}
+	 */
+	@Test
+	@Verifies(value = "should delete the summaries of the concepts that are no longer listed", method = "updateObsSummaries()")
+	public void updateObsSummaries_shouldDeleteTheSummariesOfTheConceptsThatAreNoLongerListed() throws Exception {
+		try {
+			setObsSummaryConcepts("5089,5497");
+			assertTrue(countStoredObsSummaries(5497) > 0);
+			
+			setObsSummaryConcepts("5089");
+			
+			assertTrue(countStoredObsSummaries(5089) > 0);
+			assertEquals(0, countStoredObsSummaries(5497));
+		}
+		finally {
+			setObsSummaryConcepts("");
+		}
+	}
+	
+	/**
+	 * @see {@link ObsService#updateObsSummaries(Person,Collection)}
+	 */
+	@Test
+	@Verifies(value = "should update the stored summaries of the concepts of the obs", method = "updateObsSummaries(Person,Collection)")
+	public void updateObsSummaries_shouldUpdateTheStoredSummariesOfTheConceptsOfTheObs() throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Person> whom = Collections.singletonList(new Person(7));
+		List<Concept> questions = Collections.singletonList(Context.getConceptService().getConcept(5089));
+		
+		try {
+			setObsSummaryConcepts("5089");
+			Obs obs = obsService.getObs(16);
+			Context.getAdministrationService().executeSQL("update obs set voided = 1 where obs_id = 16", false);
+			
+			obsService.updateObsSummaries(new Person(7), Collections.singleton(obs));
+			
+			assertEquals(2, obsService.getObsSummaries(whom, questions).get(0).getObsCount().intValue());
+		}
+		finally {
+			setObsSummaryConcepts("");
+		}
+	}
+	
+	/**
+	 * @see {@link ObsService#updateObsSummaries(Person,Collection)}
+	 */
+	@Test
+	@Verifies(value = "should not update the stored summaries of other concepts", method = "updateObsSummaries(Person,Collection)")
+	public void updateObsSummaries_shouldNotUpdateTheStoredSummariesOfOtherConcepts() throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Person> whom = Collections.singletonList(new Person(7));
+		List<Concept> questions = Collections.singletonList(Context.getConceptService().getConcept(5497));
+		
+		try {
+			setObsSummaryConcepts("5089,5497");
+			Obs obs = obsService.getObs(16);
+			Context.getAdministrationService().executeSQL("update obs set voided = 1 where obs_id = 11", false);
+			
+			obsService.updateObsSummaries(new Person(7), Collections.singleton(obs));
+			
+			// obs 11 is of concept 5497, which is not among the concepts of the given obs
+			assertEquals(2, obsService.getObsSummaries(whom, questions).get(0).getObsCount().intValue());
+		}
+		finally {
+			setObsSummaryConcepts("");
+		}
+	}
+	
+	/**
+	 * @see {@link ObsService#saveObs(Obs,String)}
+	 */
+	@Test
+	@Verifies(value = "should update the stored summaries of the previous person when the person is changed", method = "saveObs(Obs,String)")
+	public void saveObs_shouldUpdateTheStoredSummariesOfThePreviousPersonWhenThePersonIsChanged() throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Concept> questions = Collections.singletonList(Context.getConceptService().getConcept(5089));
+		
+		try {
+			setObsSummaryConcepts("5089");
+			Obs obs = obsService.getObs(16);
+			obs.setPerson(Context.getPersonService().getPerson(2));
+			obsService.saveObs(obs, "moving to another person");
+			
+			List<ObsSummary> summaries = obsService.getObsSummaries(Collections.singletonList(new Person(7)), questions);
+			assertEquals(2, summaries.get(0).getObsCount().intValue());
+			summaries = obsService.getObsSummaries(Collections.singletonList(new Person(2)), questions);
+			assertEquals(1, summaries.get(0).getObsCount().intValue());
+		}
+		finally {
+			setObsSummaryConcepts("");
+		}
+	}
+	
+	/**
+	 * @see {@link ObsService#getObservations(List,List,List,List,List,List,boolean,List,Integer,Integer,Date,Date,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should return obs at child locations of given locations if includeChildLocations is true", method = "getObservations(List,List,List,List,List,List,boolean,List,Integer,Integer,Date,Date,boolean)")
+	public void getObservations_shouldReturnObsAtChildLocationsOfGivenLocationsIfIncludeChildLocationsIsTrue()
+	        throws Exception {
+		Location parent = createParentOfLocationOne();
+		ObsService obsService = Context.getObsService();
+		List<Obs> atLocationOne = obsService.getObservations(null, null, null, null, null, Collections
+		        .singletonList(Context.getLocationService().getLocation(1)), null, null, null, null, null, false);
+		assertTrue(atLocationOne.size() > 0);
+		
+		List<Obs> atParent = obsService.getObservations(null, null, null, null, null, Collections.singletonList(parent),
+		    true, null, null, null, null, null, false);
+		assertEquals(new HashSet<Obs>(atLocationOne), new HashSet<Obs>(atParent));
+	}
+	
+	/**
+	 * @see {@link ObsService#getObservations(List,List,List,List,List,List,boolean,List,Integer,Integer,Date,Date,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should only return obs at given locations if includeChildLocations is false", method = "getObservations(List,List,List,List,List,List,boolean,List,Integer,Integer,Date,Date,boolean)")
+	public void getObservations_shouldOnlyReturnObsAtGivenLocationsIfIncludeChildLocationsIsFalse() throws Exception {
+		Location parent = createParentOfLocationOne();
+		
+		assertEquals(0, Context.getObsService().getObservations(null, null, null, null, null,
+		    Collections.singletonList(parent), false, null, null, null, null, null, false).size());
+	}
+	
+	/**
+	 * Saves a new location and moves location 1, where there are obs, under it
+	 */
+	private Location createParentOfLocationOne() {
+		LocationService ls = Context.getLocationService();
+		Location parent = new Location();
+		parent.setName("Parent of location one");
+		ls.saveLocation(parent);
+		
+		Location location = ls.getLocation(1);
+		location.setParentLocation(parent);
+		ls.saveLocation(location);
+		return parent;
+	}
+	
 }
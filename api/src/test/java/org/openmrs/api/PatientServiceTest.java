@@ -3202,4 +3202,230 @@ public class PatientServiceTest extends BaseContextSensitiveTest {
 		Collections.sort(sortedList, new PatientIdentifierTypeDefaultComparator());
 		Assert.assertEquals(sortedList, list);
 	}
+	
+	/**
+	 * @see PatientService#mergePatients(Patient,Patient)
+	 * @verifies merge observations associated with encounters from non preferred to preferred patient
+	 */
+	@Test
+	public void mergePatients_shouldMergeObservationsAssociatedWithEncountersFromNonPreferredToPreferredPatient()
+	        throws Exception {
+		Patient preferred = patientService.getPatient(999);
+		Patient notPreferred = patientService.getPatient(7);
+		
+		patientService.mergePatients(preferred, notPreferred);
+		Context.flushSession();
+		Context.clearSession();
+		
+		Encounter encounter = Context.getEncounterService().getEncounter(3);
+		Assert.assertEquals(999, encounter.getPatient().getPatientId().intValue());
+		Assert.assertFalse(encounter.getAllObs(true).isEmpty());
+		for (Obs o : encounter.getAllObs(true)) {
+			Assert.assertEquals(999, o.getPerson().getPersonId().intValue());
+		}
+		Assert.assertTrue(Context.getEncounterService().getEncountersByPatientId(7).isEmpty());
+	}
+	
+	/**
+	 * @see PatientService#mergePatients(Patient,Patient)
+	 * @verifies merge other non voided observations from non preferred to preferred patient
+	 * @verifies move other non voided observations without creating new versions of them
+	 */
+	@Test
+	public void mergePatients_shouldMoveOtherNonVoidedObservationsWithoutCreatingNewVersionsOfThem() throws Exception {
+		Patient preferred = patientService.getPatient(999);
+		Patient notPreferred = patientService.getPatient(7);
+		
+		//make an observation for notPreferred independent from any encounter
+		Obs obs = Context.getObsService().getObs(7);
+		obs.setEncounter(null);
+		obs = Context.getObsService().saveObs(obs, "Reason cannot be blank");
+		String uuid = obs.getUuid();
+		
+		PersonMergeLog audit = mergeAndRetrieveAudit(preferred, notPreferred);
+		Context.flushSession();
+		Context.clearSession();
+		
+		Obs moved = Context.getObsService().getObsByUuid(uuid);
+		Assert.assertEquals(999, moved.getPerson().getPersonId().intValue());
+		Assert.assertFalse(moved.isVoided());
+		Assert.assertEquals(Collections.singletonList(uuid), audit.getPersonMergeLogData()
+		        .getMovedIndependentObservations());
+		// only the voided original of the moved obs stays with the non preferred patient
+		Assert.assertTrue(Context.getObsService().getObservationsByPerson(new Person(7)).isEmpty());
+	}
+	
+	/**
+	 * @see {@link PatientService#savePatients(List)}
+	 */
+	@Test
+	@Verifies(value = "should save all the given patients", method = "savePatients(List)")
+	public void savePatients_shouldSaveAllTheGivenPatients() throws Exception {
+		PatientIdentifierType idType = patientService.getPatientIdentifierType(2);
+		List<Patient> patients = new ArrayList<Patient>();
+		for (int i = 0; i < 3; i++) {
+			Patient patient = createBasicPatient();
+			patient.addIdentifier(new PatientIdentifier("BULK-" + i, idType, locationService.getLocation(1)));
+			patients.add(patient);
+		}
+		
+		List<Patient> saved = patientService.savePatients(patients);
+		
+		Assert.assertEquals(3, saved.size());
+		for (int i = 0; i < 3; i++) {
+			Assert.assertNotNull(saved.get(i).getPatientId());
+			Assert.assertTrue(saved.get(i).getPatientIdentifier().isPreferred());
+			Assert.assertEquals(1, patientService.getPatients(null, "BULK-" + i, null, false).size());
+		}
+	}
+	
+	/**
+	 * @see {@link PatientService#savePatients(List)}
+	 */
+	@Test(expected = IdentifierNotUniqueException.class)
+	@Verifies(value = "should fail when two of the patients have the same unique identifier", method = "savePatients(List)")
+	public void savePatients_shouldFailWhenTwoOfThePatientsHaveTheSameUniqueIdentifier() throws Exception {
+		PatientIdentifierType idType = patientService.getPatientIdentifierType(2);
+		Patient first = createBasicPatient();
+		first.addIdentifier(new PatientIdentifier("BULK-1", idType, locationService.getLocation(1)));
+		Patient second = createBasicPatient();
+		second.addIdentifier(new PatientIdentifier("BULK-1", idType, locationService.getLocation(1)));
+		
+		patientService.savePatients(Arrays.asList(first, second));
+	}
+	
+	/**
+	 * @see {@link PatientService#savePatients(List)}
+	 */
+	@Test(expected = IdentifierNotUniqueException.class)
+	@Verifies(value = "should fail when an identifier is in use by another patient", method = "savePatients(List)")
+	public void savePatients_shouldFailWhenAnIdentifierIsInUseByAnotherPatient() throws Exception {
+		PatientIdentifierType idType = patientService.getPatientIdentifierType(2);
+		Patient first = createBasicPatient();
+		first.addIdentifier(new PatientIdentifier("BULK-1", idType, locationService.getLocation(1)));
+		Patient second = createBasicPatient();
+		// patient 6 already has this identifier
+		second.addIdentifier(new PatientIdentifier("12345K", idType, locationService.getLocation(1)));
+		
+		patientService.savePatients(Arrays.asList(first, second));
+	}
+	
+	/**
+	 * @see {@link PatientService#savePatients(List)}
+	 */
+	@Test(expected = MissingRequiredIdentifierException.class)
+	@Verifies(value = "should fail when a patient does not have required patient identifiers", method = "savePatients(List)")
+	public void savePatients_shouldFailWhenAPatientDoesNotHaveRequiredPatientIdentifiers() throws Exception {
+		PatientIdentifierType requiredType = patientService.getPatientIdentifierType(1);
+		requiredType.setRequired(true);
+		patientService.savePatientIdentifierType(requiredType);
+		
+		Patient patient = createBasicPatient();
+		patient.addIdentifier(new PatientIdentifier("BULK-1", patientService.getPatientIdentifierType(2), locationService
+		        .getLocation(1)));
+		
+		patientService.savePatients(Arrays.asList(patient));
+	}
+	
+	/**
+	 * @see {@link PatientService#savePatients(List)}
+	 */
+	@Test
+	@Verifies(value = "should save none of the patients when one of them is invalid", method = "savePatients(List)")
+	public void savePatients_shouldSaveNoneOfThePatientsWhenOneOfThemIsInvalid() throws Exception {
+		PatientIdentifierType idType = patientService.getPatientIdentifierType(2);
+		Patient valid = createBasicPatient();
+		valid.addIdentifier(new PatientIdentifier("BULK-1", idType, locationService.getLocation(1)));
+		Patient invalid = createBasicPatient();
+		invalid.setGender(null);
+		invalid.addIdentifier(new PatientIdentifier("BULK-2", idType, locationService.getLocation(1)));
+		
+		try {
+			patientService.savePatients(Arrays.asList(valid, invalid));
+			Assert.fail("the patient without a gender should not pass validation");
+		}
+		catch (APIException e) {
+			// expected
+		}
+		
+		Assert.assertNull(valid.getPatientId());
+		Assert.assertEquals(0, patientService.getPatients(null, "BULK-1", null, false).size());
+	}
+	
+	/**
+	 * @see {@link PatientService#getPatientIdentifiersInUseByAnotherPatient(List)}
+	 */
+	@Test
+	@Verifies(value = "should return the identifiers another patient has", method = "getPatientIdentifiersInUseByAnotherPatient(List)")
+	public void getPatientIdentifiersInUseByAnotherPatient_shouldReturnTheIdentifiersAnotherPatientHas() throws Exception {
+		PatientIdentifierType idType = patientService.getPatientIdentifierType(1);
+		PatientIdentifier unused = new PatientIdentifier("Nobody could possibly have this identifier", idType, null);
+		PatientIdentifier used = new PatientIdentifier("7TU-8", idType, null);
+		used.setPatient(patientService.getPatient(2));
+		
+		List<PatientIdentifier> inUse = patientService.getPatientIdentifiersInUseByAnotherPatient(Arrays.asList(unused,
+		    used));
+		
+		Assert.assertEquals(1, inUse.size());
+		Assert.assertSame(used, inUse.get(0));
+	}
+	
+	/**
+	 * @see {@link PatientService#getPatientIdentifiersInUseByAnotherPatient(List)}
+	 */
+	@Test
+	@Verifies(value = "should not return identifiers only their own patient has", method = "getPatientIdentifiersInUseByAnotherPatient(List)")
+	public void getPatientIdentifiersInUseByAnotherPatient_shouldNotReturnIdentifiersOnlyTheirOwnPatientHas()
+	        throws Exception {
+		PatientIdentifier pi = new PatientIdentifier("7TU-8", patientService.getPatientIdentifierType(1), null);
+		pi.setPatient(patientService.getPatient(8));
+		
+		Assert.assertTrue(patientService.getPatientIdentifiersInUseByAnotherPatient(Arrays.asList(pi)).isEmpty());
+	}
+	
+	/**
+	 * @see {@link PatientService#getPatientIdentifiersInUseByAnotherPatient(List)}
+	 */
+	@Test
+	@Verifies(value = "should ignore voided patientIdentifiers", method = "getPatientIdentifiersInUseByAnotherPatient(List)")
+	public void getPatientIdentifiersInUseByAnotherPatient_shouldIgnoreVoidedPatientIdentifiers() throws Exception {
+		PatientIdentifier pi = new PatientIdentifier("ABC123", patientService.getPatientIdentifierType(2), null);
+		Assert.assertTrue(patientService.getPatientIdentifiersInUseByAnotherPatient(Arrays.asList(pi)).isEmpty());
+	}
+	
+	/**
+	 * @see {@link PatientService#getPatientIdentifiersInUseByAnotherPatient(List)}
+	 */
+	@Test
+	@Verifies(value = "should respect the location if id type uniqueness is set to location", method = "getPatientIdentifiersInUseByAnotherPatient(List)")
+	public void getPatientIdentifiersInUseByAnotherPatient_shouldRespectTheLocationIfIdTypeUniquenessIsSetToLocation()
+	        throws Exception {
+		PatientIdentifier duplicateId = patientService.getPatientIdentifier(1);
+		PatientIdentifierType idType = duplicateId.getIdentifierType();
+		idType.setUniquenessBehavior(UniquenessBehavior.LOCATION);
+		patientService.savePatientIdentifierType(idType);
+		
+		Location otherLocation = locationService.getLocation(2);
+		Assert.assertNotSame(otherLocation, duplicateId.getLocation());//sanity check
+		PatientIdentifier sameLocation = new PatientIdentifier(duplicateId.getIdentifier(), idType, duplicateId
+		        .getLocation());
+		PatientIdentifier anotherLocation = new PatientIdentifier(duplicateId.getIdentifier(), idType, otherLocation);
+		
+		List<PatientIdentifier> inUse = patientService.getPatientIdentifiersInUseByAnotherPatient(Arrays.asList(
+		    sameLocation, anotherLocation));
+		
+		Assert.assertEquals(1, inUse.size());
+		Assert.assertSame(sameLocation, inUse.get(0));
+	}
+	
+	/**
+	 * @see {@link PatientService#getPatientIdentifiersInUseByAnotherPatient(List)}
+	 */
+	@Test
+	@Verifies(value = "should return an empty list if no identifiers are given", method = "getPatientIdentifiersInUseByAnotherPatient(List)")
+	public void getPatientIdentifiersInUseByAnotherPatient_shouldReturnAnEmptyListIfNoIdentifiersAreGiven()
+	        throws Exception {
+		Assert.assertTrue(patientService.getPatientIdentifiersInUseByAnotherPatient(new ArrayList<PatientIdentifier>())
+		        .isEmpty());
+	}
 }
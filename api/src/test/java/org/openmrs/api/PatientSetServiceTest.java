@@ -40,6 +40,8 @@ import org.openmrs.Obs;
 import org.openmrs.PatientProgram;
 import org.openmrs.PatientState;
 import org.openmrs.Person;
+import org.openmrs.PersonAttribute;
+import org.openmrs.PersonAttributeType;
 import org.openmrs.Program;
 import org.openmrs.ProgramWorkflow;
 import org.openmrs.ProgramWorkflowState;
@@ -47,6 +49,7 @@ import org.openmrs.Relationship;
 import org.openmrs.RelationshipType;
 import org.openmrs.api.PatientSetService.GroupMethod;
 import org.openmrs.api.PatientSetService.Modifier;
+import org.openmrs.api.PatientSetService.PatientLocationMethod;
 import org.openmrs.api.PatientSetService.TimeModifier;
 import org.openmrs.api.context.Context;
 import org.openmrs.test.BaseContextSensitiveTest;
@@ -398,4 +401,75 @@ public class PatientSetServiceTest extends BaseContextSensitiveTest {
 		Map<Integer, PatientState> results = Context.getPatientSetService().getCurrentStates(nobody, one);
 		Assert.assertEquals(results.size(), 0);
 	}
+	
+	/**
+	 * @see {@link PatientSetService#getPatientsHavingLocation(Location,PatientLocationMethod,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should get patients with encounters at child locations if includeChildLocations is true", method = "getPatientsHavingLocation(Location,PatientLocationMethod,boolean)")
+	public void getPatientsHavingLocation_shouldGetPatientsWithEncountersAtChildLocationsIfIncludeChildLocationsIsTrue()
+	        throws Exception {
+		Location parent = createParentOfLocationOne();
+		PatientSetService pss = Context.getPatientSetService();
+		Cohort atLocationOne = pss.getPatientsHavingLocation(Context.getLocationService().getLocation(1),
+		    PatientLocationMethod.ANY_ENCOUNTER, false);
+		Assert.assertTrue(atLocationOne.size() > 0);
+		
+		Cohort atParent = pss.getPatientsHavingLocation(parent, PatientLocationMethod.ANY_ENCOUNTER, true);
+		Assert.assertEquals(atLocationOne.getMemberIds(), atParent.getMemberIds());
+	}
+	
+	/**
+	 * @see {@link PatientSetService#getPatientsHavingLocation(Location,PatientLocationMethod,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should only get patients with encounters at the location if includeChildLocations is false", method = "getPatientsHavingLocation(Location,PatientLocationMethod,boolean)")
+	public void getPatientsHavingLocation_shouldOnlyGetPatientsWithEncountersAtTheLocationIfIncludeChildLocationsIsFalse()
+	        throws Exception {
+		Location parent = createParentOfLocationOne();
+		Cohort atParent = Context.getPatientSetService().getPatientsHavingLocation(parent,
+		    PatientLocationMethod.ANY_ENCOUNTER, false);
+		Assert.assertEquals(0, atParent.size());
+	}
+	
+	/**
+	 * @see {@link PatientSetService#getPatientsHavingLocation(Location,PatientLocationMethod,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should get patients whose health center is a child location if includeChildLocations is true", method = "getPatientsHavingLocation(Location,PatientLocationMethod,boolean)")
+	public void getPatientsHavingLocation_shouldGetPatientsWhoseHealthCenterIsAChildLocationIfIncludeChildLocationsIsTrue()
+	        throws Exception {
+		Location parent = createParentOfLocationOne();
+		PersonService ps = Context.getPersonService();
+		PersonAttributeType healthCenter = new PersonAttributeType();
+		healthCenter.setName("Health Center");
+		healthCenter.setDescription("The health center of the patient");
+		healthCenter.setFormat("org.openmrs.Location");
+		ps.savePersonAttributeType(healthCenter);
+		Person person = ps.getPerson(7);
+		person.addAttribute(new PersonAttribute(healthCenter, "1"));
+		ps.savePerson(person);
+		Context.flushSession();
+		
+		PatientSetService pss = Context.getPatientSetService();
+		Cohort atParent = pss.getPatientsHavingLocation(parent, PatientLocationMethod.PATIENT_HEALTH_CENTER, true);
+		Assert.assertEquals(Collections.singleton(7), atParent.getMemberIds());
+		Assert.assertEquals(0, pss.getPatientsHavingLocation(parent, PatientLocationMethod.PATIENT_HEALTH_CENTER, false)
+		        .size());
+	}
+	
+	/**
+	 * Saves a new location and moves location 1, where there are encounters, under it
+	 */
+	private Location createParentOfLocationOne() {
+		LocationService ls = Context.getLocationService();
+		Location parent = new Location();
+		parent.setName("Parent of location one");
+		ls.saveLocation(parent);
+		
+		Location location = ls.getLocation(1);
+		location.setParentLocation(parent);
+		ls.saveLocation(location);
+		return parent;
+	}
 }
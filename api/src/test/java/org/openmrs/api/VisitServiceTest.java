@@ -30,6 +30,7 @@ import org.openmrs.customdatatype.datatype.FreeTextDatatype;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.TestUtil;
 import org.openmrs.test.Verifies;
+import org.openmrs.util.KeysetPage;
 import org.openmrs.util.OpenmrsConstants;
 
 import java.text.SimpleDateFormat;
@@ -991,4 +992,35 @@ public class VisitServiceTest extends BaseContextSensitiveTest {
 		assertEquals("get all visit types excluding retired", 2, visitTypes.size());
 	}
 	
+	/**
+	 * @see {@link VisitService#getVisitsByPatient(Patient,boolean,boolean,String,int)}
+	 */
+	@Test
+	@Verifies(value = "should page through all the visits of the patient newest first", method = "getVisitsByPatient(Patient,boolean,boolean,String,int)")
+	public void getVisitsByPatient_shouldPageThroughAllTheVisitsOfThePatientNewestFirst() throws Exception {
+		// the visits of patient 2 all start at the same time, so they are sorted on visitId
+		KeysetPage<Visit> page = service.getVisitsByPatient(new Patient(2), true, false, null, 2);
+		assertEquals(2, page.getResults().size());
+		assertEquals(3, page.getResults().get(0).getVisitId().intValue());
+		assertEquals(2, page.getResults().get(1).getVisitId().intValue());
+		assertTrue(page.hasMore());
+		
+		page = service.getVisitsByPatient(new Patient(2), true, false, page.getContinuationToken(), 2);
+		assertEquals(1, page.getResults().size());
+		assertEquals(1, page.getResults().get(0).getVisitId().intValue());
+		Assert.assertFalse(page.hasMore());
+	}
+	
+	/**
+	 * @see {@link VisitService#getVisitsByPatient(Patient,boolean,boolean,String,int)}
+	 */
+	@Test
+	@Verifies(value = "should return an empty page for a patient that is not saved", method = "getVisitsByPatient(Patient,boolean,boolean,String,int)")
+	public void getVisitsByPatient_shouldReturnAnEmptyPageForAPatientThatIsNotSaved() throws Exception {
+		KeysetPage<Visit> page = service.getVisitsByPatient(new Patient(), true, true, null, 2);
+		
+		assertTrue(page.getResults().isEmpty());
+		Assert.assertFalse(page.hasMore());
+	}
+	
 }
@@ -0,0 +1,73 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.sql.Statement;
+import java.util.List;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.EncounterType;
+import org.openmrs.api.EncounterService;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+public class MetadataQueryCacheTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see {@link MetadataQueryCache#list(Session,Class,String,Criteria)}
+	 */
+	@Test
+	@Verifies(value = "should return the cached objects without running the query", method = "list(Session,Class,String,Criteria)")
+	public void list_shouldReturnTheCachedObjectsWithoutRunningTheQuery() throws Exception {
+		EncounterService es = Context.getEncounterService();
+		List<EncounterType> types = es.getAllEncounterTypes(false);
+		Assert.assertTrue(types.contains(es.getEncounterType(1)));
+		
+		// retire it behind hibernate's back, so only a new query would notice
+		Statement statement = getConnection().createStatement();
+		statement.executeUpdate("update encounter_type set retired = true where encounter_type_id = 1");
+		statement.close();
+		
+		Assert.assertEquals(types, es.getAllEncounterTypes(false));
+		Assert.assertEquals(es.getEncounterType(1), es.getEncounterTypeByUuid("61ae96f4-6afe-4351-b6f8-cd4fc383cce1"));
+		
+		MetadataQueryCache.clear();
+		Assert.assertFalse(es.getAllEncounterTypes(false).contains(es.getEncounterType(1)));
+	}
+	
+	/**
+	 * @see {@link MetadataQueryCache#list(Session,Class,String,Criteria)}
+	 */
+	@Test
+	@Verifies(value = "should run the query again after an object of the type is saved", method = "list(Session,Class,String,Criteria)")
+	public void list_shouldRunTheQueryAgainAfterAnObjectOfTheTypeIsSaved() throws Exception {
+		EncounterService es = Context.getEncounterService();
+		int unretired = es.getAllEncounterTypes(false).size();
+		Assert.assertNull(es.getEncounterType("Registration"));
+		
+		EncounterType registration = new EncounterType("Registration", "first visit");
+		es.saveEncounterType(registration);
+		Assert.assertEquals(unretired + 1, es.getAllEncounterTypes(false).size());
+		Assert.assertEquals(registration, es.getEncounterType("Registration"));
+		
+		es.retireEncounterType(es.getEncounterType(1), "for testing");
+		List<EncounterType> types = es.getAllEncounterTypes(false);
+		Assert.assertEquals(unretired, types.size());
+		Assert.assertFalse(types.contains(es.getEncounterType(1)));
+	}
+}
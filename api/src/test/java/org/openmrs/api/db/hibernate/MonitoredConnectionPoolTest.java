@@ -0,0 +1,96 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.sql.Connection;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+import com.mchange.v2.c3p0.DataSources;
+
+public class MonitoredConnectionPoolTest {
+	
+	private MonitoredConnectionPool pool;
+	
+	@Before
+	public void createPool() throws Exception {
+		Class.forName("org.h2.Driver");
+		pool = new MonitoredConnectionPool("test", DataSources.pooledDataSource(DataSources
+		        .unpooledDataSource("jdbc:h2:mem:monitoredConnectionPoolTest", "sa", "")), 5, false);
+	}
+	
+	@After
+	public void destroyPool() throws Exception {
+		pool.destroy();
+	}
+	
+	/**
+	 * @see {@link MonitoredConnectionPool#checkout()}
+	 */
+	@Test
+	@Verifies(value = "should report connections held for longer than the long checkout time", method = "checkout()")
+	public void checkout_shouldReportConnectionsHeldForLongerThanTheLongCheckoutTime() throws Exception {
+		Connection connection = pool.checkout();
+		Thread.sleep(20);
+		
+		Assert.assertEquals(1, pool.getCheckouts());
+		Assert.assertEquals(1, pool.getBusy());
+		Assert.assertEquals(1, pool.getLongCheckouts().size());
+		Assert.assertEquals(Thread.currentThread().getName(), pool.getLongCheckouts().get(0).getThreadName());
+		Assert.assertTrue(pool.getLongCheckouts().get(0).getStackTrace().contains("MonitoredConnectionPoolTest"));
+		
+		Assert.assertTrue(pool.checkin(connection));
+		Assert.assertEquals(0, pool.getLongCheckouts().size());
+		Assert.assertEquals(1, pool.getLongCheckoutCount());
+		Assert.assertTrue(pool.getMaxHoldMillis() >= 20);
+	}
+	
+	/**
+	 * @see {@link MonitoredConnectionPool#checkin(Connection)}
+	 */
+	@Test
+	@Verifies(value = "should leave connections of other pools open", method = "checkin(Connection)")
+	public void checkin_shouldLeaveConnectionsOfOtherPoolsOpen() throws Exception {
+		MonitoredConnectionPool otherPool = new MonitoredConnectionPool("other", DataSources.pooledDataSource(DataSources
+		        .unpooledDataSource("jdbc:h2:mem:monitoredConnectionPoolTest", "sa", "")), 5, false);
+		try {
+			Connection connection = otherPool.checkout();
+			Assert.assertFalse(pool.checkin(connection));
+			Assert.assertFalse(connection.isClosed());
+			Assert.assertTrue(otherPool.checkin(connection));
+		}
+		finally {
+			otherPool.destroy();
+		}
+	}
+	
+	/**
+	 * @see {@link MonitoredConnectionPool#getMeanHoldMillis()}
+	 */
+	@Test
+	@Verifies(value = "should average the connections checked in since the last reset", method = "getMeanHoldMillis()")
+	public void getMeanHoldMillis_shouldAverageTheConnectionsCheckedInSinceTheLastReset() throws Exception {
+		Connection connection = pool.checkout();
+		Thread.sleep(20);
+		pool.reset();
+		
+		Assert.assertEquals(0, pool.getMeanHoldMillis());
+		Assert.assertTrue(pool.checkin(connection));
+		Assert.assertTrue(pool.getMeanHoldMillis() >= 20);
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsConstants;
+
+public class QueryProfilerTest extends BaseContextSensitiveTest {
+	
+	@Before
+	public void enableProfiler() throws Exception {
+		setGlobalProperty(OpenmrsConstants.GP_QUERY_PROFILER_ENABLED, "true");
+		setGlobalProperty(OpenmrsConstants.GP_QUERY_PROFILER_REPEATED_STATEMENT_THRESHOLD, "5");
+		QueryProfiler.clear();
+	}
+	
+	@After
+	public void disableProfiler() throws Exception {
+		QueryProfiler.end();
+		setGlobalProperty(OpenmrsConstants.GP_QUERY_PROFILER_ENABLED, "false");
+		QueryProfiler.clear();
+	}
+	
+	/**
+	 * @see {@link QueryProfiler#begin(String)}
+	 */
+	@Test
+	@Verifies(value = "should record the statements until end is called", method = "begin(String)")
+	public void begin_shouldRecordTheStatementsUntilEndIsCalled() throws Exception {
+		QueryProfiler.begin("/test.form");
+		Context.getObsService().getObs(1001);
+		Context.getObsService().getObs(1002);
+		QueryProfile profile = QueryProfiler.end();
+		
+		Assert.assertEquals("/test.form", profile.getName());
+		Assert.assertTrue(profile.getStatements() >= 2);
+		Assert.assertEquals(1, QueryProfiler.getSummary("/test.form").getCount());
+		
+		Context.getObsService().getObs(1003);
+		Assert.assertNull(QueryProfiler.end());
+	}
+	
+	/**
+	 * @see {@link QueryProfiler#end()}
+	 */
+	@Test
+	@Verifies(value = "should flag the profile when a statement is repeated too often", method = "end()")
+	public void end_shouldFlagTheProfileWhenAStatementIsRepeatedTooOften() throws Exception {
+		QueryProfiler.begin("/patientDashboard.form");
+		for (int obsId = 1001; obsId <= 1010; obsId++)
+			Context.getObsService().getObs(obsId);
+		QueryProfile profile = QueryProfiler.end();
+		
+		Assert.assertEquals(10, profile.getMostRepeatedCount());
+		Assert.assertTrue(profile.getMostRepeatedStatement().contains("obs"));
+		QueryProfileSummary summary = QueryProfiler.getSummary("/patientDashboard.form");
+		Assert.assertEquals(1, summary.getFlagged());
+		Assert.assertEquals(10, summary.getMostRepeatedCount());
+	}
+	
+	/**
+	 * @see {@link QueryProfiler#getUrlName(String)}
+	 */
+	@Test
+	@Verifies(value = "should replace the ids and uuids in the path", method = "getUrlName(String)")
+	public void getUrlName_shouldReplaceTheIdsAndUuidsInThePath() throws Exception {
+		Assert.assertEquals("/ws/rest/v1/patient/{id}/name/{id}", QueryProfiler
+		        .getUrlName("/ws/rest/v1/patient/da7f524f-27ce-4bb2-86d6-6d1d05312bd5/name/12"));
+		Assert.assertEquals("/patientDashboard.form", QueryProfiler.getUrlName("/patientDashboard.form;jsessionid=A1B2"));
+		Assert.assertEquals("/admin/index.htm", QueryProfiler.getUrlName("/admin/index.htm"));
+	}
+	
+	private void setGlobalProperty(String property, String value) {
+		Context.getAdministrationService().saveGlobalProperty(new GlobalProperty(property, value));
+	}
+}
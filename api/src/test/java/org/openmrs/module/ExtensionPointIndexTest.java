@@ -0,0 +1,146 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.Extension.MEDIA_TYPE;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link ExtensionPointIndex} class
+ */
+public class ExtensionPointIndexTest {
+	
+	private static final String POINT_ID = "org.openmrs.admin.list";
+	
+	private static final String HTML_POINT_ID = Extension.toExtensionId(POINT_ID, MEDIA_TYPE.html);
+	
+	private Map<String, List<Extension>> extensionMap;
+	
+	@Before
+	public void before() {
+		extensionMap = new HashMap<String, List<Extension>>();
+	}
+	
+	private Extension addExtension(String extensionId) {
+		Extension extension = mock(Extension.class);
+		addExtension(extensionId, extension);
+		return extension;
+	}
+	
+	private void addExtension(String extensionId, Extension extension) {
+		List<Extension> extensions = extensionMap.get(extensionId);
+		if (extensions == null) {
+			extensions = new ArrayList<Extension>();
+			extensionMap.put(extensionId, extensions);
+		}
+		extensions.add(extension);
+	}
+	
+	/**
+	 * @see {@link ExtensionPointIndex#getExtensions(String)}
+	 */
+	@Test
+	@Verifies(value = "should return the extensions of all media types for a point id without media type", method = "getExtensions(String)")
+	public void getExtensions_shouldReturnTheExtensionsOfAllMediaTypesForAPointIdWithoutMediaType() throws Exception {
+		Extension html = addExtension(HTML_POINT_ID);
+		Extension plain = addExtension(POINT_ID);
+		
+		ExtensionPointIndex index = ExtensionPointIndex.build(extensionMap);
+		
+		Assert.assertEquals(Arrays.asList(plain, html), index.getExtensions(POINT_ID));
+	}
+	
+	/**
+	 * @see {@link ExtensionPointIndex#getExtensions(String)}
+	 */
+	@Test
+	@Verifies(value = "should return only the extensions of the media type for a point id with media type", method = "getExtensions(String)")
+	public void getExtensions_shouldReturnOnlyTheExtensionsOfTheMediaTypeForAPointIdWithMediaType() throws Exception {
+		Extension html = addExtension(HTML_POINT_ID);
+		addExtension(POINT_ID);
+		
+		ExtensionPointIndex index = ExtensionPointIndex.build(extensionMap);
+		
+		Assert.assertEquals(Arrays.asList(html), index.getExtensions(HTML_POINT_ID));
+	}
+	
+	/**
+	 * @see {@link ExtensionPointIndex#getExtensions(String)}
+	 */
+	@Test
+	@Verifies(value = "should not return an extension twice", method = "getExtensions(String)")
+	public void getExtensions_shouldNotReturnAnExtensionTwice() throws Exception {
+		Extension extension = addExtension(POINT_ID);
+		addExtension(HTML_POINT_ID, extension);
+		
+		ExtensionPointIndex index = ExtensionPointIndex.build(extensionMap);
+		
+		Assert.assertEquals(Arrays.asList(extension), index.getExtensions(POINT_ID));
+	}
+	
+	/**
+	 * @see {@link ExtensionPointIndex#getExtensions(String)}
+	 */
+	@Test
+	@Verifies(value = "should return an empty list for an unknown point id", method = "getExtensions(String)")
+	public void getExtensions_shouldReturnAnEmptyListForAnUnknownPointId() throws Exception {
+		addExtension(POINT_ID);
+		extensionMap.put("org.openmrs.removed", new ArrayList<Extension>());
+		
+		ExtensionPointIndex index = ExtensionPointIndex.build(extensionMap);
+		
+		Assert.assertTrue(index.getExtensions("org.openmrs.unknown").isEmpty());
+		Assert.assertTrue(index.getExtensions("org.openmrs.removed").isEmpty());
+		Assert.assertTrue(index.getExtensions(null).isEmpty());
+		Assert.assertTrue(ExtensionPointIndex.EMPTY.getExtensions(POINT_ID).isEmpty());
+	}
+	
+	/**
+	 * @see {@link ExtensionPointIndex#getExtensions(String,MEDIA_TYPE)}
+	 */
+	@Test
+	@Verifies(value = "should return the extensions of the media type", method = "getExtensions(String,MEDIA_TYPE)")
+	public void getExtensions_shouldReturnTheExtensionsOfTheMediaType() throws Exception {
+		Extension html = addExtension(HTML_POINT_ID);
+		addExtension(POINT_ID);
+		
+		ExtensionPointIndex index = ExtensionPointIndex.build(extensionMap);
+		
+		Assert.assertEquals(Arrays.asList(html), index.getExtensions(POINT_ID, MEDIA_TYPE.html));
+	}
+	
+	/**
+	 * @see {@link ExtensionPointIndex#getExtensions(String,MEDIA_TYPE)}
+	 */
+	@Test
+	@Verifies(value = "should return the extensions of the point if there are none for the media type", method = "getExtensions(String,MEDIA_TYPE)")
+	public void getExtensions_shouldReturnTheExtensionsOfThePointIfThereAreNoneForTheMediaType() throws Exception {
+		Extension plain = addExtension(POINT_ID);
+		
+		ExtensionPointIndex index = ExtensionPointIndex.build(extensionMap);
+		
+		Assert.assertEquals(Arrays.asList(plain), index.getExtensions(POINT_ID, MEDIA_TYPE.html));
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ModuleClassLoaderRoutingTable} class
+ */
+public class ModuleClassLoaderRoutingTableTest {
+	
+	private List<ModuleClassLoader> classLoaders;
+	
+	@Before
+	public void before() {
+		classLoaders = new ArrayList<ModuleClassLoader>();
+	}
+	
+	private ModuleClassLoader addClassLoader(String packageName, String... additionalPackages) {
+		Module module = new Module(packageName);
+		module.setPackageName(packageName);
+		ModuleClassLoader classLoader = mock(ModuleClassLoader.class);
+		when(classLoader.getModule()).thenReturn(module);
+		when(classLoader.getAdditionalPackages()).thenReturn(new LinkedHashSet<String>(Arrays.asList(additionalPackages)));
+		classLoaders.add(classLoader);
+		return classLoader;
+	}
+	
+	private List<ModuleClassLoader> getClassLoaders(String className) {
+		return ModuleClassLoaderRoutingTable.build(classLoaders).getClassLoaders(className);
+	}
+	
+	/**
+	 * @see {@link ModuleClassLoaderRoutingTable#getClassLoaders(String)}
+	 */
+	@Test
+	public void getClassLoaders_shouldReturnTheClassloadersOfTheModulePackage() throws Exception {
+		ModuleClassLoader reporting = addClassLoader("org.openmrs.module.reporting");
+		addClassLoader("org.openmrs.module.htmlformentry");
+		Assert.assertEquals(Arrays.asList(reporting), getClassLoaders("org.openmrs.module.reporting.ReportService"));
+	}
+	
+	/**
+	 * @see {@link ModuleClassLoaderRoutingTable#getClassLoaders(String)}
+	 */
+	@Test
+	public void getClassLoaders_shouldReturnTheClassloadersOfAnAdditionalPackage() throws Exception {
+		ModuleClassLoader reporting = addClassLoader("org.openmrs.module.reporting", "org.openmrs.serialization");
+		Assert.assertEquals(Arrays.asList(reporting), getClassLoaders("org.openmrs.serialization.Serializer"));
+	}
+	
+	/**
+	 * @see {@link ModuleClassLoaderRoutingTable#getClassLoaders(String)}
+	 */
+	@Test
+	public void getClassLoaders_shouldMatchPackagesTheClassNameStartsWith() throws Exception {
+		ModuleClassLoader openmrs = addClassLoader("org.openmrs.module.openmrs");
+		ModuleClassLoader module = addClassLoader("org.openmrs.module", "org.openmrs.module.openmrs.extra");
+		Assert.assertEquals(Arrays.asList(openmrs, module), getClassLoaders("org.openmrs.module.openmrs.extra.Extra"));
+		Assert.assertEquals(Arrays.asList(openmrs, module), getClassLoaders("org.openmrs.module.openmrsweb.Web"));
+		Assert.assertEquals(Arrays.asList(module), getClassLoaders("org.openmrs.module.Module"));
+		Assert.assertEquals(Arrays.asList(module), getClassLoaders("org.openmrs.module"));
+	}
+	
+	/**
+	 * @see {@link ModuleClassLoaderRoutingTable#getClassLoaders(String)}
+	 */
+	@Test
+	public void getClassLoaders_shouldReturnTheClassloadersInTheOrderTheyWereGiven() throws Exception {
+		ModuleClassLoader first = addClassLoader("org.openmrs.module.first", "org.openmrs.shared");
+		ModuleClassLoader second = addClassLoader("org.openmrs.module.second", "org.openmrs");
+		ModuleClassLoader third = addClassLoader("org.openmrs.module.third", "org.openmrs.shared.util");
+		Assert.assertEquals(Arrays.asList(first, second, third), getClassLoaders("org.openmrs.shared.util.Util"));
+		Assert.assertEquals(Arrays.asList(first, second), getClassLoaders("org.openmrs.shared.Shared"));
+	}
+	
+	/**
+	 * @see {@link ModuleClassLoaderRoutingTable#getClassLoaders(String)}
+	 */
+	@Test
+	public void getClassLoaders_shouldReturnAnEmptyListIfNoPackageMatches() throws Exception {
+		addClassLoader("org.openmrs.module.reporting", "org.openmrs.serialization");
+		Assert.assertTrue(getClassLoaders("org.openmrs.Patient").isEmpty());
+		Assert.assertTrue(getClassLoaders("java.lang.String").isEmpty());
+		Assert.assertTrue(getClassLoaders(null).isEmpty());
+		Assert.assertTrue(ModuleClassLoaderRoutingTable.EMPTY.getClassLoaders("org.openmrs.Patient").isEmpty());
+	}
+}
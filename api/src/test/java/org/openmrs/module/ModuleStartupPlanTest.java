@@ -0,0 +1,107 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link ModuleStartupPlan} class
+ */
+public class ModuleStartupPlanTest {
+	
+	private Module createModule(String moduleId, String... requiredModuleIds) {
+		Module module = new Module(moduleId);
+		module.setModuleId(moduleId);
+		module.setPackageName("org.openmrs.module." + moduleId);
+		String[] requiredPackages = new String[requiredModuleIds.length];
+		for (int i = 0; i < requiredModuleIds.length; i++) {
+			requiredPackages[i] = "org.openmrs.module." + requiredModuleIds[i];
+		}
+		module.setRequiredModules(Arrays.asList(requiredPackages));
+		return module;
+	}
+	
+	/**
+	 * @see {@link ModuleStartupPlan#ModuleStartupPlan(java.util.Collection)}
+	 */
+	@Test
+	@Verifies(value = "should put modules after the modules they require", method = "ModuleStartupPlan(Collection)")
+	public void ModuleStartupPlan_shouldPutModulesAfterTheModulesTheyRequire() throws Exception {
+		Module htmlwidgets = createModule("htmlwidgets", "serialization");
+		Module reporting = createModule("reporting", "htmlwidgets", "serialization");
+		Module serialization = createModule("serialization");
+		
+		ModuleStartupPlan plan = new ModuleStartupPlan(Arrays.asList(reporting, htmlwidgets, serialization));
+		
+		Assert.assertEquals(Arrays.asList(serialization, htmlwidgets, reporting), plan.getModules());
+		Assert.assertEquals(3, plan.getWaves().size());
+	}
+	
+	/**
+	 * @see {@link ModuleStartupPlan#ModuleStartupPlan(java.util.Collection)}
+	 */
+	@Test
+	@Verifies(value = "should keep the given order of independent modules", method = "ModuleStartupPlan(Collection)")
+	public void ModuleStartupPlan_shouldKeepTheGivenOrderOfIndependentModules() throws Exception {
+		Module logic = createModule("logic");
+		Module reporting = createModule("reporting");
+		Module htmlformentry = createModule("htmlformentry", "logic");
+		Module xforms = createModule("xforms", "logic");
+		
+		ModuleStartupPlan plan = new ModuleStartupPlan(Arrays.asList(xforms, logic, reporting, htmlformentry));
+		
+		List<List<Module>> waves = plan.getWaves();
+		Assert.assertEquals(2, waves.size());
+		Assert.assertEquals(Arrays.asList(logic, reporting), waves.get(0));
+		Assert.assertEquals(Arrays.asList(xforms, htmlformentry), waves.get(1));
+	}
+	
+	/**
+	 * @see {@link ModuleStartupPlan#ModuleStartupPlan(java.util.Collection)}
+	 */
+	@Test
+	@Verifies(value = "should ignore required modules that are not part of the plan", method = "ModuleStartupPlan(Collection)")
+	public void ModuleStartupPlan_shouldIgnoreRequiredModulesThatAreNotPartOfThePlan() throws Exception {
+		Module reporting = createModule("reporting", "serialization");
+		Module logic = createModule("logic");
+		
+		ModuleStartupPlan plan = new ModuleStartupPlan(Arrays.asList(reporting, logic));
+		
+		Assert.assertEquals(1, plan.getWaves().size());
+		Assert.assertEquals(Arrays.asList(reporting, logic), plan.getModules());
+	}
+	
+	/**
+	 * @see {@link ModuleStartupPlan#ModuleStartupPlan(java.util.Collection)}
+	 */
+	@Test
+	@Verifies(value = "should put modules with cyclic requirements in the last wave", method = "ModuleStartupPlan(Collection)")
+	public void ModuleStartupPlan_shouldPutModulesWithCyclicRequirementsInTheLastWave() throws Exception {
+		Module first = createModule("first", "second");
+		Module second = createModule("second", "first");
+		Module third = createModule("third");
+		
+		ModuleStartupPlan plan = new ModuleStartupPlan(Arrays.asList(first, second, third));
+		
+		List<List<Module>> waves = plan.getWaves();
+		Assert.assertEquals(2, waves.size());
+		Assert.assertEquals(Arrays.asList(third), waves.get(0));
+		Assert.assertEquals(Arrays.asList(first, second), waves.get(1));
+	}
+}
@@ -14,7 +14,10 @@
 package org.openmrs.module;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.net.URL;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import junit.framework.Assert;
 
@@ -474,4 +477,107 @@ public class ModuleUtilTest extends BaseContextSensitiveTest {
 			expectedModuleRepo.deleteOnExit();
 		}
 	}
+	
+	/**
+	 * Creates a temporary jar holding the given entries
+	 * 
+	 * @param namesAndContents the name of each entry followed by its contents
+	 */
+	private File createJar(String... namesAndContents) throws Exception {
+		File jar = File.createTempFile("moduleutiltest", ".jar");
+		jar.deleteOnExit();
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+		try {
+			for (int i = 0; i < namesAndContents.length; i += 2) {
+				out.putNextEntry(new JarEntry(namesAndContents[i]));
+				out.write(namesAndContents[i + 1].getBytes("UTF-8"));
+				out.closeEntry();
+			}
+		}
+		finally {
+			out.close();
+		}
+		return jar;
+	}
+	
+	/**
+	 * @see {@link ModuleUtil#getJarContentHash(File,String)}
+	 */
+	@Test
+	@Verifies(value = "should return the same hash for jars with the same entries", method = "getJarContentHash(File,String)")
+	public void getJarContentHash_shouldReturnTheSameHashForJarsWithTheSameEntries() throws Exception {
+		File first = createJar("web/module/index.jsp", "index", "config.xml", "config");
+		File second = createJar("config.xml", "config", "web/module/index.jsp", "index");
+		Assert.assertEquals(ModuleUtil.getJarContentHash(first, null), ModuleUtil.getJarContentHash(second, null));
+	}
+	
+	/**
+	 * @see {@link ModuleUtil#getJarContentHash(File,String)}
+	 */
+	@Test
+	@Verifies(value = "should return a different hash if the contents of an entry changed", method = "getJarContentHash(File,String)")
+	public void getJarContentHash_shouldReturnADifferentHashIfTheContentsOfAnEntryChanged() throws Exception {
+		File first = createJar("web/module/index.jsp", "index");
+		File second = createJar("web/module/index.jsp", "indeX");
+		Assert.assertFalse(ModuleUtil.getJarContentHash(first, null).equals(ModuleUtil.getJarContentHash(second, null)));
+	}
+	
+	/**
+	 * @see {@link ModuleUtil#getJarContentHash(File,String)}
+	 */
+	@Test
+	@Verifies(value = "should only hash the entries starting with the prefix", method = "getJarContentHash(File,String)")
+	public void getJarContentHash_shouldOnlyHashTheEntriesStartingWithThePrefix() throws Exception {
+		File first = createJar("web/module/index.jsp", "index", "config.xml", "config");
+		File second = createJar("web/module/index.jsp", "index", "config.xml", "changed config");
+		Assert.assertEquals(ModuleUtil.getJarContentHash(first, "web/module/"), ModuleUtil.getJarContentHash(second,
+		    "web/module/"));
+		Assert.assertFalse(ModuleUtil.getJarContentHash(first, null).equals(ModuleUtil.getJarContentHash(second, null)));
+	}
+	
+	/**
+	 * @see {@link ModuleUtil#isExpandedFromJarContent(File,String)}
+	 */
+	@Test
+	@Verifies(value = "should return true if the directory was expanded from the same contents", method = "isExpandedFromJarContent(File,String)")
+	public void isExpandedFromJarContent_shouldReturnTrueIfTheDirectoryWasExpandedFromTheSameContents() throws Exception {
+		File directory = new File(System.getProperty("java.io.tmpdir"), "moduleutiltest_expanded");
+		try {
+			ModuleUtil.setExpandedJarContentHash(directory, "abc123");
+			Assert.assertTrue(ModuleUtil.isExpandedFromJarContent(directory, "abc123"));
+		}
+		finally {
+			OpenmrsUtil.deleteDirectory(directory);
+		}
+	}
+	
+	/**
+	 * @see {@link ModuleUtil#isExpandedFromJarContent(File,String)}
+	 */
+	@Test
+	@Verifies(value = "should return false if the directory was expanded from other contents", method = "isExpandedFromJarContent(File,String)")
+	public void isExpandedFromJarContent_shouldReturnFalseIfTheDirectoryWasExpandedFromOtherContents() throws Exception {
+		File directory = new File(System.getProperty("java.io.tmpdir"), "moduleutiltest_expanded");
+		try {
+			ModuleUtil.setExpandedJarContentHash(directory, "abc123");
+			Assert.assertFalse(ModuleUtil.isExpandedFromJarContent(directory, "def456"));
+			
+			ModuleUtil.setExpandedJarContentHash(directory, null);
+			Assert.assertFalse(ModuleUtil.isExpandedFromJarContent(directory, "abc123"));
+		}
+		finally {
+			OpenmrsUtil.deleteDirectory(directory);
+		}
+	}
+	
+	/**
+	 * @see {@link ModuleUtil#isExpandedFromJarContent(File,String)}
+	 */
+	@Test
+	@Verifies(value = "should return false if the directory was never expanded", method = "isExpandedFromJarContent(File,String)")
+	public void isExpandedFromJarContent_shouldReturnFalseIfTheDirectoryWasNeverExpanded() throws Exception {
+		File directory = new File(System.getProperty("java.io.tmpdir"), "moduleutiltest_never_expanded");
+		Assert.assertFalse(ModuleUtil.isExpandedFromJarContent(directory, "abc123"));
+		Assert.assertFalse(ModuleUtil.isExpandedFromJarContent(directory, null));
+	}
 }
@@ -0,0 +1,128 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.obs.handler;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Obs;
+import org.openmrs.obs.ComplexData;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * Tests for the {@link ImageHandler} class.
+ */
+public class ImageHandlerTest extends BaseContextSensitiveTest {
+	
+	private ImageHandler handler;
+	
+	private Obs obs;
+	
+	private File imageFile;
+	
+	private File thumbnailFile;
+	
+	@Before
+	public void before() throws Exception {
+		handler = new ImageHandler();
+		obs = new Obs();
+		obs.setValueComplex("png image |imagehandlertest.png");
+		imageFile = AbstractHandler.getComplexDataFile(obs);
+		thumbnailFile = new File(new File(imageFile.getParentFile(), "thumbnails"), imageFile.getName());
+	}
+	
+	@After
+	public void after() throws Exception {
+		// the files are outside the database, so they can't be rolled back like everything else
+		imageFile.delete();
+		thumbnailFile.delete();
+	}
+	
+	private void createImage(int width, int height) throws Exception {
+		ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", imageFile);
+	}
+	
+	/**
+	 * @see {@link ImageHandler#getComplexDataAsFile(Obs,String)}
+	 */
+	@Test
+	@Verifies(value = "should return the image file for the raw view", method = "getComplexDataAsFile(Obs,String)")
+	public void getComplexDataAsFile_shouldReturnTheImageFileForTheRawView() throws Exception {
+		createImage(400, 300);
+		
+		ComplexData complexData = handler.getComplexDataAsFile(obs, OpenmrsConstants.RAW_VIEW);
+		
+		Assert.assertEquals("imagehandlertest.png", complexData.getTitle());
+		Assert.assertEquals(imageFile, complexData.getData());
+	}
+	
+	/**
+	 * @see {@link ImageHandler#getComplexDataAsFile(Obs,String)}
+	 */
+	@Test
+	@Verifies(value = "should return a scaled down thumbnail for the thumbnail view", method = "getComplexDataAsFile(Obs,String)")
+	public void getComplexDataAsFile_shouldReturnAScaledDownThumbnailForTheThumbnailView() throws Exception {
+		createImage(400, 300);
+		
+		ComplexData complexData = handler.getComplexDataAsFile(obs, OpenmrsConstants.THUMBNAIL_VIEW);
+		
+		Assert.assertEquals("imagehandlertest.png", complexData.getTitle());
+		Assert.assertEquals(thumbnailFile, complexData.getData());
+		BufferedImage thumbnail = ImageIO.read(thumbnailFile);
+		Assert.assertEquals(ImageHandler.THUMBNAIL_SIZE, thumbnail.getWidth());
+		Assert.assertEquals(ImageHandler.THUMBNAIL_SIZE * 3 / 4, thumbnail.getHeight());
+	}
+	
+	/**
+	 * @see {@link ImageHandler#getComplexDataAsFile(Obs,String)}
+	 */
+	@Test
+	@Verifies(value = "should return the image file for the thumbnail view if the image is smaller than the thumbnail size", method = "getComplexDataAsFile(Obs,String)")
+	public void getComplexDataAsFile_shouldReturnTheImageFileForTheThumbnailViewIfTheImageIsSmallerThanTheThumbnailSize()
+	        throws Exception {
+		createImage(100, 50);
+		
+		ComplexData complexData = handler.getComplexDataAsFile(obs, OpenmrsConstants.THUMBNAIL_VIEW);
+		
+		Assert.assertEquals(imageFile, complexData.getData());
+		Assert.assertFalse(thumbnailFile.exists());
+	}
+	
+	/**
+	 * @see {@link ImageHandler#getComplexDataAsFile(Obs,String)}
+	 */
+	@Test
+	@Verifies(value = "should return null if a subclass overrides getObs only", method = "getComplexDataAsFile(Obs,String)")
+	public void getComplexDataAsFile_shouldReturnNullIfASubclassOverridesGetObsOnly() throws Exception {
+		createImage(400, 300);
+		ImageHandler decryptingHandler = new ImageHandler() {
+			
+			@Override
+			public Obs getObs(Obs obs, String view) {
+				obs.setComplexData(new ComplexData("decrypted", new byte[0]));
+				return obs;
+			}
+		};
+		
+		Assert.assertNull(decryptingHandler.getComplexDataAsFile(obs, OpenmrsConstants.RAW_VIEW));
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link CohortBitmap} class
+ */
+public class CohortBitmapTest {
+	
+	private CohortBitmap bitmap(Integer... patientIds) {
+		return CohortBitmap.of(Arrays.asList(patientIds));
+	}
+	
+	/**
+	 * @see {@link CohortBitmap#and(CohortBitmap)}
+	 */
+	@Test
+	@Verifies(value = "should return the patients in both bitmaps", method = "and(CohortBitmap)")
+	public void and_shouldReturnThePatientsInBothBitmaps() throws Exception {
+		Assert.assertEquals(bitmap(3, 70), bitmap(1, 3, 70).and(bitmap(3, 5, 70, 1000)));
+	}
+	
+	/**
+	 * @see {@link CohortBitmap#or(CohortBitmap)}
+	 */
+	@Test
+	@Verifies(value = "should return the patients in either bitmap", method = "or(CohortBitmap)")
+	public void or_shouldReturnThePatientsInEitherBitmap() throws Exception {
+		Assert.assertEquals(bitmap(1, 3, 5, 70, 1000), bitmap(1, 3, 70).or(bitmap(3, 5, 1000)));
+	}
+	
+	/**
+	 * @see {@link CohortBitmap#andNot(CohortBitmap)}
+	 */
+	@Test
+	@Verifies(value = "should return the patients that are not in the other bitmap", method = "andNot(CohortBitmap)")
+	public void andNot_shouldReturnThePatientsThatAreNotInTheOtherBitmap() throws Exception {
+		CohortBitmap all = bitmap(1, 3, 70);
+		Assert.assertEquals(bitmap(1), all.andNot(bitmap(3, 5, 70)));
+		Assert.assertEquals("the operands should not change", bitmap(1, 3, 70), all);
+	}
+	
+	/**
+	 * @see {@link CohortBitmap#toCohort()}
+	 */
+	@Test
+	@Verifies(value = "should return a cohort of the patients in the bitmap", method = "toCohort()")
+	public void toCohort_shouldReturnACohortOfThePatientsInTheBitmap() throws Exception {
+		Cohort cohort = new Cohort(Arrays.asList(7, 2, 501));
+		Cohort result = CohortBitmap.of(cohort).toCohort();
+		Assert.assertEquals(3, result.size());
+		Assert.assertTrue(result.getMemberIds().containsAll(cohort.getMemberIds()));
+	}
+	
+}
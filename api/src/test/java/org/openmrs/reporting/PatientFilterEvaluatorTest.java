@@ -0,0 +1,127 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.api.PatientSetService.BooleanOperator;
+import org.openmrs.api.context.Context;
+import org.openmrs.report.EvaluationContext;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link PatientFilterEvaluator} class
+ */
+public class PatientFilterEvaluatorTest extends BaseContextSensitiveTest {
+	
+	private CompoundPatientFilter compound(BooleanOperator operator, PatientFilter... filters) {
+		CompoundPatientFilter filter = new CompoundPatientFilter();
+		filter.setOperator(operator);
+		filter.setFilters(Arrays.asList(filters));
+		return filter;
+	}
+	
+	/**
+	 * Counts the entries of the cache of a context that are results of filters
+	 */
+	private int countCachedResults(EvaluationContext context) {
+		int count = 0;
+		for (Object value : context.getCache().values()) {
+			if (value instanceof Cohort)
+				count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * @see {@link PatientFilterEvaluator#evaluate(PatientFilter,Cohort,EvaluationContext)}
+	 */
+	@Test
+	@Verifies(value = "should combine the leaves of compound filters", method = "evaluate(PatientFilter,Cohort,EvaluationContext)")
+	public void evaluate_shouldCombineTheLeavesOfCompoundFilters() throws Exception {
+		PatientFilter males = new PatientCharacteristicFilter("M", null, null);
+		PatientFilter females = new PatientCharacteristicFilter("F", null, null);
+		EvaluationContext context = new EvaluationContext();
+		
+		Cohort all = Context.getPatientSetService().getAllPatients();
+		Cohort either = PatientFilterEvaluator.evaluate(compound(BooleanOperator.OR, males, females), null, context);
+		Cohort both = PatientFilterEvaluator.evaluate(compound(BooleanOperator.AND, males, females), null, context);
+		
+		Assert.assertEquals(all.getMemberIds(), either.getMemberIds());
+		Assert.assertEquals(0, both.size());
+	}
+	
+	/**
+	 * @see {@link PatientFilterEvaluator#evaluate(PatientFilter,Cohort,EvaluationContext)}
+	 */
+	@Test
+	@Verifies(value = "should evaluate inverse filters against the input", method = "evaluate(PatientFilter,Cohort,EvaluationContext)")
+	public void evaluate_shouldEvaluateInverseFiltersAgainstTheInput() throws Exception {
+		PatientFilter males = new PatientCharacteristicFilter("M", null, null);
+		Cohort input = new Cohort(Arrays.asList(2, 7, 8));
+		
+		Cohort notMales = PatientFilterEvaluator.evaluate(new InversePatientFilter(males), input, new EvaluationContext());
+		
+		Assert.assertEquals(2, notMales.size());
+		Assert.assertTrue(notMales.contains(7));
+		Assert.assertTrue(notMales.contains(8));
+	}
+	
+	/**
+	 * @see {@link PatientFilterEvaluator#evaluate(PatientFilter,Cohort,EvaluationContext)}
+	 */
+	@Test
+	@Verifies(value = "should evaluate a leaf that appears more than once only once", method = "evaluate(PatientFilter,Cohort,EvaluationContext)")
+	public void evaluate_shouldEvaluateALeafThatAppearsMoreThanOnceOnlyOnce() throws Exception {
+		PatientFilter males = new PatientCharacteristicFilter("M", null, null);
+		PatientFilter sameMales = new PatientCharacteristicFilter("M", null, null);
+		EvaluationContext context = new EvaluationContext();
+		
+		Cohort result = PatientFilterEvaluator.evaluate(compound(BooleanOperator.OR, males,
+		    new InversePatientFilter(sameMales)), null, context);
+		
+		Assert.assertEquals(Context.getPatientSetService().getAllPatients().size(), result.size());
+		Assert.assertEquals(1, countCachedResults(context));
+	}
+	
+	/**
+	 * @see {@link PatientFilterEvaluator#evaluate(Map,Cohort,EvaluationContext)}
+	 */
+	@Test
+	@Verifies(value = "should share the leaves of the filters", method = "evaluate(Map,Cohort,EvaluationContext)")
+	public void evaluate_shouldShareTheLeavesOfTheFilters() throws Exception {
+		PatientFilter males = new PatientCharacteristicFilter("M", null, null);
+		PatientFilter females = new PatientCharacteristicFilter("F", null, null);
+		Map<String, PatientFilter> filters = new LinkedHashMap<String, PatientFilter>();
+		filters.put("males", males);
+		filters.put("notFemales", new InversePatientFilter(females));
+		filters.put("femalesOrMales", compound(BooleanOperator.OR, females, males));
+		EvaluationContext context = new EvaluationContext();
+		
+		Map<String, Cohort> results = PatientFilterEvaluator.evaluate(filters, null, context);
+		
+		Assert.assertEquals(Arrays.asList("males", "notFemales", "femalesOrMales"), Arrays.asList(results.keySet()
+		        .toArray()));
+		Assert.assertEquals(results.get("males").getMemberIds(), results.get("notFemales").getMemberIds());
+		Assert.assertEquals(context.getBaseCohort().getMemberIds(), results.get("femalesOrMales").getMemberIds());
+		Assert.assertEquals(2, countCachedResults(context));
+	}
+	
+}
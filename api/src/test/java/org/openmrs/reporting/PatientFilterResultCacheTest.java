@@ -0,0 +1,56 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link PatientFilterResultCache} class
+ */
+public class PatientFilterResultCacheTest {
+	
+	@After
+	public void clearCache() {
+		PatientFilterResultCache.clear();
+	}
+	
+	/**
+	 * @see {@link PatientFilterResultCache#get(String,CohortBitmap)}
+	 */
+	@Test
+	@Verifies(value = "should return a result for the same key and base cohort", method = "get(String,CohortBitmap)")
+	public void get_shouldReturnAResultForTheSameKeyAndBaseCohort() throws Exception {
+		CohortBitmap result = CohortBitmap.of(Arrays.asList(2, 7));
+		PatientFilterResultCache.put("key", CohortBitmap.of(Arrays.asList(2, 6, 7)), result);
+		Assert.assertEquals(result, PatientFilterResultCache.get("key", CohortBitmap.of(Arrays.asList(2, 6, 7))));
+		Assert.assertNull(PatientFilterResultCache.get("other key", CohortBitmap.of(Arrays.asList(2, 6, 7))));
+	}
+	
+	/**
+	 * @see {@link PatientFilterResultCache#get(String,CohortBitmap)}
+	 */
+	@Test
+	@Verifies(value = "should not return a result for another base cohort", method = "get(String,CohortBitmap)")
+	public void get_shouldNotReturnAResultForAnotherBaseCohort() throws Exception {
+		PatientFilterResultCache.put("key", CohortBitmap.of(Arrays.asList(2, 6, 7)), CohortBitmap.of(Arrays.asList(2, 7)));
+		Assert.assertNull(PatientFilterResultCache.get("key", CohortBitmap.of(Arrays.asList(2, 6))));
+		Assert.assertNull(PatientFilterResultCache.get("key", null));
+	}
+	
+}
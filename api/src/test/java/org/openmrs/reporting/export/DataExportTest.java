@@ -634,4 +634,73 @@ public class DataExportTest extends BaseContextSensitiveTest {
 		assertEquals("The output is not right.", expectedOutput, output);
 		
 	}
+	
+	/**
+	 * Makes sure that writing an export in several batches, with the columns prefetched for each
+	 * batch, gives the same output as writing it in one go
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void shouldExportConceptColumnsInBatches() throws Exception {
+		DataExportReportObject export = new DataExportReportObject();
+		export.setName("BATCHED CONSTRUCT EXPORT");
+		
+		export.getColumns().add(new SimpleColumn("PATIENT_ID", "$!{fn.patientId}"));
+		export.getColumns().add(new ConceptColumn("CONSTRUCT", DataExportReportObject.MODIFIER_FIRST, 1, "23", null));
+		export.getColumns().add(new ConceptColumn("WEIGHT", DataExportReportObject.MODIFIER_FIRST, 1, "5089", null));
+		
+		Cohort patients = new Cohort();
+		patients.addMember(7);
+		patients.addMember(8);
+		
+		DataExportFunctions functions = new DataExportFunctions();
+		functions.setSeparator("\t");
+		functions.setPatientSetBatchSize(1);
+		DataExportUtil.generateExport(export, patients, functions, null);
+		File exportFile = DataExportUtil.getGeneratedFile(export);
+		
+		String expectedOutput = "PATIENT_ID	\"FOOD ASSISTANCE\"	\"DATE OF FOOD ASSISTANCE\"	\"FAVORITE FOOD, NON-CODED\"	\"WEIGHT\"\n7	YES	14/08/2008	PB and J	50.0\n8				\n";
+		String output = OpenmrsUtil.getFileAsString(exportFile);
+		exportFile.delete();
+		
+		assertEquals("The output is not right.", expectedOutput, output);
+	}
+	
+	/**
+	 * Makes sure that cohort columns are evaluated for all of the patients of a batched export
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void shouldExportCohortColumnsInBatches() throws Exception {
+		Cohort cohort = new Cohort();
+		cohort.setName("A Cohort");
+		cohort.setDescription("Just for testing");
+		cohort.addMember(6);
+		cohort = Context.getCohortService().saveCohort(cohort);
+		
+		DataExportReportObject export = new DataExportReportObject();
+		export.setName("Batched cohort column");
+		export.getColumns().add(new SimpleColumn("PATIENT_ID", "$!{fn.patientId}"));
+		export.getColumns().add(new CohortColumn("InCohort", cohort.getCohortId(), null, null, "Yes", "No"));
+		export.getColumns().add(new SimpleColumn("Gender", "$!{fn.getPatientAttr('Person', 'gender')}"));
+		
+		Cohort patients = new Cohort();
+		patients.addMember(2);
+		patients.addMember(6);
+		patients.addMember(7);
+		
+		DataExportFunctions functions = new DataExportFunctions();
+		functions.setSeparator("\t");
+		functions.setPatientSetBatchSize(2);
+		DataExportUtil.generateExport(export, patients, functions, null);
+		File exportFile = DataExportUtil.getGeneratedFile(export);
+		
+		String expectedOutput = "PATIENT_ID\tInCohort\tGender\n2\tNo\tM\n6\tYes\tM\n7\tNo\tF\n";
+		String output = OpenmrsUtil.getFileAsString(exportFile);
+		exportFile.delete();
+		
+		assertEquals("The output is not right.", expectedOutput, output);
+	}
 }
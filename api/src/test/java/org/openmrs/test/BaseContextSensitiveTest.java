@@ -67,7 +67,9 @@ import org.junit.Before;
 import org.openmrs.User;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.ContextAuthenticationException;
+import org.openmrs.api.db.hibernate.MetadataQueryCache;
 import org.openmrs.module.ModuleConstants;
+import org.openmrs.reporting.PatientFilterResultCache;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.util.OpenmrsConstants;
 import org.springframework.test.context.ContextConfiguration;
@@ -613,6 +615,9 @@ public abstract class BaseContextSensitiveTest extends AbstractJUnit4SpringConte
 		//Do the actual update/insert:
 		//insert new rows, update existing rows, and leave others alone
 		DatabaseOperation.REFRESH.execute(dbUnitConn, dataset);
+		
+		// the data set may have changed rows that are already cached
+		clearHibernateCache();
 	}
 	
 	private IDatabaseConnection setupDatabaseConnection(Connection connection) throws DatabaseUnitException {
@@ -669,13 +674,16 @@ public abstract class BaseContextSensitiveTest extends AbstractJUnit4SpringConte
 	}
 	
 	/**
-	 * Method to clear the hibernate cache
+	 * Method to clear the hibernate cache, the patient filter results that are shared across
+	 * evaluation contexts and the metadata lookups of the DAOs
 	 */
 	@Before
 	public void clearHibernateCache() {
 		SessionFactory sf = (SessionFactory) applicationContext.getBean("sessionFactory");
 		sf.getCache().evictCollectionRegions();
 		sf.getCache().evictEntityRegions();
+		PatientFilterResultCache.clear();
+		MetadataQueryCache.clear();
 	}
 	
 	/**
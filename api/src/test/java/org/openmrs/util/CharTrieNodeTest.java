@@ -0,0 +1,72 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+public class CharTrieNodeTest {
+	
+	private static class TestNode extends CharTrieNode<TestNode> {
+		
+		@Override
+		protected TestNode createChild() {
+			return new TestNode();
+		}
+	}
+	
+	/**
+	 * @see {@link CharTrieNode#child(char)}
+	 */
+	@Test
+	@Verifies(value = "should return the child added for the character", method = "child(char)")
+	public void child_shouldReturnTheChildAddedForTheCharacter() throws Exception {
+		TestNode root = new TestNode();
+		TestNode a = root.getOrCreateChild('a');
+		TestNode b = root.getOrCreateChild('b');
+		
+		Assert.assertSame(a, root.child('a'));
+		Assert.assertSame(b, root.child('b'));
+		Assert.assertSame(a, root.getOrCreateChild('a'));
+		Assert.assertEquals(2, root.getChildCount());
+	}
+	
+	/**
+	 * @see {@link CharTrieNode#child(char)}
+	 */
+	@Test
+	@Verifies(value = "should return null for a character without a child", method = "child(char)")
+	public void child_shouldReturnNullForACharacterWithoutAChild() throws Exception {
+		TestNode root = new TestNode();
+		Assert.assertNull(root.child('a'));
+		root.getOrCreateChild('b');
+		Assert.assertNull(root.child('a'));
+	}
+	
+	/**
+	 * @see {@link CharTrieNode#getOrCreateDescendant(String)}
+	 */
+	@Test
+	@Verifies(value = "should add a node per character", method = "getOrCreateDescendant(String)")
+	public void getOrCreateDescendant_shouldAddANodePerCharacter() throws Exception {
+		TestNode root = new TestNode();
+		TestNode end = root.getOrCreateDescendant("org");
+		
+		Assert.assertSame(end, root.child('o').child('r').child('g'));
+		Assert.assertSame(end, root.getOrCreateDescendant("org"));
+		Assert.assertEquals(1, root.getChildCount());
+		Assert.assertEquals('o', root.getChildKey(0));
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+public class GlobalPropertySettingsTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see {@link GlobalPropertySettings#get()}
+	 */
+	@Test
+	@Verifies(value = "should keep the settings up to date when a property changes", method = "get()")
+	public void get_shouldKeepTheSettingsUpToDateWhenAPropertyChanges() throws Exception {
+		AdministrationService as = Context.getAdministrationService();
+		as.saveGlobalProperty(new GlobalProperty("test.settings.size", "3"));
+		
+		GlobalPropertySettings<Integer> settings = new GlobalPropertySettings<Integer>("test.settings.size") {
+			
+			@Override
+			protected Integer parse(Map<String, String> values) {
+				String size = values.get("test.settings.size");
+				return size == null ? 0 : Integer.valueOf(size);
+			}
+		};
+		Assert.assertEquals(3, settings.get().intValue());
+		
+		GlobalProperty changed = new GlobalProperty("test.settings.size", "5");
+		settings.globalPropertyChanged(changed);
+		Assert.assertEquals(5, settings.get().intValue());
+		Assert.assertEquals("5", settings.getValues().get("test.settings.size"));
+		
+		settings.globalPropertyDeleted("test.settings.size");
+		Assert.assertEquals(0, settings.get().intValue());
+	}
+	
+	/**
+	 * @see {@link GlobalPropertySettings#get()}
+	 */
+	@Test
+	@Verifies(value = "should not read the properties again until one changes after reading them failed", method = "get()")
+	public void get_shouldNotReadThePropertiesAgainUntilOneChangesAfterReadingThemFailed() throws Exception {
+		final AtomicInteger reads = new AtomicInteger();
+		GlobalPropertySettings<Integer> settings = new GlobalPropertySettings<Integer>("test.settings.size") {
+			
+			@Override
+			protected Integer parse(Map<String, String> values) {
+				if (reads.incrementAndGet() == 1)
+					throw new IllegalStateException("not ready yet");
+				return 3;
+			}
+		};
+		Assert.assertNull(settings.get());
+		Assert.assertNull(settings.get());
+		Assert.assertEquals(1, reads.get());
+		
+		settings.globalPropertyChanged(new GlobalProperty("test.settings.size", "3"));
+		Assert.assertEquals(3, settings.get().intValue());
+		Assert.assertEquals(2, reads.get());
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.api.APIException;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link KeysetToken} class
+ */
+public class KeysetTokenTest {
+	
+	/**
+	 * @see {@link KeysetToken#encode()}
+	 */
+	@Test
+	@Verifies(value = "should encode a token that decodes to the same sort key", method = "encode()")
+	public void encode_shouldEncodeATokenThatDecodesToTheSameSortKey() throws Exception {
+		Date date = new Date(1218578400000L);
+		String token = new KeysetToken("encounter", date, 42).encode();
+		
+		KeysetToken decoded = KeysetToken.decode("encounter", token);
+		
+		Assert.assertEquals("encounter", decoded.getKind());
+		Assert.assertEquals(date, decoded.getDate());
+		Assert.assertEquals(42, decoded.getId().intValue());
+	}
+	
+	/**
+	 * @see {@link KeysetToken#decode(String,String)}
+	 */
+	@Test
+	@Verifies(value = "should return null for a blank token", method = "decode(String,String)")
+	public void decode_shouldReturnNullForABlankToken() throws Exception {
+		Assert.assertNull(KeysetToken.decode("encounter", null));
+		Assert.assertNull(KeysetToken.decode("encounter", " "));
+	}
+	
+	/**
+	 * @see {@link KeysetToken#decode(String,String)}
+	 */
+	@Test(expected = APIException.class)
+	@Verifies(value = "should fail for a token of another kind", method = "decode(String,String)")
+	public void decode_shouldFailForATokenOfAnotherKind() throws Exception {
+		String token = new KeysetToken("visit", new Date(), 1).encode();
+		KeysetToken.decode("encounter", token);
+	}
+	
+	/**
+	 * @see {@link KeysetToken#decode(String,String)}
+	 */
+	@Test(expected = APIException.class)
+	@Verifies(value = "should fail for a token that is not a keyset token", method = "decode(String,String)")
+	public void decode_shouldFailForATokenThatIsNotAKeysetToken() throws Exception {
+		KeysetToken.decode("encounter", "bm90IGEgdG9rZW4=");
+	}
+}
@@ -13,10 +13,14 @@
  */
 package org.openmrs.validator;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 import junit.framework.Assert;
 
 import org.junit.Test;
 import org.openmrs.Location;
+import org.openmrs.Patient;
 import org.openmrs.PatientIdentifier;
 import org.openmrs.PatientIdentifierType;
 import org.openmrs.PatientIdentifierType.UniquenessBehavior;
@@ -187,4 +191,55 @@ public class PatientIdentifierValidatorTest extends BaseContextSensitiveTest {
 		PatientIdentifierValidator.validateIdentifier(pi);
 	}
 	
+	/**
+	 * @see {@link PatientIdentifierValidator#validateIdentifier(PatientIdentifier,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should not fail validation if another patient has a matching identifier and uniqueness is not checked", method = "validateIdentifier(PatientIdentifier,boolean)")
+	public void validateIdentifier_shouldNotFailValidationIfAnotherPatientHasAMatchingIdentifierAndUniquenessIsNotChecked()
+	        throws Exception {
+		PatientIdentifier pi = Context.getPatientService().getPatientIdentifiers("7TU-8", null, null, null, null).get(0);
+		pi.setIdentifier("101-6");
+		PatientIdentifierValidator.validateIdentifier(pi, false);
+	}
+	
+	/**
+	 * @see {@link PatientIdentifierValidator#validateIdentifiersAreUnique(Collection)}
+	 */
+	@Test(expected = IdentifierNotUniqueException.class)
+	@Verifies(value = "should fail validation if another patient has a matching identifier of the same type", method = "validateIdentifiersAreUnique(Collection)")
+	public void validateIdentifiersAreUnique_shouldFailValidationIfAnotherPatientHasAMatchingIdentifierOfTheSameType()
+	        throws Exception {
+		PatientIdentifier pi = Context.getPatientService().getPatientIdentifiers("7TU-8", null, null, null, null).get(0);
+		pi.setIdentifier("101-6");
+		PatientIdentifierValidator.validateIdentifiersAreUnique(Arrays.asList(pi));
+	}
+	
+	/**
+	 * @see {@link PatientIdentifierValidator#validateIdentifiersAreUnique(Collection)}
+	 */
+	@Test
+	@Verifies(value = "should pass if in use and id type uniqueness is set to non unique", method = "validateIdentifiersAreUnique(Collection)")
+	public void validateIdentifiersAreUnique_shouldPassIfInUseAndIdTypeUniquenessIsSetToNonUnique() throws Exception {
+		PatientService patientService = Context.getPatientService();
+		PatientIdentifier duplicateId = patientService.getPatientIdentifier(1);
+		
+		PatientIdentifierType idType = duplicateId.getIdentifierType();
+		idType.setUniquenessBehavior(UniquenessBehavior.NON_UNIQUE);
+		patientService.savePatientIdentifierType(idType);
+		
+		PatientIdentifier pi = new PatientIdentifier(duplicateId.getIdentifier(), idType, duplicateId.getLocation());
+		PatientIdentifierValidator.validateIdentifiersAreUnique(Arrays.asList(pi));
+	}
+	
+	/**
+	 * @see {@link PatientIdentifierValidator#validateIdentifiersAreUnique(Collection)}
+	 */
+	@Test
+	@Verifies(value = "should pass if the identifiers are only used by their own patient", method = "validateIdentifiersAreUnique(Collection)")
+	public void validateIdentifiersAreUnique_shouldPassIfTheIdentifiersAreOnlyUsedByTheirOwnPatient() throws Exception {
+		Patient patient = Context.getPatientService().getPatient(2);
+		PatientIdentifierValidator.validateIdentifiersAreUnique(patient.getIdentifiers());
+	}
+	
 }
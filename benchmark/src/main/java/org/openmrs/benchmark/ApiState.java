@@ -0,0 +1,49 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openmrs.api.context.Context;
+
+/**
+ * Gives each benchmark thread an open, authenticated session on the api started by
+ * {@link BenchmarkContext}, like the OpenmrsFilter does for a web request
+ */
+@State(Scope.Thread)
+public class ApiState {
+	
+	@Setup(Level.Trial)
+	public void openSession() throws Exception {
+		BenchmarkContext.start();
+		Context.openSession();
+		Context.authenticate("admin", "test");
+	}
+	
+	/**
+	 * Keeps objects loaded in one iteration from slowing down the flushes of the next
+	 */
+	@TearDown(Level.Iteration)
+	public void clearSession() {
+		Context.clearSession();
+	}
+	
+	@TearDown(Level.Trial)
+	public void closeSession() {
+		Context.closeSession();
+	}
+}
@@ -0,0 +1,44 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openmrs.Location;
+import org.openmrs.api.context.Context;
+import org.openmrs.util.PrivilegeConstants;
+
+/**
+ * The cost of the service proxies around a cheap call: the authorization advice, the other
+ * advisors and the transaction interceptor. {@link #getLocation(ApiState)} is served by the
+ * session, so comparing it with {@link #hasPrivilege(ApiState)} shows the overhead of the proxy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuthorizationAdviceBenchmark {
+	
+	@Benchmark
+	public boolean hasPrivilege(ApiState api) {
+		return Context.hasPrivilege(PrivilegeConstants.GET_LOCATIONS);
+	}
+	
+	@Benchmark
+	public Location getLocation(ApiState api) {
+		return Context.getLocationService().getLocation(1);
+	}
+}
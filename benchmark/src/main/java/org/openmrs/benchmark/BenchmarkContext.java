@@ -0,0 +1,175 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.benchmark;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.ReplacementDataSet;
+import org.dbunit.dataset.xml.FlatXmlDataSet;
+import org.dbunit.ext.h2.H2DataTypeFactory;
+import org.dbunit.operation.DatabaseOperation;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Environment;
+import org.hibernate.dialect.H2Dialect;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.ModuleConstants;
+import org.openmrs.tools.data.SyntheticDataGenerator;
+import org.openmrs.util.OpenmrsClassLoader;
+import org.openmrs.util.OpenmrsConstants;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * Starts the api once per benchmark JVM against an in-memory H2 database that holds the same data
+ * as the unit tests, the way BaseContextSensitiveTest does for a test run. To benchmark at a larger
+ * scale, set the benchmark.patients system property (and optionally benchmark.seed) to add that
+ * many patients from the {@link SyntheticDataGenerator}, e.g.
+ * <code>java -jar target/benchmarks.jar -jvmArgs -Dbenchmark.patients=100000</code>
+ */
+public class BenchmarkContext {
+	
+	private static final Log log = LogFactory.getLog(BenchmarkContext.class);
+	
+	public static final String INITIAL_XML_DATASET_PACKAGE_PATH = "org/openmrs/include/initialInMemoryTestDataSet.xml";
+	
+	public static final String EXAMPLE_XML_DATASET_PACKAGE_PATH = "org/openmrs/include/standardTestDataset.xml";
+	
+	public static final String PATIENTS_PROPERTY = "benchmark.patients";
+	
+	public static final String SEED_PROPERTY = "benchmark.seed";
+	
+	private static ClassPathXmlApplicationContext applicationContext;
+	
+	/**
+	 * Starts spring and hibernate and loads the test data sets, unless that was already done in this
+	 * JVM
+	 * 
+	 * @throws Exception
+	 */
+	public static synchronized void start() throws Exception {
+		if (applicationContext != null)
+			return;
+		
+		Thread.currentThread().setContextClassLoader(OpenmrsClassLoader.getInstance());
+		Context.setRuntimeProperties(getRuntimeProperties());
+		
+		log.info("Starting the api for benchmarking");
+		applicationContext = new ClassPathXmlApplicationContext(new String[] { "classpath:applicationContext-service.xml",
+		        "classpath*:moduleApplicationContext.xml" });
+		
+		Context.openSession();
+		try {
+			executeDataSets(INITIAL_XML_DATASET_PACKAGE_PATH, EXAMPLE_XML_DATASET_PACKAGE_PATH);
+			
+			int patients = Integer.getInteger(PATIENTS_PROPERTY, 0);
+			if (patients > 0) {
+				log.info("Generating " + patients + " patients");
+				SyntheticDataGenerator generator = new SyntheticDataGenerator(getConnection());
+				generator.setPatients(patients);
+				generator.setSeed(Long.getLong(SEED_PROPERTY, 1));
+				generator.generate();
+			}
+			
+			Context.authenticate("admin", "test");
+			Context.getConceptService().updateConceptIndexes();
+		}
+		finally {
+			Context.closeSession();
+		}
+	}
+	
+	/**
+	 * @return the connection of the current hibernate session
+	 */
+	public static Connection getConnection() {
+		SessionFactory sessionFactory = (SessionFactory) applicationContext.getBean("sessionFactory");
+		return sessionFactory.getCurrentSession().connection();
+	}
+	
+	/**
+	 * The connection properties of BaseContextSensitiveTest, with a database of its own
+	 */
+	private static Properties getRuntimeProperties() throws Exception {
+		Properties props = new Properties();
+		props.setProperty(Environment.DIALECT, H2Dialect.class.getName());
+		props.setProperty(Environment.URL, "jdbc:h2:mem:openmrs-benchmark;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+		props.setProperty(Environment.DRIVER, "org.h2.Driver");
+		props.setProperty(Environment.USER, "sa");
+		props.setProperty(Environment.PASS, "");
+		props.setProperty("connection.username", "sa");
+		props.setProperty("connection.password", "");
+		props.setProperty(Environment.HBM2DDL_AUTO, "create-drop");
+		props.setProperty(ModuleConstants.IGNORE_CORE_MODULES_PROPERTY, "true");
+		
+		File appDataDir = File.createTempFile("appdir-for-benchmarks-", "");
+		appDataDir.delete();
+		appDataDir.mkdir();
+		appDataDir.deleteOnExit();
+		props.setProperty(OpenmrsConstants.APPLICATION_DATA_DIRECTORY_RUNTIME_PROPERTY, appDataDir.getAbsolutePath());
+		OpenmrsConstants.APPLICATION_DATA_DIRECTORY = appDataDir.getAbsolutePath();
+		
+		return props;
+	}
+	
+	/**
+	 * Inserts the given flat xml data sets from the classpath and commits them
+	 */
+	private static void executeDataSets(String... datasetFilenames) throws Exception {
+		Connection connection = getConnection();
+		IDatabaseConnection dbUnitConn = new DatabaseConnection(connection);
+		dbUnitConn.getConfig().setProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY, new H2DataTypeFactory());
+		
+		execute(connection, "SET REFERENTIAL_INTEGRITY FALSE");
+		for (String datasetFilename : datasetFilenames) {
+			InputStream in = BenchmarkContext.class.getClassLoader().getResourceAsStream(datasetFilename);
+			if (in == null)
+				throw new FileNotFoundException("Unable to find '" + datasetFilename + "' in the classpath");
+			
+			Reader reader = new InputStreamReader(in);
+			try {
+				ReplacementDataSet dataset = new ReplacementDataSet(new FlatXmlDataSet(reader, false, true, false));
+				dataset.addReplacementObject("[NULL]", null);
+				DatabaseOperation.REFRESH.execute(dbUnitConn, dataset);
+			}
+			finally {
+				IOUtils.closeQuietly(reader);
+			}
+		}
+		execute(connection, "SET REFERENTIAL_INTEGRITY TRUE");
+		
+		connection.commit();
+	}
+	
+	private static void execute(Connection connection, String sql) throws Exception {
+		Statement statement = connection.createStatement();
+		try {
+			statement.execute(sql);
+		}
+		finally {
+			statement.close();
+		}
+	}
+}
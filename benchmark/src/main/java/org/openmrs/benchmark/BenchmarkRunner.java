@@ -0,0 +1,45 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * Runs the benchmarks with the JMH command line options and writes the results as JSON, to
+ * benchmark-results-&lt;openmrs version&gt;.json unless -rf or -rff say otherwise. These files can be
+ * compared between releases. For example, to run only the concept search benchmarks with one fork:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ConceptSearch -f 1
+ * </pre>
+ */
+public class BenchmarkRunner {
+	
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+		
+		if (!commandLineOptions.getResultFormat().hasValue())
+			options.resultFormat(ResultFormatType.JSON);
+		if (!commandLineOptions.getResult().hasValue())
+			options.result("benchmark-results-" + OpenmrsConstants.OPENMRS_VERSION_SHORT + ".json");
+		
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openmrs.Cohort;
+import org.openmrs.reporting.CohortBitmap;
+
+/**
+ * Union, intersection and difference of two half overlapping cohorts, on the member id sets of
+ * {@link Cohort} and on {@link CohortBitmap}. This does not need the api to be started.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class CohortAlgebraBenchmark {
+	
+	@Param( { "1000", "100000" })
+	public int size;
+	
+	private Cohort a;
+	
+	private Cohort b;
+	
+	private CohortBitmap bitmapA;
+	
+	private CohortBitmap bitmapB;
+	
+	@Setup
+	public void createCohorts() {
+		Random random = new Random(size);
+		List<Integer> idsA = new ArrayList<Integer>(size);
+		List<Integer> idsB = new ArrayList<Integer>(size);
+		for (int i = 0; i < size; i++) {
+			// patient ids are spread over a range four times the cohort size
+			idsA.add(random.nextInt(size * 4));
+			idsB.add(random.nextBoolean() ? idsA.get(i) : random.nextInt(size * 4));
+		}
+		a = new Cohort(idsA);
+		b = new Cohort(idsB);
+		bitmapA = CohortBitmap.of(a);
+		bitmapB = CohortBitmap.of(b);
+	}
+	
+	@Benchmark
+	public Cohort union() {
+		return Cohort.union(a, b);
+	}
+	
+	@Benchmark
+	public Cohort intersect() {
+		return Cohort.intersect(a, b);
+	}
+	
+	@Benchmark
+	public Cohort subtract() {
+		return Cohort.subtract(a, b);
+	}
+	
+	@Benchmark
+	public CohortBitmap bitmapOr() {
+		return bitmapA.or(bitmapB);
+	}
+	
+	@Benchmark
+	public CohortBitmap bitmapAnd() {
+		return bitmapA.and(bitmapB);
+	}
+	
+	@Benchmark
+	public CohortBitmap bitmapAndNot() {
+		return bitmapA.andNot(bitmapB);
+	}
+	
+	@Benchmark
+	public Cohort bitmapRoundTrip() {
+		return CohortBitmap.of(a).and(CohortBitmap.of(b)).toCohort();
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.benchmark;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openmrs.Concept;
+import org.openmrs.ConceptWord;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.context.Context;
+
+/**
+ * Concept lookups as done by the concept search widgets and the HL7 and form processors
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ConceptSearchBenchmark {
+	
+	@Param( { "CD4", "COUGH SYRUP", "FOOD" })
+	public String phrase;
+	
+	@Benchmark
+	public List<ConceptWord> getConceptWords(ApiState api) {
+		return Context.getConceptService().getConceptWords(phrase, Locale.ENGLISH);
+	}
+	
+	@Benchmark
+	public List<Concept> getConceptsByName(ApiState api) {
+		return Context.getConceptService().getConceptsByName(phrase);
+	}
+	
+	@Benchmark
+	public Concept getConceptByMapping(ApiState api) {
+		ConceptService cs = Context.getConceptService();
+		return cs.getConceptByMapping("WGT234", "SSTRM");
+	}
+}
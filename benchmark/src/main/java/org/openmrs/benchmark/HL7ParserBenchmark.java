@@ -0,0 +1,47 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openmrs.api.context.Context;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+
+/**
+ * Parsing of an ORU^R01 message as sent by the form entry module, the first step of processing
+ * every queued HL7 message
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HL7ParserBenchmark {
+	
+	public static final String ORU_R01 = "MSH|^~\\&|FORMENTRY|AMRS.ELD|HL7LISTENER|AMRS.ELD|20080226102656||ORU^R01|JqnfhKKtouEz8kzTk6Zo|P|2.5|1||||||||16^AMRS.ELD.FORMID\r"
+	        + "PID|||3^^^^||John3^Doe^||\r"
+	        + "PV1||O|1^Unknown Location||||1^Super User (1-8)|||||||||||||||||||||||||||||||||||||20080212|||||||V\r"
+	        + "ORC|RE||||||||20080226102537|1^Super User\r"
+	        + "OBR|1|||1238^MEDICAL RECORD OBSERVATIONS^99DCT\r"
+	        + "OBX|1|NM|5497^CD4, BY FACS^99DCT||450|||||||||20080206\r"
+	        + "OBX|2|DT|5096^RETURN VISIT DATE^99DCT||20080229|||||||||20080212";
+	
+	@Benchmark
+	public Message parseHL7String(ApiState api) throws HL7Exception {
+		return Context.getHL7Service().parseHL7String(ORU_R01);
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openmrs.Concept;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.Person;
+import org.openmrs.api.context.Context;
+
+/**
+ * Saving of a new numeric obs through the obs service, including the save handlers, the
+ * validation and the insert. The session is cleared after every save so that the cost does not
+ * grow with the number of saved obs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ObsSaveBenchmark extends ApiState {
+	
+	private Person person;
+	
+	private Concept weight;
+	
+	private Location location;
+	
+	@Setup(Level.Invocation)
+	public void loadObjects() {
+		person = Context.getPersonService().getPerson(7);
+		weight = Context.getConceptService().getConcept(5089);
+		location = Context.getLocationService().getLocation(1);
+	}
+	
+	@Benchmark
+	public Obs saveObs() {
+		Obs obs = new Obs(person, weight, new Date(), location);
+		obs.setValueNumeric(70.5);
+		return Context.getObsService().saveObs(obs, null);
+	}
+	
+	@TearDown(Level.Invocation)
+	public void clearSessionAfterSave() {
+		Context.clearSession();
+	}
+}
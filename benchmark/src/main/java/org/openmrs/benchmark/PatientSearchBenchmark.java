@@ -0,0 +1,49 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+
+/**
+ * The patient search of the find patient widgets, by name and by identifier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class PatientSearchBenchmark {
+	
+	@Param( { "Horatio", "John Doe", "101-6" })
+	public String query;
+	
+	@Benchmark
+	public List<Patient> getPatients(ApiState api) {
+		return Context.getPatientService().getPatients(query);
+	}
+	
+	@Benchmark
+	public List<Patient> getPatientsPage(ApiState api) {
+		return Context.getPatientService().getPatients(query, 0, 10);
+	}
+}
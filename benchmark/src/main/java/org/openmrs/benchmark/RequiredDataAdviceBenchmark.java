@@ -0,0 +1,65 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openmrs.Encounter;
+import org.openmrs.Patient;
+import org.openmrs.aop.RequiredDataAdvice;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.handler.SaveHandler;
+
+/**
+ * The recursion of {@link RequiredDataAdvice} over the collections of objects with many children,
+ * as done before every save
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class RequiredDataAdviceBenchmark extends ApiState {
+	
+	private Patient patient;
+	
+	private Encounter encounter;
+	
+	/**
+	 * Runs after {@link ApiState#openSession()} and after the session was cleared
+	 */
+	@Setup(Level.Iteration)
+	public void loadObjects() {
+		patient = Context.getPatientService().getPatient(2);
+		encounter = Context.getEncounterService().getEncounter(3);
+	}
+	
+	@Benchmark
+	public Patient handlePatient() {
+		RequiredDataAdvice.recursivelyHandle(SaveHandler.class, patient, null);
+		return patient;
+	}
+	
+	@Benchmark
+	public Encounter handleEncounter() {
+		RequiredDataAdvice.recursivelyHandle(SaveHandler.class, encounter, null);
+		return encounter;
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.tools.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A prepared insert into one table whose rows are sent to the database in JDBC batches
+ */
+public class BatchInsert {
+	
+	private final String table;
+	
+	private final PreparedStatement statement;
+	
+	private final int batchSize;
+	
+	private int pending = 0;
+	
+	private long rows = 0;
+	
+	/**
+	 * @param connection the connection to insert with
+	 * @param table the table to insert into
+	 * @param columns the columns that {@link #add(Object...)} gets the values of, in order
+	 * @param batchSize the number of rows to send at once
+	 * @throws SQLException
+	 */
+	public BatchInsert(Connection connection, String table, String[] columns, int batchSize) throws SQLException {
+		this.table = table;
+		this.batchSize = batchSize;
+		
+		StringBuilder sql = new StringBuilder("insert into ").append(table).append(" (");
+		StringBuilder values = new StringBuilder();
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				sql.append(", ");
+				values.append(", ");
+			}
+			sql.append(columns[i]);
+			values.append("?");
+		}
+		sql.append(") values (").append(values).append(")");
+		
+		statement = connection.prepareStatement(sql.toString());
+	}
+	
+	/**
+	 * Adds a row, and sends the batch if it is full
+	 * 
+	 * @param values the values of the columns, a null value inserts null
+	 * @throws SQLException
+	 */
+	public void add(Object... values) throws SQLException {
+		for (int i = 0; i < values.length; i++)
+			statement.setObject(i + 1, values[i]);
+		statement.addBatch();
+		rows++;
+		
+		if (++pending >= batchSize)
+			flush();
+	}
+	
+	/**
+	 * Sends the rows that have been added since the last batch
+	 * 
+	 * @throws SQLException
+	 */
+	public void flush() throws SQLException {
+		if (pending > 0) {
+			statement.executeBatch();
+			pending = 0;
+		}
+	}
+	
+	/**
+	 * Sends the remaining rows and releases the statement
+	 * 
+	 * @throws SQLException
+	 */
+	public void close() throws SQLException {
+		try {
+			flush();
+		}
+		finally {
+			statement.close();
+		}
+	}
+	
+	/**
+	 * @return the table this inserts into
+	 */
+	public String getTable() {
+		return table;
+	}
+	
+	/**
+	 * @return the number of rows added so far
+	 */
+	public long getRows() {
+		return rows;
+	}
+}
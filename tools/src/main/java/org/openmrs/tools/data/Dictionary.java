@@ -0,0 +1,154 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.tools.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The concepts and metadata of the target database that generated data refers to. Everything is
+ * read in id order, so that the same database and seed always generate the same data.
+ */
+public class Dictionary {
+	
+	/**
+	 * numeric question concept ids, and at the same index the range of values to generate for them
+	 */
+	final List<Integer> numericConcepts = new ArrayList<Integer>();
+	
+	final List<double[]> numericRanges = new ArrayList<double[]>();
+	
+	/**
+	 * coded question concept ids and their answer concept ids
+	 */
+	final Map<Integer, List<Integer>> codedConcepts = new LinkedHashMap<Integer, List<Integer>>();
+	
+	final List<Integer> textConcepts = new ArrayList<Integer>();
+	
+	/**
+	 * drug ids and the concept ids of these drugs
+	 */
+	final List<int[]> drugs = new ArrayList<int[]>();
+	
+	final List<Integer> locations;
+	
+	final List<Integer> encounterTypes;
+	
+	final List<Integer> identifierTypes;
+	
+	final List<Integer> visitTypes;
+	
+	final List<Integer> programs;
+	
+	final List<Integer> relationshipTypes;
+	
+	final List<Integer> providers;
+	
+	/**
+	 * Reads the concepts and metadata that are not retired
+	 * 
+	 * @param connection the target database
+	 * @throws SQLException
+	 * @throws IllegalStateException if there is no location, encounter type, identifier type,
+	 *             visit type or observable concept
+	 */
+	public Dictionary(Connection connection) throws SQLException {
+		PreparedStatement ps = connection.prepareStatement("select c.concept_id, cn.low_absolute, cn.hi_absolute"
+		        + " from concept c join concept_datatype d on c.datatype_id = d.concept_datatype_id"
+		        + " left join concept_numeric cn on cn.concept_id = c.concept_id"
+		        + " where c.retired = ? and c.is_set = ? and d.hl7_abbreviation = 'NM' order by c.concept_id");
+		ps.setBoolean(1, false);
+		ps.setBoolean(2, false);
+		ResultSet rs = ps.executeQuery();
+		while (rs.next()) {
+			numericConcepts.add(rs.getInt(1));
+			double low = rs.getDouble(2);
+			if (rs.wasNull())
+				low = 0;
+			double high = rs.getDouble(3);
+			if (rs.wasNull() || high <= low)
+				high = low + 200;
+			numericRanges.add(new double[] { low, high });
+		}
+		ps.close();
+		
+		ps = connection.prepareStatement("select c.concept_id, ca.answer_concept"
+		        + " from concept c join concept_datatype d on c.datatype_id = d.concept_datatype_id"
+		        + " join concept_answer ca on ca.concept_id = c.concept_id"
+		        + " where c.retired = ? and d.hl7_abbreviation = 'CWE' order by c.concept_id, ca.answer_concept");
+		ps.setBoolean(1, false);
+		rs = ps.executeQuery();
+		while (rs.next()) {
+			List<Integer> answers = codedConcepts.get(rs.getInt(1));
+			if (answers == null) {
+				answers = new ArrayList<Integer>();
+				codedConcepts.put(rs.getInt(1), answers);
+			}
+			answers.add(rs.getInt(2));
+		}
+		ps.close();
+		
+		textConcepts.addAll(getIds(connection, "select c.concept_id"
+		        + " from concept c join concept_datatype d on c.datatype_id = d.concept_datatype_id"
+		        + " where c.retired = ? and c.is_set = ? and d.hl7_abbreviation = 'ST' order by c.concept_id", false, false));
+		
+		ps = connection.prepareStatement("select drug_id, concept_id from drug where retired = ? order by drug_id");
+		ps.setBoolean(1, false);
+		rs = ps.executeQuery();
+		while (rs.next())
+			drugs.add(new int[] { rs.getInt(1), rs.getInt(2) });
+		ps.close();
+		
+		locations = getRequiredIds(connection, "location", "location_id");
+		encounterTypes = getRequiredIds(connection, "encounter_type", "encounter_type_id");
+		identifierTypes = getRequiredIds(connection, "patient_identifier_type", "patient_identifier_type_id");
+		visitTypes = getRequiredIds(connection, "visit_type", "visit_type_id");
+		programs = getIds(connection, "select program_id from program where retired = ? order by program_id", false);
+		relationshipTypes = getIds(connection,
+		    "select relationship_type_id from relationship_type where retired = ? order by relationship_type_id", false);
+		providers = getIds(connection, "select provider_id from provider where retired = ? order by provider_id", false);
+		
+		if (numericConcepts.isEmpty() && codedConcepts.isEmpty() && textConcepts.isEmpty())
+			throw new IllegalStateException("There are no numeric, coded or text concepts to create obs for,"
+			        + " load a concept dictionary first");
+	}
+	
+	private static List<Integer> getRequiredIds(Connection connection, String table, String idColumn)
+	        throws SQLException {
+		List<Integer> ids = getIds(connection, "select " + idColumn + " from " + table + " where retired = ? order by "
+		        + idColumn, false);
+		if (ids.isEmpty())
+			throw new IllegalStateException("There is no " + table + " that is not retired, add at least one first");
+		return ids;
+	}
+	
+	private static List<Integer> getIds(Connection connection, String sql, Object... parameters) throws SQLException {
+		PreparedStatement ps = connection.prepareStatement(sql);
+		for (int i = 0; i < parameters.length; i++)
+			ps.setObject(i + 1, parameters[i]);
+		
+		List<Integer> ids = new ArrayList<Integer>();
+		ResultSet rs = ps.executeQuery();
+		while (rs.next())
+			ids.add(rs.getInt(1));
+		ps.close();
+		return ids;
+	}
+}
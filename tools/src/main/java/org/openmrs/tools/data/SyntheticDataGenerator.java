@@ -0,0 +1,453 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.tools.data;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Generates patients with names, identifiers, visits, encounters, numeric, coded and text obs, drug
+ * orders, program enrollments and relationships, and inserts them with batched JDBC statements.
+ * The data refers to the concepts and metadata already in the database (see {@link Dictionary}),
+ * so a concept dictionary has to be loaded first.<br/>
+ * <br/>
+ * The output only depends on the seed, the options and the contents of the database, so two runs
+ * against copies of the same database create the same rows. Foreign key checks are turned off while
+ * inserting.<br/>
+ * <br/>
+ * Nothing that the api computes when saving through the services is filled in, e.g. the obs
+ * summaries and the concept words; rebuild these afterwards if the scenario needs them. Example:
+ * 
+ * <pre>
+ * java -cp openmrs-tools.jar:mysql-connector-java.jar org.openmrs.tools.data.SyntheticDataGenerator \
+ *     --url jdbc:mysql://localhost:3306/openmrs --user openmrs --password secret --patients 1000000
+ * </pre>
+ */
+public class SyntheticDataGenerator {
+	
+	private static final Log log = LogFactory.getLog(SyntheticDataGenerator.class);
+	
+	private static final String[] MALE_NAMES = { "John", "James", "Peter", "Joseph", "David", "Daniel", "Samuel",
+	        "Moses", "Paul", "Emmanuel", "Francis", "Patrick", "Charles", "George", "Simon", "Stephen" };
+	
+	private static final String[] FEMALE_NAMES = { "Mary", "Grace", "Faith", "Esther", "Ruth", "Sarah", "Agnes",
+	        "Jane", "Margaret", "Elizabeth", "Anne", "Rose", "Lucy", "Joyce", "Alice", "Catherine" };
+	
+	private static final String[] FAMILY_NAMES = { "Otieno", "Wanjiru", "Mwangi", "Banda", "Phiri", "Mutua", "Okello",
+	        "Nakato", "Kamau", "Mensah", "Dlamini", "Nkosi", "Moyo", "Ndlovu", "Achieng", "Kariuki", "Smith", "Garcia",
+	        "Nguyen", "Silva" };
+	
+	private static final String[] TEXT_VALUES = { "Patient doing well", "Complains of cough", "Referred for review",
+	        "No known allergies", "Adherence counseling given", "Lost to follow up previously" };
+	
+	private final Connection connection;
+	
+	private int patients = 1000;
+	
+	private long seed = 1;
+	
+	private int encountersPerPatient = 3;
+	
+	private int obsPerEncounter = 8;
+	
+	private double ordersPerPatient = 1;
+	
+	private double programEnrollmentRate = 0.3;
+	
+	private double relationshipRate = 0.2;
+	
+	private int batchSize = 1000;
+	
+	private int creator = 1;
+	
+	/**
+	 * the date the generated data is created on, fixed so that runs are repeatable
+	 */
+	private final Timestamp dateCreated;
+	
+	private Random random;
+	
+	/**
+	 * @param connection the database to fill, it is committed on every batch of patients
+	 */
+	public SyntheticDataGenerator(Connection connection) {
+		this.connection = connection;
+		
+		Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.set(2012, Calendar.JANUARY, 1);
+		dateCreated = new Timestamp(cal.getTimeInMillis());
+	}
+	
+	/**
+	 * Inserts the patients and their data, logging the progress every 10000 patients
+	 * 
+	 * @return the number of rows inserted
+	 * @throws SQLException
+	 */
+	public long generate() throws SQLException {
+		random = new Random(seed);
+		connection.setAutoCommit(false);
+		Dictionary dictionary = new Dictionary(connection);
+		
+		int personId = getNextId("person", "person_id");
+		int personNameId = getNextId("person_name", "person_name_id");
+		int identifierId = getNextId("patient_identifier", "patient_identifier_id");
+		int visitId = getNextId("visit", "visit_id");
+		int encounterId = getNextId("encounter", "encounter_id");
+		int obsId = getNextId("obs", "obs_id");
+		int orderId = getNextId("orders", "order_id");
+		int patientProgramId = getNextId("patient_program", "patient_program_id");
+		int relationshipId = getNextId("relationship", "relationship_id");
+		int firstPersonId = personId;
+		
+		BatchInsert person = insert("person", "person_id", "gender", "birthdate", "birthdate_estimated", "dead",
+		    "creator", "date_created", "voided", "uuid");
+		BatchInsert personName = insert("person_name", "person_name_id", "preferred", "person_id", "given_name",
+		    "family_name", "creator", "date_created", "voided", "uuid");
+		BatchInsert patient = insert("patient", "patient_id", "creator", "date_created", "voided");
+		BatchInsert identifier = insert("patient_identifier", "patient_identifier_id", "patient_id", "identifier",
+		    "identifier_type", "preferred", "location_id", "creator", "date_created", "voided", "uuid");
+		BatchInsert visit = insert("visit", "visit_id", "patient_id", "visit_type_id", "date_started", "date_stopped",
+		    "location_id", "creator", "date_created", "voided", "uuid");
+		BatchInsert encounter = insert("encounter", "encounter_id", "encounter_type", "patient_id", "location_id",
+		    "encounter_datetime", "visit_id", "creator", "date_created", "voided", "uuid");
+		BatchInsert obs = insert("obs", "obs_id", "person_id", "concept_id", "encounter_id", "obs_datetime",
+		    "location_id", "value_numeric", "value_coded", "value_text", "creator", "date_created", "voided", "uuid");
+		BatchInsert order = insert("orders", "order_id", "order_number", "concept_id", "orderer", "instructions",
+		    "start_date", "discontinued", "order_action", "urgency", "creator", "date_created", "voided", "patient_id",
+		    "encounter_id", "uuid");
+		BatchInsert drugOrder = insert("drug_order", "order_id", "drug_inventory_id", "dose", "dose_units", "frequency",
+		    "as_needed");
+		BatchInsert patientProgram = insert("patient_program", "patient_program_id", "patient_id", "program_id",
+		    "date_enrolled", "creator", "date_created", "voided", "uuid");
+		BatchInsert relationship = insert("relationship", "relationship_id", "person_a", "relationship", "person_b",
+		    "creator", "date_created", "voided", "uuid");
+		BatchInsert[] inserts = { person, personName, patient, identifier, visit, encounter, obs, order, drugOrder,
+		        patientProgram, relationship };
+		
+		List<Integer> codedConcepts = new ArrayList<Integer>(dictionary.codedConcepts.keySet());
+		boolean canOrder = !dictionary.drugs.isEmpty() && !dictionary.providers.isEmpty();
+		long start = System.currentTimeMillis();
+		
+		setForeignKeyChecks(false);
+		try {
+			for (int i = 0; i < patients; i++, personId++) {
+				boolean male = random.nextBoolean();
+				Timestamp birthdate = daysBefore(dateCreated, 365 + random.nextInt(80 * 365));
+				person.add(personId, male ? "M" : "F", birthdate, false, false, creator, dateCreated, false, uuid());
+				personName.add(personNameId++, true, personId, pick(male ? MALE_NAMES : FEMALE_NAMES),
+				    pick(FAMILY_NAMES), creator, dateCreated, false, uuid());
+				patient.add(personId, creator, dateCreated, false);
+				identifier.add(identifierId++, personId, withCheckDigit(personId), pick(dictionary.identifierTypes),
+				    true, pick(dictionary.locations), creator, dateCreated, false, uuid());
+				
+				int firstEncounterId = encounterId;
+				for (int e = 0; e < encountersPerPatient; e++, visitId++, encounterId++) {
+					Integer location = pick(dictionary.locations);
+					Timestamp visitStart = daysBefore(dateCreated, random.nextInt(5 * 365));
+					Timestamp visitStop = new Timestamp(visitStart.getTime() + 2 * 60 * 60 * 1000);
+					visit.add(visitId, personId, pick(dictionary.visitTypes), visitStart, visitStop, location, creator,
+					    dateCreated, false, uuid());
+					encounter.add(encounterId, pick(dictionary.encounterTypes), personId, location, visitStart, visitId,
+					    creator, dateCreated, false, uuid());
+					
+					for (int o = 0; o < obsPerEncounter; o++) {
+						Double valueNumeric = null;
+						Integer concept, valueCoded = null;
+						String valueText = null;
+						int kind = random.nextInt(3);
+						if (kind == 0 && !dictionary.numericConcepts.isEmpty()) {
+							int index = random.nextInt(dictionary.numericConcepts.size());
+							concept = dictionary.numericConcepts.get(index);
+							double[] range = dictionary.numericRanges.get(index);
+							valueNumeric = Math.round((range[0] + random.nextDouble() * (range[1] - range[0])) * 10) / 10.0;
+						} else if (kind == 1 && !codedConcepts.isEmpty()) {
+							concept = pick(codedConcepts);
+							valueCoded = pick(dictionary.codedConcepts.get(concept));
+						} else if (!dictionary.textConcepts.isEmpty()) {
+							concept = pick(dictionary.textConcepts);
+							valueText = pick(TEXT_VALUES);
+						} else {
+							continue;
+						}
+						obs.add(obsId++, personId, concept, encounterId, visitStart, location, valueNumeric, valueCoded,
+						    valueText, creator, dateCreated, false, uuid());
+					}
+				}
+				
+				if (canOrder && encountersPerPatient > 0) {
+					int orders = (int) ordersPerPatient + (random.nextDouble() < ordersPerPatient % 1 ? 1 : 0);
+					for (int o = 0; o < orders; o++, orderId++) {
+						int[] drug = dictionary.drugs.get(random.nextInt(dictionary.drugs.size()));
+						Timestamp startDate = daysBefore(dateCreated, random.nextInt(5 * 365));
+						order.add(orderId, "SYN-" + orderId, drug[1], pick(dictionary.providers), "", startDate, false,
+						    "ORDER", "ROUTINE", creator, dateCreated, false, personId, firstEncounterId
+						            + random.nextInt(encountersPerPatient), uuid());
+						drugOrder.add(orderId, drug[0], (double) (1 + random.nextInt(4)) * 100, "mg", "1/day x 7 days/week",
+						    false);
+					}
+				}
+				
+				if (!dictionary.programs.isEmpty() && random.nextDouble() < programEnrollmentRate) {
+					patientProgram.add(patientProgramId++, personId, pick(dictionary.programs), daysBefore(dateCreated,
+					    random.nextInt(5 * 365)), creator, dateCreated, false, uuid());
+				}
+				
+				if (!dictionary.relationshipTypes.isEmpty() && i > 0 && random.nextDouble() < relationshipRate) {
+					relationship.add(relationshipId++, personId, pick(dictionary.relationshipTypes), firstPersonId
+					        + random.nextInt(i), creator, dateCreated, false, uuid());
+				}
+				
+				if ((i + 1) % batchSize == 0 || i + 1 == patients) {
+					for (BatchInsert insert : inserts)
+						insert.flush();
+					connection.commit();
+				}
+				
+				if (((i + 1) % 10000 == 0 || i + 1 == patients) && log.isInfoEnabled())
+					log.info(progress(i + 1, inserts, start));
+			}
+			
+			long rows = 0;
+			for (BatchInsert insert : inserts) {
+				insert.close();
+				rows += insert.getRows();
+			}
+			connection.commit();
+			return rows;
+		}
+		finally {
+			setForeignKeyChecks(true);
+		}
+	}
+	
+	/**
+	 * Runs the generator with the options given as <code>--name value</code> pairs
+	 * 
+	 * @param args --url, --user and --password of the database, and the optional --patients,
+	 *            --seed, --encounters (per patient), --obs (per encounter), --orders (per patient),
+	 *            --batch (patients per commit)
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		String url = null, user = null, password = null;
+		String patients = "1000", seed = "1", encounters = "3", obs = "8", orders = "1", batch = "1000";
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String name = args[i], value = args[i + 1];
+			if ("--url".equals(name))
+				url = value;
+			else if ("--user".equals(name))
+				user = value;
+			else if ("--password".equals(name))
+				password = value;
+			else if ("--patients".equals(name))
+				patients = value;
+			else if ("--seed".equals(name))
+				seed = value;
+			else if ("--encounters".equals(name))
+				encounters = value;
+			else if ("--obs".equals(name))
+				obs = value;
+			else if ("--orders".equals(name))
+				orders = value;
+			else if ("--batch".equals(name))
+				batch = value;
+			else
+				throw new IllegalArgumentException("Unknown option: " + name);
+		}
+		if (url == null) {
+			System.err.println("Usage: SyntheticDataGenerator --url <jdbc url> [--user <user>] [--password <password>]"
+			        + " [--patients 1000] [--seed 1] [--encounters 3] [--obs 8] [--orders 1] [--batch 1000]");
+			System.exit(1);
+		}
+		
+		// lets the mysql driver send a batch as one multi row insert
+		if (url.startsWith("jdbc:mysql:") && !url.contains("rewriteBatchedStatements"))
+			url += (url.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+		
+		Connection connection = DriverManager.getConnection(url, user, password);
+		try {
+			SyntheticDataGenerator generator = new SyntheticDataGenerator(connection);
+			generator.setPatients(Integer.parseInt(patients));
+			generator.setSeed(Long.parseLong(seed));
+			generator.setEncountersPerPatient(Integer.parseInt(encounters));
+			generator.setObsPerEncounter(Integer.parseInt(obs));
+			generator.setOrdersPerPatient(Double.parseDouble(orders));
+			generator.setBatchSize(Integer.parseInt(batch));
+			long start = System.currentTimeMillis();
+			long rows = generator.generate();
+			System.out.println("Inserted " + rows + " rows for " + patients + " patients in "
+			        + (System.currentTimeMillis() - start) / 1000 + "s");
+		}
+		finally {
+			connection.close();
+		}
+	}
+	
+	private BatchInsert insert(String table, String... columns) throws SQLException {
+		return new BatchInsert(connection, table, columns, batchSize * 10);
+	}
+	
+	private int getNextId(String table, String idColumn) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet rs = statement.executeQuery("select max(" + idColumn + ") from " + table);
+			return rs.next() ? rs.getInt(1) + 1 : 1;
+		}
+		finally {
+			statement.close();
+		}
+	}
+	
+	private void setForeignKeyChecks(boolean enabled) throws SQLException {
+		String database = connection.getMetaData().getDatabaseProductName().toLowerCase();
+		String sql;
+		if (database.contains("mysql"))
+			sql = "SET FOREIGN_KEY_CHECKS=" + (enabled ? 1 : 0);
+		else if (database.contains("h2"))
+			sql = "SET REFERENTIAL_INTEGRITY " + (enabled ? "TRUE" : "FALSE");
+		else
+			return;
+		
+		PreparedStatement ps = connection.prepareStatement(sql);
+		ps.execute();
+		ps.close();
+	}
+	
+	/**
+	 * @return a random version 4 uuid drawn from the seeded random
+	 */
+	private String uuid() {
+		long msb = (random.nextLong() & ~0xF000L) | 0x4000L;
+		long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+		return new UUID(msb, lsb).toString();
+	}
+	
+	private <T> T pick(List<T> values) {
+		return values.get(random.nextInt(values.size()));
+	}
+	
+	private String pick(String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+	
+	private static Timestamp daysBefore(Timestamp date, int days) {
+		return new Timestamp(date.getTime() - days * 24L * 60 * 60 * 1000);
+	}
+	
+	/**
+	 * @return the number followed by a dash and its Luhn check digit, e.g. 12345-5, so that the
+	 *         identifiers also pass the default Luhn identifier validator
+	 */
+	static String withCheckDigit(int number) {
+		String digits = String.valueOf(number);
+		int sum = 0;
+		for (int i = 0; i < digits.length(); i++) {
+			int digit = digits.charAt(digits.length() - 1 - i) - '0';
+			if (i % 2 == 0) {
+				digit *= 2;
+				if (digit > 9)
+					digit -= 9;
+			}
+			sum += digit;
+		}
+		return digits + "-" + ((10 - sum % 10) % 10);
+	}
+	
+	private static String progress(int patients, BatchInsert[] inserts, long start) {
+		long rows = 0;
+		for (BatchInsert insert : inserts)
+			rows += insert.getRows();
+		long seconds = Math.max(1, (System.currentTimeMillis() - start) / 1000);
+		return patients + " patients, " + rows + " rows in " + seconds + "s (" + rows / seconds + " rows/s)";
+	}
+	
+	/**
+	 * @param patients the number of patients to create
+	 */
+	public void setPatients(int patients) {
+		this.patients = patients;
+	}
+	
+	/**
+	 * @param seed the seed of all random choices
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+	
+	/**
+	 * @param encountersPerPatient the number of visits, each with one encounter, per patient
+	 */
+	public void setEncountersPerPatient(int encountersPerPatient) {
+		this.encountersPerPatient = encountersPerPatient;
+	}
+	
+	/**
+	 * @param obsPerEncounter the number of obs per encounter
+	 */
+	public void setObsPerEncounter(int obsPerEncounter) {
+		this.obsPerEncounter = obsPerEncounter;
+	}
+	
+	/**
+	 * @param ordersPerPatient the average number of drug orders per patient, fractions are rounded
+	 *            randomly
+	 */
+	public void setOrdersPerPatient(double ordersPerPatient) {
+		this.ordersPerPatient = ordersPerPatient;
+	}
+	
+	/**
+	 * @param programEnrollmentRate the share of patients enrolled in a program
+	 */
+	public void setProgramEnrollmentRate(double programEnrollmentRate) {
+		this.programEnrollmentRate = programEnrollmentRate;
+	}
+	
+	/**
+	 * @param relationshipRate the share of patients related to an earlier generated patient
+	 */
+	public void setRelationshipRate(double relationshipRate) {
+		this.relationshipRate = relationshipRate;
+	}
+	
+	/**
+	 * @param batchSize the number of patients inserted per commit
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * @param creator the user id set as creator of all rows
+	 */
+	public void setCreator(int creator) {
+		this.creator = creator;
+	}
+}
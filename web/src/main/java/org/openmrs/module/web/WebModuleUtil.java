@@ -21,15 +21,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
 import java.util.Vector;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -55,6 +58,7 @@ import org.openmrs.module.ModuleUtil;
 import org.openmrs.module.web.filter.ModuleFilterConfig;
 import org.openmrs.module.web.filter.ModuleFilterDefinition;
 import org.openmrs.module.web.filter.ModuleFilterMapping;
+import org.openmrs.module.web.filter.ModuleFilterRoutingTable;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
 import org.openmrs.web.DispatcherServlet;
@@ -90,6 +94,9 @@ public class WebModuleUtil {
 	private static List<ModuleFilterMapping> moduleFilterMappings = Collections
 	        .synchronizedList(new Vector<ModuleFilterMapping>());
 	
+	// compiled from moduleFilterMappings whenever module filters are loaded or unloaded
+	private static volatile ModuleFilterRoutingTable moduleFilterRoutingTable = ModuleFilterRoutingTable.EMPTY;
+	
 	/**
 	 * Performs the webapp specific startup needs for modules Normal startup is done in
 	 * {@link ModuleFactory#startModule(Module)} If delayContextRefresh is true, the spring context
@@ -179,6 +186,25 @@ public class WebModuleUtil {
 			// of the web application context
 			boolean moduleNeedsContextRefresh = false;
 			
+			// the html files only need to be copied again if they changed since they were last copied,
+			// which is recorded in the module's web folder
+			File moduleWebFolder = getModuleWebFolder(realPath, mod);
+			String webContentHash = null;
+			try {
+				webContentHash = ModuleUtil.getJarContentHash(mod.getFile(), "web/module/");
+			}
+			catch (IOException io) {
+				log.warn("Unable to hash the web files of module " + mod.getModuleId(), io);
+			}
+			boolean webFilesCopied = ModuleUtil.isExpandedFromJarContent(moduleWebFolder, webContentHash);
+			if (webFilesCopied) {
+				if (log.isDebugEnabled())
+					log.debug("Using the unchanged web files of module " + mod.getModuleId() + " in " + moduleWebFolder);
+			} else {
+				// start from empty folders, so that files removed from the module are not served anymore
+				deleteWebFiles(realPath, mod);
+			}
+			
 			// copy the html files into the webapp (from /web/module/ in the module)
 			// also looks for a spring context file. If found, schedules spring to be restarted
 			JarFile jarFile = null;
@@ -192,6 +218,9 @@ public class WebModuleUtil {
 					String name = entry.getName();
 					log.debug("Entry name: " + name);
 					if (name.startsWith("web/module/")) {
+						if (webFilesCopied)
+							continue;
+						
 						// trim out the starting path of "web/module/"
 						String filepath = name.substring(11);
 						
@@ -244,6 +273,9 @@ public class WebModuleUtil {
 						throw new ModuleException(msg, mod.getModuleId());
 					}
 				}
+				
+				if (!webFilesCopied)
+					ModuleUtil.setExpandedJarContentHash(moduleWebFolder, webContentHash);
 			}
 			catch (IOException io) {
 				log.warn("Unable to copy files from module " + mod.getModuleId() + " to the web layer", io);
@@ -545,6 +577,8 @@ public class WebModuleUtil {
 		List<ModuleFilterMapping> modMappings = ModuleFilterMapping.retrieveFilterMappings(module);
 		moduleFilterMappings.addAll(modMappings);
 		log.debug("Module: " + module.getModuleId() + " successfully loaded " + modMappings.size() + " filter mappings.");
+		
+		rebuildFilterRoutingTable();
 	}
 	
 	/**
@@ -586,6 +620,22 @@ public class WebModuleUtil {
 				}
 			}
 		}
+		
+		rebuildFilterRoutingTable();
+	}
+	
+	/**
+	 * Recompiles the {@link ModuleFilterRoutingTable} used by {@link #getFiltersForRequest(ServletRequest)}
+	 * from the currently registered filters and filter mappings
+	 */
+	private static void rebuildFilterRoutingTable() {
+		synchronized (moduleFilterMappings) {
+			synchronized (moduleFiltersByName) {
+				moduleFilterRoutingTable = ModuleFilterRoutingTable.build(new ArrayList<ModuleFilterMapping>(
+				        moduleFilterMappings), new HashMap<String, Filter>(moduleFiltersByName));
+			}
+		}
+		log.debug("Rebuilt the module filter routing table for " + moduleFilterMappings.size() + " filter mappings");
 	}
 	
 	/**
@@ -616,7 +666,6 @@ public class WebModuleUtil {
 	 */
 	public static List<Filter> getFiltersForRequest(ServletRequest request) {
 		
-		List<Filter> filters = new Vector<Filter>();
 		if (request != null) {
 			HttpServletRequest httpRequest = (HttpServletRequest) request;
 			String requestPath = httpRequest.getRequestURI();
@@ -624,20 +673,10 @@ public class WebModuleUtil {
 			if (requestPath != null) {
 				if (requestPath.startsWith(httpRequest.getContextPath()))
 					requestPath = requestPath.substring(httpRequest.getContextPath().length());
-				for (ModuleFilterMapping filterMapping : WebModuleUtil.getFilterMappings()) {
-					if (ModuleFilterMapping.filterMappingPasses(filterMapping, requestPath)) {
-						Filter passedFilter = moduleFiltersByName.get(filterMapping.getFilterName());
-						if (passedFilter != null) {
-							filters.add(passedFilter);
-						} else {
-							log.warn("Unable to retrieve filter that has a name of " + filterMapping.getFilterName()
-							        + " in filter mapping.");
-						}
-					}
-				}
+				return moduleFilterRoutingTable.getFilters(requestPath);
 			}
 		}
-		return filters;
+		return Collections.emptyList();
 	}
 	
 	/**
@@ -689,13 +728,106 @@ public class WebModuleUtil {
 			}
 		}
 		
-		// call web shutdown for each module
+		// call web shutdown for each module, keeping the web files so that they don't have to be
+		// copied again when the modules are started the next time
 		for (Module mod : ModuleFactory.getLoadedModules()) {
-			stopModule(mod, servletContext, true);
+			stopModule(mod, servletContext, true, false);
 		}
 		
 	}
 	
+	/**
+	 * Deletes the web files and tag files that modules other than the given ones left in the webapp,
+	 * e.g. because they were removed or stopped while the server was down. Web files are kept when
+	 * the web layer shuts down, so without this their pages would still be served.
+	 * 
+	 * @param servletContext the current ServletContext
+	 * @param modules the modules whose files should be kept
+	 * @since 1.10
+	 */
+	public static void deleteWebFilesOfOtherModules(ServletContext servletContext, Collection<Module> modules) {
+		String realPath = servletContext.getRealPath("");
+		Set<String> modulePaths = new HashSet<String>();
+		for (Module mod : modules)
+			modulePaths.add(mod.getModuleIdAsPath());
+		
+		for (String folder : new String[] { "/WEB-INF/view/module", "/WEB-INF/tags/module" })
+			deleteFoldersOfOtherModules(new File((realPath + folder).replace("/", File.separator)), "", modulePaths);
+	}
+	
+	/**
+	 * Deletes the files and folders in the given folder, except the folders of the given modules
+	 * and the folders they are nested in
+	 * 
+	 * @param folder a folder under the view/module or tags/module folder of the webapp
+	 * @param path the path of the folder relative to that folder, followed by a '/', or empty
+	 * @param modulePaths the module ids as paths of the modules whose folders should be kept
+	 */
+	private static void deleteFoldersOfOtherModules(File folder, String path, Set<String> modulePaths) {
+		File[] files = folder.listFiles();
+		if (files == null)
+			return;
+		
+		for (File file : files) {
+			String filePath = path + file.getName();
+			if (modulePaths.contains(filePath))
+				continue;
+			
+			boolean holdsModuleFolder = false;
+			for (String modulePath : modulePaths) {
+				if (modulePath.startsWith(filePath + "/"))
+					holdsModuleFolder = true;
+			}
+			
+			if (holdsModuleFolder && file.isDirectory()) {
+				// e.g. the "ui" folder of the ui.springmvc module
+				deleteFoldersOfOtherModules(file, filePath + "/", modulePaths);
+			} else {
+				log.info("Deleting module web files: " + file.getAbsolutePath());
+				try {
+					if (file.isDirectory())
+						OpenmrsUtil.deleteDirectory(file);
+					else
+						file.delete();
+				}
+				catch (IOException io) {
+					log.warn("Couldn't delete: " + file.getAbsolutePath(), io);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return the folder the html files of the given module are copied to
+	 */
+	private static File getModuleWebFolder(String realPath, Module mod) {
+		return new File((realPath + "/WEB-INF/view/module/" + mod.getModuleIdAsPath()).replace("/", File.separator));
+	}
+	
+	/**
+	 * Deletes the html files and the tag files of the given module from the webapp. The folders of
+	 * other loaded modules that are nested in the module's folders are kept, e.g. ui/springmvc of
+	 * the ui.springmvc module in the folder of the ui module.
+	 */
+	private static void deleteWebFiles(String realPath, Module mod) {
+		String modulePath = mod.getModuleIdAsPath();
+		Set<String> otherModulePaths = new HashSet<String>();
+		for (Module loaded : ModuleFactory.getLoadedModules()) {
+			if (!loaded.getModuleId().equals(mod.getModuleId()))
+				otherModulePaths.add(loaded.getModuleIdAsPath());
+		}
+		
+		for (String folder : new String[] { "/WEB-INF/view/module/", "/WEB-INF/tags/module/" }) {
+			File moduleFolder = new File((realPath + folder + modulePath).replace("/", File.separator));
+			deleteFoldersOfOtherModules(moduleFolder, modulePath + "/", otherModulePaths);
+			
+			// unless the folders of other modules are left in it
+			String[] left = moduleFolder.list();
+			if (left != null && left.length == 0)
+				moduleFolder.delete();
+		}
+	}
+	
 	/**
 	 * Reverses all visible activities done by startModule(org.openmrs.module.Module)
 	 * 
@@ -714,6 +846,19 @@ public class WebModuleUtil {
 	 * @param skipRefresh
 	 */
 	private static void stopModule(Module mod, ServletContext servletContext, boolean skipRefresh) {
+		stopModule(mod, servletContext, skipRefresh, true);
+	}
+	
+	/**
+	 * Reverses all visible activities done by startModule(org.openmrs.module.Module)
+	 * 
+	 * @param mod
+	 * @param servletContext
+	 * @param skipRefresh
+	 * @param deleteWebFiles false to leave the files copied into the webapp for the next start
+	 */
+	private static void stopModule(Module mod, ServletContext servletContext, boolean skipRefresh,
+	        boolean deleteWebFiles) {
 		
 		String moduleId = mod.getModuleId();
 		String modulePackage = mod.getPackageName();
@@ -721,22 +866,14 @@ public class WebModuleUtil {
 		// stop all dependent modules
 		for (Module dependentModule : ModuleFactory.getStartedModules()) {
 			if (!dependentModule.equals(mod) && dependentModule.getRequiredModules().contains(modulePackage))
-				stopModule(dependentModule, servletContext, skipRefresh);
+				stopModule(dependentModule, servletContext, skipRefresh, deleteWebFiles);
 		}
 		
 		String realPath = servletContext.getRealPath("");
 		
 		// delete the web files from the webapp
-		String absPath = realPath + "/WEB-INF/view/module/" + moduleId;
-		File moduleWebFolder = new File(absPath.replace("/", File.separator));
-		if (moduleWebFolder.exists()) {
-			try {
-				OpenmrsUtil.deleteDirectory(moduleWebFolder);
-			}
-			catch (IOException io) {
-				log.warn("Couldn't delete: " + moduleWebFolder.getAbsolutePath(), io);
-			}
-		}
+		if (deleteWebFiles)
+			deleteWebFiles(realPath, mod);
 		
 		// (not) deleting module message properties
 		
@@ -0,0 +1,268 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.web.filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.Filter;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.util.CharTrieNode;
+
+/**
+ * An immutable, precompiled routing structure for module filters. It is built from the currently
+ * registered {@link ModuleFilterMapping}s whenever a module starts or stops, and answers
+ * {@link #getFilters(String)} without evaluating each mapping's patterns on every request. <br/>
+ * <br/>
+ * The url patterns and servlet names of all mappings are split into the following lookup tables,
+ * following the same matching rules as {@link ModuleFilterMapping#urlPatternMatches(String, String)}
+ * and {@link ModuleFilterMapping#servletNameMatches(String, String)}:
+ * <ul>
+ * <li>wildcards: "*", "/*" url patterns and "*" servlet names, which match every request</li>
+ * <li>exact: any other url pattern or servlet name, which matches an identical request path</li>
+ * <li>prefix: url patterns ending with "/*", stored in a character trie together with the exact
+ * entries</li>
+ * <li>suffix: url patterns starting with "*.", matched against the request's extension</li>
+ * </ul>
+ * Every distinct combination of matches that a request path can produce is resolved to an
+ * immutable filter chain when the table is built, so resolving the filters for a request only
+ * walks the trie and returns one of the cached chains. Filters are always returned in the order of
+ * the mappings that matched, just like the previous per-request evaluation.
+ */
+public class ModuleFilterRoutingTable {
+
+	private static Log log = LogFactory.getLog(ModuleFilterRoutingTable.class);
+
+	/**
+	 * A routing table without any mappings
+	 */
+	public static final ModuleFilterRoutingTable EMPTY = new ModuleFilterRoutingTable(
+	        Collections.<ModuleFilterMapping> emptyList(), Collections.<String, Filter> emptyMap());
+
+	private final Node root = new Node();
+
+	private final String[] extensions;
+
+	private final int mappingCount;
+
+	/**
+	 * Builds the routing table for the given mappings
+	 *
+	 * @param mappings the mappings in the order in which their filters should be applied
+	 * @param filtersByName the registered filters, keyed by filter name
+	 * @return the compiled routing table
+	 */
+	public static ModuleFilterRoutingTable build(List<ModuleFilterMapping> mappings, Map<String, Filter> filtersByName) {
+		return new ModuleFilterRoutingTable(mappings, filtersByName);
+	}
+
+	private ModuleFilterRoutingTable(List<ModuleFilterMapping> mappings, Map<String, Filter> filtersByName) {
+		BitSet wildcard = new BitSet();
+		Map<String, BitSet> suffixes = new LinkedHashMap<String, BitSet>();
+		Filter[] filters = new Filter[mappings.size()];
+
+		for (int i = 0; i < mappings.size(); i++) {
+			ModuleFilterMapping mapping = mappings.get(i);
+			filters[i] = filtersByName.get(mapping.getFilterName());
+			if (filters[i] == null)
+				log.warn("Unable to retrieve filter that has a name of " + mapping.getFilterName() + " in filter mapping.");
+
+			for (String pattern : mapping.getUrlPatterns()) {
+				if (pattern == null)
+					continue;
+				if ("*".equals(pattern) || "/*".equals(pattern)) {
+					wildcard.set(i);
+					continue;
+				}
+				// every other pattern also matches a request path that is identical to it
+				getOrCreateNode(pattern).exact.set(i);
+				if (pattern.endsWith("/*")) {
+					getOrCreateNode(pattern.substring(0, pattern.length() - 2)).prefix.set(i);
+				} else if (pattern.startsWith("*.") && pattern.length() > 2) {
+					String extension = pattern.substring(2);
+					BitSet matches = suffixes.get(extension);
+					if (matches == null) {
+						matches = new BitSet();
+						suffixes.put(extension, matches);
+					}
+					matches.set(i);
+				}
+			}
+			for (String servletName : mapping.getServletNames()) {
+				if ("*".equals(servletName))
+					wildcard.set(i);
+				else if (servletName != null)
+					getOrCreateNode(servletName).exact.set(i);
+			}
+		}
+
+		this.mappingCount = mappings.size();
+		this.extensions = suffixes.keySet().toArray(new String[suffixes.size()]);
+		BitSet[] extensionMatches = suffixes.values().toArray(new BitSet[suffixes.size()]);
+
+		compile(root, new BitSet(), wildcard, extensionMatches, filters, new HashMap<BitSet, List<Filter>>());
+	}
+
+	/**
+	 * Returns the filters whose mappings match the given request path, in mapping order
+	 *
+	 * @param requestPath the request uri, with the context path already removed
+	 * @return an immutable list of the matching filters, never null
+	 * @should return wildcard filters for any request path
+	 * @should return filters for an exact url pattern match
+	 * @should return filters for a prefix url pattern match
+	 * @should not match a prefix url pattern that only partially matches a path segment
+	 * @should return filters for an extension url pattern match
+	 * @should return filters for an exact servlet name match
+	 * @should return filters in the order of their mappings
+	 * @should return an empty list if the request path is null
+	 */
+	public List<Filter> getFilters(String requestPath) {
+		if (requestPath == null || mappingCount == 0)
+			return Collections.emptyList();
+
+		int extension = findExtension(requestPath);
+
+		// the deepest node whose prefix pattern matched the path so far
+		Node matchedPrefix = root;
+		Node node = root;
+		int length = requestPath.length();
+		for (int i = 0; i < length; i++) {
+			char c = requestPath.charAt(i);
+			if (c == '/' && node.hasPrefix)
+				matchedPrefix = node;
+			node = node.child(c);
+			if (node == null)
+				return matchedPrefix.prefixChains[extension];
+		}
+
+		if (node.hasExact)
+			return node.exactChains[extension];
+		if (node.hasPrefix)
+			return node.prefixChains[extension];
+		return matchedPrefix.prefixChains[extension];
+	}
+
+	/**
+	 * Finds the index into the per-node chain arrays for the extension of the given request path,
+	 * 0 means no suffix pattern matched
+	 */
+	private int findExtension(String requestPath) {
+		if (extensions.length == 0)
+			return 0;
+
+		int slash = requestPath.lastIndexOf('/');
+		int period = requestPath.lastIndexOf('.');
+		int length = requestPath.length();
+		if (slash < 0 || period < slash || period == length - 1)
+			return 0;
+
+		int extensionLength = length - period - 1;
+		for (int i = 0; i < extensions.length; i++) {
+			String extension = extensions[i];
+			if (extension.length() == extensionLength && requestPath.regionMatches(period + 1, extension, 0, extensionLength))
+				return i + 1;
+		}
+		return 0;
+	}
+
+	private Node getOrCreateNode(String path) {
+		return root.getOrCreateDescendant(path);
+	}
+
+	/**
+	 * Resolves the cached filter chains of the given node and its children. The prefixes that can
+	 * match when a path reaches a node are fixed by the trie path itself, so they are accumulated
+	 * on the way down.
+	 *
+	 * @param node the node to compile
+	 * @param inheritedPrefix the prefix matches of all ancestors followed by a '/'
+	 */
+	private void compile(Node node, BitSet inheritedPrefix, BitSet wildcard, BitSet[] extensionMatches,
+	        Filter[] filters, Map<BitSet, List<Filter>> chainCache) {
+		node.hasExact = !node.exact.isEmpty();
+		node.hasPrefix = node == root || !node.prefix.isEmpty();
+
+		BitSet ownPrefix = (BitSet) inheritedPrefix.clone();
+		ownPrefix.or(node.prefix);
+
+		if (node.hasPrefix)
+			node.prefixChains = resolveChains(ownPrefix, wildcard, extensionMatches, filters, chainCache);
+		if (node.hasExact) {
+			BitSet exactMatches = (BitSet) ownPrefix.clone();
+			exactMatches.or(node.exact);
+			node.exactChains = resolveChains(exactMatches, wildcard, extensionMatches, filters, chainCache);
+		}
+
+		for (int i = 0; i < node.getChildCount(); i++) {
+			BitSet childPrefix = node.getChildKey(i) == '/' ? ownPrefix : inheritedPrefix;
+			compile(node.getChild(i), childPrefix, wildcard, extensionMatches, filters, chainCache);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Filter>[] resolveChains(BitSet matches, BitSet wildcard, BitSet[] extensionMatches, Filter[] filters,
+	        Map<BitSet, List<Filter>> chainCache) {
+		List<Filter>[] chains = new List[extensionMatches.length + 1];
+		for (int i = 0; i < chains.length; i++) {
+			BitSet all = (BitSet) matches.clone();
+			all.or(wildcard);
+			if (i > 0)
+				all.or(extensionMatches[i - 1]);
+
+			List<Filter> chain = chainCache.get(all);
+			if (chain == null) {
+				List<Filter> list = new ArrayList<Filter>(all.cardinality());
+				for (int m = all.nextSetBit(0); m >= 0; m = all.nextSetBit(m + 1)) {
+					if (filters[m] != null)
+						list.add(filters[m]);
+				}
+				chain = Collections.unmodifiableList(list);
+				chainCache.put(all, chain);
+			}
+			chains[i] = chain;
+		}
+		return chains;
+	}
+
+	/**
+	 * A node in the character trie of exact and prefix patterns
+	 */
+	private static class Node extends CharTrieNode<Node> {
+
+		private BitSet exact = new BitSet();
+
+		private BitSet prefix = new BitSet();
+
+		private boolean hasExact;
+
+		private boolean hasPrefix;
+
+		private List<Filter>[] exactChains;
+
+		private List<Filter>[] prefixChains;
+
+		@Override
+		protected Node createChild() {
+			return new Node();
+		}
+	}
+}
@@ -67,4 +67,6 @@ public class ApplicationPrivilegeConstants {
 	
 	@AddOnStartup(description = "Able to view the 'Problem List' portlet on the patient dashboard's overview tab")
 	public static final String PATIENT_OVERVIEW_PROBLEM_LIST = "Patient Overview - View Problem List";
+	
+	public static final String VIEW_SERVER_LOG = "View Server Log";
 }
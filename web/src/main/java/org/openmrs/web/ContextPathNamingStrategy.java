@@ -0,0 +1,56 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.servlet.ServletContext;
+
+import org.springframework.jmx.export.naming.ObjectNamingStrategy;
+import org.springframework.jmx.support.ObjectNameManager;
+import org.springframework.web.context.ServletContextAware;
+
+/**
+ * Names the beans that are exported to JMX after their keys, e.g. "org.openmrs:type=ServiceMetrics",
+ * with the context path of the webapp added as the "context" property. Without it the webapps of
+ * one servlet container would replace each other's beans.
+ * 
+ * @since 1.10
+ */
+public class ContextPathNamingStrategy implements ObjectNamingStrategy, ServletContextAware {
+	
+	private String contextPath;
+	
+	/**
+	 * @see org.springframework.web.context.ServletContextAware#setServletContext(javax.servlet.ServletContext)
+	 */
+	@Override
+	public void setServletContext(ServletContext servletContext) {
+		contextPath = servletContext.getContextPath();
+	}
+	
+	/**
+	 * @see org.springframework.jmx.export.naming.ObjectNamingStrategy#getObjectName(java.lang.Object,
+	 *      java.lang.String)
+	 */
+	@Override
+	public ObjectName getObjectName(Object managedBean, String beanKey) throws MalformedObjectNameException {
+		if (contextPath == null)
+			return ObjectNameManager.getInstance(beanKey);
+		
+		// the root context has an empty path
+		String context = contextPath.length() > 0 ? contextPath : "/";
+		return ObjectNameManager.getInstance(beanKey + ",context=" + ObjectName.quote(context));
+	}
+}
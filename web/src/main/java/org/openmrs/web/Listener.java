@@ -568,8 +568,13 @@ public final class Listener extends ContextLoader implements ServletContextListe
 	public static void performWebStartOfModules(ServletContext servletContext) throws ModuleMustStartException, Throwable {
 		Log log = LogFactory.getLog(Listener.class);
 		
+		long startTime = System.currentTimeMillis();
 		List<Module> startedModules = new ArrayList<Module>();
 		startedModules.addAll(ModuleFactory.getStartedModules());
+		
+		// the web files are kept across restarts, so drop the ones of modules that are gone
+		WebModuleUtil.deleteWebFilesOfOtherModules(servletContext, startedModules);
+		
 		boolean someModuleNeedsARefresh = false;
 		for (Module mod : startedModules) {
 			try {
@@ -582,6 +587,8 @@ public final class Listener extends ContextLoader implements ServletContextListe
 			}
 		}
 		
+		long webStartTime = System.currentTimeMillis();
+		
 		if (someModuleNeedsARefresh) {
 			try {
 				WebModuleUtil.refreshWAC(servletContext, true, null);
@@ -622,12 +629,21 @@ public final class Listener extends ContextLoader implements ServletContextListe
 			}
 		}
 		
+		long refreshTime = System.currentTimeMillis();
+		
 		// because we delayed the refresh, we need to load+start all servlets and filters now
 		// (this is to protect servlets/filters that depend on their module's spring xml config being available)
 		for (Module mod : ModuleFactory.getStartedModules()) {
 			WebModuleUtil.loadServlets(mod, servletContext);
 			WebModuleUtil.loadFilters(mod, servletContext);
 		}
+		
+		if (log.isInfoEnabled()) {
+			long endTime = System.currentTimeMillis();
+			log.info("Started the web layer of " + startedModules.size() + " modules in " + (endTime - startTime)
+			        + "ms (web resources: " + (webStartTime - startTime) + "ms, context refresh: "
+			        + (refreshTime - webStartTime) + "ms, servlets and filters: " + (endTime - refreshTime) + "ms)");
+		}
 	}
 	
 }
@@ -0,0 +1,72 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.controller.maintenance;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmrs.api.APIAuthenticationException;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.db.hibernate.MonitoredConnectionPool;
+import org.openmrs.api.db.hibernate.MonitoredConnectionProvider;
+import org.openmrs.web.ApplicationPrivilegeConstants;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.ModelMap;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+/**
+ * This backs the maintenance/connectionPools.jsp page that shows the database connection pools and
+ * the connections that have been held for too long
+ * 
+ * @see MonitoredConnectionProvider
+ * @since 1.10
+ */
+@Controller
+public class ConnectionPoolsController {
+	
+	/**
+	 * Shows the counts and timings of each pool and its long held connections
+	 * 
+	 * @param model the key value pair that will be accessible from the jsp page
+	 */
+	@RequestMapping(method = RequestMethod.GET, value = "/admin/maintenance/connectionPools")
+	public String showPage(ModelMap model) {
+		List<MonitoredConnectionPool> pools = MonitoredConnectionProvider.getPools();
+		Map<String, List<MonitoredConnectionPool.Checkout>> longCheckouts = new HashMap<String, List<MonitoredConnectionPool.Checkout>>();
+		for (MonitoredConnectionPool pool : pools)
+			longCheckouts.put(pool.getName(), pool.getLongCheckouts());
+		
+		model.addAttribute("pools", pools);
+		model.addAttribute("longCheckouts", longCheckouts);
+		
+		// where Spring can find the jsp.  /WEB-INF/view is prepended, and ".jsp" is appended
+		return "/admin/maintenance/connectionPools";
+	}
+	
+	/**
+	 * Sets the counts and timings of all pools back to zero
+	 */
+	@RequestMapping(method = RequestMethod.POST, value = "/admin/maintenance/connectionPools")
+	public String reset() {
+		if (!Context.hasPrivilege(ApplicationPrivilegeConstants.VIEW_SERVER_LOG))
+			throw new APIAuthenticationException("Privilege required: " + ApplicationPrivilegeConstants.VIEW_SERVER_LOG);
+		
+		for (MonitoredConnectionPool pool : MonitoredConnectionProvider.getPools())
+			pool.reset();
+		return "redirect:connectionPools.list";
+	}
+	
+}
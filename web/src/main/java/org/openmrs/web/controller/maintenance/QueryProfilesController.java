@@ -0,0 +1,64 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.controller.maintenance;
+
+import org.openmrs.api.APIAuthenticationException;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.db.hibernate.QueryProfiler;
+import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.web.ApplicationPrivilegeConstants;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.ModelMap;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+/**
+ * This backs the maintenance/queryProfiles.jsp page that lists the sql statements and loads per url
+ * and scheduled task
+ * 
+ * @see QueryProfiler
+ * @since 1.10
+ */
+@Controller
+public class QueryProfilesController {
+	
+	/**
+	 * Shows the totals of the profiled urls and tasks, with the most statements first
+	 * 
+	 * @param model the key value pair that will be accessible from the jsp page
+	 */
+	@RequestMapping(method = RequestMethod.GET, value = "/admin/maintenance/queryProfiles")
+	public String showPage(ModelMap model) {
+		model.addAttribute("profilerEnabled", QueryProfiler.isEnabled());
+		model.addAttribute("enabledProperty", OpenmrsConstants.GP_QUERY_PROFILER_ENABLED);
+		model.addAttribute("settings", QueryProfiler.getSettings());
+		model.addAttribute("summaries", QueryProfiler.getSummaries());
+		
+		// where Spring can find the jsp.  /WEB-INF/view is prepended, and ".jsp" is appended
+		return "/admin/maintenance/queryProfiles";
+	}
+	
+	/**
+	 * Drops the totals of all urls and tasks
+	 */
+	@RequestMapping(method = RequestMethod.POST, value = "/admin/maintenance/queryProfiles")
+	public String clear() {
+		if (!Context.hasPrivilege(ApplicationPrivilegeConstants.VIEW_SERVER_LOG))
+			throw new APIAuthenticationException("Privilege required: " + ApplicationPrivilegeConstants.VIEW_SERVER_LOG);
+		
+		QueryProfiler.clear();
+		return "redirect:queryProfiles.list";
+	}
+	
+}
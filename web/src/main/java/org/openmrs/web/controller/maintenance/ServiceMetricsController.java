@@ -0,0 +1,66 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ * 
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ * 
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.controller.maintenance;
+
+import org.openmrs.aop.MethodMetrics;
+import org.openmrs.aop.ServiceMetrics;
+import org.openmrs.api.APIAuthenticationException;
+import org.openmrs.api.context.Context;
+import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.web.ApplicationPrivilegeConstants;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.ModelMap;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+/**
+ * This backs the maintenance/serviceMetrics.jsp page that lists the call counts and timings of the
+ * service methods
+ * 
+ * @see ServiceMetrics
+ * @since 1.10
+ */
+@Controller
+public class ServiceMetricsController {
+	
+	/**
+	 * Shows the metrics of the methods that have been called, with the largest total time first
+	 * 
+	 * @param model the key value pair that will be accessible from the jsp page
+	 */
+	@RequestMapping(method = RequestMethod.GET, value = "/admin/maintenance/serviceMetrics")
+	public String showPage(ModelMap model) {
+		model.addAttribute("metricsEnabled", ServiceMetrics.isMetricsEnabled());
+		model.addAttribute("enabledProperty", OpenmrsConstants.GP_METRICS_ENABLED);
+		model.addAttribute("servicesProperty", OpenmrsConstants.GP_METRICS_SERVICES);
+		model.addAttribute("bucketBounds", MethodMetrics.BUCKET_BOUNDS_MILLIS);
+		model.addAttribute("methodMetrics", ServiceMetrics.getAllMethodMetrics());
+		
+		// where Spring can find the jsp.  /WEB-INF/view is prepended, and ".jsp" is appended
+		return "/admin/maintenance/serviceMetrics";
+	}
+	
+	/**
+	 * Sets all the counts and timings back to zero
+	 */
+	@RequestMapping(method = RequestMethod.POST, value = "/admin/maintenance/serviceMetrics")
+	public String reset() {
+		if (!Context.hasPrivilege(ApplicationPrivilegeConstants.VIEW_SERVER_LOG))
+			throw new APIAuthenticationException("Privilege required: " + ApplicationPrivilegeConstants.VIEW_SERVER_LOG);
+		
+		ServiceMetrics.resetAll();
+		return "redirect:serviceMetrics.list";
+	}
+	
+}
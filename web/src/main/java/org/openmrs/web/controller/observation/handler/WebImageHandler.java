@@ -65,6 +65,21 @@ public class WebImageHandler extends ImageHandler {
 		return super.getObs(obs, view);
 	}
 	
+	/**
+	 * The {@link WebConstants#HYPERLINK_VIEW} and {@link WebConstants#HTML_VIEW} are not stored in
+	 * a file, all other views are handled by the parent class.
+	 * 
+	 * @see org.openmrs.obs.handler.ImageHandler#getComplexDataAsFile(org.openmrs.Obs,
+	 *      java.lang.String)
+	 */
+	@Override
+	public ComplexData getComplexDataAsFile(Obs obs, String view) {
+		if (WebConstants.HYPERLINK_VIEW.equals(view) || WebConstants.HTML_VIEW.equals(view))
+			return null;
+		
+		return super.getComplexDataAsFile(obs, view);
+	}
+	
 	/**
 	 * Return the link to the complex obs servlet that will write out the contents of the complex
 	 * obs to the response
@@ -151,8 +151,13 @@ public class ConceptListItem {
 			isSet = concept.isSet();
 			isNumeric = concept.isNumeric();
 			if (isNumeric) {
-				// TODO: There's probably a better way to do this, but just doing "(ConceptNumeric) concept" throws "java.lang.ClassCastException: org.openmrs.Concept$$EnhancerByCGLIB$$85e62ac7"
-				ConceptNumeric num = Context.getConceptService().getConceptNumeric(concept.getConceptId());
+				// a concept proxy can't be cast to ConceptNumeric, so only concepts that were loaded
+				// themselves are used as they are
+				ConceptNumeric num;
+				if (concept instanceof ConceptNumeric)
+					num = (ConceptNumeric) concept;
+				else
+					num = Context.getConceptService().getConceptNumeric(concept.getConceptId());
 				hiAbsolute = num.getHiAbsolute();
 				hiCritical = num.getHiCritical();
 				hiNormal = num.getHiNormal();
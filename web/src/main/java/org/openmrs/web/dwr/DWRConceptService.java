@@ -204,6 +204,7 @@ public class DWRConceptService {
 			} else {
 				// turn searchResults into concept list items
 				// if user wants drug concepts included, append those
+				fetchConceptsForListing(searchResults);
 				for (ConceptSearchResult searchResult : searchResults)
 					objectList.add(new ConceptListItem(searchResult));
 			}
@@ -220,6 +221,22 @@ public class DWRConceptService {
 		return objectList;
 	}
 	
+	/**
+	 * Fetches the concepts of the given search results with a few queries, so that building their
+	 * {@link ConceptListItem}s doesn't lazily load the names and descriptions of each concept
+	 * separately
+	 * 
+	 * @param searchResults the search results about to be turned into list items
+	 */
+	private void fetchConceptsForListing(List<ConceptSearchResult> searchResults) {
+		List<Integer> conceptIds = new ArrayList<Integer>(searchResults.size());
+		for (ConceptSearchResult searchResult : searchResults) {
+			if (searchResult.getConcept() != null)
+				conceptIds.add(searchResult.getConcept().getConceptId());
+		}
+		Context.getConceptService().getConceptsForListing(conceptIds);
+	}
+	
 	/**
 	 * Get a {@link ConceptListItem} by its internal database id.
 	 * 
@@ -298,6 +315,7 @@ public class DWRConceptService {
 		
 		List<Object> items = new Vector<Object>();
 		Set<Integer> uniqueItems = new HashSet<Integer>();
+		fetchConceptsForListing(searchResults);
 		for (ConceptSearchResult searchResult : searchResults) {
 			if (!uniqueItems.add(searchResult.getConcept().getConceptId())) {
 				continue; //Skip already added items
@@ -328,6 +346,12 @@ public class DWRConceptService {
 		List<Object> returnList = new Vector<Object>();
 		
 		if (concept.isSet()) {
+			// fetch the set members with a few queries instead of one at a time
+			List<Integer> memberIds = new ArrayList<Integer>();
+			for (ConceptSet set : concept.getConceptSets())
+				memberIds.add(set.getConcept().getConceptId());
+			cs.getConceptsForListing(memberIds);
+			
 			for (ConceptSet set : concept.getConceptSets()) {
 				Field field = null;
 				ConceptName cn = set.getConcept().getName(locale);
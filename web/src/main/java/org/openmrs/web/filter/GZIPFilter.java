@@ -13,31 +13,121 @@
  */
 package org.openmrs.web.filter;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.Module;
+import org.openmrs.module.ModuleUtil;
 import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.util.OpenmrsUtil;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 /**
  * Filter that compresses output with gzip (assuming that browser supports gzip). Code from <a
  * href="http://www.onjava.com/pub/a/onjava/2003/11/19/filters.html">
  * http://www.onjava.com/pub/a/onjava/2003/11/19/filters.html</a>. &copy; 2003 Jayson Falkner You
- * may freely use the code both commercially and non-commercially.
+ * may freely use the code both commercially and non-commercially. <br/>
+ * <br/>
+ * The response is compressed while it is being written (see {@link GZIPResponseStream}). The
+ * following init-params are supported:
+ * <ul>
+ * <li>minimumSize: responses smaller than this many bytes are not compressed, defaults to
+ * {@link GZIPResponseStream#DEFAULT_MINIMUM_SIZE}</li>
+ * <li>compressibleContentTypes: comma separated list of content types to compress, entries like
+ * "text/*" match a whole type. All content types are compressed if not given</li>
+ * <li>precompressStaticResources: if true, .js and .css files of the webapp and of the modules are
+ * sent from a cache of gzipped copies (see {@link GZIPStaticResourceCache}). Those files are sent
+ * by this filter without continuing the filter chain, so the filters after it, including module
+ * filters, are skipped for them. Defaults to false</li>
+ * </ul>
  */
 public class GZIPFilter extends OncePerRequestFilter {
 	
 	private static final Log log = LogFactory.getLog(GZIPFilter.class);
 	
+	private static final String MODULE_RESOURCES_PATH = "/moduleResources";
+	
+	private static final String MODULE_PATH = "/WEB-INF/view/module/";
+	
 	private Boolean cachedGZipEnabledFlag = null;
 	
+	private int minimumSize = GZIPResponseStream.DEFAULT_MINIMUM_SIZE;
+	
+	private Collection<String> compressibleContentTypes = null;
+	
+	private boolean precompressStaticResources = false;
+	
+	private GZIPStaticResourceCache staticResourceCache = null;
+	
+	/**
+	 * @param minimumSize the number of bytes a response must reach before it is compressed
+	 */
+	public void setMinimumSize(int minimumSize) {
+		this.minimumSize = minimumSize;
+	}
+	
+	/**
+	 * @param compressibleContentTypes comma separated list of the content types to compress
+	 */
+	public void setCompressibleContentTypes(String compressibleContentTypes) {
+		if (StringUtils.isBlank(compressibleContentTypes)) {
+			this.compressibleContentTypes = null;
+			return;
+		}
+		
+		this.compressibleContentTypes = new ArrayList<String>();
+		for (String contentType : compressibleContentTypes.split(",")) {
+			if (StringUtils.isNotBlank(contentType))
+				this.compressibleContentTypes.add(contentType.trim().toLowerCase());
+		}
+	}
+	
+	/**
+	 * @param precompressStaticResources whether static .js and .css files should be sent from a
+	 *            cache of compressed copies, without passing them down the filter chain
+	 */
+	public void setPrecompressStaticResources(boolean precompressStaticResources) {
+		this.precompressStaticResources = precompressStaticResources;
+	}
+	
+	/**
+	 * Sets up the cache of compressed static resources in the servlet container's temporary
+	 * directory if it is enabled
+	 * 
+	 * @see org.springframework.web.filter.GenericFilterBean#initFilterBean()
+	 */
+	@Override
+	protected void initFilterBean() throws ServletException {
+		if (!precompressStaticResources)
+			return;
+		
+		File tempDirectory = (File) getServletContext().getAttribute("javax.servlet.context.tempdir");
+		if (tempDirectory == null) {
+			log.warn("The servlet container does not provide a temporary directory, static resources will not be precompressed");
+			return;
+		}
+		
+		File cacheDirectory = new File(tempDirectory, "gzip-cache");
+		if (cacheDirectory.isDirectory() || cacheDirectory.mkdirs())
+			staticResourceCache = new GZIPStaticResourceCache(cacheDirectory);
+		else
+			log.warn("Unable to create the directory for precompressed static resources: " + cacheDirectory);
+	}
+	
 	/**
 	 * @see org.springframework.web.filter.OncePerRequestFilter#doFilterInternal(javax.servlet.http.HttpServletRequest,
 	 *      javax.servlet.http.HttpServletResponse, javax.servlet.FilterChain)
@@ -46,9 +136,15 @@ public class GZIPFilter extends OncePerRequestFilter {
 	        throws IOException, ServletException {
 		
 		if (isGZIPSupported(request) && isGZIPEnabled()) {
+			response.addHeader("Vary", "Accept-Encoding");
+			
+			if (staticResourceCache != null && sendPrecompressedResource(request, response))
+				return;
+			
 			log.debug("GZIP supported and enabled, compressing response");
 			
-			GZIPResponseWrapper wrappedResponse = new GZIPResponseWrapper(response);
+			GZIPResponseWrapper wrappedResponse = new GZIPResponseWrapper(response, minimumSize,
+			        compressibleContentTypes);
 			
 			chain.doFilter(request, wrappedResponse);
 			wrappedResponse.finishResponse();
@@ -59,6 +155,98 @@ public class GZIPFilter extends OncePerRequestFilter {
 		chain.doFilter(request, response);
 	}
 	
+	/**
+	 * Sends the compressed copy of the requested .js or .css file from the static resource cache
+	 * 
+	 * @param request the current user request
+	 * @param response the response to write to
+	 * @return true if the request was handled, false if it has to go down the filter chain
+	 */
+	private boolean sendPrecompressedResource(HttpServletRequest request, HttpServletResponse response)
+	        throws IOException {
+		String path = request.getServletPath() + (request.getPathInfo() == null ? "" : request.getPathInfo());
+		if (!(path.endsWith(".js") || path.endsWith(".css")))
+			return false;
+		
+		// never serve anything the container itself would not serve
+		String upperCasePath = path.toUpperCase();
+		if (path.contains("..") || upperCasePath.contains("WEB-INF") || upperCasePath.contains("META-INF"))
+			return false;
+		
+		File resource = getStaticResource(path);
+		if (resource == null)
+			return false;
+		
+		try {
+			long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+			if (ifModifiedSince != -1 && resource.lastModified() / 1000 * 1000 <= ifModifiedSince) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return true;
+			}
+		}
+		catch (IllegalArgumentException e) {
+			// an unparseable header just means we send the whole file
+		}
+		
+		File compressed;
+		try {
+			compressed = staticResourceCache.getCompressedFile(resource);
+		}
+		catch (IOException e) {
+			log.warn("Unable to precompress static resource: " + resource.getAbsolutePath(), e);
+			return false;
+		}
+		
+		response.setContentType(getServletContext().getMimeType(resource.getName()));
+		response.setDateHeader("Last-Modified", resource.lastModified());
+		response.addHeader("Content-Encoding", "gzip");
+		response.setContentLength((int) compressed.length());
+		
+		if (!"HEAD".equals(request.getMethod())) {
+			InputStream in = new FileInputStream(compressed);
+			try {
+				OutputStream out = response.getOutputStream();
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+				}
+			}
+			finally {
+				OpenmrsUtil.closeStream(in);
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Finds the file behind the given context relative path, resolving module resources to the
+	 * directory they are copied to when the module is started
+	 * 
+	 * @param path the servlet path and path info of the request
+	 * @return the file or null if there is no such file
+	 */
+	private File getStaticResource(String path) {
+		String realPath;
+		if (path.startsWith(MODULE_RESOURCES_PATH + "/")) {
+			String modulePath = path.substring(MODULE_RESOURCES_PATH.length());
+			Module module = ModuleUtil.getModuleForPath(modulePath);
+			if (module == null)
+				return null;
+			realPath = getServletContext().getRealPath(
+			    MODULE_PATH + module.getModuleIdAsPath() + "/resources" + ModuleUtil.getPathForResource(module, modulePath));
+		} else {
+			realPath = getServletContext().getRealPath(path);
+		}
+		
+		if (realPath == null)
+			return null;
+		
+		File file = new File(realPath);
+		return file.isFile() ? file : null;
+	}
+	
 	/**
 	 * Convenience method to test for GZIP capabilities
 	 * 
@@ -13,24 +13,46 @@
  */
 package org.openmrs.web.filter;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collection;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
 /**
- * Wraps Response Stream for GZipFilter
+ * Wraps Response Stream for GZipFilter. <br/>
+ * <br/>
+ * Only the first <code>minimumSize</code> bytes are held in memory. Responses that are closed
+ * before reaching that size are sent uncompressed, since compressing them does not pay off. As
+ * soon as the response grows past it, the content type is checked against the compressible
+ * content types and everything written is compressed and sent to the client as it is written,
+ * instead of holding the whole body in memory until the response is finished.
  * 
  * @author Matt Raible
  * @version $Revision: 1.3 $ $Date: 2004/05/16 02:17:00 $
  */
 public class GZIPResponseStream extends ServletOutputStream {
 	
-	// abstraction of the output stream used for compression
-	protected OutputStream bufferedOutput = null;
+	/**
+	 * The default number of bytes that a response must reach before it is compressed
+	 */
+	public static final int DEFAULT_MINIMUM_SIZE = 1024;
+	
+	// size of the deflater's output buffer when streaming to the client
+	private static final int COMPRESSION_BUFFER_SIZE = 8192;
+	
+	// holds the start of the response until we know whether it is worth compressing
+	protected byte[] buffer;
+	
+	// number of bytes in the buffer
+	protected int count = 0;
+	
+	// the stream everything is written to once the buffer is exceeded, either a gzip stream around
+	// the output or the output itself
+	protected OutputStream streamingOutput = null;
 	
 	// state keeping variable for if close() has been called
 	protected boolean closed = false;
@@ -41,15 +63,28 @@ public class GZIPResponseStream extends ServletOutputStream {
 	// reference to the output stream to the client's browser
 	protected ServletOutputStream output = null;
 	
-	// default size of the in-memory buffer
-	private int bufferSize = 50000;
+	// the content types that will be compressed, null to compress all
+	private Collection<String> compressibleContentTypes;
 	
 	public GZIPResponseStream(HttpServletResponse response) throws IOException {
+		this(response, DEFAULT_MINIMUM_SIZE, null);
+	}
+	
+	/**
+	 * @param response the response to write to
+	 * @param minimumSize the number of bytes a response must reach before it is compressed
+	 * @param compressibleContentTypes the content types that may be compressed, entries ending with
+	 *            "/*" match a whole type (e.g. "text/*"). null to compress all content types
+	 * @throws IOException
+	 */
+	public GZIPResponseStream(HttpServletResponse response, int minimumSize, Collection<String> compressibleContentTypes)
+	    throws IOException {
 		super();
 		closed = false;
 		this.response = response;
 		this.output = response.getOutputStream();
-		bufferedOutput = new ByteArrayOutputStream();
+		this.buffer = new byte[Math.max(minimumSize, 0)];
+		this.compressibleContentTypes = compressibleContentTypes;
 	}
 	
 	public void close() throws IOException {
@@ -58,42 +93,19 @@ public class GZIPResponseStream extends ServletOutputStream {
 			throw new IOException("This output stream has already been closed");
 		}
 		
-		// if we buffered everything in memory, gzip it
-		if (bufferedOutput instanceof ByteArrayOutputStream) {
-			// get the content
-			ByteArrayOutputStream baos = (ByteArrayOutputStream) bufferedOutput;
-			
-			// prepare a gzip stream
-			ByteArrayOutputStream compressedContent = new ByteArrayOutputStream();
-			GZIPOutputStream gzipstream = new GZIPOutputStream(compressedContent);
-			byte[] bytes = baos.toByteArray();
-			gzipstream.write(bytes);
-			gzipstream.finish();
-			
-			// get the compressed content
-			byte[] compressedBytes = compressedContent.toByteArray();
-			
-			// set appropriate HTTP headers
-			response.setContentLength(compressedBytes.length);
-			response.addHeader("Content-Encoding", "gzip");
-			output.write(compressedBytes);
-			output.flush();
-			output.close();
-			closed = true;
-		}
-		// if things were not buffered in memory, finish the GZIP stream and response
-		else if (bufferedOutput instanceof GZIPOutputStream) {
-			// cast to appropriate type
-			GZIPOutputStream gzipstream = (GZIPOutputStream) bufferedOutput;
-			
+		if (streamingOutput == null) {
+			// the whole response fit in the buffer, send it as is
+			response.setContentLength(count);
+			output.write(buffer, 0, count);
+		} else if (streamingOutput instanceof GZIPOutputStream) {
 			// finish the compression
-			gzipstream.finish();
-			
-			// finish the response
-			output.flush();
-			output.close();
-			closed = true;
+			((GZIPOutputStream) streamingOutput).finish();
 		}
+		
+		// finish the response
+		output.flush();
+		output.close();
+		closed = true;
 	}
 	
 	public void flush() throws IOException {
@@ -101,7 +113,12 @@ public class GZIPResponseStream extends ServletOutputStream {
 			throw new IOException("Cannot flush a closed output stream");
 		}
 		
-		bufferedOutput.flush();
+		// the client is waiting for what has been written so far
+		if (streamingOutput == null && count > 0)
+			startStreaming();
+		
+		if (streamingOutput != null)
+			streamingOutput.flush();
 	}
 	
 	public void write(int b) throws IOException {
@@ -109,33 +126,14 @@ public class GZIPResponseStream extends ServletOutputStream {
 			throw new IOException("Cannot write to a closed output stream");
 		}
 		
-		// make sure we aren't over the buffer's limit
-		checkBufferSize(1);
-		
-		// write the byte to the temporary output
-		bufferedOutput.write((byte) b);
-	}
-	
-	private void checkBufferSize(int length) throws IOException {
-		// check if we are buffering too large of a file
-		if (bufferedOutput instanceof ByteArrayOutputStream) {
-			ByteArrayOutputStream baos = (ByteArrayOutputStream) bufferedOutput;
-			
-			if ((baos.size() + length) > bufferSize) {
-				// files too large to keep in memory are sent to the client without Content-Length specified
-				response.addHeader("Content-Encoding", "gzip");
-				
-				// get existing bytes
-				byte[] bytes = baos.toByteArray();
-				
-				// make new gzip stream using the response output stream
-				GZIPOutputStream gzipstream = new GZIPOutputStream(output);
-				gzipstream.write(bytes);
-				
-				// we are no longer buffering, send content via gzipstream
-				bufferedOutput = gzipstream;
-			}
+		if (streamingOutput == null && count < buffer.length) {
+			buffer[count++] = (byte) b;
+			return;
 		}
+		
+		if (streamingOutput == null)
+			startStreaming();
+		streamingOutput.write(b);
 	}
 	
 	public void write(byte[] b) throws IOException {
@@ -148,11 +146,55 @@ public class GZIPResponseStream extends ServletOutputStream {
 			throw new IOException("Cannot write to a closed output stream");
 		}
 		
-		// make sure we aren't over the buffer's limit
-		checkBufferSize(len);
+		if (streamingOutput == null && count + len <= buffer.length) {
+			System.arraycopy(b, off, buffer, count, len);
+			count += len;
+			return;
+		}
 		
-		// write the content to the buffer
-		bufferedOutput.write(b, off, len);
+		if (streamingOutput == null)
+			startStreaming();
+		streamingOutput.write(b, off, len);
+	}
+	
+	/**
+	 * Decides whether the response is compressed and sends the buffered bytes on. Everything
+	 * written afterwards goes straight through to the client.
+	 */
+	private void startStreaming() throws IOException {
+		if (isCompressible(response.getContentType())) {
+			// compressed responses are sent to the client without Content-Length specified
+			response.addHeader("Content-Encoding", "gzip");
+			streamingOutput = new SyncFlushGZIPOutputStream(output, COMPRESSION_BUFFER_SIZE);
+		} else {
+			streamingOutput = output;
+		}
+		
+		streamingOutput.write(buffer, 0, count);
+		count = 0;
+	}
+	
+	/**
+	 * @param contentType the content type of the response, possibly including parameters
+	 * @return true if responses of the given content type should be compressed
+	 */
+	private boolean isCompressible(String contentType) {
+		if (compressibleContentTypes == null || contentType == null)
+			return true;
+		
+		int parameters = contentType.indexOf(';');
+		String mimeType = (parameters == -1 ? contentType : contentType.substring(0, parameters)).trim().toLowerCase();
+		
+		for (String compressible : compressibleContentTypes) {
+			if (compressible.endsWith("/*")) {
+				if (mimeType.startsWith(compressible.substring(0, compressible.length() - 1)))
+					return true;
+			} else if (compressible.equals(mimeType)) {
+				return true;
+			}
+		}
+		
+		return false;
 	}
 	
 	public boolean closed() {
@@ -162,4 +204,34 @@ public class GZIPResponseStream extends ServletOutputStream {
 	public void reset() {
 		//noop
 	}
+	
+	/**
+	 * A gzip stream whose {@link #flush()} sends everything written so far. A plain
+	 * GZIPOutputStream keeps what the deflater holds back until more is written or the stream is
+	 * finished, and the sync flush option that fixes this needs Java 7.
+	 */
+	private static class SyncFlushGZIPOutputStream extends GZIPOutputStream {
+		
+		public SyncFlushGZIPOutputStream(OutputStream out, int size) throws IOException {
+			super(out, size);
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			if (!def.finished()) {
+				// changing the level makes the deflater end its block with what it has been given
+				def.setLevel(Deflater.NO_COMPRESSION);
+				deflatePending();
+				def.setLevel(Deflater.DEFAULT_COMPRESSION);
+				deflatePending();
+			}
+			out.flush();
+		}
+		
+		private void deflatePending() throws IOException {
+			int len;
+			while ((len = def.deflate(buf, 0, buf.length)) > 0)
+				out.write(buf, 0, len);
+		}
+	}
 }
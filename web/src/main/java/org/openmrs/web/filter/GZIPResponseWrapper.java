@@ -16,6 +16,7 @@ package org.openmrs.web.filter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.Collection;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
@@ -41,13 +42,29 @@ public class GZIPResponseWrapper extends HttpServletResponseWrapper {
 	
 	protected int error = 0;
 	
+	private int minimumSize = GZIPResponseStream.DEFAULT_MINIMUM_SIZE;
+	
+	private Collection<String> compressibleContentTypes = null;
+	
 	public GZIPResponseWrapper(HttpServletResponse response) {
 		super(response);
 		origResponse = response;
 	}
 	
+	/**
+	 * @param response the response to wrap
+	 * @param minimumSize the number of bytes a response must reach before it is compressed
+	 * @param compressibleContentTypes the content types that may be compressed, null for all
+	 * @see GZIPResponseStream#GZIPResponseStream(HttpServletResponse, int, Collection)
+	 */
+	public GZIPResponseWrapper(HttpServletResponse response, int minimumSize, Collection<String> compressibleContentTypes) {
+		this(response);
+		this.minimumSize = minimumSize;
+		this.compressibleContentTypes = compressibleContentTypes;
+	}
+	
 	public ServletOutputStream createOutputStream() throws IOException {
-		return (new GZIPResponseStream(origResponse));
+		return (new GZIPResponseStream(origResponse, minimumSize, compressibleContentTypes));
 	}
 	
 	public void finishResponse() {
@@ -64,7 +81,9 @@ public class GZIPResponseWrapper extends HttpServletResponseWrapper {
 	}
 	
 	public void flushBuffer() throws IOException {
-		if (stream != null) {
+		if (writer != null) {
+			writer.flush();
+		} else if (stream != null) {
 			stream.flush();
 		}
 	}
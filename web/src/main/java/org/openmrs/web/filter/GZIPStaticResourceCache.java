@@ -0,0 +1,107 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.filter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.util.OpenmrsUtil;
+import org.openmrs.util.Security;
+
+/**
+ * Keeps gzipped copies of static resources (like the .js and .css files of the webapp and of the
+ * modules) in a cache directory so that {@link GZIPFilter} can send them without compressing them
+ * again on every request. A copy is recreated whenever the last modified date of the original file
+ * changes, for example when a module is upgraded and its resources are copied out again.
+ */
+public class GZIPStaticResourceCache {
+	
+	private static final Log log = LogFactory.getLog(GZIPStaticResourceCache.class);
+	
+	private final File cacheDirectory;
+	
+	/**
+	 * @param cacheDirectory the directory to store the compressed copies in
+	 */
+	public GZIPStaticResourceCache(File cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+	
+	/**
+	 * Gets the gzipped copy of the given file, compressing it first if there is no copy yet or if
+	 * the file has been modified since the copy was made
+	 * 
+	 * @param resource the static resource to get the compressed copy for
+	 * @return the compressed copy
+	 * @throws IOException if the copy cannot be written
+	 * @should compress the resource into the cache directory
+	 * @should recompress the resource if it has been modified
+	 */
+	public File getCompressedFile(File resource) throws IOException {
+		File compressed = new File(cacheDirectory, getCacheFileName(resource));
+		
+		// the copy gets the last modified date of the resource it was made from
+		if (compressed.exists() && compressed.lastModified() == resource.lastModified())
+			return compressed;
+		
+		if (log.isDebugEnabled())
+			log.debug("Compressing static resource: " + resource.getAbsolutePath());
+		
+		// write to a temporary file first so concurrent requests never see a partial copy
+		File temp = File.createTempFile(compressed.getName(), ".tmp", cacheDirectory);
+		InputStream in = null;
+		OutputStream out = null;
+		try {
+			in = new FileInputStream(resource);
+			out = new GZIPOutputStream(new FileOutputStream(temp));
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		}
+		finally {
+			OpenmrsUtil.closeStream(in);
+			OpenmrsUtil.closeStream(out);
+		}
+		
+		temp.setLastModified(resource.lastModified());
+		if (!temp.renameTo(compressed)) {
+			compressed.delete();
+			if (!temp.renameTo(compressed)) {
+				temp.delete();
+				throw new IOException("Unable to move the compressed copy of " + resource.getAbsolutePath() + " to "
+				        + compressed.getAbsolutePath());
+			}
+		}
+		
+		return compressed;
+	}
+	
+	/**
+	 * Files with the same name can exist in several directories, so the name of the copy includes a
+	 * digest of the full path. The copy is made again when the resource is modified, so it keeps
+	 * its name.
+	 */
+	private String getCacheFileName(File resource) {
+		return Security.encodeString(resource.getAbsolutePath()) + "-" + resource.getName() + ".gz";
+	}
+}
@@ -27,6 +27,7 @@ import org.apache.commons.logging.LogFactory;
 import org.openmrs.User;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.UserContext;
+import org.openmrs.api.db.hibernate.QueryProfiler;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.web.WebConstants;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -106,11 +107,17 @@ public class OpenmrsFilter extends OncePerRequestFilter {
 		
 		log.debug("before chain.Filter");
 		
+		// count the statements of the request if the query profiler is enabled
+		if (QueryProfiler.isEnabled())
+			QueryProfiler.begin(QueryProfiler.getUrlName(httpRequest.getRequestURI().substring(
+			    httpRequest.getContextPath().length())));
+		
 		// continue the filter chain (going on to spring, authorization, etc)
 		try {
 			chain.doFilter(httpRequest, httpResponse);
 		}
 		finally {
+			QueryProfiler.end();
 			Context.clearUserContext();
 		}
 		
@@ -15,8 +15,13 @@ package org.openmrs.web.servlet;
 
 import java.awt.image.RenderedImage;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 import javax.imageio.ImageIO;
 import javax.servlet.ServletException;
@@ -34,12 +39,23 @@ import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
 import org.openmrs.web.WebConstants;
 
+/**
+ * Writes the complex data of an obs to the response. Complex data that its handler stores in a file
+ * is streamed straight from that file, so the memory needed does not depend on the file size.
+ * Those responses also carry an ETag and Last-Modified header for conditional requests and support
+ * a single byte range, so large documents and images can be resumed or viewed partially.
+ */
 public class ComplexObsServlet extends HttpServlet {
 	
 	public static final long serialVersionUID = 1234432L;
 	
 	private static final Log log = LogFactory.getLog(ComplexObsServlet.class);
 	
+	/**
+	 * Returned by {@link #getByteRange(String, long)} when the requested range can't be satisfied
+	 */
+	private static final long[] UNSATISFIABLE_RANGE = new long[0];
+	
 	/**
 	 * @see javax.servlet.http.HttpServlet#doGet(javax.servlet.http.HttpServletRequest,
 	 *      javax.servlet.http.HttpServletResponse)
@@ -64,8 +80,12 @@ public class ComplexObsServlet extends HttpServlet {
 			return;
 		}
 		
-		Obs complexObs = Context.getObsService().getComplexObs(Integer.valueOf(obsId), view);
-		ComplexData cd = complexObs.getComplexData();
+		Obs complexObs = Context.getObsService().getComplexObsFile(Integer.valueOf(obsId), view);
+		ComplexData cd = complexObs == null ? null : complexObs.getComplexData();
+		if (cd == null || cd.getData() == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
 		Object data = cd.getData();
 		
 		if ("download".equals(viewType)) {
@@ -73,7 +93,9 @@ public class ComplexObsServlet extends HttpServlet {
 			response.setHeader("Pragma", "no-cache");
 		}
 		
-		if (data instanceof byte[]) {
+		if (data instanceof File) {
+			writeFile(request, response, (File) data, cd.getTitle());
+		} else if (data instanceof byte[]) {
 			ByteArrayInputStream stream = new ByteArrayInputStream((byte[]) data);
 			OpenmrsUtil.copyFile(stream, response.getOutputStream());
 		} else if (RenderedImage.class.isAssignableFrom(data.getClass())) {
@@ -95,4 +117,131 @@ public class ComplexObsServlet extends HttpServlet {
 		}
 	}
 	
+	/**
+	 * Writes the given file, or the byte range of it that was asked for, to the response
+	 * 
+	 * @param file the file holding the complex data
+	 * @param title the title of the complex data, used to look up the content type
+	 */
+	private void writeFile(HttpServletRequest request, HttpServletResponse response, File file, String title)
+	        throws IOException {
+		if (!file.isFile()) {
+			log.error("Unable to find file " + file.getAbsolutePath() + " of complex obs " + request.getParameter("obsId"));
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		
+		long length = file.length();
+		long lastModified = file.lastModified() / 1000 * 1000;
+		String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+		
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null ? ifNoneMatch.contains(etag) || "*".equals(ifNoneMatch) : request
+		        .getDateHeader("If-Modified-Since") >= lastModified) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		
+		String contentType = title == null ? null : getServletContext().getMimeType(title);
+		if (contentType != null)
+			response.setContentType(contentType);
+		response.setHeader("ETag", etag);
+		response.setDateHeader("Last-Modified", lastModified);
+		response.setHeader("Accept-Ranges", "bytes");
+		
+		// a range is only honored if the file is still the one the client has the rest of
+		long[] range = null;
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange == null || ifRange.equals(etag) || (!ifRange.startsWith("\"") && !ifRange.startsWith("W/")
+		        && request.getDateHeader("If-Range") == lastModified)) {
+			range = getByteRange(request.getHeader("Range"), length);
+		}
+		
+		long start = 0;
+		long count = length;
+		if (range == UNSATISFIABLE_RANGE) {
+			response.setHeader("Content-Range", "bytes */" + length);
+			response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			return;
+		} else if (range != null) {
+			start = range[0];
+			count = range[1] - range[0] + 1;
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + length);
+		}
+		response.setHeader("Content-Length", String.valueOf(count));
+		
+		FileInputStream in = new FileInputStream(file);
+		try {
+			// transferTo lets the file be sent without copying it through the heap where the
+			// container's stream allows it, and in small chunks otherwise
+			FileChannel channel = in.getChannel();
+			WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			while (count > 0) {
+				long transferred = channel.transferTo(start, count, out);
+				if (transferred <= 0)
+					break;
+				start += transferred;
+				count -= transferred;
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Parses the value of a Range header for a file of the given length. Only a single byte range is
+	 * supported, requests for multiple ranges get the whole file, which the HTTP spec allows.
+	 * 
+	 * @param range the value of the Range header, may be null
+	 * @param length the length of the file
+	 * @return the first and last byte position of the range, {@link #UNSATISFIABLE_RANGE} if the
+	 *         range lies outside the file, or null if the whole file should be sent
+	 * @should return null if there is no range
+	 * @should return null for multiple or malformed ranges
+	 * @should parse a range with a first and last byte position
+	 * @should parse an open ended range
+	 * @should parse a suffix range
+	 * @should limit the last byte position to the length of the file
+	 * @should return an unsatisfiable range if the range starts beyond the end of the file
+	 */
+	protected static long[] getByteRange(String range, long length) {
+		if (range == null || !range.startsWith("bytes=") || range.indexOf(',') >= 0)
+			return null;
+		
+		String spec = range.substring("bytes=".length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash < 0)
+			return null;
+		
+		long first;
+		long last;
+		try {
+			String firstPos = spec.substring(0, dash).trim();
+			String lastPos = spec.substring(dash + 1).trim();
+			if (firstPos.length() == 0) {
+				// a suffix range asks for the last n bytes
+				long suffixLength = Long.parseLong(lastPos);
+				if (suffixLength <= 0)
+					return UNSATISFIABLE_RANGE;
+				first = Math.max(0, length - suffixLength);
+				last = length - 1;
+			} else {
+				first = Long.parseLong(firstPos);
+				last = lastPos.length() == 0 ? length - 1 : Math.min(Long.parseLong(lastPos), length - 1);
+				if (first < 0 || last < first && first < length)
+					return null;
+			}
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+		
+		if (first >= length)
+			return UNSATISFIABLE_RANGE;
+		
+		return new long[] { first, last };
+	}
+	
 }
@@ -14,10 +14,14 @@
 package org.openmrs.web.servlet;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -26,17 +30,27 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
 import org.openmrs.Concept;
 import org.openmrs.ConceptAnswer;
 import org.openmrs.ConceptDescription;
+import org.openmrs.ConceptMap;
 import org.openmrs.ConceptName;
 import org.openmrs.ConceptSet;
+import org.openmrs.User;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.context.Context;
 
 /**
  * This servlet will package all non retired concepts into a comma delimited file. Retired concepts
- * are ignored.
+ * are ignored. <br/>
+ * <br/>
+ * The dictionary is streamed to the response in batches of {@link #batchSize} concepts (see
+ * {@link ConceptService#getConceptBatch(Integer, Integer, boolean)}) and the hibernate session is
+ * cleared after each batch, so the memory used does not grow with the size of the dictionary.
+ * Passing a <code>format=json</code> request parameter writes the same data as a json array instead
+ * of csv. The response is gzipped if the client accepts gzip encoding.
  */
 public class DownloadDictionaryServlet extends HttpServlet {
 	
@@ -58,90 +72,33 @@ public class DownloadDictionaryServlet extends HttpServlet {
 		
 		try {
 			Locale locale = Context.getLocale();
+			boolean json = "json".equals(request.getParameter("format"));
 			
-			ConceptService cs = Context.getConceptService();
 			String s = new SimpleDateFormat("dMy_Hm").format(new Date());
 			
-			response.setHeader("Content-Type", "text/csv;charset=UTF-8");
-			response.setHeader("Content-Disposition", "attachment; filename=conceptDictionary" + s + ".csv");
-			
-			String line = "Concept Id,Name,Description,Synonyms,Answers,Set Members,Class,Datatype,Changed By,Creator\n";
-			response.getWriter().write(line);
+			if (json) {
+				response.setHeader("Content-Type", "application/json;charset=UTF-8");
+				response.setHeader("Content-Disposition", "attachment; filename=conceptDictionary" + s + ".json");
+			} else {
+				response.setHeader("Content-Type", "text/csv;charset=UTF-8");
+				response.setHeader("Content-Disposition", "attachment; filename=conceptDictionary" + s + ".csv");
+			}
 			
-			int listIndex = 0;
-			Iterator<Concept> conceptIterator = cs.conceptIterator();
-			while (conceptIterator.hasNext()) {
-				Concept c = conceptIterator.next();
-				if (!c.isRetired()) {
-					
-					line = c.getConceptId() + ",";
-					String name, description;
-					ConceptName cn = c.getName(locale);
-					if (cn == null)
-						name = "";
-					else
-						name = cn.getName();
-					
-					ConceptDescription cd = c.getDescription(locale);
-					if (cd == null)
-						description = "";
-					else
-						description = cd.getDescription();
-					
-					line += '"' + name.replace("\"", "\"\"") + "\",";
-					
-					if (description == null)
-						description = "";
-					line = line + '"' + description.replace("\"", "\"\"") + "\",";
-					
-					String tmp = "";
-					for (ConceptName syn : c.getNames()) {
-						tmp += syn + "\n";
-					}
-					line += '"' + tmp.trim() + "\",";
-					
-					tmp = "";
-					for (ConceptAnswer answer : c.getAnswers(false)) {
-						if (answer.getAnswerConcept() != null)
-							tmp += answer.getAnswerConcept().getName() + "\n";
-						else if (answer.getAnswerDrug() != null)
-							tmp += answer.getAnswerDrug().getFullName(Context.getLocale()) + "\n";
-					}
-					line += '"' + tmp.trim() + "\",";
-					
-					tmp = "";
-					for (ConceptSet set : c.getConceptSets()) {
-						if (set.getConcept() != null) {
-							name = set.getConcept().getName().toString();
-							tmp += name.replace("\"", "\"\"") + "\n";
-						}
-					}
-					line += '"' + tmp.trim() + "\",";
-					
-					line += '"';
-					if (c.getConceptClass() != null)
-						line += c.getConceptClass().getName();
-					line += "\",";
-					
-					line += '"';
-					if (c.getDatatype() != null)
-						line += c.getDatatype().getName();
-					line += "\",";
-					
-					line += '"';
-					if (c.getChangedBy() != null)
-						line += c.getChangedBy().getPersonName();
-					line += "\",";
-					
-					line += '"';
-					if (c.getCreator() != null)
-						line += c.getCreator().getPersonName();
-					line += "\"\n";
-					
-					response.getWriter().write(line);
-				}
-				
+			OutputStream out = response.getOutputStream();
+			String acceptEncoding = request.getHeader("Accept-Encoding");
+			if (acceptEncoding != null && acceptEncoding.indexOf("gzip") != -1) {
+				response.setHeader("Content-Encoding", "gzip");
+				out = new GZIPOutputStream(out);
 			}
+			Writer writer = new OutputStreamWriter(out, "UTF-8");
+			
+			if (json)
+				writeJson(writer, locale);
+			else
+				writeCsv(writer, locale);
+			
+			// finishes the gzip stream as well
+			writer.close();
 		}
 		catch (Throwable t) {
 			log.error("Error while downloading concepts.", t);
@@ -151,4 +108,171 @@ public class DownloadDictionaryServlet extends HttpServlet {
 	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		doGet(request, response);
 	}
+	
+	/**
+	 * Writes all non retired concepts as comma delimited rows
+	 * 
+	 * @param writer the writer to write the rows to
+	 * @param locale the locale to write names and descriptions in
+	 * @throws IOException
+	 */
+	private void writeCsv(Writer writer, Locale locale) throws IOException {
+		writer.write("Concept Id,Name,Description,Synonyms,Answers,Set Members,Class,Datatype,Changed By,Creator\n");
+		
+		StringBuilder line = new StringBuilder();
+		StringBuilder tmp = new StringBuilder();
+		ConceptService cs = Context.getConceptService();
+		List<Concept> concepts = cs.getConceptBatch(null, batchSize, false);
+		while (!concepts.isEmpty()) {
+			for (Concept c : concepts) {
+				line.setLength(0);
+				line.append(c.getConceptId()).append(',');
+				appendQuoted(line, getName(c, locale)).append(',');
+				appendQuoted(line, getDescription(c, locale)).append(',');
+				
+				tmp.setLength(0);
+				for (ConceptName syn : c.getNames()) {
+					tmp.append(syn).append('\n');
+				}
+				appendQuoted(line, tmp.toString().trim()).append(',');
+				
+				tmp.setLength(0);
+				for (ConceptAnswer answer : c.getAnswers(false)) {
+					String answerName = getAnswerName(answer, locale);
+					if (answerName != null)
+						tmp.append(answerName).append('\n');
+				}
+				appendQuoted(line, tmp.toString().trim()).append(',');
+				
+				tmp.setLength(0);
+				for (ConceptSet set : c.getConceptSets()) {
+					if (set.getConcept() != null)
+						tmp.append(set.getConcept().getName()).append('\n');
+				}
+				appendQuoted(line, tmp.toString().trim()).append(',');
+				
+				appendQuoted(line, c.getConceptClass() == null ? "" : c.getConceptClass().getName()).append(',');
+				appendQuoted(line, c.getDatatype() == null ? "" : c.getDatatype().getName()).append(',');
+				appendQuoted(line, getPersonName(c.getChangedBy())).append(',');
+				appendQuoted(line, getPersonName(c.getCreator())).append('\n');
+				
+				writer.write(line.toString());
+			}
+			
+			concepts = getNextBatch(cs, concepts, writer);
+		}
+	}
+	
+	/**
+	 * Writes all non retired concepts as a json array of objects, including the concept mappings
+	 * 
+	 * @param writer the writer to write the array to
+	 * @param locale the locale to write names and descriptions in
+	 * @throws IOException
+	 */
+	private void writeJson(Writer writer, Locale locale) throws IOException {
+		JsonGenerator json = new JsonFactory().createJsonGenerator(writer);
+		json.writeStartArray();
+		
+		ConceptService cs = Context.getConceptService();
+		List<Concept> concepts = cs.getConceptBatch(null, batchSize, false);
+		while (!concepts.isEmpty()) {
+			for (Concept c : concepts) {
+				json.writeStartObject();
+				json.writeFieldName("id");
+				json.writeNumber(c.getConceptId());
+				writeStringField(json, "uuid", c.getUuid());
+				writeStringField(json, "name", getName(c, locale));
+				writeStringField(json, "description", getDescription(c, locale));
+				
+				json.writeFieldName("synonyms");
+				json.writeStartArray();
+				for (ConceptName syn : c.getNames()) {
+					json.writeString(syn.getName());
+				}
+				json.writeEndArray();
+				
+				json.writeFieldName("answers");
+				json.writeStartArray();
+				for (ConceptAnswer answer : c.getAnswers(false)) {
+					String answerName = getAnswerName(answer, locale);
+					if (answerName != null)
+						json.writeString(answerName);
+				}
+				json.writeEndArray();
+				
+				json.writeFieldName("setMembers");
+				json.writeStartArray();
+				for (ConceptSet set : c.getConceptSets()) {
+					if (set.getConcept() != null)
+						json.writeString(String.valueOf(set.getConcept().getName()));
+				}
+				json.writeEndArray();
+				
+				json.writeFieldName("mappings");
+				json.writeStartArray();
+				for (ConceptMap map : c.getConceptMappings()) {
+					if (map.getConceptReferenceTerm() != null) {
+						json.writeString(map.getConceptReferenceTerm().getConceptSource().getName() + ":"
+						        + map.getConceptReferenceTerm().getCode());
+					}
+				}
+				json.writeEndArray();
+				
+				writeStringField(json, "class", c.getConceptClass() == null ? "" : c.getConceptClass().getName());
+				writeStringField(json, "datatype", c.getDatatype() == null ? "" : c.getDatatype().getName());
+				writeStringField(json, "changedBy", getPersonName(c.getChangedBy()));
+				writeStringField(json, "creator", getPersonName(c.getCreator()));
+				json.writeEndObject();
+			}
+			
+			json.flush();
+			concepts = getNextBatch(cs, concepts, writer);
+		}
+		
+		json.writeEndArray();
+		json.flush();
+	}
+	
+	/**
+	 * Flushes what has been written for the current batch to the client, clears the session and
+	 * fetches the next batch
+	 */
+	private List<Concept> getNextBatch(ConceptService cs, List<Concept> currentBatch, Writer writer) throws IOException {
+		Integer lastConceptId = currentBatch.get(currentBatch.size() - 1).getConceptId();
+		writer.flush();
+		Context.clearSession();
+		return cs.getConceptBatch(lastConceptId, batchSize, false);
+	}
+	
+	private void writeStringField(JsonGenerator json, String fieldName, String value) throws IOException {
+		json.writeFieldName(fieldName);
+		json.writeString(value);
+	}
+	
+	private StringBuilder appendQuoted(StringBuilder line, String value) {
+		return line.append('"').append(value.replace("\"", "\"\"")).append('"');
+	}
+	
+	private String getName(Concept c, Locale locale) {
+		ConceptName cn = c.getName(locale);
+		return cn == null || cn.getName() == null ? "" : cn.getName();
+	}
+	
+	private String getDescription(Concept c, Locale locale) {
+		ConceptDescription cd = c.getDescription(locale);
+		return cd == null || cd.getDescription() == null ? "" : cd.getDescription();
+	}
+	
+	private String getAnswerName(ConceptAnswer answer, Locale locale) {
+		if (answer.getAnswerConcept() != null)
+			return String.valueOf(answer.getAnswerConcept().getName());
+		else if (answer.getAnswerDrug() != null)
+			return answer.getAnswerDrug().getFullName(locale);
+		return null;
+	}
+	
+	private String getPersonName(User user) {
+		return user == null ? "" : String.valueOf(user.getPersonName());
+	}
 }
@@ -15,12 +15,16 @@ package org.openmrs.web.servlet;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -48,10 +52,10 @@ import org.jfree.data.time.TimeSeries;
 import org.jfree.data.time.TimeSeriesCollection;
 import org.openmrs.Concept;
 import org.openmrs.ConceptNumeric;
-import org.openmrs.Obs;
 import org.openmrs.Patient;
 import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
+import org.openmrs.util.Security;
 
 /**
  * This servlet returns an image graphing the numeric values for given concept(s). <br/>
@@ -60,7 +64,12 @@ import org.openmrs.api.context.Context;
  * <br/>
  * For an example of usage, see WEB-INF/view/portlets/patientGraphs.jsp <br/>
  * <br/>
- * The only url parameters that are required are "patientId" and "conceptId".
+ * The only url parameters that are required are "patientId" and "conceptId". <br/>
+ * <br/>
+ * Only the obsDatetime and valueNumeric of the observations are fetched, and long series are
+ * downsampled to at most one point per pixel of the requested width with the
+ * largest-triangle-three-buckets algorithm (see {@link #downsample(List, int)}). Rendered images
+ * are cached for as long as the observations of the graphed concepts do not change.
  */
 public class ShowGraphServlet extends HttpServlet {
 	
@@ -81,6 +90,24 @@ public class ShowGraphServlet extends HttpServlet {
 	
 	private static final Color COLOR_ERROR = new Color(255, 28, 28, 64);
 	
+	private static final int DEFAULT_WIDTH = 500;
+	
+	private static final int DEFAULT_HEIGHT = 300;
+	
+	private static final int MAX_CACHED_CHARTS = 500;
+	
+	// rendered images, keyed by everything that goes into them (see getCacheKey)
+	private static final Map<String, byte[]> chartCache = Collections.synchronizedMap(new LinkedHashMap<String, byte[]>(
+	        16, 0.75f, true) {
+		
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+			return size() > MAX_CACHED_CHARTS;
+		}
+	});
+	
 	/**
 	 * @see javax.servlet.http.HttpServlet#doGet(javax.servlet.http.HttpServletRequest,
 	 *      javax.servlet.http.HttpServletResponse)
@@ -88,44 +115,52 @@ public class ShowGraphServlet extends HttpServlet {
 	@Override
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		try {
-			JFreeChart chart = getChart(request);
-			
 			// get the height and width of the graph
-			String widthString = request.getParameter("width");
-			String heightString = request.getParameter("height");
-			
-			Integer width;
-			Integer height;
-			if (widthString != null && widthString.length() > 0)
-				width = Integer.parseInt(widthString);
-			else
-				width = 500;
-			if (heightString != null && heightString.length() > 0)
-				height = Integer.parseInt(heightString);
-			else
-				height = 300;
+			int width = getIntParameter(request, "width", DEFAULT_WIDTH);
+			int height = getIntParameter(request, "height", DEFAULT_HEIGHT);
 			
 			// get the requested mime type of the graph
 			String mimeType = request.getParameter("mimeType");
 			if (mimeType == null)
 				mimeType = PNG_MIME_TYPE;
 			
-			// Modify response to disable caching
+			if (JPG_MIME_TYPE.equalsIgnoreCase(mimeType))
+				mimeType = JPG_MIME_TYPE;
+			else if (PNG_MIME_TYPE.equalsIgnoreCase(mimeType))
+				mimeType = PNG_MIME_TYPE;
+			else
+				throw new APIException("Unsupported MIME type");
+			
+			// Modify response so that the browser always checks whether the chart changed
 			response.setHeader("Pragma", "No-cache");
 			response.setDateHeader("Expires", 0);
 			response.setHeader("Cache-Control", "no-cache");
 			
+			String cacheKey = getCacheKey(request, width, height, mimeType);
+			String etag = "\"" + Security.encodeString(cacheKey) + "\"";
+			response.setHeader("ETag", etag);
+			if (etag.equals(request.getHeader("If-None-Match"))) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+			
+			byte[] image = chartCache.get(cacheKey);
+			if (image == null) {
+				JFreeChart chart = getChart(request);
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				if (JPG_MIME_TYPE.equals(mimeType))
+					ChartUtilities.writeChartAsJPEG(out, chart, width, height);
+				else
+					ChartUtilities.writeChartAsPNG(out, chart, width, height);
+				image = out.toByteArray();
+				chartCache.put(cacheKey, image);
+			}
+			
 			// Write chart out to response as image
 			try {
-				if (JPG_MIME_TYPE.equalsIgnoreCase(mimeType)) {
-					response.setContentType(JPG_MIME_TYPE);
-					ChartUtilities.writeChartAsJPEG(response.getOutputStream(), chart, width, height);
-				} else if (PNG_MIME_TYPE.equalsIgnoreCase(mimeType)) {
-					response.setContentType(PNG_MIME_TYPE);
-					ChartUtilities.writeChartAsPNG(response.getOutputStream(), chart, width, height);
-				} else {
-					throw new APIException("Unsupported MIME type");
-				}
+				response.setContentType(mimeType);
+				response.setContentLength(image.length);
+				response.getOutputStream().write(image);
 			}
 			catch (IOException e) {
 				// if its tomcat and the user simply navigated away from the page, don't throw an error
@@ -143,6 +178,50 @@ public class ShowGraphServlet extends HttpServlet {
 		}
 	}
 	
+	/**
+	 * Builds the key a rendered chart is cached under. Besides all the request parameters that
+	 * affect the image, it contains the version of the patient's observations of the graphed
+	 * concepts (see {@link org.openmrs.api.ObsService#getObsVersion(Patient, List)}), so a chart is
+	 * rendered again as soon as its data changes.
+	 * 
+	 * @param request the current request with all the parameters of the chart
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @param mimeType the mime type of the image
+	 * @return the key for the chart cache
+	 */
+	protected String getCacheKey(HttpServletRequest request, int width, int height, String mimeType) {
+		Patient patient = Context.getPatientService().getPatient(Integer.parseInt(request.getParameter("patientId")));
+		
+		StringBuilder key = new StringBuilder();
+		key.append(patient.getPatientId()).append('|').append(width).append('x').append(height).append('|').append(
+		    mimeType);
+		
+		List<Concept> concepts = new ArrayList<Concept>();
+		for (String parameter : new String[] { "conceptId", "conceptId2" }) {
+			String conceptId = request.getParameter(parameter);
+			Concept concept = conceptId == null ? null : Context.getConceptService().getConcept(Integer.parseInt(conceptId));
+			key.append('|').append(conceptId);
+			if (concept != null) {
+				concepts.add(concept);
+				key.append('@').append(concept.getDateChanged() == null ? null : concept.getDateChanged().getTime());
+			}
+		}
+		key.append('|').append(Context.getObsService().getObsVersion(patient, concepts));
+		
+		// the default dates move with the current day, only compare them to the second
+		key.append('|').append(getFromDate(request.getParameter("fromDate")).getTime() / 1000);
+		key.append('|').append(getToDate(request.getParameter("toDate")).getTime() / 1000);
+		
+		for (String parameter : new String[] { "chartTitle", "seriesTitle1", "seriesTitle2", "units", "minRange",
+		        "maxRange", "hideDate" }) {
+			key.append('|').append(request.getParameter(parameter));
+		}
+		key.append('|').append(Context.getLocale());
+		
+		return key.toString();
+	}
+	
 	/**
 	 * The main method for this class. It will create a JFreeChart object to be written to the
 	 * response.
@@ -167,6 +246,9 @@ public class ShowGraphServlet extends HttpServlet {
 		
 		String hideDate = request.getParameter("hideDate");
 		
+		// no need to draw more points than the chart is wide
+		int width = getIntParameter(request, "width", DEFAULT_WIDTH);
+		
 		Patient patient = Context.getPatientService().getPatient(Integer.parseInt(patientId));
 		
 		// Set date range to passed values, otherwise set a default date range to the last 12 months
@@ -193,16 +275,17 @@ public class ShowGraphServlet extends HttpServlet {
 		boolean userSpecifiedMaxRange = false;
 		boolean userSpecifiedMinRange = false;
 		
-		// Fetching obs
-		List<Obs> observations1 = new ArrayList<Obs>();
-		List<Obs> observations2 = new ArrayList<Obs>();
+		// Fetching obs values as {obsDatetime, valueNumeric} pairs
+		List<Object[]> observations1 = new ArrayList<Object[]>();
+		List<Object[]> observations2 = new ArrayList<Object[]>();
 		Concept concept1 = null, concept2 = null;
 		if (conceptId1 != null)
 			concept1 = Context.getConceptService().getConcept(Integer.parseInt(conceptId1));
 		if (conceptId2 != null)
 			concept2 = Context.getConceptService().getConcept(Integer.parseInt(conceptId2));
 		if (concept1 != null) {
-			observations1 = Context.getObsService().getObservationsByPersonAndConcept(patient, concept1);
+			observations1 = downsample(Context.getObsService().getNumericObsValues(patient, concept1, fromDate, toDate),
+			    width);
 			chartTitle = concept1.getName().getName();
 			rangeAxisTitle = ((ConceptNumeric) concept1).getUnits();
 			minRange = ((ConceptNumeric) concept1).getLowAbsolute();
@@ -216,7 +299,8 @@ public class ShowGraphServlet extends HttpServlet {
 			if (concept2 != null) {
 				String concept2Units = ((ConceptNumeric) concept2).getUnits();
 				if (concept2Units != null && concept2Units.equals(rangeAxisTitle)) {
-					observations2 = Context.getObsService().getObservationsByPersonAndConcept(patient, concept2);
+					observations2 = downsample(Context.getObsService().getNumericObsValues(patient, concept2, fromDate,
+					    toDate), width);
 					chartTitle += " + " + concept2.getName().getName();
 					if (((ConceptNumeric) concept2).getHiAbsolute() != null
 					        && ((ConceptNumeric) concept2).getHiAbsolute() > maxRange)
@@ -283,45 +367,9 @@ public class ShowGraphServlet extends HttpServlet {
 		else
 			series2 = new TimeSeries(concept2.getName().getName(), timeScale);
 		
-		// Add data points for concept1
-		for (Obs obs : observations1) {
-			if (obs.getValueNumeric() != null && obs.getObsDatetime().getTime() >= fromDate.getTime()
-			        && obs.getObsDatetime().getTime() < toDate.getTime()) {
-				cal.setTime(obs.getObsDatetime());
-				if (timeScale == Minute.class) {
-					Minute min = new Minute(cal.get(Calendar.MINUTE), cal.get(Calendar.HOUR_OF_DAY), cal
-					        .get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series1.addOrUpdate(min, obs.getValueNumeric());
-				} else if (timeScale == Hour.class) {
-					Hour hour = new Hour(cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.DAY_OF_MONTH), cal
-					        .get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series1.addOrUpdate(hour, obs.getValueNumeric());
-				} else {
-					Day day = new Day(cal.get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series1.addOrUpdate(day, obs.getValueNumeric());
-				}
-			}
-		}
-		
-		// Add data points for concept2
-		for (Obs obs : observations2) {
-			if (obs.getValueNumeric() != null && obs.getObsDatetime().getTime() >= fromDate.getTime()
-			        && obs.getObsDatetime().getTime() < toDate.getTime()) {
-				cal.setTime(obs.getObsDatetime());
-				if (timeScale == Minute.class) {
-					Minute min = new Minute(cal.get(Calendar.MINUTE), cal.get(Calendar.HOUR_OF_DAY), cal
-					        .get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series2.addOrUpdate(min, obs.getValueNumeric());
-				} else if (timeScale == Hour.class) {
-					Hour hour = new Hour(cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.DAY_OF_MONTH), cal
-					        .get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series2.addOrUpdate(hour, obs.getValueNumeric());
-				} else {
-					Day day = new Day(cal.get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series2.addOrUpdate(day, obs.getValueNumeric());
-				}
-			}
-		}
+		// Add data points for concept1 and concept2
+		addToSeries(series1, observations1, timeScale, cal);
+		addToSeries(series2, observations2, timeScale, cal);
 		
 		// Add series to dataset
 		dataset.addSeries(series1);
@@ -423,6 +471,115 @@ public class ShowGraphServlet extends HttpServlet {
 		return chart;
 	}
 	
+	/**
+	 * Adds the given values to the series, in periods of the given time scale
+	 * 
+	 * @param series the series to add to
+	 * @param values the {obsDatetime, valueNumeric} pairs to add
+	 * @param timeScale one of {@link Minute}, {@link Hour} or {@link Day}
+	 * @param cal the calendar to use for splitting up the obsDatetimes
+	 */
+	private void addToSeries(TimeSeries series, List<Object[]> values, Class<? extends RegularTimePeriod> timeScale,
+	        Calendar cal) {
+		for (Object[] value : values) {
+			cal.setTime((Date) value[0]);
+			Double valueNumeric = (Double) value[1];
+			if (timeScale == Minute.class) {
+				Minute min = new Minute(cal.get(Calendar.MINUTE), cal.get(Calendar.HOUR_OF_DAY), cal
+				        .get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
+				series.addOrUpdate(min, valueNumeric);
+			} else if (timeScale == Hour.class) {
+				Hour hour = new Hour(cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.DAY_OF_MONTH),
+				        cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
+				series.addOrUpdate(hour, valueNumeric);
+			} else {
+				Day day = new Day(cal.get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
+				series.addOrUpdate(day, valueNumeric);
+			}
+		}
+	}
+	
+	/**
+	 * Reduces the given series of values to at most <code>threshold</code> points with the
+	 * largest-triangle-three-buckets algorithm. The first and last points are always kept, the
+	 * points in between are split into equally sized buckets and from each bucket the point that
+	 * forms the largest triangle with the previously selected point and the average of the next
+	 * bucket is kept. This keeps the peaks and the overall shape of the series visible.
+	 * 
+	 * @param values {obsDatetime, valueNumeric} pairs ordered by obsDatetime
+	 * @param threshold the maximum number of points to return
+	 * @return the values if there are no more than threshold of them, otherwise the selected
+	 *         subset of them in the same order
+	 * @should return the values unchanged if there are no more than threshold values
+	 * @should reduce the values to threshold points
+	 * @should keep the first and last values
+	 * @should keep a peak value
+	 */
+	protected static List<Object[]> downsample(List<Object[]> values, int threshold) {
+		int size = values.size();
+		if (threshold < 3 || size <= threshold)
+			return values;
+		
+		List<Object[]> sampled = new ArrayList<Object[]>(threshold);
+		sampled.add(values.get(0));
+		
+		double bucketSize = (double) (size - 2) / (threshold - 2);
+		int selected = 0;
+		for (int bucket = 0; bucket < threshold - 2; bucket++) {
+			// the average point of the next bucket, for the last bucket that is the last point
+			int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+			int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, size);
+			double averageX = 0;
+			double averageY = 0;
+			for (int i = nextStart; i < nextEnd; i++) {
+				averageX += getX(values, i);
+				averageY += getY(values, i);
+			}
+			averageX /= (nextEnd - nextStart);
+			averageY /= (nextEnd - nextStart);
+			
+			double selectedX = getX(values, selected);
+			double selectedY = getY(values, selected);
+			int start = (int) Math.floor(bucket * bucketSize) + 1;
+			int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+			double maxArea = -1;
+			int next = start;
+			for (int i = start; i < end; i++) {
+				// twice the area of the triangle, which is just as good for comparing
+				double area = Math.abs((selectedX - averageX) * (getY(values, i) - selectedY) - (selectedX - getX(values, i))
+				        * (averageY - selectedY));
+				if (area > maxArea) {
+					maxArea = area;
+					next = i;
+				}
+			}
+			
+			sampled.add(values.get(next));
+			selected = next;
+		}
+		
+		sampled.add(values.get(size - 1));
+		return sampled;
+	}
+	
+	private static double getX(List<Object[]> values, int index) {
+		return ((Date) values.get(index)[0]).getTime();
+	}
+	
+	private static double getY(List<Object[]> values, int index) {
+		return ((Number) values.get(index)[1]).doubleValue();
+	}
+	
+	/**
+	 * @return the value of the given integer request parameter or the default if it is not given
+	 */
+	private int getIntParameter(HttpServletRequest request, String name, int defaultValue) {
+		String value = request.getParameter(name);
+		if (value != null && value.length() > 0)
+			return Integer.parseInt(value);
+		return defaultValue;
+	}
+	
 	/**
 	 * Get the FromDate object from the given string that is the time in milliseconds. If
 	 * dateFromRequest is null, return 1 year ago from today.
@@ -0,0 +1,165 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.web.filter;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.Filter;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ModuleFilterRoutingTable} class
+ */
+public class ModuleFilterRoutingTableTest {
+
+	private List<ModuleFilterMapping> mappings;
+
+	private Map<String, Filter> filters;
+
+	@Before
+	public void before() {
+		mappings = new ArrayList<ModuleFilterMapping>();
+		filters = new HashMap<String, Filter>();
+	}
+
+	private Filter addUrlMapping(String filterName, String... urlPatterns) {
+		ModuleFilterMapping mapping = new ModuleFilterMapping(null);
+		mapping.setFilterName(filterName);
+		for (String urlPattern : urlPatterns)
+			mapping.addUrlPattern(urlPattern);
+		mappings.add(mapping);
+		return addFilter(filterName);
+	}
+
+	private Filter addFilter(String filterName) {
+		Filter filter = filters.get(filterName);
+		if (filter == null) {
+			filter = mock(Filter.class);
+			filters.put(filterName, filter);
+		}
+		return filter;
+	}
+
+	private List<Filter> getFilters(String requestPath) {
+		return ModuleFilterRoutingTable.build(mappings, filters).getFilters(requestPath);
+	}
+
+	/**
+	 * @see {@link ModuleFilterRoutingTable#getFilters(String)}
+	 */
+	@Test
+	public void getFilters_shouldReturnWildcardFiltersForAnyRequestPath() throws Exception {
+		Filter all = addUrlMapping("all", "*");
+		Filter slashAll = addUrlMapping("slashAll", "/*");
+		Assert.assertEquals(Arrays.asList(all, slashAll), getFilters("/patientDashboard.form"));
+		Assert.assertEquals(Arrays.asList(all, slashAll), getFilters(""));
+	}
+
+	/**
+	 * @see {@link ModuleFilterRoutingTable#getFilters(String)}
+	 */
+	@Test
+	public void getFilters_shouldReturnFiltersForAnExactUrlPatternMatch() throws Exception {
+		Filter exact = addUrlMapping("exact", "/admin/index.htm");
+		Assert.assertEquals(Arrays.asList(exact), getFilters("/admin/index.htm"));
+		Assert.assertTrue(getFilters("/admin/index.html").isEmpty());
+		Assert.assertTrue(getFilters("/admin").isEmpty());
+	}
+
+	/**
+	 * @see {@link ModuleFilterRoutingTable#getFilters(String)}
+	 */
+	@Test
+	public void getFilters_shouldReturnFiltersForAPrefixUrlPatternMatch() throws Exception {
+		Filter admin = addUrlMapping("admin", "/admin/*");
+		Filter users = addUrlMapping("users", "/admin/users/*");
+		Assert.assertEquals(Arrays.asList(admin), getFilters("/admin"));
+		Assert.assertEquals(Arrays.asList(admin), getFilters("/admin/index.htm"));
+		Assert.assertEquals(Arrays.asList(admin, users), getFilters("/admin/users"));
+		Assert.assertEquals(Arrays.asList(admin, users), getFilters("/admin/users/user.form"));
+		Assert.assertTrue(getFilters("/patientDashboard.form").isEmpty());
+	}
+
+	/**
+	 * @see {@link ModuleFilterRoutingTable#getFilters(String)}
+	 */
+	@Test
+	public void getFilters_shouldNotMatchAPrefixUrlPatternThatOnlyPartiallyMatchesAPathSegment() throws Exception {
+		Filter admin = addUrlMapping("admin", "/admin/*");
+		Assert.assertTrue(getFilters("/administration").isEmpty());
+		Assert.assertTrue(getFilters("/adm").isEmpty());
+		Assert.assertEquals(Arrays.asList(admin), getFilters("/admin/"));
+	}
+
+	/**
+	 * @see {@link ModuleFilterRoutingTable#getFilters(String)}
+	 */
+	@Test
+	public void getFilters_shouldReturnFiltersForAnExtensionUrlPatternMatch() throws Exception {
+		Filter forms = addUrlMapping("forms", "*.form");
+		Filter admin = addUrlMapping("admin", "/admin/*");
+		Assert.assertEquals(Arrays.asList(forms), getFilters("/patientDashboard.form"));
+		Assert.assertEquals(Arrays.asList(forms, admin), getFilters("/admin/users/user.form"));
+		Assert.assertTrue(getFilters("/patientDashboard.formx").isEmpty());
+		Assert.assertTrue(getFilters("/patient.form/dashboard").isEmpty());
+		Assert.assertTrue(getFilters("patientDashboard.form").isEmpty());
+	}
+
+	/**
+	 * @see {@link ModuleFilterRoutingTable#getFilters(String)}
+	 */
+	@Test
+	public void getFilters_shouldReturnFiltersForAnExactServletNameMatch() throws Exception {
+		ModuleFilterMapping mapping = new ModuleFilterMapping(null);
+		mapping.setFilterName("servlet");
+		mapping.addServletName("/moduleServlet/test");
+		mappings.add(mapping);
+		Filter servlet = addFilter("servlet");
+
+		Assert.assertEquals(Arrays.asList(servlet), getFilters("/moduleServlet/test"));
+		Assert.assertTrue(getFilters("/moduleServlet/test2").isEmpty());
+	}
+
+	/**
+	 * @see {@link ModuleFilterRoutingTable#getFilters(String)}
+	 */
+	@Test
+	public void getFilters_shouldReturnFiltersInTheOrderOfTheirMappings() throws Exception {
+		Filter first = addUrlMapping("first", "*.htm");
+		Filter second = addUrlMapping("second", "/admin/index.htm");
+		Filter third = addUrlMapping("third", "/admin/*");
+		Filter fourth = addUrlMapping("fourth", "*");
+		Assert.assertEquals(Arrays.asList(first, second, third, fourth), getFilters("/admin/index.htm"));
+		Assert.assertEquals(Arrays.asList(first, third, fourth), getFilters("/admin/other.htm"));
+		Assert.assertEquals(Arrays.asList(fourth), getFilters("/index.form"));
+	}
+
+	/**
+	 * @see {@link ModuleFilterRoutingTable#getFilters(String)}
+	 */
+	@Test
+	public void getFilters_shouldReturnAnEmptyListIfTheRequestPathIsNull() throws Exception {
+		addUrlMapping("all", "*");
+		Assert.assertTrue(getFilters(null).isEmpty());
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */package org.openmrs.web.filter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Tests the {@link GZIPResponseStream} class
+ */
+public class GZIPResponseStreamTest {
+	
+	private byte[] getContent(int size) {
+		byte[] content = new byte[size];
+		for (int i = 0; i < size; i++)
+			content[i] = (byte) ('a' + i % 26);
+		return content;
+	}
+	
+	private byte[] gunzip(byte[] compressed) throws Exception {
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) != -1)
+			out.write(buffer, 0, read);
+		return out.toByteArray();
+	}
+	
+	/**
+	 * @see {@link GZIPResponseStream#close()}
+	 */
+	@Test
+	public void close_shouldSendResponsesSmallerThanTheMinimumSizeUncompressed() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		GZIPResponseStream stream = new GZIPResponseStream(response, 100, null);
+		byte[] content = getContent(99);
+		stream.write(content);
+		stream.close();
+		
+		Assert.assertNull(response.getHeader("Content-Encoding"));
+		Assert.assertEquals(99, response.getContentLength());
+		Assert.assertTrue(Arrays.equals(content, response.getContentAsByteArray()));
+	}
+	
+	/**
+	 * @see {@link GZIPResponseStream#write(byte[],int,int)}
+	 */
+	@Test
+	public void write_shouldCompressResponsesLargerThanTheMinimumSize() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		response.setContentType("text/html;charset=UTF-8");
+		GZIPResponseStream stream = new GZIPResponseStream(response, 100, Arrays.asList("text/*"));
+		byte[] content = getContent(10000);
+		stream.write(content, 0, 50);
+		stream.write(content, 50, 9950);
+		stream.close();
+		
+		Assert.assertEquals("gzip", response.getHeader("Content-Encoding"));
+		Assert.assertTrue(Arrays.equals(content, gunzip(response.getContentAsByteArray())));
+	}
+	
+	/**
+	 * @see {@link GZIPResponseStream#write(byte[],int,int)}
+	 */
+	@Test
+	public void write_shouldSendContentTypesThatAreNotCompressibleUncompressed() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		response.setContentType("image/png");
+		GZIPResponseStream stream = new GZIPResponseStream(response, 100, Arrays.asList("text/*", "application/json"));
+		byte[] content = getContent(10000);
+		stream.write(content);
+		stream.close();
+		
+		Assert.assertNull(response.getHeader("Content-Encoding"));
+		Assert.assertTrue(Arrays.equals(content, response.getContentAsByteArray()));
+	}
+	
+	/**
+	 * @see {@link GZIPResponseStream#write(byte[],int,int)}
+	 */
+	@Test
+	public void write_shouldStreamCompressedContentBeforeTheResponseIsClosed() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		GZIPResponseStream stream = new GZIPResponseStream(response, 100, null);
+		stream.write(getContent(100000));
+		
+		Assert.assertTrue(response.getContentAsByteArray().length > 0);
+	}
+	
+	/**
+	 * @see {@link GZIPResponseStream#flush()}
+	 */
+	@Test
+	public void flush_shouldSendEverythingWrittenSoFarCompressed() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		GZIPResponseStream stream = new GZIPResponseStream(response, 100, null);
+		byte[] content = getContent(1000);
+		stream.write(content);
+		stream.flush();
+		
+		// inflate the deflated data after the 10 byte gzip header, the stream is not finished yet
+		byte[] sent = response.getContentAsByteArray();
+		Inflater inflater = new Inflater(true);
+		inflater.setInput(sent, 10, sent.length - 10);
+		byte[] inflated = new byte[content.length];
+		Assert.assertEquals(content.length, inflater.inflate(inflated));
+		Assert.assertTrue(Arrays.equals(content, inflated));
+		
+		stream.close();
+		Assert.assertTrue(Arrays.equals(content, gunzip(response.getContentAsByteArray())));
+	}
+}
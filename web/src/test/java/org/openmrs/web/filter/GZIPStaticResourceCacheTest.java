@@ -0,0 +1,92 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */package org.openmrs.web.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.util.OpenmrsUtil;
+
+/**
+ * Tests the {@link GZIPStaticResourceCache} class
+ */
+public class GZIPStaticResourceCacheTest {
+	
+	private File directory;
+	
+	@Before
+	public void before() throws Exception {
+		directory = File.createTempFile("gzip-cache-test-", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+	
+	@After
+	public void after() throws Exception {
+		OpenmrsUtil.deleteDirectory(directory);
+	}
+	
+	private File writeResource(String name, String content) throws Exception {
+		File resource = new File(directory, name);
+		FileOutputStream out = new FileOutputStream(resource);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+		return resource;
+	}
+	
+	private String gunzip(File compressed) throws Exception {
+		GZIPInputStream in = new GZIPInputStream(new FileInputStream(compressed));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OpenmrsUtil.copyFile(in, out);
+		return out.toString("UTF-8");
+	}
+	
+	/**
+	 * @see {@link GZIPStaticResourceCache#getCompressedFile(File)}
+	 * @verifies compress the resource into the cache directory
+	 */
+	@Test
+	public void getCompressedFile_shouldCompressTheResourceIntoTheCacheDirectory() throws Exception {
+		File cacheDirectory = new File(directory, "cache");
+		cacheDirectory.mkdirs();
+		File resource = writeResource("openmrs.js", "var openmrs = {};");
+		
+		File compressed = new GZIPStaticResourceCache(cacheDirectory).getCompressedFile(resource);
+		
+		Assert.assertEquals(cacheDirectory, compressed.getParentFile());
+		Assert.assertEquals("var openmrs = {};", gunzip(compressed));
+	}
+	
+	/**
+	 * @see {@link GZIPStaticResourceCache#getCompressedFile(File)}
+	 * @verifies recompress the resource if it has been modified
+	 */
+	@Test
+	public void getCompressedFile_shouldRecompressTheResourceIfItHasBeenModified() throws Exception {
+		GZIPStaticResourceCache cache = new GZIPStaticResourceCache(directory);
+		File resource = writeResource("style.css", "body {}");
+		resource.setLastModified(100000);
+		Assert.assertEquals("body {}", gunzip(cache.getCompressedFile(resource)));
+		
+		writeResource("style.css", "body { color: red; }");
+		resource.setLastModified(200000);
+		Assert.assertEquals("body { color: red; }", gunzip(cache.getCompressedFile(resource)));
+	}
+}
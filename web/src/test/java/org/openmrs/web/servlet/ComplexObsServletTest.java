@@ -0,0 +1,105 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.servlet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests for the {@link ComplexObsServlet} class.
+ */
+public class ComplexObsServletTest {
+
+	/**
+	 * @see {@link ComplexObsServlet#getByteRange(String,long)}
+	 */
+	@Test
+	@Verifies(value = "should return null if there is no range", method = "getByteRange(String,long)")
+	public void getByteRange_shouldReturnNullIfThereIsNoRange() throws Exception {
+		Assert.assertNull(ComplexObsServlet.getByteRange(null, 1000));
+	}
+
+	/**
+	 * @see {@link ComplexObsServlet#getByteRange(String,long)}
+	 */
+	@Test
+	@Verifies(value = "should return null for multiple or malformed ranges", method = "getByteRange(String,long)")
+	public void getByteRange_shouldReturnNullForMultipleOrMalformedRanges() throws Exception {
+		Assert.assertNull(ComplexObsServlet.getByteRange("bytes=0-99,200-299", 1000));
+		Assert.assertNull(ComplexObsServlet.getByteRange("bytes=abc-", 1000));
+		Assert.assertNull(ComplexObsServlet.getByteRange("bytes=500-400", 1000));
+		Assert.assertNull(ComplexObsServlet.getByteRange("lines=0-10", 1000));
+		Assert.assertNull(ComplexObsServlet.getByteRange("bytes=100", 1000));
+	}
+
+	/**
+	 * @see {@link ComplexObsServlet#getByteRange(String,long)}
+	 */
+	@Test
+	@Verifies(value = "should parse a range with a first and last byte position", method = "getByteRange(String,long)")
+	public void getByteRange_shouldParseARangeWithAFirstAndLastBytePosition() throws Exception {
+		long[] range = ComplexObsServlet.getByteRange("bytes=100-199", 1000);
+		Assert.assertEquals(100, range[0]);
+		Assert.assertEquals(199, range[1]);
+	}
+
+	/**
+	 * @see {@link ComplexObsServlet#getByteRange(String,long)}
+	 */
+	@Test
+	@Verifies(value = "should parse an open ended range", method = "getByteRange(String,long)")
+	public void getByteRange_shouldParseAnOpenEndedRange() throws Exception {
+		long[] range = ComplexObsServlet.getByteRange("bytes=900-", 1000);
+		Assert.assertEquals(900, range[0]);
+		Assert.assertEquals(999, range[1]);
+	}
+
+	/**
+	 * @see {@link ComplexObsServlet#getByteRange(String,long)}
+	 */
+	@Test
+	@Verifies(value = "should parse a suffix range", method = "getByteRange(String,long)")
+	public void getByteRange_shouldParseASuffixRange() throws Exception {
+		long[] range = ComplexObsServlet.getByteRange("bytes=-100", 1000);
+		Assert.assertEquals(900, range[0]);
+		Assert.assertEquals(999, range[1]);
+
+		range = ComplexObsServlet.getByteRange("bytes=-2000", 1000);
+		Assert.assertEquals(0, range[0]);
+		Assert.assertEquals(999, range[1]);
+	}
+
+	/**
+	 * @see {@link ComplexObsServlet#getByteRange(String,long)}
+	 */
+	@Test
+	@Verifies(value = "should limit the last byte position to the length of the file", method = "getByteRange(String,long)")
+	public void getByteRange_shouldLimitTheLastBytePositionToTheLengthOfTheFile() throws Exception {
+		long[] range = ComplexObsServlet.getByteRange("bytes=500-5000", 1000);
+		Assert.assertEquals(500, range[0]);
+		Assert.assertEquals(999, range[1]);
+	}
+
+	/**
+	 * @see {@link ComplexObsServlet#getByteRange(String,long)}
+	 */
+	@Test
+	@Verifies(value = "should return an unsatisfiable range if the range starts beyond the end of the file", method = "getByteRange(String,long)")
+	public void getByteRange_shouldReturnAnUnsatisfiableRangeIfTheRangeStartsBeyondTheEndOfTheFile() throws Exception {
+		Assert.assertEquals(0, ComplexObsServlet.getByteRange("bytes=1000-", 1000).length);
+		Assert.assertEquals(0, ComplexObsServlet.getByteRange("bytes=-0", 1000).length);
+		Assert.assertEquals(0, ComplexObsServlet.getByteRange("bytes=-10", 0).length);
+	}
+}
@@ -13,8 +13,10 @@
  */
 package org.openmrs.web.servlet;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -132,4 +134,58 @@ public class ShowGraphServletTest extends BaseWebContextSensitiveTest {
 		Assert.assertEquals(0, toDate.getSeconds());
 	}
 	
+	/**
+	 * @return a series of size values, one per day, with the given peak at the given index
+	 */
+	private List<Object[]> getValues(int size, int peakIndex, double peak) {
+		List<Object[]> values = new ArrayList<Object[]>();
+		for (int i = 0; i < size; i++)
+			values.add(new Object[] { new Date(i * 86400000L), i == peakIndex ? peak : 50.0 + i % 5 });
+		return values;
+	}
+	
+	/**
+	 * @see {@link ShowGraphServlet#downsample(List,int)}
+	 */
+	@Test
+	@Verifies(value = "should return the values unchanged if there are no more than threshold values", method = "downsample(List,int)")
+	public void downsample_shouldReturnTheValuesUnchangedIfThereAreNoMoreThanThresholdValues() throws Exception {
+		List<Object[]> values = getValues(100, -1, 0);
+		Assert.assertSame(values, ShowGraphServlet.downsample(values, 100));
+	}
+	
+	/**
+	 * @see {@link ShowGraphServlet#downsample(List,int)}
+	 */
+	@Test
+	@Verifies(value = "should reduce the values to threshold points", method = "downsample(List,int)")
+	public void downsample_shouldReduceTheValuesToThresholdPoints() throws Exception {
+		List<Object[]> sampled = ShowGraphServlet.downsample(getValues(3650, -1, 0), 500);
+		Assert.assertEquals(500, sampled.size());
+		for (int i = 1; i < sampled.size(); i++)
+			Assert.assertTrue(((Date) sampled.get(i - 1)[0]).before((Date) sampled.get(i)[0]));
+	}
+	
+	/**
+	 * @see {@link ShowGraphServlet#downsample(List,int)}
+	 */
+	@Test
+	@Verifies(value = "should keep the first and last values", method = "downsample(List,int)")
+	public void downsample_shouldKeepTheFirstAndLastValues() throws Exception {
+		List<Object[]> values = getValues(3650, -1, 0);
+		List<Object[]> sampled = ShowGraphServlet.downsample(values, 500);
+		Assert.assertSame(values.get(0), sampled.get(0));
+		Assert.assertSame(values.get(3649), sampled.get(499));
+	}
+	
+	/**
+	 * @see {@link ShowGraphServlet#downsample(List,int)}
+	 */
+	@Test
+	@Verifies(value = "should keep a peak value", method = "downsample(List,int)")
+	public void downsample_shouldKeepAPeakValue() throws Exception {
+		List<Object[]> values = getValues(3650, 1234, 1000.0);
+		Assert.assertTrue(ShowGraphServlet.downsample(values, 500).contains(values.get(1234)));
+	}
+	
 }
@@ -0,0 +1,76 @@
+<%@ include file="/WEB-INF/template/include.jsp"%>
+
+<openmrs:require privilege="View Server Log" otherwise="/login.htm"
+	redirect="/admin/maintenance/connectionPools.list" />
+
+<%@ include file="/WEB-INF/template/header.jsp"%>
+<%@ include file="localHeader.jsp"%>
+
+<h2><openmrs:message code="ConnectionPools.title" /></h2>
+
+<openmrs:message code="ConnectionPools.help" />
+<br/>
+<br/>
+
+<c:if test="${empty pools}">
+	<div class="error"><openmrs:message code="ConnectionPools.notMonitored" /></div>
+	<br/>
+</c:if>
+
+<c:if test="${not empty pools}">
+	<form method="post">
+		<input type="submit" value="<openmrs:message code="ConnectionPools.reset"/>" />
+	</form>
+	<br/>
+
+	<b class="boxHeader"><openmrs:message code="ConnectionPools.header"/></b>
+	<table cellpadding="4" cellspacing="0" border="0" class="box">
+		<tr>
+			<th><openmrs:message code="ConnectionPools.name" /></th>
+			<th><openmrs:message code="ConnectionPools.busy" /></th>
+			<th><openmrs:message code="ConnectionPools.idle" /></th>
+			<th><openmrs:message code="ConnectionPools.waiting" /></th>
+			<th><openmrs:message code="ConnectionPools.checkouts" /></th>
+			<th><openmrs:message code="ConnectionPools.failures" /></th>
+			<th><openmrs:message code="ConnectionPools.meanWait" /></th>
+			<th><openmrs:message code="ConnectionPools.maxWait" /></th>
+			<th><openmrs:message code="ConnectionPools.meanHold" /></th>
+			<th><openmrs:message code="ConnectionPools.maxHold" /></th>
+			<th><openmrs:message code="ConnectionPools.longHolds" /></th>
+		</tr>
+		<c:forEach items="${pools}" var="pool" varStatus="varStatus">
+			<tr class="${varStatus.index % 2 == 0 ? 'evenRow' : 'oddRow'}">
+				<td>${pool.name}</td>
+				<td>${pool.busy}</td>
+				<td>${pool.idle}</td>
+				<td>${pool.waiting}</td>
+				<td>${pool.checkouts}</td>
+				<td>${pool.failures}</td>
+				<td>${pool.meanWaitMillis}</td>
+				<td>${pool.maxWaitMillis}</td>
+				<td>${pool.meanHoldMillis}</td>
+				<td>${pool.maxHoldMillis}</td>
+				<td>${pool.longCheckoutCount}</td>
+			</tr>
+		</c:forEach>
+	</table>
+	<br/>
+
+	<c:forEach items="${pools}" var="pool">
+		<b class="boxHeader"><openmrs:message code="ConnectionPools.longHolders" arguments="${pool.name},${pool.longCheckoutMillis}"/></b>
+		<div class="box">
+			<c:if test="${empty longCheckouts[pool.name]}">
+				<openmrs:message code="ConnectionPools.noLongHolders" />
+			</c:if>
+			<c:forEach items="${longCheckouts[pool.name]}" var="checkout">
+				<openmrs:message code="ConnectionPools.heldBy" arguments="${checkout.heldMillis},${fn:escapeXml(checkout.threadName)}" />
+				<c:if test="${not checkout.checkoutStackTrace}"><openmrs:message code="ConnectionPools.currentStackTrace" /></c:if>
+				<pre>${fn:escapeXml(checkout.stackTrace)}</pre>
+			</c:forEach>
+		</div>
+		<br/>
+	</c:forEach>
+</c:if>
+
+<br />
+<%@ include file="/WEB-INF/template/footer.jsp"%>
@@ -44,6 +44,27 @@
 			</a>
 		</li>
 	</openmrs:hasPrivilege>
+	<openmrs:hasPrivilege privilege="View Server Log">
+		<li <c:if test='<%= request.getRequestURI().contains("serviceMetrics") %>'>class="active"</c:if>>
+			<a href="${pageContext.request.contextPath}/admin/maintenance/serviceMetrics.list">
+				<openmrs:message code="ServiceMetrics.overview"/>
+			</a>
+		</li>
+	</openmrs:hasPrivilege>
+	<openmrs:hasPrivilege privilege="View Server Log">
+		<li <c:if test='<%= request.getRequestURI().contains("queryProfiles") %>'>class="active"</c:if>>
+			<a href="${pageContext.request.contextPath}/admin/maintenance/queryProfiles.list">
+				<openmrs:message code="QueryProfiles.overview"/>
+			</a>
+		</li>
+	</openmrs:hasPrivilege>
+	<openmrs:hasPrivilege privilege="View Server Log">
+		<li <c:if test='<%= request.getRequestURI().contains("connectionPools") %>'>class="active"</c:if>>
+			<a href="${pageContext.request.contextPath}/admin/maintenance/connectionPools.list">
+				<openmrs:message code="ConnectionPools.overview"/>
+			</a>
+		</li>
+	</openmrs:hasPrivilege>
 	<openmrs:hasPrivilege privilege="View Database Changes">
 		<li <c:if test='<%= request.getRequestURI().contains("databaseChangesInfo") %>'>class="active"</c:if>>
 			<a href="${pageContext.request.contextPath}/admin/maintenance/databaseChangesInfo.list">
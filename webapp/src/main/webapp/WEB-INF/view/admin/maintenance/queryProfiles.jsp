@@ -0,0 +1,74 @@
+<%@ include file="/WEB-INF/template/include.jsp"%>
+
+<openmrs:require privilege="View Server Log" otherwise="/login.htm"
+	redirect="/admin/maintenance/queryProfiles.list" />
+
+<%@ include file="/WEB-INF/template/header.jsp"%>
+<%@ include file="localHeader.jsp"%>
+
+<h2><openmrs:message code="QueryProfiles.title" /></h2>
+
+<openmrs:message code="QueryProfiles.help" />
+<br/>
+<br/>
+
+<c:if test="${not profilerEnabled}">
+	<div class="error"><openmrs:message code="QueryProfiles.disabled" arguments="${enabledProperty}" /></div>
+	<br/>
+</c:if>
+
+<c:if test="${not empty settings}">
+	<b><openmrs:message code="QueryProfiles.settings" /></b>
+	<div style="padding-left: 20px; padding-top: 5px">
+		<c:forEach items="${settings}" var="setting">
+			${setting.key} = ${fn:escapeXml(setting.value)}<br/>
+		</c:forEach>
+	</div>
+	<br/>
+</c:if>
+
+<form method="post">
+	<input type="submit" value="<openmrs:message code="QueryProfiles.clear"/>" />
+</form>
+<br/>
+
+<b class="boxHeader"><openmrs:message code="QueryProfiles.header"/></b>
+<table cellpadding="4" cellspacing="0" border="0" class="box">
+	<tr>
+		<th><openmrs:message code="QueryProfiles.name" /></th>
+		<th><openmrs:message code="QueryProfiles.count" /></th>
+		<th><openmrs:message code="QueryProfiles.flagged" /></th>
+		<th><openmrs:message code="QueryProfiles.meanStatements" /></th>
+		<th><openmrs:message code="QueryProfiles.maxStatements" /></th>
+		<th><openmrs:message code="QueryProfiles.meanEntityLoads" /></th>
+		<th><openmrs:message code="QueryProfiles.meanCollectionLoads" /></th>
+		<th><openmrs:message code="QueryProfiles.meanMillis" /></th>
+		<th><openmrs:message code="QueryProfiles.maxMillis" /></th>
+		<th><openmrs:message code="QueryProfiles.mostRepeated" /></th>
+	</tr>
+	<c:if test="${empty summaries}">
+		<tr><td colspan="10"><openmrs:message code="QueryProfiles.none" /></td></tr>
+	</c:if>
+	<c:forEach items="${summaries}" var="summary" varStatus="varStatus">
+		<tr class="${varStatus.index % 2 == 0 ? 'evenRow' : 'oddRow'}">
+			<td>${fn:escapeXml(summary.name)}</td>
+			<td>${summary.count}</td>
+			<td>${summary.flagged}</td>
+			<td>${summary.meanStatements}</td>
+			<td>${summary.maxStatements}</td>
+			<td>${summary.meanEntityLoads}</td>
+			<td>${summary.meanCollectionLoads}</td>
+			<td>${summary.meanMillis}</td>
+			<td>${summary.maxMillis}</td>
+			<td>
+				<c:if test="${summary.mostRepeatedCount > 1}">
+					${summary.mostRepeatedCount} &times; <code>${fn:escapeXml(summary.mostRepeatedStatement)}</code>
+				</c:if>
+			</td>
+		</tr>
+	</c:forEach>
+</table>
+
+<br />
+<br />
+<%@ include file="/WEB-INF/template/footer.jsp"%>
@@ -0,0 +1,69 @@
+<%@ include file="/WEB-INF/template/include.jsp"%>
+
+<openmrs:require privilege="View Server Log" otherwise="/login.htm"
+	redirect="/admin/maintenance/serviceMetrics.list" />
+
+<%@ include file="/WEB-INF/template/header.jsp"%>
+<%@ include file="localHeader.jsp"%>
+
+<h2><openmrs:message code="ServiceMetrics.title" /></h2>
+
+<openmrs:message code="ServiceMetrics.help" arguments="${enabledProperty},${servicesProperty}" />
+<br/>
+<br/>
+
+<c:if test="${not metricsEnabled}">
+	<div class="error"><openmrs:message code="ServiceMetrics.disabled" arguments="${enabledProperty}" /></div>
+	<br/>
+</c:if>
+
+<form method="post">
+	<input type="submit" value="<openmrs:message code="ServiceMetrics.reset"/>" />
+</form>
+<br/>
+
+<b class="boxHeader"><openmrs:message code="ServiceMetrics.header"/></b>
+<table cellpadding="4" cellspacing="0" border="0" class="box">
+	<tr>
+		<th><openmrs:message code="ServiceMetrics.method" /></th>
+		<th><openmrs:message code="ServiceMetrics.calls" /></th>
+		<th><openmrs:message code="ServiceMetrics.errors" /></th>
+		<th><openmrs:message code="ServiceMetrics.totalMillis" /></th>
+		<th><openmrs:message code="ServiceMetrics.meanMillis" /></th>
+		<th><openmrs:message code="ServiceMetrics.p95Millis" /></th>
+		<th><openmrs:message code="ServiceMetrics.maxMillis" /></th>
+		<th><openmrs:message code="ServiceMetrics.statements" /></th>
+		<th><openmrs:message code="ServiceMetrics.entityLoads" /></th>
+		<th><openmrs:message code="ServiceMetrics.histogram" /></th>
+	</tr>
+	<c:if test="${empty methodMetrics}">
+		<tr><td colspan="10"><openmrs:message code="ServiceMetrics.none" /></td></tr>
+	</c:if>
+	<c:forEach items="${methodMetrics}" var="metrics" varStatus="varStatus">
+		<tr class="${varStatus.index % 2 == 0 ? 'evenRow' : 'oddRow'}">
+			<td>${fn:escapeXml(metrics.name)}</td>
+			<td>${metrics.calls}</td>
+			<td>${metrics.errors}</td>
+			<td>${metrics.totalMillis}</td>
+			<td>${metrics.meanMillis}</td>
+			<td>${metrics.p95Millis}</td>
+			<td>${metrics.maxMillis}</td>
+			<td>${metrics.statements}</td>
+			<td>${metrics.entityLoads}</td>
+			<td style="white-space: nowrap">
+				<c:forEach items="${metrics.histogram}" var="count" varStatus="bucket">
+					<c:if test="${count > 0}">
+						<c:choose>
+							<c:when test="${bucket.index < fn:length(bucketBounds)}">&le;${bucketBounds[bucket.index]}ms</c:when>
+							<c:otherwise>&gt;${bucketBounds[bucket.index - 1]}ms</c:otherwise>
+						</c:choose>: ${count}&nbsp;
+					</c:if>
+				</c:forEach>
+			</td>
+		</tr>
+	</c:forEach>
+</table>
+
+<br />
+<br />
+<%@ include file="/WEB-INF/template/footer.jsp"%>